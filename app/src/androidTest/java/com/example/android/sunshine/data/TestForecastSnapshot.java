@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.core.SunshineDates;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Tests that {@link ForecastSnapshot} gives back the rows it was given, and refuses to give back
+ * rows that would be wrong to show.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastSnapshot {
+
+    private static final String LOCATION = "Mountain View, CA 94043";
+
+    /* The columns MainActivity asks for */
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID,
+    };
+
+    private static final long TODAY = 1475280000000L;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        new File(mContext.getFilesDir(), ForecastSnapshot.FILE_NAME).delete();
+    }
+
+    /* Yesterday, today and the next five days, with made up weather */
+    private static Cursor createRows() {
+        MatrixCursor rows = new MatrixCursor(new String[]{
+                WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherEntry.COLUMN_DATE,
+                WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherEntry.COLUMN_MAX_TEMP,
+        });
+        for (int day = -1; day < 6; day++) {
+            rows.addRow(new Object[]{800 + day, TODAY + day * SunshineDates.DAY_IN_MILLIS,
+                    10.5 + day, 20.25 + day});
+        }
+        return rows;
+    }
+
+    @Test
+    public void testWriteAndReadBack() {
+        ForecastSnapshot.write(mContext, ForecastSnapshot.encode(createRows(), LOCATION));
+
+        Cursor snapshot = ForecastSnapshot.read(mContext, PROJECTION, LOCATION, TODAY);
+        assertNotNull("The snapshot should have been read back", snapshot);
+
+        /* Yesterday is dropped, leaving today and the five days after it */
+        assertEquals(6, snapshot.getCount());
+        for (int day = 0; snapshot.moveToNext(); day++) {
+            assertEquals(TODAY + day * SunshineDates.DAY_IN_MILLIS, snapshot.getLong(0));
+            assertEquals(20.25 + day, snapshot.getDouble(1), 0);
+            assertEquals(10.5 + day, snapshot.getDouble(2), 0);
+            assertEquals(800 + day, snapshot.getInt(3));
+        }
+        snapshot.close();
+    }
+
+    @Test
+    public void testUnusableSnapshotsAreIgnored() {
+        assertNull("There is no snapshot yet",
+                ForecastSnapshot.read(mContext, PROJECTION, LOCATION, TODAY));
+
+        byte[] snapshot = ForecastSnapshot.encode(createRows(), LOCATION);
+
+        assertNull("A snapshot of another location must not be shown",
+                ForecastSnapshot.decode(snapshot, PROJECTION, "London, UK", TODAY));
+
+        assertNull("A snapshot with only past days must not be shown",
+                ForecastSnapshot.decode(snapshot, PROJECTION, LOCATION,
+                        TODAY + 10 * SunshineDates.DAY_IN_MILLIS));
+
+        byte[] truncated = new byte[snapshot.length / 2];
+        System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+        assertNull("A damaged snapshot must not be shown",
+                ForecastSnapshot.decode(truncated, PROJECTION, LOCATION, TODAY));
+    }
+}
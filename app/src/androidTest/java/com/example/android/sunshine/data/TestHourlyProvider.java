@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.core.SunshineDates;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the hourly URIs of {@link WeatherProvider}, and that the daily forecast derived from
+ * hourly rows stays correct as hours are added, replaced and deleted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestHourlyProvider {
+
+    private static final String TAG = TestHourlyProvider.class.getSimpleName();
+
+    private static final long HOUR = SunshineDates.HOUR_IN_MILLIS;
+
+    /* Two weeks of hourly data, the size of a full hourly sync for one location */
+    private static final int DAYS = 14;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final TimeZone mTimeZone = TimeZone.getDefault();
+
+    @Before
+    public void setUp() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherEntry.TABLE_NAME, null, null);
+        database.delete(HourlyEntry.TABLE_NAME, null, null);
+        database.delete(WeatherContract.DailyAggregateEntry.TABLE_NAME, null, null);
+        database.close();
+    }
+
+    /* Local midnight of a normalized day in the device's time zone */
+    private long localMidnight(long normalizedUtcDate) {
+        return SunshineDates.getLocalMidnightFromNormalizedUtcDate(normalizedUtcDate, mTimeZone);
+    }
+
+    /* Number of hours in a local day; 23 or 25 when the clocks change */
+    private int hoursInDay(long normalizedUtcDate) {
+        return (int) ((localMidnight(normalizedUtcDate + SunshineDates.DAY_IN_MILLIS)
+                - localMidnight(normalizedUtcDate)) / HOUR);
+    }
+
+    /* Builds one row for every hour of a day. The temperature is the hour of the day. */
+    private ContentValues[] hoursOfDay(long normalizedUtcDate) {
+        long midnight = localMidnight(normalizedUtcDate);
+        ContentValues[] hours = new ContentValues[hoursInDay(normalizedUtcDate)];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = hour(midnight + i * HOUR, 800 + i, i);
+        }
+        return hours;
+    }
+
+    private static ContentValues hour(long hour, int weatherId, double temp) {
+        ContentValues values = new ContentValues();
+        values.put(HourlyEntry.COLUMN_HOUR, hour);
+        values.put(HourlyEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(HourlyEntry.COLUMN_TEMP, temp);
+        values.put(HourlyEntry.COLUMN_HUMIDITY, 50.0);
+        values.put(HourlyEntry.COLUMN_PRESSURE, 1010.0);
+        values.put(HourlyEntry.COLUMN_WIND_SPEED, 10.0);
+        values.put(HourlyEntry.COLUMN_DEGREES, 90.0);
+        return values;
+    }
+
+    /* Reads the daily row for a day: {min, max, weather ID} */
+    private double[] dailyRow(long normalizedUtcDate) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherUriWithDate(normalizedUtcDate),
+                new String[]{WeatherEntry.COLUMN_MIN_TEMP, WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherEntry.COLUMN_WEATHER_ID, WeatherEntry.COLUMN_DEGREES},
+                null, null, null);
+        assertTrue("Error: No daily row for " + normalizedUtcDate, cursor.moveToFirst());
+        double[] row = {cursor.getDouble(0), cursor.getDouble(1), cursor.getInt(2),
+                cursor.getDouble(3)};
+        cursor.close();
+        return row;
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    @Test
+    public void testHoursDeriveTheDailyRow() {
+        long day = TestUtilities.DATE_NORMALIZED;
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        /* Insert the day in two halves, so the second insert has to continue saved totals */
+        ContentValues[] hours = hoursOfDay(day);
+        ContentValues[] morning = new ContentValues[12];
+        ContentValues[] rest = new ContentValues[hours.length - 12];
+        System.arraycopy(hours, 0, morning, 0, morning.length);
+        System.arraycopy(hours, 12, rest, 0, rest.length);
+
+        assertEquals(12, contentResolver.bulkInsert(HourlyEntry.CONTENT_URI, morning));
+        double[] morningRow = dailyRow(day);
+        assertEquals(0.0, morningRow[0]);
+        assertEquals(11.0, morningRow[1]);
+
+        assertEquals(rest.length, contentResolver.bulkInsert(HourlyEntry.CONTENT_URI, rest));
+        double[] dayRow = dailyRow(day);
+        assertEquals(0.0, dayRow[0]);
+        assertEquals(hours.length - 1.0, dayRow[1]);
+        /* The hour at local noon picks the weather ID */
+        assertEquals(812.0, dayRow[2]);
+        assertEquals(90.0, dayRow[3], 1e-9);
+
+        assertEquals(hours.length, count(HourlyEntry.buildHourlyUriForDay(day)));
+        assertEquals(12, count(HourlyEntry.buildHourlyUriForHours(day, 6, 18)));
+        assertEquals(0, count(HourlyEntry.buildHourlyUriForDay(day + SunshineDates.DAY_IN_MILLIS)));
+    }
+
+    @Test
+    public void testReplacedAndDeletedHoursRebuildTheDay() {
+        long day = TestUtilities.DATE_NORMALIZED;
+        ContentResolver contentResolver = mContext.getContentResolver();
+        ContentValues[] hours = hoursOfDay(day);
+        contentResolver.bulkInsert(HourlyEntry.CONTENT_URI, hours);
+
+        /* Replace the warmest hour with a cooler one; the maximum has to come down */
+        long lastHour = hours[hours.length - 1].getAsLong(HourlyEntry.COLUMN_HOUR);
+        contentResolver.bulkInsert(HourlyEntry.CONTENT_URI,
+                new ContentValues[]{hour(lastHour, 800, 5)});
+        assertEquals(hours.length - 2.0, dailyRow(day)[1]);
+        assertEquals(hours.length, count(HourlyEntry.buildHourlyUriForDay(day)));
+
+        /* Delete the morning; the minimum has to go up */
+        long sixAm = localMidnight(day) + 6 * HOUR;
+        contentResolver.delete(HourlyEntry.CONTENT_URI,
+                HourlyEntry.COLUMN_HOUR + " < ?", new String[]{Long.toString(sixAm)});
+        assertEquals(5.0, dailyRow(day)[0]);
+        assertEquals(hours.length - 6, count(HourlyEntry.buildHourlyUriForDay(day)));
+    }
+
+    /**
+     * Inserts and then scans two weeks of hourly data, as an hourly sync for one location would,
+     * and logs how long each step took. The numbers only mean something when compared between
+     * runs on the same device.
+     */
+    @Test
+    public void testInsertAndScanTwoWeeksOfHours() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long firstDay = TestUtilities.DATE_NORMALIZED;
+
+        int totalHours = 0;
+        long insertNanos = 0;
+        for (int i = 0; i < DAYS; i++) {
+            ContentValues[] hours = hoursOfDay(firstDay + i * SunshineDates.DAY_IN_MILLIS);
+            long start = System.nanoTime();
+            totalHours += contentResolver.bulkInsert(HourlyEntry.CONTENT_URI, hours);
+            insertNanos += System.nanoTime() - start;
+        }
+
+        long scanStart = System.nanoTime();
+        int scannedHours = 0;
+        for (int i = 0; i < DAYS; i++) {
+            Cursor cursor = contentResolver.query(
+                    HourlyEntry.buildHourlyUriForDay(firstDay + i * SunshineDates.DAY_IN_MILLIS),
+                    new String[]{HourlyEntry.COLUMN_HOUR, HourlyEntry.COLUMN_TEMP},
+                    null, null, null);
+            while (cursor.moveToNext()) {
+                scannedHours++;
+            }
+            cursor.close();
+        }
+        long scanNanos = System.nanoTime() - scanStart;
+
+        long dailyStart = System.nanoTime();
+        int days = count(WeatherEntry.CONTENT_URI);
+        long dailyNanos = System.nanoTime() - dailyStart;
+
+        assertEquals(totalHours, scannedHours);
+        assertEquals(DAYS, days);
+
+        Log.i(TAG, "Inserted " + totalHours + " hours in "
+                + TimeUnit.NANOSECONDS.toMicros(insertNanos) + " us, scanned them day by day in "
+                + TimeUnit.NANOSECONDS.toMicros(scanNanos) + " us, read " + days
+                + " derived days in " + TimeUnit.NANOSECONDS.toMicros(dailyNanos) + " us");
+    }
+}
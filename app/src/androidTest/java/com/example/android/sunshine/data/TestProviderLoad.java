@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.core.LatencyRecorder;
+import com.example.android.sunshine.core.SunshineDates;
+import com.example.android.sunshine.core.WeatherGenerator;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.data.WeatherContract.StatsEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.FakeDataUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Drives {@link WeatherProvider} with concurrent readers and writers at fixed rates and logs the
+ * throughput and latency percentiles of each kind of operation.
+ * <p>
+ * Readers do what the app's screens do: scan the forecast list, look up a single day, and read
+ * a day's hours. Writers do what a sync does: replace the forecast of one location and delete
+ * the days outside it. Each write switches to the next of the generator's locations, as if the
+ * user kept changing theirs, so every write really changes every row.
+ * <p>
+ * The defaults make for a short run that fits in the regular test suite. To size the storage
+ * layer, scale it up with instrumentation arguments, for example:
+ * <pre>
+ * adb shell am instrument -w -e class com.example.android.sunshine.data.TestProviderLoad \
+ *     -e loadSeconds 120 -e loadDays 16 -e loadStepHours 1 -e loadReaders 8 \
+ *     -e loadReadRate 50 -e loadWriters 2 -e loadWriteRate 1 \
+ *     com.example.android.sunshine.test/android.support.test.runner.AndroidJUnitRunner
+ * </pre>
+ * Rates are operations per second per thread. Operations are started on a fixed schedule no
+ * matter how long the previous one took, and latency is measured from when an operation was
+ * due rather than from when it got to start. A provider that can't keep up therefore shows long
+ * latencies, instead of quietly running fewer operations.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestProviderLoad {
+
+    private static final String TAG = TestProviderLoad.class.getSimpleName();
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    /* How the load test is set up; see readArguments for the argument names */
+    private long mSeed;
+    private int mSeconds;
+    private int mDays;
+    private int mLocations;
+    private int mStepHours;
+    private int mReaders;
+    private double mReadRate;
+    private int mWriters;
+    private double mWriteRate;
+
+    private WeatherGenerator mGenerator;
+
+    /*
+     * The rows each writer can write, one array per location. They are made up before the test
+     * starts, so generating them isn't part of what is measured.
+     */
+    private ContentValues[][] mRowsByLocation;
+
+    /* Everything the readers and writers recorded, merged once they're done */
+    private final LatencyRecorder mListScans = new LatencyRecorder();
+    private final LatencyRecorder mDayLookups = new LatencyRecorder();
+    private final LatencyRecorder mHourScans = new LatencyRecorder();
+    private final LatencyRecorder mWrites = new LatencyRecorder();
+
+    @Before
+    public void setUp() {
+        readArguments(InstrumentationRegistry.getArguments());
+        mGenerator = WeatherGenerator.withRandomClimates(mSeed, mLocations);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.delete(WeatherEntry.TABLE_NAME, null, null);
+        database.delete(HourlyEntry.TABLE_NAME, null, null);
+        database.delete(WeatherContract.DailyAggregateEntry.TABLE_NAME, null, null);
+        database.close();
+
+        mRowsByLocation = new ContentValues[mLocations][];
+        for (int i = 0; i < mLocations; i++) {
+            mRowsByLocation[i] = mStepHours > 0
+                    ? FakeDataUtils.createHours(mGenerator, i, mDays, mStepHours)
+                    : FakeDataUtils.createDays(mGenerator, i, mDays);
+        }
+
+        /* Start from a full database, so readers have something to read from the start */
+        FakeDataUtils.insertFakeData(mContext, mGenerator, 0, mDays, mStepHours);
+        mContext.getContentResolver().delete(StatsEntry.CONTENT_URI, null, null);
+    }
+
+    private void readArguments(Bundle arguments) {
+        mSeed = Long.parseLong(argument(arguments, "loadSeed", "1"));
+        mSeconds = Integer.parseInt(argument(arguments, "loadSeconds", "5"));
+        mDays = Integer.parseInt(argument(arguments, "loadDays", "14"));
+        mLocations = Integer.parseInt(argument(arguments, "loadLocations", "10"));
+        mStepHours = Integer.parseInt(argument(arguments, "loadStepHours", "0"));
+        mReaders = Integer.parseInt(argument(arguments, "loadReaders", "2"));
+        mReadRate = Double.parseDouble(argument(arguments, "loadReadRate", "20"));
+        mWriters = Integer.parseInt(argument(arguments, "loadWriters", "1"));
+        mWriteRate = Double.parseDouble(argument(arguments, "loadWriteRate", "1"));
+    }
+
+    private static String argument(Bundle arguments, String name, String defaultValue) {
+        String value = arguments != null ? arguments.getString(name) : null;
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Runs operations at a fixed rate until the load test is over. Each thread has its own
+     * recorders, which are merged into the test's when it's done.
+     */
+    private abstract class Worker extends Thread {
+
+        private final double mRate;
+        private final CountDownLatch mStart;
+        private final long mEndNanos;
+
+        Worker(String name, double rate, CountDownLatch start, long endNanos) {
+            super(name);
+            mRate = rate;
+            mStart = start;
+            mEndNanos = endNanos;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mStart.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / mRate);
+            long due = System.nanoTime();
+            for (int i = 0; due < mEndNanos; i++, due += intervalNanos) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) SystemClock.sleep(TimeUnit.NANOSECONDS.toMillis(wait));
+                operate(i, due);
+            }
+            finish();
+        }
+
+        /**
+         * Performs one operation and records it.
+         *
+         * @param i   How many operations this worker ran before
+         * @param due When the operation should have started, to measure its latency from
+         */
+        abstract void operate(int i, long due);
+
+        abstract void finish();
+    }
+
+    private class Reader extends Worker {
+
+        final LatencyRecorder listScans = new LatencyRecorder();
+        final LatencyRecorder dayLookups = new LatencyRecorder();
+        final LatencyRecorder hourScans = new LatencyRecorder();
+
+        Reader(int index, CountDownLatch start, long endNanos) {
+            super("Reader " + index, mReadRate, start, endNanos);
+        }
+
+        @Override
+        void operate(int i, long due) {
+            ContentResolver contentResolver = mContext.getContentResolver();
+            long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+            long day = today + (i % mDays) * SunshineDates.DAY_IN_MILLIS;
+
+            /* Mostly the forecast list, like the app, which shows it far more than anything else */
+            switch (i % 4) {
+                case 0:
+                case 1:
+                    read(listScans, due, contentResolver, WeatherEntry.CONTENT_URI,
+                            WeatherEntry.getSqlSelectForTodayOnwards(),
+                            WeatherEntry.COLUMN_DATE + " ASC");
+                    break;
+                case 2:
+                    read(dayLookups, due, contentResolver,
+                            WeatherEntry.buildWeatherUriWithDate(day), null, null);
+                    break;
+                default:
+                    read(hourScans, due, contentResolver,
+                            HourlyEntry.buildHourlyUriForDay(day), null, null);
+                    break;
+            }
+        }
+
+        private void read(LatencyRecorder recorder, long due, ContentResolver contentResolver,
+                          Uri uri, String selection, String sortOrder) {
+            try {
+                Cursor cursor = contentResolver.query(uri, null, selection, null, sortOrder);
+                if (cursor == null) {
+                    recorder.recordFailure();
+                    return;
+                }
+                int rows = 0;
+                while (cursor.moveToNext()) {
+                    cursor.getDouble(0);
+                    rows++;
+                }
+                cursor.close();
+                recorder.record(System.nanoTime() - due, rows);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Read of " + uri + " failed", e);
+                recorder.recordFailure();
+            }
+        }
+
+        @Override
+        void finish() {
+            synchronized (TestProviderLoad.this) {
+                mListScans.merge(listScans);
+                mDayLookups.merge(dayLookups);
+                mHourScans.merge(hourScans);
+            }
+        }
+    }
+
+    private class Writer extends Worker {
+
+        final LatencyRecorder writes = new LatencyRecorder();
+        private final int mIndex;
+
+        Writer(int index, CountDownLatch start, long endNanos) {
+            super("Writer " + index, mWriteRate, start, endNanos);
+            mIndex = index;
+        }
+
+        @Override
+        void operate(int i, long due) {
+            int location = (mIndex + i * mWriters + 1) % mLocations;
+            ContentValues[] rows = mRowsByLocation[location];
+
+            try {
+                ContentResolver contentResolver = mContext.getContentResolver();
+                Uri uri = mStepHours > 0 ? HourlyEntry.CONTENT_URI : WeatherEntry.CONTENT_URI;
+                int written = contentResolver.bulkInsert(uri, rows);
+
+                /* Same as a sync: whatever is outside the new forecast goes */
+                long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+                written += contentResolver.delete(WeatherEntry.CONTENT_URI,
+                        WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(today)});
+                writes.record(System.nanoTime() - due, written);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Write of location " + location + " failed", e);
+                writes.recordFailure();
+            }
+        }
+
+        @Override
+        void finish() {
+            synchronized (TestProviderLoad.this) {
+                mWrites.merge(writes);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(mSeconds);
+
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < mReaders; i++) workers.add(new Reader(i, start, endNanos));
+        for (int i = 0; i < mWriters; i++) workers.add(new Writer(i, start, endNanos));
+        for (Worker worker : workers) worker.start();
+
+        start.countDown();
+        for (Worker worker : workers) worker.join();
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        Log.i(TAG, "Load test: seed " + mSeed + ", " + mDays + " days, " + mLocations
+                + " locations, " + (mStepHours > 0 ? "every " + mStepHours + " hours" : "daily")
+                + ", " + mReaders + " readers at " + mReadRate + "/s, " + mWriters
+                + " writers at " + mWriteRate + "/s, " + mSeconds + " s");
+        synchronized (this) {
+            Log.i(TAG, mListScans.summarize("forecast list", elapsedNanos));
+            Log.i(TAG, mDayLookups.summarize("single day", elapsedNanos));
+            Log.i(TAG, mHourScans.summarize("hours of a day", elapsedNanos));
+            Log.i(TAG, mWrites.summarize("forecast write", elapsedNanos));
+
+            assertEquals(0, mListScans.getFailures() + mDayLookups.getFailures()
+                    + mHourScans.getFailures() + mWrites.getFailures());
+            if (mReaders > 0) assertTrue(mListScans.getCount() > 0);
+            if (mWriters > 0) assertTrue(mWrites.getCount() > 0);
+        }
+
+        logProviderStats();
+    }
+
+    /* What WeatherProvider measured itself, for comparison with what its callers saw */
+    private void logProviderStats() {
+        Cursor cursor = mContext.getContentResolver().query(StatsEntry.CONTENT_URI,
+                null, null, null, null);
+        if (cursor == null) return;
+        while (cursor.moveToNext()) {
+            Log.i(TAG, "Provider " + cursor.getString(cursor.getColumnIndex(
+                    StatsEntry.COLUMN_OPERATION)) + " on URI code "
+                    + cursor.getInt(cursor.getColumnIndex(StatsEntry.COLUMN_URI_CODE)) + ": "
+                    + cursor.getLong(cursor.getColumnIndex(StatsEntry.COLUMN_CALLS)) + " calls, "
+                    + cursor.getLong(cursor.getColumnIndex(StatsEntry.COLUMN_ROWS)) + " rows, "
+                    + "histogram " + cursor.getString(cursor.getColumnIndex(
+                    StatsEntry.COLUMN_HISTOGRAM)));
+        }
+        cursor.close();
+    }
+}
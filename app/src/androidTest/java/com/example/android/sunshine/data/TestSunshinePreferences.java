@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.utils.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests that the settings snapshot kept by {@link SunshinePreferences} follows changes made to
+ * SharedPreferences, whether they are made through SunshinePreferences or directly (as the
+ * SettingsFragment does).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSunshinePreferences {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private SharedPreferences mPreferences;
+
+    /*
+     * clear() does not tell change listeners about the keys it removed on every API level, so the
+     * snapshot is refreshed by hand whenever the tests wipe the preferences.
+     */
+    @Before
+    public void setUp() {
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mPreferences.edit().clear().commit();
+        SunshinePreferences.refreshSettings(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mPreferences.edit().clear().commit();
+        SunshinePreferences.refreshSettings(mContext);
+    }
+
+    /**
+     * Changing a preference behind SunshinePreferences' back must reach the snapshot. The change
+     * listener runs on the main thread, so we poll for the new value rather than expect it at
+     * once.
+     */
+    @Test
+    public void testSnapshotFollowsPreferenceChanges() {
+        /* With nothing stored, the defaults apply */
+        assertTrue("Metric should be the default", SunshinePreferences.isMetric(mContext));
+        assertEquals(mContext.getString(R.string.pref_location_default),
+                SunshinePreferences.getPreferredWeatherLocation(mContext));
+
+        final String unitsKey = mContext.getString(R.string.pref_units_key);
+        mPreferences.edit()
+                .putString(unitsKey, mContext.getString(R.string.pref_units_imperial))
+                .commit();
+
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return !SunshinePreferences.isMetric(mContext);
+            }
+        }.run();
+
+        /* Every read after the swap sees the same snapshot */
+        SunshineSettings settings = SunshinePreferences.getSettings(mContext);
+        assertFalse(settings.isMetric());
+        assertTrue(settings == SunshinePreferences.getSettings(mContext));
+    }
+
+    /**
+     * Changes made through SunshinePreferences must be visible to the thread that made them
+     * straight away, without waiting for the change listener.
+     */
+    @Test
+    public void testSnapshotUpdatedByLocationWrites() {
+        assertFalse(SunshinePreferences.isLocationLatLonAvailable(mContext));
+
+        SunshinePreferences.setLocationDetails(mContext, 37.42, -122.08);
+
+        assertTrue(SunshinePreferences.isLocationLatLonAvailable(mContext));
+        double[] coordinates = SunshinePreferences.getLocationCoordinates(mContext);
+        assertEquals(37.42, coordinates[0], 0);
+        assertEquals(-122.08, coordinates[1], 0);
+
+        SunshinePreferences.resetLocationCoordinates(mContext);
+
+        assertFalse(SunshinePreferences.isLocationLatLonAvailable(mContext));
+    }
+
+    /**
+     * A batch must keep its changes to itself until it is applied, then write them all at once,
+     * with later changes to a key replacing earlier ones.
+     */
+    @Test
+    public void testBatchAppliesChangesTogether() {
+        String request = "http://example.com/forecast";
+        long startDay = 1475280000000L;
+        long writesAvoidedBefore = SunshinePreferences.getWritesAvoided();
+
+        SunshinePreferences.Batch batch = SunshinePreferences.beginBatch(mContext);
+        batch.saveSyncResumeCursor(request, startDay, 7)
+                .saveSyncResumeCursor(request, startDay, 14)
+                .setLocationDetails(37.42, -122.08)
+                .saveLastNotificationTime(1234L);
+
+        /* Nothing is visible before apply */
+        assertEquals(0, SunshinePreferences.getSyncResumeDays(mContext, request, startDay));
+        assertFalse(SunshinePreferences.isLocationLatLonAvailable(mContext));
+        assertEquals(0, SunshinePreferences.getLastNotificationTimeInMillis(mContext));
+
+        assertEquals("Four changes should be written with one write",
+                3, batch.apply());
+        assertEquals(writesAvoidedBefore + 3, SunshinePreferences.getWritesAvoided());
+
+        assertEquals(14, SunshinePreferences.getSyncResumeDays(mContext, request, startDay));
+        assertTrue(SunshinePreferences.isLocationLatLonAvailable(mContext));
+        assertEquals(1234L, SunshinePreferences.getLastNotificationTimeInMillis(mContext));
+
+        /* A cursor cleared later in the same batch is gone once the batch is applied */
+        SunshinePreferences.beginBatch(mContext)
+                .saveSyncResumeCursor(request, startDay, 21)
+                .clearSyncResumeCursor()
+                .apply();
+        assertEquals(0, SunshinePreferences.getSyncResumeDays(mContext, request, startDay));
+    }
+}
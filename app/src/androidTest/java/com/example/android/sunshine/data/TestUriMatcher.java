@@ -44,6 +44,12 @@ public class TestUriMatcher {
     private static final String weatherCodeWithDateVariableName = "CODE_WEATHER_WITH_DATE";
     private static int REFLECTED_WEATHER_WITH_DATE_CODE;
 
+    private static final Uri TEST_HOURLY_DIR = WeatherContract.HourlyEntry.CONTENT_URI;
+    private static final Uri TEST_HOURLY_FOR_DAY_DIR = WeatherContract.HourlyEntry
+            .buildHourlyUriForDay(TestUtilities.DATE_NORMALIZED);
+    private static final Uri TEST_HOURLY_FOR_HOURS_DIR = WeatherContract.HourlyEntry
+            .buildHourlyUriForHours(TestUtilities.DATE_NORMALIZED, 6, 18);
+
     private UriMatcher testMatcher;
 
     @Before
@@ -101,5 +107,16 @@ public class TestUriMatcher {
         assertEquals(weatherWithDateUriCodeDoesNotMatch,
                 expectedWeatherWithDateCode,
                 actualWeatherWithDateCode);
+
+        /* Test that each of the hourly URIs is matched to its own code */
+        assertEquals("Error: The CODE_HOURLY URI was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY,
+                testMatcher.match(TEST_HOURLY_DIR));
+        assertEquals("Error: The CODE_HOURLY_FOR_DAY URI was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY_FOR_DAY,
+                testMatcher.match(TEST_HOURLY_FOR_DAY_DIR));
+        assertEquals("Error: The CODE_HOURLY_FOR_HOURS URI was matched incorrectly.",
+                WeatherProvider.CODE_HOURLY_FOR_HOURS,
+                testMatcher.match(TEST_HOURLY_FOR_HOURS_DIR));
     }
 }
@@ -21,6 +21,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utils.PollingCheck;
@@ -188,6 +189,7 @@ class TestUtilities {
     static class TestContentObserver extends ContentObserver {
         final HandlerThread mHT;
         boolean mContentChanged;
+        volatile int mChangeCount;
 
         private TestContentObserver(HandlerThread ht) {
             super(new Handler(ht.getLooper()));
@@ -222,6 +224,7 @@ class TestUtilities {
          */
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            mChangeCount++;
             mContentChanged = true;
         }
 
@@ -241,6 +244,29 @@ class TestUtilities {
             }.run();
             mHT.quit();
         }
+
+        /**
+         * Waits for the given number of notifications, then keeps listening a little longer to
+         * make sure no more arrive. Notifications are delivered asynchronously, so there is no
+         * moment at which "no more are coming" can be known for sure; a second is plenty for a
+         * provider running in the same process.
+         *
+         * @param error    The message to fail with
+         * @param expected How many notifications should have arrived
+         */
+        void assertNotificationCount(String error, final int expected) {
+            if (expected > 0) {
+                new PollingCheck(5000) {
+                    @Override
+                    protected boolean check() {
+                        return mChangeCount >= expected;
+                    }
+                }.run();
+            }
+            SystemClock.sleep(1000);
+            mHT.quit();
+            assertEquals(error, expected, mChangeCount);
+        }
     }
 
     static String getConstantNameByStringValue(Class klass, String value)  {
@@ -16,6 +16,7 @@
 package com.example.android.sunshine.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -27,6 +28,9 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -326,6 +330,225 @@ public class TestWeatherProvider {
         cursor.close();
     }
 
+    /**
+     * This test makes sure that WeatherProvider's columnar bulkInsert, which SunshineSyncTask
+     * uses to write a parsed Forecast without building ContentValues, stores exactly the same
+     * rows as the regular bulkInsert does.
+     */
+    @Test
+    public void testBulkInsertForecast() {
+        ContentValues[] bulkInsertTestContentValues = createBulkInsertTestWeatherValues();
+
+        /* Copy the test values into a Forecast, one column at a time */
+        Forecast forecast = new Forecast(BULK_INSERT_RECORDS_TO_INSERT);
+        for (ContentValues values : bulkInsertTestContentValues) {
+            forecast.addDay(
+                    values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                    values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+        }
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        /* WeatherProvider runs in our process, so we can reach it the same way the sync does */
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(
+                WeatherContract.WeatherEntry.CONTENT_URI);
+        assertNotNull("Error: Unable to acquire a client for WeatherProvider", client);
+        int insertCount;
+        try {
+            WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+            insertCount = provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, forecast);
+        } finally {
+            client.release();
+        }
+
+        weatherObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(weatherObserver);
+
+        assertEquals("Number of expected records inserted does not match actual inserted record count",
+                BULK_INSERT_RECORDS_TO_INSERT,
+                insertCount);
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+
+        cursor.moveToFirst();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext()) {
+            TestUtilities.validateCurrentRecord(
+                    "testBulkInsertForecast. Error validating WeatherEntry " + i,
+                    cursor,
+                    bulkInsertTestContentValues[i]);
+        }
+
+        cursor.close();
+    }
+
+    /**
+     * This test writes a forecast the way SunshineSyncTask does, in chunks followed by a delete
+     * of the days outside of it, inside one WeatherProvider batch. An observer of the whole
+     * table (like the forecast list) must hear about it exactly once.
+     */
+    @Test
+    public void testSyncNotifiesOnce() {
+        ContentValues[] bulkInsertTestContentValues = createBulkInsertTestWeatherValues();
+        int half = BULK_INSERT_RECORDS_TO_INSERT / 2;
+        Forecast firstChunk = new Forecast(half);
+        Forecast secondChunk = new Forecast(BULK_INSERT_RECORDS_TO_INSERT - half);
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            ContentValues values = bulkInsertTestContentValues[i];
+            (i < half ? firstChunk : secondChunk).addDay(
+                    values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                    values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+        }
+        long firstDay = firstChunk.getDate(0);
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(
+                WeatherContract.WeatherEntry.CONTENT_URI);
+        assertNotNull("Error: Unable to acquire a client for WeatherProvider", client);
+        try {
+            WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+            provider.beginBatch();
+            try {
+                provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, firstChunk);
+                provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, secondChunk);
+                contentResolver.delete(
+                        WeatherContract.WeatherEntry.CONTENT_URI,
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(firstDay + SunshineDateUtils.DAY_IN_MILLIS)});
+            } finally {
+                provider.endBatch();
+            }
+        } finally {
+            client.release();
+        }
+
+        weatherObserver.assertNotificationCount(
+                "Error: A batched sync should notify the weather table exactly once", 1);
+        contentResolver.unregisterContentObserver(weatherObserver);
+    }
+
+    /**
+     * This test makes sure that when a sync fails halfway, the chunks it committed before the
+     * failure are still announced once the sync's batch ends, and the failed chunk isn't.
+     */
+    @Test
+    public void testFailedChunkStillAnnouncesCommittedChunks() {
+        ContentValues[] bulkInsertTestContentValues = createBulkInsertTestWeatherValues();
+        int half = BULK_INSERT_RECORDS_TO_INSERT / 2;
+        Forecast firstChunk = new Forecast(half);
+        Forecast secondChunk = new Forecast(BULK_INSERT_RECORDS_TO_INSERT - half);
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            ContentValues values = bulkInsertTestContentValues[i];
+            long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+            /* The last day of the second chunk isn't normalized, which fails the whole chunk */
+            if (i == BULK_INSERT_RECORDS_TO_INSERT - 1) date++;
+
+            (i < half ? firstChunk : secondChunk).addDay(
+                    date,
+                    values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED),
+                    values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+        }
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(
+                WeatherContract.WeatherEntry.CONTENT_URI);
+        assertNotNull("Error: Unable to acquire a client for WeatherProvider", client);
+        boolean secondChunkFailed = false;
+        try {
+            WeatherProvider provider = (WeatherProvider) client.getLocalContentProvider();
+            provider.beginBatch();
+            try {
+                provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, firstChunk);
+                provider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, secondChunk);
+            } catch (IllegalArgumentException e) {
+                secondChunkFailed = true;
+            } finally {
+                provider.endBatch();
+            }
+        } finally {
+            client.release();
+        }
+        assertTrue("Error: The second chunk should have been rejected", secondChunkFailed);
+
+        weatherObserver.assertNotificationCount(
+                "Error: Committed chunks of a failed sync should notify the weather table once",
+                1);
+        contentResolver.unregisterContentObserver(weatherObserver);
+
+        Cursor cursor = contentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertNotNull(cursor);
+        assertEquals("Error: Only the first chunk should have been saved", half,
+                cursor.getCount());
+        cursor.close();
+    }
+
+    /**
+     * This test makes sure a write to a single day only notifies that day: observers of another
+     * day must not be woken up, while observers of the whole table still are.
+     */
+    @Test
+    public void testSingleDayWriteNotifiesOnlyThatDay() {
+        ContentValues[] bulkInsertTestContentValues = createBulkInsertTestWeatherValues();
+        ContentValues changedDay = bulkInsertTestContentValues[0];
+        long otherDay = bulkInsertTestContentValues[1]
+                .getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        TestUtilities.TestContentObserver tableObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, tableObserver);
+        TestUtilities.TestContentObserver otherDayObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.buildWeatherUriWithDate(otherDay), true,
+                otherDayObserver);
+
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                new ContentValues[]{changedDay});
+
+        tableObserver.assertNotificationCount(
+                "Error: The table's observer should hear about the changed day", 1);
+        otherDayObserver.assertNotificationCount(
+                "Error: Another day's observer should not hear about the changed day", 0);
+        contentResolver.unregisterContentObserver(tableObserver);
+        contentResolver.unregisterContentObserver(otherDayObserver);
+    }
+
     /**
      * This test deletes all records from the weather table using the ContentProvider. It also
      * verifies that registered ContentObservers receive onChange callbacks when data is deleted.
@@ -423,6 +646,101 @@ public class TestWeatherProvider {
         shouldBeEmptyCursor.close();
     }
 
+    /**
+     * This test resets the provider's statistics, performs a bulkInsert and a query, and then
+     * scrapes {@link WeatherContract.StatsEntry#CONTENT_URI} to make sure both operations were
+     * counted against the URI code they were performed on, along with the rows they touched.
+     */
+    @Test
+    public void testProviderStats() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        /* Deleting the stats URI resets every counter so that earlier tests don't interfere */
+        contentResolver.delete(WeatherContract.StatsEntry.CONTENT_URI, null, null);
+
+        contentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                createBulkInsertTestWeatherValues());
+
+        Cursor weatherCursor = contentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertNotNull("Cursor was null.", weatherCursor);
+        weatherCursor.close();
+
+        Cursor statsCursor = contentResolver.query(
+                WeatherContract.StatsEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertNotNull("Stats cursor was null.", statsCursor);
+
+        boolean foundQuery = false;
+        boolean foundBulkInsert = false;
+        int operationIndex = statsCursor.getColumnIndex(WeatherContract.StatsEntry.COLUMN_OPERATION);
+        int uriCodeIndex = statsCursor.getColumnIndex(WeatherContract.StatsEntry.COLUMN_URI_CODE);
+        int callsIndex = statsCursor.getColumnIndex(WeatherContract.StatsEntry.COLUMN_CALLS);
+        int rowsIndex = statsCursor.getColumnIndex(WeatherContract.StatsEntry.COLUMN_ROWS);
+
+        while (statsCursor.moveToNext()) {
+            String operation = statsCursor.getString(operationIndex);
+            assertEquals("Stats recorded against an unexpected URI code for " + operation,
+                    WeatherProvider.CODE_WEATHER,
+                    statsCursor.getInt(uriCodeIndex));
+            assertEquals("Unexpected call count for " + operation,
+                    1,
+                    statsCursor.getLong(callsIndex));
+            assertEquals("Unexpected row count for " + operation,
+                    BULK_INSERT_RECORDS_TO_INSERT,
+                    statsCursor.getLong(rowsIndex));
+
+            if ("query".equals(operation)) foundQuery = true;
+            if ("bulkInsert".equals(operation)) foundBulkInsert = true;
+        }
+        statsCursor.close();
+
+        assertTrue("Query was not recorded in the provider stats", foundQuery);
+        assertTrue("bulkInsert was not recorded in the provider stats", foundBulkInsert);
+    }
+
+    /**
+     * This test makes sure the slow query threshold can only be set to a number of milliseconds,
+     * and that an update without one is ignored rather than crashing the provider.
+     */
+    @Test
+    public void testUpdateSlowQueryThreshold() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        String key = WeatherContract.StatsEntry.SLOW_QUERY_THRESHOLD_MILLIS;
+
+        assertEquals("Error: An update without values should change nothing", 0,
+                contentResolver.update(WeatherContract.StatsEntry.CONTENT_URI, null, null, null));
+        assertEquals("Error: An update without the threshold should change nothing", 0,
+                contentResolver.update(WeatherContract.StatsEntry.CONTENT_URI,
+                        new ContentValues(), null, null));
+
+        ContentValues malformed = new ContentValues();
+        malformed.put(key, "soon");
+        try {
+            contentResolver.update(WeatherContract.StatsEntry.CONTENT_URI, malformed, null, null);
+            fail("Error: A threshold that isn't a number should be rejected");
+        } catch (IllegalArgumentException expected) {
+            /* The provider runs in our process, so its exception reaches us as is */
+        }
+
+        ContentValues threshold = new ContentValues();
+        threshold.put(key, 75L);
+        assertEquals(1, contentResolver.update(WeatherContract.StatsEntry.CONTENT_URI,
+                threshold, null, null));
+
+        /* Put the default back for the other tests */
+        threshold.put(key, ProviderStats.DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+        contentResolver.update(WeatherContract.StatsEntry.CONTENT_URI, threshold, null, null);
+    }
+
     /**
      * This method will clear all rows from the weather table in our database.
      * <p>
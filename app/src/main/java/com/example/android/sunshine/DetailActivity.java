@@ -17,22 +17,22 @@ package com.example.android.sunshine;
 
 import android.content.Intent;
 import android.database.Cursor;
-import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.view.ViewPager;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 
 import com.example.android.sunshine.data.WeatherContract;
-import com.example.android.sunshine.databinding.ActivityDetailBinding;
-import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
 public class DetailActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor> {
@@ -43,6 +43,14 @@ public class DetailActivity extends AppCompatActivity implements
      */
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
+    private static final String TAG = DetailActivity.class.getSimpleName();
+
+    /*
+     * SystemClock.uptimeMillis() at the moment the day was tapped in the list, so that we can
+     * log how long it took to show it.
+     */
+    static final String EXTRA_TAP_UPTIME_MILLIS = "tap_uptime_millis";
+
     /*
      * The columns of data that we are interested in displaying within our DetailActivity's
      * weather display.
@@ -81,31 +89,66 @@ public class DetailActivity extends AppCompatActivity implements
      */
     private static final int ID_DETAIL_LOADER = 353;
 
-    /* A summary of the forecast that can be shared by clicking the share button in the ActionBar */
-    private String mForecastSummary;
+    /* How many pages on either side of the current one the pager keeps bound */
+    private static final int OFFSCREEN_PAGE_LIMIT = 1;
+
+    /*
+     * The day on screen. It starts as the day that was tapped, and follows the pager from then
+     * on so that the same day stays on screen when the forecast is reloaded.
+     */
+    private long mDate;
 
-    /* The URI that is used to access the chosen day's weather details */
-    private Uri mUri;
+    /* Whether the details came from DetailPrefetcher, and whether the tap has been timed yet */
+    private boolean mFromCache;
+    private boolean mTapLogged;
 
+    /* Set once the pager has been moved to the tapped day */
+    private boolean mPositioned;
 
     /*
-     * This field is used for data binding. Normally, we would have to call findViewById many
-     * times to get references to the Views in this Activity. With data binding however, we only
-     * need to call DataBindingUtil.setContentView and pass in a Context and a layout, as we do
-     * in onCreate of this class. Then, we can access all of the Views in our layout
-     * programmatically without cluttering up the code with findViewById.
+     * Every day of the forecast is a page of this ViewPager. The pages themselves use data
+     * binding (see detail_page.xml and DetailPagerAdapter), which saves us from calling
+     * findViewById over and over again for every day.
      */
-    private ActivityDetailBinding mDetailBinding;
+    private ViewPager mPager;
+    private DetailPagerAdapter mPagerAdapter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
 
-        mDetailBinding = DataBindingUtil.setContentView(this, R.layout.activity_detail);
+        setContentView(R.layout.activity_detail);
+
+        Uri uri = getIntent().getData();
+        if (uri == null) throw new NullPointerException("URI for DetailActivity cannot be null");
+        mDate = Long.parseLong(uri.getLastPathSegment());
+
+        /*
+         * The list prefetches the details of every day it shows. If this day's are ready, the
+         * pager shows them right away, on their own, until the rest of the forecast is loaded.
+         */
+        DetailRecord record = DetailPrefetcher.getInstance(this).get(mDate);
+        mFromCache = record != null;
+
+        mPager = (ViewPager) findViewById(R.id.detail_pager);
+        mPagerAdapter = new DetailPagerAdapter(this, record);
+        mPager.setAdapter(mPagerAdapter);
+
+        /*
+         * Keep the days either side of the one on screen bound, so a swipe never has to wait
+         * for a page to be built. Anything further away is cached by DetailPagerAdapter.
+         */
+        mPager.setOffscreenPageLimit(OFFSCREEN_PAGE_LIMIT);
+
+        mPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageSelected(int position) {
+                if (mPositioned) mDate = mPagerAdapter.getDateAt(position);
+            }
+        });
 
-        mUri = getIntent().getData();
-        if (mUri == null) throw new NullPointerException("URI for DetailActivity cannot be null");
+        if (mFromCache) logTapToContent();
 
         /* This connects our Activity into the loader lifecycle. */
         getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
@@ -170,16 +213,21 @@ public class DetailActivity extends AppCompatActivity implements
      * @return the Intent to use to share our weather forecast
      */
     private Intent createShareForecastIntent() {
+        /* Share the day that is on screen */
+        String forecastSummary = mPagerAdapter.getCount() > 0
+                ? mPagerAdapter.getRecordAt(mPager.getCurrentItem()).forecastSummary
+                : "";
         Intent shareIntent = ShareCompat.IntentBuilder.from(this)
                 .setType("text/plain")
-                .setText(mForecastSummary + FORECAST_SHARE_HASHTAG)
+                .setText(forecastSummary + FORECAST_SHARE_HASHTAG)
                 .getIntent();
         shareIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_DOCUMENT);
         return shareIntent;
     }
 
     /**
-     * Creates and returns a CursorLoader that loads the data for our URI and stores it in a Cursor.
+     * Creates and returns a CursorLoader that loads every day of the forecast, from today
+     * onwards, with all of the detail columns. One query feeds every page of the pager.
      *
      * @param loaderId The loader ID for which we need to create a loader
      * @param loaderArgs Any arguments supplied by the caller
@@ -194,11 +242,11 @@ public class DetailActivity extends AppCompatActivity implements
             case ID_DETAIL_LOADER:
 
                 return new CursorLoader(this,
-                        mUri,
+                        WeatherContract.WeatherEntry.CONTENT_URI,
                         WEATHER_DETAIL_PROJECTION,
+                        WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards(),
                         null,
-                        null,
-                        null);
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -220,173 +268,61 @@ public class DetailActivity extends AppCompatActivity implements
 
         /*
          * Before we bind the data to the UI that will display that data, we need to check the
-         * cursor to make sure we have the results that we are expecting. In order to do that, we
-         * check to make sure the cursor is not null and then we call moveToFirst on the cursor.
-         * Although it may not seem obvious at first, moveToFirst will return true if it contains
-         * a valid first row of data.
-         *
-         * If we have valid data, we want to continue on to bind that data to the UI. If we don't
-         * have any data to bind, we just return from this method.
+         * cursor to make sure we have the results that we are expecting. If we don't have any
+         * data to bind, we just return from this method.
          */
-        boolean cursorHasValidData = false;
-        if (data != null && data.moveToFirst()) {
-            /* We have valid data, continue on to bind the data to the UI */
-            cursorHasValidData = true;
-        }
-
-        if (!cursorHasValidData) {
+        if (data == null || data.getCount() == 0) {
             /* No data to display, simply return and do nothing */
             return;
         }
 
-        /****************
-         * Weather Icon *
-         ****************/
-        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
-        /* Use our utility method to determine the resource ID for the proper art */
-        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-
-        /* Set the resource ID on the icon to display the art */
-        mDetailBinding.primaryInfo.weatherIcon.setImageResource(weatherImageId);
-
-        /****************
-         * Weather Date *
-         ****************/
-        /*
-         * Read the date from the cursor. It is important to note that the date from the cursor
-         * is the same date from the weather SQL table. The date that is stored is a GMT
-         * representation at midnight of the date when the weather information was loaded for.
-         *
-         * When displaying this date, one must add the GMT offset (in milliseconds) to acquire
-         * the date representation for the local date in local time.
-         * SunshineDateUtils#getFriendlyDateString takes care of this for us.
-         */
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
-        String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
-
-        mDetailBinding.primaryInfo.date.setText(dateText);
-
-        /***********************
-         * Weather Description *
-         ***********************/
-        /* Use the weatherId to obtain the proper description */
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(this, weatherId);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String descriptionA11y = getString(R.string.a11y_forecast, description);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherDescription.setText(description);
-        mDetailBinding.primaryInfo.weatherDescription.setContentDescription(descriptionA11y);
-
-        /* Set the content description on the weather image (for accessibility purposes) */
-        mDetailBinding.primaryInfo.weatherIcon.setContentDescription(descriptionA11y);
-
-        /**************************
-         * High (max) temperature *
-         **************************/
-        /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-        /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
-         */
-        String highString = SunshineWeatherUtils.formatTemperature(this, highInCelsius);
-
-        /* Create the accessibility (a11y) String from the weather description */
-        String highA11y = getString(R.string.a11y_high_temp, highString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.highTemperature.setText(highString);
-        mDetailBinding.primaryInfo.highTemperature.setContentDescription(highA11y);
-
-        /*************************
-         * Low (min) temperature *
-         *************************/
-        /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-        /*
-         * If the user's preference for weather is fahrenheit, formatTemperature will convert
-         * the temperature. This method will also append either °C or °F to the temperature
-         * String.
-         */
-        String lowString = SunshineWeatherUtils.formatTemperature(this, lowInCelsius);
-
-        String lowA11y = getString(R.string.a11y_low_temp, lowString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.primaryInfo.lowTemperature.setText(lowString);
-        mDetailBinding.primaryInfo.lowTemperature.setContentDescription(lowA11y);
-
-        /************
-         * Humidity *
-         ************/
-        /* Read humidity from the cursor */
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
-        String humidityString = getString(R.string.format_humidity, humidity);
-
-        String humidityA11y = getString(R.string.a11y_humidity, humidityString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.humidity.setText(humidityString);
-        mDetailBinding.extraDetails.humidity.setContentDescription(humidityA11y);
-
-        mDetailBinding.extraDetails.humidityLabel.setContentDescription(humidityA11y);
-
-        /****************************
-         * Wind speed and direction *
-         ****************************/
-        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
-        String windString = SunshineWeatherUtils.getFormattedWind(this, windSpeed, windDirection);
-
-        String windA11y = getString(R.string.a11y_wind, windString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.windMeasurement.setText(windString);
-        mDetailBinding.extraDetails.windMeasurement.setContentDescription(windA11y);
-
-        mDetailBinding.extraDetails.windLabel.setContentDescription(windA11y);
-
-        /************
-         * Pressure *
-         ************/
-        /* Read pressure from the cursor */
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
-
         /*
-         * Format the pressure text using string resources. The reason we directly access
-         * resources using getString rather than using a method from SunshineWeatherUtils as
-         * we have for other data displayed in this Activity is because there is no
-         * additional logic that needs to be considered in order to properly display the
-         * pressure.
+         * Keep (or, the first time, put) the pager on the day we are showing. Swapping the data
+         * can move the pager on its own, so remember the day before doing it.
          */
-        String pressureString = getString(R.string.format_pressure, pressure);
-
-        String pressureA11y = getString(R.string.a11y_pressure, pressureString);
-
-        /* Set the text and content description (for accessibility purposes) */
-        mDetailBinding.extraDetails.pressure.setText(pressureString);
-        mDetailBinding.extraDetails.pressure.setContentDescription(pressureA11y);
+        long date = mDate;
+        mPagerAdapter.swapCursor(data);
+        int position = mPagerAdapter.getPositionForDate(date);
+        if (position >= 0) {
+            mDate = date;
+            mPager.setCurrentItem(position, false);
+        }
+        mPositioned = true;
 
-        mDetailBinding.extraDetails.pressureLabel.setContentDescription(pressureA11y);
+        if (!mFromCache) logTapToContent();
+    }
 
-        /* Store the forecast summary String in our forecast summary field to share later */
-        mForecastSummary = String.format("%s - %s - %s/%s",
-                dateText, description, highString, lowString);
+    /**
+     * Logs how long it took from the tap on the list to the first frame showing the day, and
+     * whether the day came from the prefetch cache. Only the first bind after a tap is logged.
+     */
+    private void logTapToContent() {
+        final long tapUptimeMillis = getIntent().getLongExtra(EXTRA_TAP_UPTIME_MILLIS, -1);
+        if (tapUptimeMillis < 0 || mTapLogged) {
+            return;
+        }
+        mTapLogged = true;
+
+        final ViewTreeObserver observer = mPager.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mPager.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.i(TAG, "Tap to content (" + (mFromCache ? "cache" : "provider") + "): "
+                        + (SystemClock.uptimeMillis() - tapUptimeMillis) + " ms");
+                return true;
+            }
+        });
     }
 
     /**
      * Called when a previously created loader is being reset, thus making its data unavailable.
      * The application should at this point remove any references it has to the Loader's data.
-     * Since we don't store any of this cursor's data, there are no references we need to remove.
      *
      * @param loader The Loader that is being reset.
      */
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        mPagerAdapter.swapCursor(null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.util.LruCache;
+import android.support.v4.view.PagerAdapter;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.android.sunshine.databinding.DetailPageBinding;
+
+import java.util.ArrayDeque;
+
+/**
+ * Supplies DetailActivity's ViewPager with one page per forecast day. All the days come from a
+ * single cursor, queried once with {@link DetailActivity#WEATHER_DETAIL_PROJECTION}, so paging
+ * never goes back to the database.
+ * <p>
+ * Pages the pager lets go of are kept, still bound, in a small cache. Swiping back to a day that
+ * was just on screen reattaches its page as it was; only pages pushed out of that cache are
+ * unbound, and their views are reused for the next new page instead of inflating another one.
+ * <p>
+ * Until the cursor arrives, the adapter can show a single day that DetailPrefetcher already had
+ * ready, so the tapped day is on screen without waiting for the query.
+ */
+class DetailPagerAdapter extends PagerAdapter {
+
+    /* Bound pages kept after the pager has let go of them */
+    private static final int PAGE_CACHE_SIZE = 3;
+
+    private final Context mContext;
+    private final DetailPrefetcher mPrefetcher;
+
+    /* Shown on its own until the cursor arrives, may be null */
+    private final DetailRecord mFirstRecord;
+
+    private Cursor mCursor;
+
+    /* Bumped whenever the cursor is swapped, so pages bound from an older cursor are redone */
+    private int mGeneration;
+
+    /* One day's page: what it shows, and the views showing it */
+    private static final class Page {
+        final long date;
+        final int generation;
+        final DetailRecord record;
+        final DetailPageBinding binding;
+
+        Page(long date, int generation, DetailRecord record, DetailPageBinding binding) {
+            this.date = date;
+            this.generation = generation;
+            this.record = record;
+            this.binding = binding;
+        }
+    }
+
+    /* Unbound page views ready for reuse */
+    private final ArrayDeque<DetailPageBinding> mSpareBindings = new ArrayDeque<>();
+
+    /* Pages taken off the pager but still bound, by date */
+    private final LruCache<Long, Page> mDetachedPages = new LruCache<Long, Page>(PAGE_CACHE_SIZE) {
+        @Override
+        protected void entryRemoved(boolean evicted, Long date, Page oldPage, Page newPage) {
+            /*
+             * A page pushed out of the cache can at least lend its views to a new one. Pages
+             * removed because they are going back on the pager (evicted is false) keep them.
+             */
+            if (evicted && mSpareBindings.size() < PAGE_CACHE_SIZE) {
+                mSpareBindings.add(oldPage.binding);
+            }
+        }
+    };
+
+    /**
+     * @param context     Used to inflate pages and format the weather
+     * @param firstRecord A day to show while the cursor is being loaded, or null
+     */
+    DetailPagerAdapter(Context context, DetailRecord firstRecord) {
+        mContext = context;
+        mPrefetcher = DetailPrefetcher.getInstance(context);
+        mFirstRecord = firstRecord;
+    }
+
+    /**
+     * Replaces the days the pager shows. Every page bound from the old cursor is rebound.
+     *
+     * @param cursor Every day to page through, in order, with the detail projection
+     */
+    void swapCursor(Cursor cursor) {
+        mCursor = cursor;
+        mGeneration++;
+        /* Pages in the cache were bound from the old cursor, they're no use any more */
+        mDetachedPages.evictAll();
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        if (mCursor != null) return mCursor.getCount();
+        return mFirstRecord != null ? 1 : 0;
+    }
+
+    /**
+     * @param date A normalized UTC date
+     * @return The position of the day's page, or -1 if it has none
+     */
+    int getPositionForDate(long date) {
+        for (int position = 0; position < getCount(); position++) {
+            if (getDateAt(position) == date) return position;
+        }
+        return -1;
+    }
+
+    long getDateAt(int position) {
+        if (mCursor == null) return mFirstRecord.date;
+        mCursor.moveToPosition(position);
+        return mCursor.getLong(DetailActivity.INDEX_WEATHER_DATE);
+    }
+
+    /**
+     * Returns the formatted details of a day, from DetailPrefetcher if it has them and from the
+     * cursor otherwise.
+     *
+     * @param position The day's position
+     * @return The day's details
+     */
+    DetailRecord getRecordAt(int position) {
+        if (mCursor == null) return mFirstRecord;
+
+        long date = getDateAt(position);
+        DetailRecord record = mPrefetcher.peek(date);
+        if (record == null) {
+            /* getDateAt left the cursor on this day's row */
+            record = new DetailRecord(mContext, mCursor);
+            mPrefetcher.put(record);
+        }
+        return record;
+    }
+
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        long date = getDateAt(position);
+
+        Page page = mDetachedPages.remove(date);
+        if (page == null) {
+            DetailPageBinding binding = mSpareBindings.poll();
+            if (binding == null) {
+                binding = DetailPageBinding.inflate(
+                        LayoutInflater.from(mContext), container, false);
+            }
+            DetailRecord record = getRecordAt(position);
+            bind(binding, record);
+            page = new Page(date, mGeneration, record, binding);
+        }
+
+        container.addView(page.binding.getRoot());
+        return page;
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        Page page = (Page) object;
+        container.removeView(page.binding.getRoot());
+        if (page.generation == mGeneration) {
+            mDetachedPages.put(page.date, page);
+        } else {
+            if (mSpareBindings.size() < PAGE_CACHE_SIZE) mSpareBindings.add(page.binding);
+        }
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return view == ((Page) object).binding.getRoot();
+    }
+
+    @Override
+    public int getItemPosition(Object object) {
+        Page page = (Page) object;
+        if (page.generation != mGeneration) {
+            return POSITION_NONE;
+        }
+        int position = getPositionForDate(page.date);
+        return position >= 0 ? position : POSITION_NONE;
+    }
+
+    /**
+     * Returns the details shown on a page the pager currently holds.
+     *
+     * @param object An object returned by instantiateItem
+     * @return The details the page shows
+     */
+    static DetailRecord getRecord(Object object) {
+        return ((Page) object).record;
+    }
+
+    /**
+     * Shows a day's details on a page. Everything is already formatted, so this only sets text.
+     *
+     * @param binding The page's views
+     * @param record  The day to show
+     */
+    private static void bind(DetailPageBinding binding, DetailRecord record) {
+        /* Set the resource ID on the icon to display the art */
+        binding.primaryInfo.weatherIcon.setImageResource(record.weatherImageId);
+
+        binding.primaryInfo.date.setText(record.dateText);
+
+        /* Set the text and content description (for accessibility purposes) */
+        binding.primaryInfo.weatherDescription.setText(record.description);
+        binding.primaryInfo.weatherDescription.setContentDescription(record.descriptionA11y);
+
+        /* Set the content description on the weather image (for accessibility purposes) */
+        binding.primaryInfo.weatherIcon.setContentDescription(record.descriptionA11y);
+
+        binding.primaryInfo.highTemperature.setText(record.highString);
+        binding.primaryInfo.highTemperature.setContentDescription(record.highA11y);
+
+        binding.primaryInfo.lowTemperature.setText(record.lowString);
+        binding.primaryInfo.lowTemperature.setContentDescription(record.lowA11y);
+
+        binding.extraDetails.humidity.setText(record.humidityString);
+        binding.extraDetails.humidity.setContentDescription(record.humidityA11y);
+        binding.extraDetails.humidityLabel.setContentDescription(record.humidityA11y);
+
+        binding.extraDetails.windMeasurement.setText(record.windString);
+        binding.extraDetails.windMeasurement.setContentDescription(record.windA11y);
+        binding.extraDetails.windLabel.setContentDescription(record.windA11y);
+
+        binding.extraDetails.pressure.setText(record.pressureString);
+        binding.extraDetails.pressure.setContentDescription(record.pressureA11y);
+        binding.extraDetails.pressureLabel.setContentDescription(record.pressureA11y);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads and formats the detail screen of a day before the user asks for it. ForecastAdapter
+ * asks for every day it binds, so by the time a row can be tapped its {@link DetailRecord} is
+ * usually waiting here, and DetailActivity can show it without running a query.
+ * <p>
+ * Records are kept in a small LRU cache. The whole cache is dropped whenever the weather table
+ * changes, and a record built under other settings or on another day is treated as missing.
+ */
+final class DetailPrefetcher {
+
+    private static final String TAG = DetailPrefetcher.class.getSimpleName();
+
+    /* Two weeks is all the list shows, this leaves room for scrolling back and forth */
+    private static final int CACHE_SIZE = 32;
+
+    private static DetailPrefetcher sInstance;
+
+    private final Context mContext;
+    private final LruCache<Long, DetailRecord> mCache = new LruCache<>(CACHE_SIZE);
+
+    /* Days being loaded right now, so a row bound twice isn't loaded twice */
+    private final Set<Long> mPending = new HashSet<>();
+
+    /*
+     * Bumped every time the cache is dropped. A load that started before the drop may have read
+     * old data, so its record is thrown away instead of cached.
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    private int mHits;
+    private int mMisses;
+
+    private final Executor mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, TAG);
+        }
+    });
+
+    private DetailPrefetcher(Context context) {
+        mContext = context.getApplicationContext();
+
+        /* Any change to the weather table may change what a cached record should say */
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        mGeneration.incrementAndGet();
+                        mCache.evictAll();
+                    }
+                });
+    }
+
+    static synchronized DetailPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DetailPrefetcher(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Starts loading the detail record of a day in the background, unless it is already cached
+     * or on its way.
+     *
+     * @param date The normalized UTC date of the day
+     */
+    void prefetch(final long date) {
+        if (peek(date) != null) {
+            return;
+        }
+        synchronized (mPending) {
+            if (!mPending.add(date)) return;
+        }
+
+        final int generation = mGeneration.get();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    DetailRecord record = load(date);
+                    if (record != null && generation == mGeneration.get()) {
+                        mCache.put(date, record);
+                    }
+                } finally {
+                    synchronized (mPending) {
+                        mPending.remove(date);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the cached record of a day, if there is one that is still current. Hits and misses
+     * are counted and logged, to see how often prefetching pays off.
+     *
+     * @param date The normalized UTC date of the day
+     * @return The record, or null if the day has to be loaded
+     */
+    DetailRecord get(long date) {
+        DetailRecord record = peek(date);
+        synchronized (this) {
+            if (record != null) {
+                mHits++;
+            } else {
+                mMisses++;
+            }
+            Log.d(TAG, (record != null ? "Hit" : "Miss") + " for " + date
+                    + " (" + mHits + " hits, " + mMisses + " misses)");
+        }
+        return record;
+    }
+
+    /**
+     * Caches a record that was loaded some other way, e.g. by DetailActivity after a miss.
+     *
+     * @param record The record to keep
+     */
+    void put(DetailRecord record) {
+        mCache.put(record.date, record);
+    }
+
+    /**
+     * Like {@link #get(long)}, but without counting a hit or a miss. For callers that are not
+     * opening the detail screen, and have the data to build the record themselves on a miss.
+     *
+     * @param date The normalized UTC date of the day
+     * @return The record, or null if there is no current one cached
+     */
+    DetailRecord peek(long date) {
+        DetailRecord record = mCache.get(date);
+        if (record != null && !record.isCurrent(SunshinePreferences.getSettings(mContext),
+                SunshineDateUtils.getNormalizedUtcDateForToday())) {
+            mCache.remove(date);
+            return null;
+        }
+        return record;
+    }
+
+    private DetailRecord load(long date) {
+        Cursor data = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherUriWithDate(date),
+                DetailActivity.WEATHER_DETAIL_PROJECTION,
+                null,
+                null,
+                null);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return data.moveToFirst() ? new DetailRecord(mContext, data) : null;
+        } finally {
+            data.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.SunshineSettings;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+/**
+ * Everything DetailActivity shows for one day, already formatted. Building one takes a query and
+ * a dozen string lookups and format calls; binding one is just a handful of setText calls, so it
+ * can be done synchronously while the activity is created.
+ * <p>
+ * A record is only valid under the settings and on the day it was built for: the units decide
+ * how temperatures and wind are written, and the date is shown relative to today. See
+ * {@link #isCurrent(SunshineSettings, long)}.
+ */
+final class DetailRecord {
+
+    final long date;
+
+    final int weatherImageId;
+    final String dateText;
+    final String description;
+    final String descriptionA11y;
+    final String highString;
+    final String highA11y;
+    final String lowString;
+    final String lowA11y;
+    final String humidityString;
+    final String humidityA11y;
+    final String windString;
+    final String windA11y;
+    final String pressureString;
+    final String pressureA11y;
+
+    /* A summary of the forecast that can be shared from DetailActivity */
+    final String forecastSummary;
+
+    /* What the record was formatted for */
+    private final SunshineSettings mSettings;
+    private final long mNormalizedUtcToday;
+
+    /**
+     * Formats the row the cursor is positioned on. The cursor must have the columns of
+     * {@link DetailActivity#WEATHER_DETAIL_PROJECTION}. This can be called from any thread.
+     *
+     * @param context Used for string resources and the user's settings
+     * @param data    A cursor positioned on the day to format
+     */
+    DetailRecord(Context context, Cursor data) {
+        mSettings = SunshinePreferences.getSettings(context);
+        mNormalizedUtcToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        /****************
+         * Weather Icon *
+         ****************/
+        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
+        int weatherId = data.getInt(DetailActivity.INDEX_WEATHER_CONDITION_ID);
+        /* Use our utility method to determine the resource ID for the proper art */
+        weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        /****************
+         * Weather Date *
+         ****************/
+        /*
+         * Read the date from the cursor. It is important to note that the date from the cursor
+         * is the same date from the weather SQL table. The date that is stored is a GMT
+         * representation at midnight of the date when the weather information was loaded for.
+         *
+         * When displaying this date, one must add the GMT offset (in milliseconds) to acquire
+         * the date representation for the local date in local time.
+         * SunshineDateUtils#getFriendlyDateString takes care of this for us.
+         */
+        date = data.getLong(DetailActivity.INDEX_WEATHER_DATE);
+        dateText = SunshineDateUtils.getFriendlyDateString(context, date, true);
+
+        /***********************
+         * Weather Description *
+         ***********************/
+        /* Use the weatherId to obtain the proper description */
+        description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+
+        /* Create the accessibility (a11y) String from the weather description */
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+        /**************************
+         * High (max) temperature *
+         **************************/
+        /* Read high temperature from the cursor (in degrees celsius) */
+        double highInCelsius = data.getDouble(DetailActivity.INDEX_WEATHER_MAX_TEMP);
+        /*
+         * If the user's preference for weather is fahrenheit, formatTemperature will convert
+         * the temperature. This method will also append either °C or °F to the temperature
+         * String.
+         */
+        highString = SunshineWeatherUtils.formatTemperature(context, highInCelsius);
+        highA11y = context.getString(R.string.a11y_high_temp, highString);
+
+        /*************************
+         * Low (min) temperature *
+         *************************/
+        /* Read low temperature from the cursor (in degrees celsius) */
+        double lowInCelsius = data.getDouble(DetailActivity.INDEX_WEATHER_MIN_TEMP);
+        lowString = SunshineWeatherUtils.formatTemperature(context, lowInCelsius);
+        lowA11y = context.getString(R.string.a11y_low_temp, lowString);
+
+        /************
+         * Humidity *
+         ************/
+        float humidity = data.getFloat(DetailActivity.INDEX_WEATHER_HUMIDITY);
+        humidityString = context.getString(R.string.format_humidity, humidity);
+        humidityA11y = context.getString(R.string.a11y_humidity, humidityString);
+
+        /****************************
+         * Wind speed and direction *
+         ****************************/
+        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
+        float windSpeed = data.getFloat(DetailActivity.INDEX_WEATHER_WIND_SPEED);
+        float windDirection = data.getFloat(DetailActivity.INDEX_WEATHER_DEGREES);
+        windString = SunshineWeatherUtils.getFormattedWind(context, windSpeed, windDirection);
+        windA11y = context.getString(R.string.a11y_wind, windString);
+
+        /************
+         * Pressure *
+         ************/
+        /*
+         * Format the pressure text using string resources. The reason we directly access
+         * resources using getString rather than using a method from SunshineWeatherUtils as
+         * we have for other data displayed in this Activity is because there is no
+         * additional logic that needs to be considered in order to properly display the
+         * pressure.
+         */
+        float pressure = data.getFloat(DetailActivity.INDEX_WEATHER_PRESSURE);
+        pressureString = context.getString(R.string.format_pressure, pressure);
+        pressureA11y = context.getString(R.string.a11y_pressure, pressureString);
+
+        forecastSummary = String.format("%s - %s - %s/%s",
+                dateText, description, highString, lowString);
+    }
+
+    /**
+     * Returns true if this record still reads the way it would if it were built now.
+     *
+     * @param settings           The user's current settings
+     * @param normalizedUtcToday Today's normalized date
+     * @return true if the record can be shown as is
+     */
+    boolean isCurrent(SunshineSettings settings, long normalizedUtcToday) {
+        /* Settings snapshots are swapped, never changed, so the same instance means no change */
+        return mSettings == settings && mNormalizedUtcToday == normalizedUtcToday;
+    }
+}
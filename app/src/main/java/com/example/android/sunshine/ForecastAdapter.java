@@ -65,6 +65,9 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
 
     private Cursor mCursor;
 
+    /* Warms up the detail screen of each day as its row is bound */
+    private final DetailPrefetcher mDetailPrefetcher;
+
     /**
      * Creates a ForecastAdapter.
      *
@@ -76,6 +79,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         mContext = context;
         mClickHandler = clickHandler;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
+        mDetailPrefetcher = DetailPrefetcher.getInstance(context);
     }
 
     /**
@@ -168,6 +172,9 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          /* Display friendly date string */
         forecastAdapterViewHolder.dateView.setText(dateString);
 
+        /* This row can be tapped now, so have its details ready in case it is */
+        mDetailPrefetcher.prefetch(dateInMillis);
+
         /***********************
          * Weather Description *
          ***********************/
@@ -15,10 +15,12 @@
  */
 package com.example.android.sunshine;
 
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -30,11 +32,19 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.utilities.StartupTimings;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor>,
@@ -73,16 +83,36 @@ public class MainActivity extends AppCompatActivity implements
      */
     private static final int ID_FORECAST_LOADER = 44;
 
+    /*
+     * Writes snapshots one at a time, in the order the loads arrived. Two writers of the same
+     * AtomicFile at once would delete each other's files, and the last write has to be the
+     * newest list.
+     */
+    private static final Executor SNAPSHOT_WRITER = Executors.newSingleThreadExecutor();
+
+    /* The friendly dates only need precomputing once per process, not on every rotation */
+    private static boolean sFriendlyDatesPrecomputed;
+
     private ForecastAdapter mForecastAdapter;
     private RecyclerView mRecyclerView;
     private int mPosition = RecyclerView.NO_POSITION;
 
     private ProgressBar mLoadingIndicator;
 
+    /* When onCreate started, for measuring how long it takes until there is something to see */
+    private long mCreateUptimeMillis;
+
+    /* True while the list shows the startup snapshot rather than rows from the database */
+    private boolean mShowingSnapshot;
+
+    /* The last snapshot we wrote (or were about to), so an unchanged list isn't written again */
+    private byte[] mLastSnapshot;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreateUptimeMillis = SystemClock.uptimeMillis();
+        StartupTimings.begin();
         setContentView(R.layout.activity_forecast);
         getSupportActionBar().setElevation(0f);
 
@@ -142,8 +172,37 @@ public class MainActivity extends AppCompatActivity implements
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        /*
+         * Every row shows a friendly date. Build them for the whole forecast while the database
+         * is being opened, so binding the rows only has to look them up.
+         */
+        if (!sFriendlyDatesPrecomputed) {
+            sFriendlyDatesPrecomputed = true;
+            final Context context = getApplicationContext();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    SunshineDateUtils.precomputeFriendlyDates(context);
+                }
+            }).start();
+        }
 
-        showLoading();
+        /*
+         * Opening the database and running the query can take a while on a slow device. If we
+         * kept a snapshot of the list the last time it was shown, show that right away; the
+         * loader's rows replace it as soon as they arrive.
+         */
+        Cursor snapshot = ForecastSnapshot.read(this, MAIN_FORECAST_PROJECTION,
+                SunshinePreferences.getPreferredWeatherLocation(this),
+                SunshineDateUtils.getNormalizedUtcDateForToday());
+        if (snapshot != null) {
+            mShowingSnapshot = true;
+            mForecastAdapter.swapCursor(snapshot);
+            showWeatherDataView();
+            logTimeToFirstContent(StartupTimings.PHASE_SNAPSHOT);
+        } else {
+            showLoading();
+        }
 
         /*
          * Ensures a loader is initialized and active. If the loader doesn't already exist, one is
@@ -152,7 +211,8 @@ public class MainActivity extends AppCompatActivity implements
          */
         getSupportLoaderManager().initLoader(ID_FORECAST_LOADER, null, this);
 
-        SunshineSyncUtils.initialize(this);
+        /* Scheduling syncs can wait until the user has something to look at */
+        SunshineSyncUtils.initializeAfterFirstFrame(mRecyclerView);
 
     }
 
@@ -241,7 +301,59 @@ public class MainActivity extends AppCompatActivity implements
         mRecyclerView.smoothScrollToPosition(mPosition);
         if (data.getCount() != 0){
             showWeatherDataView();
+            /* Nothing has been saved yet, so this is the first load since onCreate */
+            if (mLastSnapshot == null) logTimeToFirstContent(StartupTimings.PHASE_LOADER);
+            saveSnapshot(data);
+        } else if (mShowingSnapshot) {
+            /* The snapshot is out of date; the database has nothing for us yet */
+            showLoading();
         }
+        mShowingSnapshot = false;
+    }
+
+    /**
+     * Keeps the rows the list is showing for the next cold start. The rows are copied out of the
+     * cursor here, on the main thread, and written to disk by SNAPSHOT_WRITER.
+     *
+     * @param data The rows the loader just delivered
+     */
+    private void saveSnapshot(Cursor data) {
+        final byte[] snapshot = ForecastSnapshot.encode(data,
+                SunshinePreferences.getPreferredWeatherLocation(this));
+        if (Arrays.equals(snapshot, mLastSnapshot)) {
+            return;
+        }
+        mLastSnapshot = snapshot;
+
+        final Context context = getApplicationContext();
+        SNAPSHOT_WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                ForecastSnapshot.write(context, snapshot);
+            }
+        });
+    }
+
+    /**
+     * Logs how long after onCreate the first frame showing forecast rows from the given source
+     * was drawn, and marks it as a phase in StartupTimings. The "loader" line is logged on every
+     * launch and is the time to first content without a snapshot; when there was a snapshot,
+     * the "snapshot" line is logged before it.
+     *
+     * @param source Where the rows came from, StartupTimings.PHASE_SNAPSHOT or PHASE_LOADER
+     */
+    private void logTimeToFirstContent(final String source) {
+        final ViewTreeObserver observer = mRecyclerView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.i(TAG, "Time to first content (" + source + "): "
+                        + (SystemClock.uptimeMillis() - mCreateUptimeMillis) + " ms");
+                StartupTimings.mark(source);
+                return true;
+            }
+        });
     }
 
     /**
@@ -270,6 +382,8 @@ public class MainActivity extends AppCompatActivity implements
         Intent weatherDetailIntent = new Intent(MainActivity.this, DetailActivity.class);
         Uri uriForDateClicked = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
         weatherDetailIntent.setData(uriForDateClicked);
+        weatherDetailIntent.putExtra(DetailActivity.EXTRA_TAP_UPTIME_MILLIS,
+                SystemClock.uptimeMillis());
         startActivity(weatherDetailIntent);
     }
 
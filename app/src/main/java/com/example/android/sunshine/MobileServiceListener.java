@@ -2,9 +2,11 @@ package com.example.android.sunshine;
 
 import android.util.Log;
 
-import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.sync.WearRequests;
+import com.example.android.sunshine.utilities.WearUtils;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.MessageEvent;
 import com.google.android.gms.wearable.WearableListenerService;
 
 /**
@@ -18,15 +20,32 @@ public class MobileServiceListener extends WearableListenerService {
 
     @Override
     public void onDataChanged(DataEventBuffer dataEventBuffer) {
+        int requests = 0;
         for (DataEvent dataEvent : dataEventBuffer) {
             if (dataEvent.getType() == DataEvent.TYPE_CHANGED) {
                 String dataPath = dataEvent.getDataItem().getUri().getPath();
                 if (dataPath.equals(REQUEST_SUNSHINE_PATH)) {
-                    Log.i(TAG, "Wear requesting data from app");
-                    SunshineSyncUtils.startImmediateSync(this);
+                    //A watch that asks may have lost what we sent it, so send it everything
+                    WearUtils.forgetWatch(dataEvent.getDataItem().getUri().getHost());
+                    requests++;
                 }
             }
 
         }
+
+        //Requests that arrive together, from one watch or several, get a single answer
+        if (requests > 0) {
+            Log.i(TAG, "Wear requesting data from app (" + requests + " requests)");
+            WearRequests.answer(this, requests);
+        }
+    }
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        //Watches acknowledge each weather message, so later ones only carry what changed
+        if (WearUtils.ACK_PATH.equals(messageEvent.getPath())) {
+            WearUtils.onWeatherAcknowledged(messageEvent.getSourceNodeId(),
+                    messageEvent.getData());
+        }
     }
 }
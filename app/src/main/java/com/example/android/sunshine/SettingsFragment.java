@@ -16,8 +16,11 @@
 package com.example.android.sunshine;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.preference.CheckBoxPreference;
 import android.support.v7.preference.ListPreference;
 import android.support.v7.preference.Preference;
@@ -27,6 +30,7 @@ import android.support.v7.preference.PreferenceScreen;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.widget.ForecastWidgetProvider;
 
 /**
  * The SettingsFragment serves as the display for all of the user's settings. In Sunshine, the
@@ -102,6 +106,18 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         } else if (key.equals(getString(R.string.pref_units_key))) {
             // units have changed. update lists of weather entries accordingly
             activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            /*
+             * The widget is rendered with SunshinePreferences' settings snapshot, which is
+             * refreshed by a listener of its own. Listeners are called in no particular order,
+             * so wait until all of them have run before rendering.
+             */
+            final Context appContext = activity.getApplicationContext();
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    ForecastWidgetProvider.refreshWidgets(appContext);
+                }
+            });
         }
         Preference preference = findPreference(key);
         if (null != preference) {
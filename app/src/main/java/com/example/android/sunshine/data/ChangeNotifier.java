@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides which URIs {@link WeatherProvider} notifies after a write, and when.
+ * <p>
+ * Every write reports the days it changed, but only a batch that changed a single day is
+ * scoped: it notifies that day's URI, which wakes the cursors of that day (and the forecast
+ * list, which observes the whole table and its descendants) but leaves the cursors of every
+ * other day alone. Once more than one day has changed, the table's URI is notified instead,
+ * and since a notification reaches the observers of every URI below the one notified, that
+ * wakes the cursors of all days, changed or not. Notifying each changed day would not help: every one of those
+ * notifications also reaches the forecast list, which would then requery once per day.
+ * <p>
+ * Writes made while a batch is open on the same thread are collected rather than sent, and the
+ * whole batch is announced once when the outermost batch ends. A sync that writes the forecast
+ * in several chunks and then deletes old days therefore causes one notification, not one per
+ * write. Each write also opens its own batch, so a bulkInsert of two weeks is one notification
+ * even without a batch around it.
+ */
+class ChangeNotifier {
+
+    private final ContentResolver mContentResolver;
+
+    /*
+     * The batches open on each thread, innermost last. ContentProvider methods run on binder
+     * threads.
+     */
+    private final ThreadLocal<ArrayList<Changes>> mBatches = new ThreadLocal<>();
+
+    /**
+     * What changed during one batch, for one table: either a set of days, or everything.
+     */
+    private static class Scope {
+        boolean everything;
+        final Set<Long> days = new HashSet<>();
+
+        void add(long normalizedUtcDate) {
+            if (!everything) days.add(normalizedUtcDate);
+        }
+
+        void addEverything() {
+            everything = true;
+            days.clear();
+        }
+
+        void addAll(Scope other) {
+            if (other.everything) {
+                addEverything();
+            } else if (!everything) {
+                days.addAll(other.days);
+            }
+        }
+
+        boolean isEmpty() {
+            return !everything && days.isEmpty();
+        }
+    }
+
+    /**
+     * The changes recorded by one batch, not counting those of the batches nested in it until
+     * they end. A nested batch that is rolled back takes only its own changes with it.
+     */
+    private static class Changes {
+        final Scope weather = new Scope();
+        final Scope hourly = new Scope();
+    }
+
+    ChangeNotifier(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Opens a batch on the calling thread. Batches nest: changes are only announced when the
+     * outermost one is ended.
+     */
+    void begin() {
+        ArrayList<Changes> batches = mBatches.get();
+        if (batches == null) {
+            batches = new ArrayList<>();
+            mBatches.set(batches);
+        }
+        batches.add(new Changes());
+    }
+
+    /**
+     * Ends the innermost batch opened on the calling thread. Its changes are handed to the batch
+     * it was nested in, or announced now if it was the outermost one.
+     * <p>
+     * Each write commits on its own, so a rolled back write only discards what that write
+     * recorded. Writes that committed before it, in the same outer batch, are still announced
+     * when the outer batch ends.
+     *
+     * @param committed false if the batch's writes were rolled back, in which case its own
+     *                  changes are dropped
+     * @throws IllegalStateException If no batch is open on this thread
+     */
+    void end(boolean committed) {
+        ArrayList<Changes> batches = mBatches.get();
+        if (batches == null || batches.isEmpty()) {
+            throw new IllegalStateException("No batch is open on this thread");
+        }
+        Changes changes = batches.remove(batches.size() - 1);
+
+        if (!batches.isEmpty()) {
+            if (committed) {
+                Changes outer = batches.get(batches.size() - 1);
+                outer.weather.addAll(changes.weather);
+                outer.hourly.addAll(changes.hourly);
+            }
+            return;
+        }
+
+        mBatches.remove();
+        if (committed) {
+            announce(changes.weather, WeatherContract.WeatherEntry.CONTENT_URI, false);
+            announce(changes.hourly, WeatherContract.HourlyEntry.CONTENT_URI, true);
+        }
+    }
+
+    /**
+     * Records that the daily forecast of one day changed.
+     *
+     * @param normalizedUtcDate The day, as stored in WeatherEntry.COLUMN_DATE
+     */
+    void weatherChanged(long normalizedUtcDate) {
+        currentBatch().weather.add(normalizedUtcDate);
+    }
+
+    /**
+     * Records that any number of daily rows changed, without saying which. Used when rows were
+     * deleted with an arbitrary selection.
+     */
+    void allWeatherChanged() {
+        currentBatch().weather.addEverything();
+    }
+
+    /**
+     * Records that the hours of one day changed.
+     *
+     * @param normalizedUtcDate The local day the hours belong to
+     */
+    void hoursChanged(long normalizedUtcDate) {
+        currentBatch().hourly.add(normalizedUtcDate);
+    }
+
+    /**
+     * Records that any number of hourly rows changed, without saying which.
+     */
+    void allHoursChanged() {
+        currentBatch().hourly.addEverything();
+    }
+
+    private Changes currentBatch() {
+        ArrayList<Changes> batches = mBatches.get();
+        if (batches == null || batches.isEmpty()) {
+            throw new IllegalStateException("Changes must be recorded inside a batch");
+        }
+        return batches.get(batches.size() - 1);
+    }
+
+    /*
+     * Only a single changed day gets its own URI. More than that notifies the whole table, which
+     * also wakes the cursors of the days that didn't change; see the class comment.
+     */
+    private void announce(Scope scope, Uri tableUri, boolean hourly) {
+        if (scope.isEmpty()) return;
+
+        Uri uri = tableUri;
+        if (!scope.everything && scope.days.size() == 1) {
+            long day = scope.days.iterator().next();
+            uri = hourly
+                    ? WeatherContract.HourlyEntry.buildHourlyUriForDay(day)
+                    : WeatherContract.WeatherEntry.buildWeatherUriWithDate(day);
+        }
+        mContentResolver.notifyChange(uri, null);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A small file holding the rows the forecast list showed last, so that the next cold start can
+ * show them straight away instead of waiting for the database to open and the query to run.
+ * <p>
+ * Only the columns the list needs are kept (date, high, low and weather ID), for the location
+ * they were fetched for. The file is read on the main thread, so it is deliberately tiny: a two
+ * week forecast takes well under a kilobyte. The database stays the source of truth; whatever the
+ * snapshot shows is replaced as soon as the list's loader finishes.
+ */
+public final class ForecastSnapshot {
+
+    private static final String TAG = ForecastSnapshot.class.getSimpleName();
+
+    static final String FILE_NAME = "forecast_snapshot";
+
+    /* Bump this whenever the layout of the file changes. Files of another version are ignored. */
+    private static final int VERSION = 1;
+
+    /* The columns kept in the snapshot. Any projection made of these can be read back. */
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID,
+    };
+
+    private ForecastSnapshot() {
+    }
+
+    /**
+     * Encodes every row of a cursor into the snapshot format. The cursor must contain all the
+     * columns listed in {@link #COLUMNS}; its position is left wherever the encoding ends.
+     *
+     * @param cursor   The rows to keep, in the order they should be shown
+     * @param location The location the rows belong to
+     * @return The snapshot's bytes
+     */
+    public static byte[] encode(Cursor cursor, String location) {
+        int dateIndex = cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_DATE);
+        int maxIndex = cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_MAX_TEMP);
+        int minIndex = cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_MIN_TEMP);
+        int weatherIdIndex = cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_WEATHER_ID);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + cursor.getCount() * 28);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(location);
+            out.writeInt(cursor.getCount());
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                out.writeLong(cursor.getLong(dateIndex));
+                out.writeDouble(cursor.getDouble(maxIndex));
+                out.writeDouble(cursor.getDouble(minIndex));
+                out.writeInt(cursor.getInt(weatherIdIndex));
+            }
+            out.flush();
+        } catch (IOException e) {
+            /* ByteArrayOutputStream never throws */
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the snapshot file with the given bytes. The old file stays intact until the new
+     * one has been completely written, so a crash part way through can't leave a torn snapshot
+     * behind. This touches the disk and should not be called on the main thread.
+     * <p>
+     * AtomicFile can't handle two writers at once, so writes are serialized here.
+     *
+     * @param context  Used to find the app's files directory
+     * @param snapshot Bytes returned by {@link #encode(Cursor, String)}
+     */
+    public static synchronized void write(Context context, byte[] snapshot) {
+        AtomicFile file = getFile(context);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(snapshot);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write the forecast snapshot", e);
+            if (out != null) file.failWrite(out);
+        }
+    }
+
+    /**
+     * Reads the snapshot back as a cursor. Days before today are dropped, as the list only ever
+     * shows today onwards.
+     *
+     * @param context            Used to find the app's files directory
+     * @param projection         The columns of the returned cursor, all taken from those the
+     *                           snapshot keeps
+     * @param location           The location the user wants weather for. A snapshot for any other
+     *                           location is ignored.
+     * @param normalizedUtcToday Today's normalized date
+     * @return The rows from the snapshot, or null if there is no usable snapshot
+     */
+    public static Cursor read(Context context, String[] projection, String location,
+                              long normalizedUtcToday) {
+        byte[] snapshot;
+        try {
+            snapshot = getFile(context).readFully();
+        } catch (IOException e) {
+            /* No snapshot yet, nothing to show */
+            return null;
+        }
+        return decode(snapshot, projection, location, normalizedUtcToday);
+    }
+
+    /**
+     * Decodes bytes produced by {@link #encode(Cursor, String)}. See
+     * {@link #read(Context, String[], String, long)} for the parameters.
+     */
+    static Cursor decode(byte[] snapshot, String[] projection, String location,
+                         long normalizedUtcToday) {
+        /* Where each column of the projection comes from in a snapshot row */
+        int[] sources = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            sources[i] = indexOf(COLUMNS, projection[i]);
+            if (sources[i] < 0) {
+                throw new IllegalArgumentException("Not kept in the snapshot: " + projection[i]);
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        try {
+            if (in.readInt() != VERSION || !location.equals(in.readUTF())) {
+                return null;
+            }
+
+            int count = in.readInt();
+            MatrixCursor cursor = new MatrixCursor(projection, count);
+            Object[] snapshotRow = new Object[COLUMNS.length];
+            for (int row = 0; row < count; row++) {
+                snapshotRow[0] = in.readLong();
+                snapshotRow[1] = in.readDouble();
+                snapshotRow[2] = in.readDouble();
+                snapshotRow[3] = in.readInt();
+                if ((Long) snapshotRow[0] < normalizedUtcToday) {
+                    continue;
+                }
+
+                Object[] values = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    values[i] = snapshotRow[sources[i]];
+                }
+                cursor.addRow(values);
+            }
+
+            if (cursor.getCount() == 0) {
+                cursor.close();
+                return null;
+            }
+            return cursor;
+
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring a damaged forecast snapshot", e);
+            return null;
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) return i;
+        }
+        return -1;
+    }
+}
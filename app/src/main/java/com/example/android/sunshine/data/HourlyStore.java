@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.core.DailyAggregate;
+import com.example.android.sunshine.core.SunshineDates;
+import com.example.android.sunshine.data.WeatherContract.DailyAggregateEntry;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Reads and writes the hourly table for {@link WeatherProvider}, and keeps the daily forecast
+ * that is derived from it up to date.
+ * <p>
+ * Every hour inserted is folded into a {@link DailyAggregate} for its local day, whose running
+ * totals live in the daily_aggregate table. After each insert, the touched days' totals and
+ * their rows in the weather table are rewritten, so the daily forecast is never recomputed by a
+ * query. Only when an hour replaces one that was already stored (its old values can't be taken
+ * back out of the totals) is that one day rebuilt from its hourly rows.
+ * <p>
+ * Everything here expects to run inside a transaction the caller owns.
+ */
+class HourlyStore {
+
+    private static final String INSERT_HOUR_SQL = " INTO " + HourlyEntry.TABLE_NAME + " ("
+            + HourlyEntry.COLUMN_HOUR + ", "
+            + HourlyEntry.COLUMN_WEATHER_ID + ", "
+            + HourlyEntry.COLUMN_TEMP + ", "
+            + HourlyEntry.COLUMN_HUMIDITY + ", "
+            + HourlyEntry.COLUMN_PRESSURE + ", "
+            + HourlyEntry.COLUMN_WIND_SPEED + ", "
+            + HourlyEntry.COLUMN_DEGREES
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String[] HOURLY_AGGREGATE_PROJECTION = {
+            HourlyEntry.COLUMN_HOUR,
+            HourlyEntry.COLUMN_WEATHER_ID,
+            HourlyEntry.COLUMN_TEMP,
+            HourlyEntry.COLUMN_HUMIDITY,
+            HourlyEntry.COLUMN_PRESSURE,
+            HourlyEntry.COLUMN_WIND_SPEED,
+            HourlyEntry.COLUMN_DEGREES,
+    };
+
+    private static final String[] DAILY_AGGREGATE_PROJECTION = {
+            DailyAggregateEntry.COLUMN_HOURS,
+            DailyAggregateEntry.COLUMN_MIN_TEMP,
+            DailyAggregateEntry.COLUMN_MAX_TEMP,
+            DailyAggregateEntry.COLUMN_HUMIDITY_SUM,
+            DailyAggregateEntry.COLUMN_PRESSURE_SUM,
+            DailyAggregateEntry.COLUMN_WIND_SPEED_SUM,
+            DailyAggregateEntry.COLUMN_WIND_EAST,
+            DailyAggregateEntry.COLUMN_WIND_NORTH,
+            DailyAggregateEntry.COLUMN_WEATHER_ID,
+            DailyAggregateEntry.COLUMN_WEATHER_ID_NOON_DISTANCE,
+    };
+
+    private HourlyStore() {
+    }
+
+    /**
+     * Returns the selection that picks out the hours between fromHour and toHour of a local day.
+     * Hours are counted from local midnight, so on days when the clocks change the last hours of
+     * the day are shifted by one.
+     *
+     * @param normalizedUtcDate The day, normalized the same way as WeatherEntry's dates
+     * @param fromHour          First hour of the day to return
+     * @param toHour            Hour of the day to stop at (exclusive)
+     * @param timeZone          The time zone the day is local to
+     * @param selectionArgs     Receives the two arguments of the selection
+     * @return The selection, for use with selectionArgs
+     */
+    static String selectHours(long normalizedUtcDate, int fromHour, int toHour,
+                              TimeZone timeZone, String[] selectionArgs) {
+        long localMidnight =
+                SunshineDates.getLocalMidnightFromNormalizedUtcDate(normalizedUtcDate, timeZone);
+        selectionArgs[0] = Long.toString(localMidnight + fromHour * SunshineDates.HOUR_IN_MILLIS);
+        selectionArgs[1] = Long.toString(localMidnight + toHour * SunshineDates.HOUR_IN_MILLIS);
+        return HourlyEntry.COLUMN_HOUR + " >= ? AND " + HourlyEntry.COLUMN_HOUR + " < ?";
+    }
+
+    /**
+     * Inserts hourly rows and brings the daily forecast of every day they touch up to date.
+     *
+     * @param db          The database, inside a transaction
+     * @param values      One set of HourlyEntry columns per hour
+     * @param timeZone    Decides which local day each hour belongs to
+     * @param daysChanged Receives every day whose hours (and so whose daily forecast) changed
+     * @return The number of hours inserted
+     * @throws IllegalArgumentException If an hour doesn't start exactly on the hour
+     */
+    static int insertHours(SQLiteDatabase db, ContentValues[] values, TimeZone timeZone,
+                           Collection<Long> daysChanged) {
+        /* Aggregates of the days touched by this insert, and the days to rebuild from scratch */
+        Map<Long, DailyAggregate> aggregates = new HashMap<>();
+        Set<Long> daysToRebuild = new HashSet<>();
+
+        int rowsInserted = 0;
+
+        SQLiteStatement insertHour = db.compileStatement("INSERT OR IGNORE" + INSERT_HOUR_SQL);
+        SQLiteStatement replaceHour = db.compileStatement("INSERT OR REPLACE" + INSERT_HOUR_SQL);
+        try {
+            for (ContentValues value : values) {
+                long hour = value.getAsLong(HourlyEntry.COLUMN_HOUR);
+                if (!SunshineDates.isHourNormalized(hour)) {
+                    throw new IllegalArgumentException("Hour must be normalized to insert");
+                }
+                int weatherId = value.getAsInteger(HourlyEntry.COLUMN_WEATHER_ID);
+                double temp = value.getAsDouble(HourlyEntry.COLUMN_TEMP);
+                double humidity = value.getAsDouble(HourlyEntry.COLUMN_HUMIDITY);
+                double pressure = value.getAsDouble(HourlyEntry.COLUMN_PRESSURE);
+                double windSpeed = value.getAsDouble(HourlyEntry.COLUMN_WIND_SPEED);
+                double degrees = value.getAsDouble(HourlyEntry.COLUMN_DEGREES);
+
+                long day = SunshineDates.getNormalizedUtcDateForToday(hour, timeZone);
+
+                /*
+                 * Try a plain insert first. If the hour is already stored, the insert is ignored
+                 * and we know the day's totals now include an hour that is about to change.
+                 */
+                bindHour(insertHour, hour, weatherId, temp, humidity, pressure, windSpeed,
+                        degrees);
+                boolean isNewHour = insertHour.executeInsert() != -1;
+                if (!isNewHour) {
+                    bindHour(replaceHour, hour, weatherId, temp, humidity, pressure, windSpeed,
+                            degrees);
+                    replaceHour.executeInsert();
+                    daysToRebuild.add(day);
+                }
+                rowsInserted++;
+
+                DailyAggregate aggregate = aggregates.get(day);
+                if (aggregate == null) {
+                    aggregate = loadAggregate(db, day);
+                    aggregates.put(day, aggregate);
+                }
+                if (isNewHour && !daysToRebuild.contains(day)) {
+                    aggregate.add(hour - localNoon(day, timeZone), weatherId, temp, humidity,
+                            pressure, windSpeed, degrees);
+                }
+            }
+        } finally {
+            insertHour.close();
+            replaceHour.close();
+        }
+
+        for (Long day : daysToRebuild) {
+            rebuildAggregate(db, day, timeZone, aggregates.get(day));
+        }
+        for (Map.Entry<Long, DailyAggregate> entry : aggregates.entrySet()) {
+            saveAggregate(db, entry.getKey(), entry.getValue());
+        }
+        daysChanged.addAll(aggregates.keySet());
+
+        return rowsInserted;
+    }
+
+    /**
+     * Rebuilds the daily forecast of every day that still has hourly rows, after some of those
+     * rows were deleted. Days left with no hours lose their totals, but keep their row in the
+     * weather table until it is deleted there.
+     *
+     * @param db       The database, inside a transaction
+     * @param timeZone Decides which local day each hour belongs to
+     */
+    static void rebuildAllAggregates(SQLiteDatabase db, TimeZone timeZone) {
+        Set<Long> days = new HashSet<>();
+        Cursor cursor = db.query(DailyAggregateEntry.TABLE_NAME,
+                new String[]{DailyAggregateEntry.COLUMN_DATE}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                days.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        DailyAggregate aggregate = new DailyAggregate();
+        for (Long day : days) {
+            rebuildAggregate(db, day, timeZone, aggregate);
+            if (aggregate.getHours() == 0) {
+                db.delete(DailyAggregateEntry.TABLE_NAME,
+                        DailyAggregateEntry.COLUMN_DATE + " = ?",
+                        new String[]{Long.toString(day)});
+            } else {
+                saveAggregate(db, day, aggregate);
+            }
+        }
+    }
+
+    private static void bindHour(SQLiteStatement statement, long hour, int weatherId,
+                                 double temp, double humidity, double pressure,
+                                 double windSpeed, double degrees) {
+        statement.bindLong(1, hour);
+        statement.bindLong(2, weatherId);
+        statement.bindDouble(3, temp);
+        statement.bindDouble(4, humidity);
+        statement.bindDouble(5, pressure);
+        statement.bindDouble(6, windSpeed);
+        statement.bindDouble(7, degrees);
+    }
+
+    private static long localNoon(long normalizedUtcDate, TimeZone timeZone) {
+        return SunshineDates.getLocalMidnightFromNormalizedUtcDate(normalizedUtcDate, timeZone)
+                + 12 * SunshineDates.HOUR_IN_MILLIS;
+    }
+
+    /* Loads a day's running totals, or returns an empty aggregate if it has none yet */
+    private static DailyAggregate loadAggregate(SQLiteDatabase db, long day) {
+        DailyAggregate aggregate = new DailyAggregate();
+        Cursor cursor = db.query(DailyAggregateEntry.TABLE_NAME, DAILY_AGGREGATE_PROJECTION,
+                DailyAggregateEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(day)},
+                null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                aggregate.restore(cursor.getInt(0), cursor.getDouble(1), cursor.getDouble(2),
+                        cursor.getDouble(3), cursor.getDouble(4), cursor.getDouble(5),
+                        cursor.getDouble(6), cursor.getDouble(7), cursor.getInt(8),
+                        cursor.getLong(9));
+            }
+        } finally {
+            cursor.close();
+        }
+        return aggregate;
+    }
+
+    /* Recomputes a day's totals from every one of its hourly rows */
+    private static void rebuildAggregate(SQLiteDatabase db, long day, TimeZone timeZone,
+                                         DailyAggregate aggregate) {
+        aggregate.reset();
+
+        String[] selectionArgs = new String[2];
+        String selection = selectHours(day, 0, 24, timeZone, selectionArgs);
+        long noon = localNoon(day, timeZone);
+
+        Cursor cursor = db.query(HourlyEntry.TABLE_NAME, HOURLY_AGGREGATE_PROJECTION,
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                aggregate.add(cursor.getLong(0) - noon, cursor.getInt(1), cursor.getDouble(2),
+                        cursor.getDouble(3), cursor.getDouble(4), cursor.getDouble(5),
+                        cursor.getDouble(6));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /* Writes a day's running totals, and the weather row derived from them */
+    private static void saveAggregate(SQLiteDatabase db, long day, DailyAggregate aggregate) {
+        if (aggregate.getHours() == 0) {
+            return;
+        }
+
+        ContentValues totals = new ContentValues();
+        totals.put(DailyAggregateEntry.COLUMN_DATE, day);
+        totals.put(DailyAggregateEntry.COLUMN_HOURS, aggregate.getHours());
+        totals.put(DailyAggregateEntry.COLUMN_MIN_TEMP, aggregate.getMinTemp());
+        totals.put(DailyAggregateEntry.COLUMN_MAX_TEMP, aggregate.getMaxTemp());
+        totals.put(DailyAggregateEntry.COLUMN_HUMIDITY_SUM, aggregate.getHumiditySum());
+        totals.put(DailyAggregateEntry.COLUMN_PRESSURE_SUM, aggregate.getPressureSum());
+        totals.put(DailyAggregateEntry.COLUMN_WIND_SPEED_SUM, aggregate.getWindSpeedSum());
+        totals.put(DailyAggregateEntry.COLUMN_WIND_EAST, aggregate.getWindEast());
+        totals.put(DailyAggregateEntry.COLUMN_WIND_NORTH, aggregate.getWindNorth());
+        totals.put(DailyAggregateEntry.COLUMN_WEATHER_ID, aggregate.getWeatherId());
+        totals.put(DailyAggregateEntry.COLUMN_WEATHER_ID_NOON_DISTANCE,
+                aggregate.getWeatherIdNoonDistance());
+        db.insert(DailyAggregateEntry.TABLE_NAME, null, totals);
+
+        ContentValues weather = new ContentValues();
+        weather.put(WeatherEntry.COLUMN_DATE, day);
+        weather.put(WeatherEntry.COLUMN_WEATHER_ID, aggregate.getWeatherId());
+        weather.put(WeatherEntry.COLUMN_MIN_TEMP, aggregate.getMinTemp());
+        weather.put(WeatherEntry.COLUMN_MAX_TEMP, aggregate.getMaxTemp());
+        weather.put(WeatherEntry.COLUMN_HUMIDITY, aggregate.getHumidity());
+        weather.put(WeatherEntry.COLUMN_PRESSURE, aggregate.getPressure());
+        weather.put(WeatherEntry.COLUMN_WIND_SPEED, aggregate.getWindSpeed());
+        weather.put(WeatherEntry.COLUMN_DEGREES, aggregate.getDegrees());
+        db.insert(WeatherEntry.TABLE_NAME, null, weather);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.data.WeatherContract.StatsEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects counters and latency histograms for the operations {@link WeatherProvider} performs.
+ * Statistics are kept per operation (query, bulkInsert, delete) and per URI code, so that a
+ * single-day lookup from the detail screen is never mixed up with a full table scan from the
+ * forecast list.
+ * <p>
+ * Nothing here is persisted. The numbers live as long as the provider's process does and can be
+ * read (or reset) through {@link StatsEntry#CONTENT_URI}.
+ */
+class ProviderStats {
+
+    static final String OP_QUERY = "query";
+    static final String OP_BULK_INSERT = "bulkInsert";
+    static final String OP_DELETE = "delete";
+
+    /*
+     * Upper bounds (exclusive, in milliseconds) of the latency histogram buckets. Anything that
+     * takes longer than the last bound lands in one final overflow bucket. Powers of two keep the
+     * histogram readable while still covering everything from a cached single-row lookup up to a
+     * bulkInsert on a cold database.
+     */
+    static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+    /* Queries slower than this are logged by WeatherProvider. Can be changed at runtime. */
+    static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 50;
+
+    private static final String[] OPERATIONS = {OP_QUERY, OP_BULK_INSERT, OP_DELETE};
+
+    private final SparseArray<OperationStats> mQueryStats = new SparseArray<>();
+    private final SparseArray<OperationStats> mBulkInsertStats = new SparseArray<>();
+    private final SparseArray<OperationStats> mDeleteStats = new SparseArray<>();
+
+    private volatile long mSlowQueryThresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+
+    /**
+     * Counters for one (operation, URI code) pair. All updates happen while holding the
+     * instance's lock, as the provider may be called from several binder threads at once.
+     */
+    static class OperationStats {
+        long calls;
+        long rows;
+        long totalNanos;
+        long maxNanos;
+        long slowCalls;
+        long windowFillNanos;
+        final long[] buckets = new long[BUCKET_UPPER_BOUNDS_MILLIS.length + 1];
+
+        synchronized void record(long elapsedNanos, int rowCount, long fillNanos, boolean slow) {
+            calls++;
+            rows += rowCount;
+            totalNanos += elapsedNanos;
+            windowFillNanos += fillNanos;
+            if (elapsedNanos > maxNanos) maxNanos = elapsedNanos;
+            if (slow) slowCalls++;
+            buckets[bucketFor(elapsedNanos)]++;
+        }
+
+        synchronized void addRowTo(MatrixCursor cursor, String operation, int uriCode) {
+            cursor.newRow()
+                    .add(StatsEntry.COLUMN_OPERATION, operation)
+                    .add(StatsEntry.COLUMN_URI_CODE, uriCode)
+                    .add(StatsEntry.COLUMN_CALLS, calls)
+                    .add(StatsEntry.COLUMN_ROWS, rows)
+                    .add(StatsEntry.COLUMN_TOTAL_MICROS, TimeUnit.NANOSECONDS.toMicros(totalNanos))
+                    .add(StatsEntry.COLUMN_MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(maxNanos))
+                    .add(StatsEntry.COLUMN_WINDOW_FILL_MICROS,
+                            TimeUnit.NANOSECONDS.toMicros(windowFillNanos))
+                    .add(StatsEntry.COLUMN_SLOW_CALLS, slowCalls)
+                    .add(StatsEntry.COLUMN_HISTOGRAM, histogramString());
+        }
+
+        /*
+         * The histogram is flattened into "bound:count" pairs, e.g. "1:12,2:3,...,inf:0", so it
+         * fits in a single cursor column and stays readable when dumped from adb.
+         */
+        private String histogramString() {
+            StringBuilder histogram = new StringBuilder(buckets.length * 6);
+            for (int i = 0; i < buckets.length; i++) {
+                if (i > 0) histogram.append(',');
+                if (i < BUCKET_UPPER_BOUNDS_MILLIS.length) {
+                    histogram.append(BUCKET_UPPER_BOUNDS_MILLIS[i]);
+                } else {
+                    histogram.append("inf");
+                }
+                histogram.append(':').append(buckets[i]);
+            }
+            return histogram.toString();
+        }
+
+        private static int bucketFor(long elapsedNanos) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+                if (elapsedMillis < BUCKET_UPPER_BOUNDS_MILLIS[i]) return i;
+            }
+            return BUCKET_UPPER_BOUNDS_MILLIS.length;
+        }
+    }
+
+    /**
+     * Records a completed query.
+     *
+     * @param uriCode         The code returned by the provider's UriMatcher
+     * @param elapsedNanos    Total time spent in the query, including filling the cursor window
+     * @param rowCount        Number of rows returned
+     * @param windowFillNanos Time spent filling the first cursor window
+     * @return true if the query exceeded the slow query threshold and should be logged
+     */
+    boolean recordQuery(int uriCode, long elapsedNanos, int rowCount, long windowFillNanos) {
+        boolean slow = elapsedNanos >= mSlowQueryThresholdNanos;
+        statsFor(mQueryStats, uriCode).record(elapsedNanos, rowCount, windowFillNanos, slow);
+        return slow;
+    }
+
+    void recordBulkInsert(int uriCode, long elapsedNanos, int rowsInserted) {
+        statsFor(mBulkInsertStats, uriCode).record(elapsedNanos, rowsInserted, 0, false);
+    }
+
+    void recordDelete(int uriCode, long elapsedNanos, int rowsDeleted) {
+        statsFor(mDeleteStats, uriCode).record(elapsedNanos, rowsDeleted, 0, false);
+    }
+
+    long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mSlowQueryThresholdNanos);
+    }
+
+    void setSlowQueryThresholdMillis(long thresholdMillis) {
+        mSlowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Builds a snapshot of every statistic collected so far, one row per (operation, URI code)
+     * pair that has been used at least once.
+     *
+     * @return A cursor with the columns described in {@link StatsEntry}
+     */
+    Cursor snapshot() {
+        MatrixCursor cursor = new MatrixCursor(StatsEntry.COLUMNS);
+        for (String operation : OPERATIONS) {
+            SparseArray<OperationStats> statsByCode = tableFor(operation);
+            synchronized (statsByCode) {
+                for (int i = 0; i < statsByCode.size(); i++) {
+                    statsByCode.valueAt(i).addRowTo(cursor, operation, statsByCode.keyAt(i));
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Discards everything collected so far.
+     *
+     * @return The number of statistic rows that were discarded
+     */
+    int reset() {
+        int discarded = 0;
+        for (String operation : OPERATIONS) {
+            SparseArray<OperationStats> statsByCode = tableFor(operation);
+            synchronized (statsByCode) {
+                discarded += statsByCode.size();
+                statsByCode.clear();
+            }
+        }
+        return discarded;
+    }
+
+    private SparseArray<OperationStats> tableFor(String operation) {
+        switch (operation) {
+            case OP_QUERY:
+                return mQueryStats;
+            case OP_BULK_INSERT:
+                return mBulkInsertStats;
+            case OP_DELETE:
+                return mDeleteStats;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private static OperationStats statsFor(SparseArray<OperationStats> statsByCode, int uriCode) {
+        synchronized (statsByCode) {
+            OperationStats stats = statsByCode.get(uriCode);
+            if (stats == null) {
+                stats = new OperationStats();
+                statsByCode.put(uriCode, stats);
+            }
+            return stats;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.R;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public final class SunshinePreferences {
 
     /*
@@ -31,6 +33,90 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * Where an interrupted sync left off: the request it was reading, the day that request
+     * started on, and how many days of it were already written to the database. The next sync
+     * only picks up from there if it is making the same request on the same day.
+     */
+    public static final String PREF_SYNC_RESUME_REQUEST = "sync_resume_request";
+    public static final String PREF_SYNC_RESUME_START_DAY = "sync_resume_start_day";
+    public static final String PREF_SYNC_RESUME_DAYS = "sync_resume_days";
+
+    /* When the last sync that fetched a whole forecast finished, in UNIX time */
+    public static final String PREF_LAST_SYNC_TIME = "last_sync_time";
+
+    /*
+     * The periodic sync job we last scheduled, and the boot it was scheduled during (as the
+     * wall clock time the device booted). A job only needs scheduling again if it has changed or
+     * the device has been restarted since.
+     */
+    public static final String PREF_SYNC_JOB = "sync_job";
+    public static final String PREF_SYNC_JOB_BOOT_TIME = "sync_job_boot_time";
+
+    /*
+     * The settings the rest of the app reads on hot paths, copied out of SharedPreferences. The
+     * field is swapped for a fresh copy whenever a preference changes, so readers only ever pay
+     * for a volatile read. It stays null until the first time anyone asks for it.
+     */
+    private static volatile SunshineSettings sSettings;
+
+    /*
+     * SharedPreferences only keeps weak references to its listeners, so we have to hold on to
+     * ours for as long as the process lives.
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener sSettingsListener;
+
+    /* Writes saved by Batch since the process started, see getWritesAvoided */
+    private static final AtomicLong sWritesAvoided = new AtomicLong();
+
+    /**
+     * Returns the current snapshot of the user's settings. The first call reads them from
+     * SharedPreferences and starts listening for changes; every call after that just returns the
+     * latest snapshot.
+     *
+     * @param context Context used to get the SharedPreferences the first time
+     * @return The user's current settings
+     */
+    public static SunshineSettings getSettings(Context context) {
+        SunshineSettings settings = sSettings;
+        if (settings == null) {
+            settings = loadSettings(context);
+        }
+        return settings;
+    }
+
+    private static synchronized SunshineSettings loadSettings(Context context) {
+        if (sSettings == null) {
+            final Context appContext = context.getApplicationContext();
+            SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+            sSettingsListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sp, String key) {
+                    refreshSettings(appContext);
+                }
+            };
+            sp.registerOnSharedPreferenceChangeListener(sSettingsListener);
+
+            sSettings = SunshineSettings.read(appContext, sp);
+        }
+        return sSettings;
+    }
+
+    /*
+     * Change listeners are always called on the main thread, some time after the change was
+     * applied. The methods in this class that change a setting call this directly as well, so a
+     * background thread that changes a setting sees the new value as soon as it reads it back.
+     * Synchronized so that an older read can never replace a newer one.
+     */
+    static synchronized void refreshSettings(Context context) {
+        if (sSettings != null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+            sSettings = SunshineSettings.read(appContext, sp);
+        }
+    }
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -45,9 +131,9 @@ public final class SunshinePreferences {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
         SharedPreferences.Editor editor = sp.edit();
 
-        editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
-        editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
+        putLocationDetails(editor, lat, lon);
         editor.apply();
+        refreshSettings(context);
     }
 
     /**
@@ -62,6 +148,7 @@ public final class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+        refreshSettings(context);
     }
 
     /**
@@ -74,12 +161,7 @@ public final class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-
-        return sp.getString(keyForLocation, defaultLocation);
+        return getSettings(context).getPreferredWeatherLocation();
     }
 
     /**
@@ -89,19 +171,7 @@ public final class SunshinePreferences {
      * @return true if metric display should be used, false if imperial display should be used
      */
     public static boolean isMetric(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-
-        boolean userPrefersMetric = false;
-        if (metric.equals(preferredUnits)) {
-            userPrefersMetric = true;
-        }
-
-        return userPrefersMetric;
+        return getSettings(context).isMetric();
     }
 
     /**
@@ -113,23 +183,11 @@ public final class SunshinePreferences {
      * @return an array containing the two coordinate values for the user's preferred location
      */
     public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SunshineSettings settings = getSettings(context);
 
         double[] preferredCoordinates = new double[2];
-
-        /*
-         * This is a hack we have to resort to since you can't store doubles in SharedPreferences.
-         *
-         * Double.doubleToLongBits returns an integer corresponding to the bits of the given
-         * IEEE 754 double precision value.
-         *
-         * Double.longBitsToDouble does the opposite, converting a long (that represents a double)
-         * into the double itself.
-         */
-        preferredCoordinates[0] = Double
-                 .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+        preferredCoordinates[0] = settings.getLatitude();
+        preferredCoordinates[1] = settings.getLongitude();
 
         return preferredCoordinates;
     }
@@ -142,17 +200,7 @@ public final class SunshinePreferences {
      * @return true if lat/long are saved in SharedPreferences
      */
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-
-        return spContainBothLatitudeAndLongitude;
+        return getSettings(context).isLocationLatLonAvailable();
     }
 
     /**
@@ -163,26 +211,7 @@ public final class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
-        /* Key for accessing the preference for showing notifications */
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-
-        /*
-         * In Sunshine, the user has the ability to say whether she would like notifications
-         * enabled or not. If no preference has been chosen, we want to be able to determine
-         * whether or not to show them. To do this, we reference a bool stored in bools.xml.
-         */
-        boolean shouldDisplayNotificationsByDefault = context
-                .getResources()
-                .getBoolean(R.bool.show_notifications_by_default);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /* If a value is stored with the key, we extract it here. If not, use a default. */
-        boolean shouldDisplayNotifications = sp
-                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
-
-        return shouldDisplayNotifications;
+        return getSettings(context).areNotificationsEnabled();
     }
 
     /**
@@ -238,8 +267,250 @@ public final class SunshinePreferences {
     public static void saveLastNotificationTime(Context context, long timeOfNotification) {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
         SharedPreferences.Editor editor = sp.edit();
+        putLastNotificationTime(context, editor, timeOfNotification);
+        editor.apply();
+    }
+
+    /**
+     * Returns the time the last complete sync finished. Anything stored is at most this old.
+     *
+     * @param context Used to access SharedPreferences
+     * @return UNIX time of the last complete sync, or 0 if there has never been one
+     */
+    public static long getLastSyncTime(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(PREF_LAST_SYNC_TIME, 0);
+    }
+
+    /**
+     * Returns how many days of a forecast an earlier, interrupted sync already wrote, so the
+     * next sync can skip them.
+     *
+     * @param context               Used to access SharedPreferences
+     * @param request               The request the sync is about to make, usually its URL
+     * @param normalizedUtcStartDay The day the forecast being requested starts on
+     * @return The number of days already written, or 0 if there is nothing to resume
+     */
+    public static int getSyncResumeDays(Context context, String request,
+                                        long normalizedUtcStartDay) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+
+        /* A cursor for a different location or an earlier day is of no use to us */
+        if (!request.equals(sp.getString(PREF_SYNC_RESUME_REQUEST, null))
+                || sp.getLong(PREF_SYNC_RESUME_START_DAY, 0) != normalizedUtcStartDay) {
+            return 0;
+        }
+        return sp.getInt(PREF_SYNC_RESUME_DAYS, 0);
+    }
+
+    /**
+     * Records that the first daysWritten days of a forecast are safely in the database.
+     *
+     * @param context               Used to access SharedPreferences
+     * @param request               The request being read, usually its URL
+     * @param normalizedUtcStartDay The day the forecast starts on
+     * @param daysWritten           How many days, counted from the start, have been written
+     */
+    public static void saveSyncResumeCursor(Context context, String request,
+                                            long normalizedUtcStartDay, int daysWritten) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        putSyncResumeCursor(editor, request, normalizedUtcStartDay, daysWritten);
+        editor.apply();
+    }
+
+    /**
+     * Forgets any interrupted sync, so the next one starts from the first day.
+     *
+     * @param context Used to access SharedPreferences
+     */
+    public static void clearSyncResumeCursor(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        removeSyncResumeCursor(editor);
+        editor.apply();
+    }
+
+    /**
+     * Returns true if the given periodic sync job has already been scheduled since the device
+     * last booted, so there is no need to schedule it again.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param job      Describes the job, including anything that would make it a different job
+     *                 (its tag, interval, constraints and so on)
+     * @param bootTime The wall clock time the device booted
+     * @param slop     How far apart two boot times may be and still be the same boot. Boot times
+     *                 are worked out from two clocks, so they wobble a little.
+     * @return true if this job was scheduled during this boot
+     */
+    public static boolean isSyncJobScheduled(Context context, String job, long bootTime,
+                                             long slop) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!job.equals(sp.getString(PREF_SYNC_JOB, null))) {
+            return false;
+        }
+        long scheduledBootTime = sp.getLong(PREF_SYNC_JOB_BOOT_TIME, 0);
+        return Math.abs(bootTime - scheduledBootTime) <= slop;
+    }
+
+    /**
+     * Records that a periodic sync job has been scheduled.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param job      Describes the job, see {@link #isSyncJobScheduled}
+     * @param bootTime The wall clock time the device booted
+     */
+    public static void saveSyncJobScheduled(Context context, String job, long bootTime) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(PREF_SYNC_JOB, job);
+        editor.putLong(PREF_SYNC_JOB_BOOT_TIME, bootTime);
+        editor.apply();
+    }
+
+    /*
+     * The edits behind each of the setters above, shared with Batch so that a batched change
+     * writes exactly the same keys as an immediate one.
+     */
+
+    private static void putLocationDetails(SharedPreferences.Editor editor,
+                                           double lat, double lon) {
+        editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
+        editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
+    }
+
+    private static void putLastNotificationTime(Context context, SharedPreferences.Editor editor,
+                                                long timeOfNotification) {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
-        editor.apply();
     }
-}
\ No newline at end of file
+
+    private static void putLastSyncTime(SharedPreferences.Editor editor, long timeOfSync) {
+        editor.putLong(PREF_LAST_SYNC_TIME, timeOfSync);
+    }
+
+    private static void putSyncResumeCursor(SharedPreferences.Editor editor, String request,
+                                            long normalizedUtcStartDay, int daysWritten) {
+        editor.putString(PREF_SYNC_RESUME_REQUEST, request);
+        editor.putLong(PREF_SYNC_RESUME_START_DAY, normalizedUtcStartDay);
+        editor.putInt(PREF_SYNC_RESUME_DAYS, daysWritten);
+    }
+
+    private static void removeSyncResumeCursor(SharedPreferences.Editor editor) {
+        editor.remove(PREF_SYNC_RESUME_REQUEST);
+        editor.remove(PREF_SYNC_RESUME_START_DAY);
+        editor.remove(PREF_SYNC_RESUME_DAYS);
+    }
+
+    /**
+     * Starts collecting preference changes to be written together. See {@link Batch}.
+     *
+     * @param context Used to access SharedPreferences
+     * @return An empty batch
+     */
+    public static Batch beginBatch(Context context) {
+        return new Batch(context);
+    }
+
+    /**
+     * Returns how many SharedPreferences writes batching has saved since the process started.
+     * Every change made through a {@link Batch} would otherwise have been a write of its own.
+     *
+     * @return The number of writes avoided
+     */
+    public static long getWritesAvoided() {
+        return sWritesAvoided.get();
+    }
+
+    /**
+     * Collects preference changes and writes them all with a single {@link
+     * SharedPreferences.Editor#apply()}. Each apply() queues a write of the whole preferences file
+     * to disk, so a sync that saves its resume cursor after every chunk, its location and the time
+     * of its notification one by one would rewrite the file many times over.
+     * <p>
+     * Nothing is visible to the rest of the app until {@link #apply()} is called. Changes are
+     * applied in the order they were made, so a later change to a key replaces an earlier one.
+     * A Batch is meant to be used by one thread and thrown away after it is applied.
+     */
+    public static final class Batch {
+
+        private final Context mContext;
+        private final SharedPreferences.Editor mEditor;
+
+        /* How many separate writes the changes in this batch would have taken */
+        private int mChanges;
+
+        private Batch(Context context) {
+            mContext = context.getApplicationContext();
+            mEditor = PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        }
+
+        /**
+         * Batched version of {@link SunshinePreferences#setLocationDetails(Context, double,
+         * double)}.
+         */
+        public Batch setLocationDetails(double lat, double lon) {
+            putLocationDetails(mEditor, lat, lon);
+            mChanges++;
+            return this;
+        }
+
+        /**
+         * Batched version of {@link SunshinePreferences#saveLastNotificationTime(Context, long)}.
+         */
+        public Batch saveLastNotificationTime(long timeOfNotification) {
+            putLastNotificationTime(mContext, mEditor, timeOfNotification);
+            mChanges++;
+            return this;
+        }
+
+        /**
+         * Records the time a complete sync finished, see {@link
+         * SunshinePreferences#getLastSyncTime(Context)}. Only a sync ever saves this, so there
+         * is no immediate version.
+         */
+        public Batch saveLastSyncTime(long timeOfSync) {
+            putLastSyncTime(mEditor, timeOfSync);
+            mChanges++;
+            return this;
+        }
+
+        /**
+         * Batched version of {@link SunshinePreferences#saveSyncResumeCursor(Context, String,
+         * long, int)}.
+         */
+        public Batch saveSyncResumeCursor(String request, long normalizedUtcStartDay,
+                                          int daysWritten) {
+            putSyncResumeCursor(mEditor, request, normalizedUtcStartDay, daysWritten);
+            mChanges++;
+            return this;
+        }
+
+        /**
+         * Batched version of {@link SunshinePreferences#clearSyncResumeCursor(Context)}.
+         */
+        public Batch clearSyncResumeCursor() {
+            removeSyncResumeCursor(mEditor);
+            mChanges++;
+            return this;
+        }
+
+        /**
+         * Applies every change in the batch with one write. Does nothing if the batch is empty.
+         *
+         * @return How many writes were avoided by batching the changes
+         */
+        public int apply() {
+            if (mChanges == 0) {
+                return 0;
+            }
+            mEditor.apply();
+            refreshSettings(mContext);
+
+            int avoided = mChanges - 1;
+            mChanges = 0;
+            sWritesAvoided.addAndGet(avoided);
+            return avoided;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.android.sunshine.R;
+
+/**
+ * An immutable copy of the user's settings, read from SharedPreferences in one go. Sunshine reads
+ * these settings on hot paths (formatTemperature runs twice for every row of the forecast list),
+ * and going through SharedPreferences each time means a lock, a map lookup and several resource
+ * lookups just to find the keys and defaults.
+ * <p>
+ * Instances are never modified. When a setting changes, {@link SunshinePreferences} reads a new
+ * instance and swaps it in, so a reader holding on to one always sees a consistent set of
+ * values. Get the current one from {@link SunshinePreferences#getSettings(Context)}.
+ */
+public final class SunshineSettings {
+
+    private final boolean mMetric;
+    private final String mLocation;
+    private final boolean mLocationLatLonAvailable;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final boolean mNotificationsEnabled;
+
+    private SunshineSettings(boolean metric, String location, boolean latLonAvailable,
+                             double latitude, double longitude, boolean notificationsEnabled) {
+        mMetric = metric;
+        mLocation = location;
+        mLocationLatLonAvailable = latLonAvailable;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mNotificationsEnabled = notificationsEnabled;
+    }
+
+    /**
+     * Reads every setting held in this class from SharedPreferences.
+     *
+     * @param context Used to look up the preference keys and their defaults
+     * @param sp      The SharedPreferences to read from
+     * @return A snapshot of the current settings
+     */
+    static SunshineSettings read(Context context, SharedPreferences sp) {
+        String keyForUnits = context.getString(R.string.pref_units_key);
+        String metricUnits = context.getString(R.string.pref_units_metric);
+        boolean metric = metricUnits.equals(sp.getString(keyForUnits, metricUnits));
+
+        String location = sp.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        /* See getLocationCoordinates in SunshinePreferences for why doubles are stored as longs */
+        boolean latLonAvailable = sp.contains(SunshinePreferences.PREF_COORD_LAT)
+                && sp.contains(SunshinePreferences.PREF_COORD_LONG);
+        double latitude = Double.longBitsToDouble(sp.getLong(SunshinePreferences.PREF_COORD_LAT,
+                Double.doubleToRawLongBits(0.0)));
+        double longitude = Double.longBitsToDouble(sp.getLong(SunshinePreferences.PREF_COORD_LONG,
+                Double.doubleToRawLongBits(0.0)));
+
+        boolean notificationsByDefault = context.getResources()
+                .getBoolean(R.bool.show_notifications_by_default);
+        boolean notificationsEnabled = sp.getBoolean(
+                context.getString(R.string.pref_enable_notifications_key), notificationsByDefault);
+
+        return new SunshineSettings(metric, location, latLonAvailable, latitude, longitude,
+                notificationsEnabled);
+    }
+
+    /**
+     * @return true if metric display should be used, false if imperial display should be used
+     */
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return The location the user has set, or the default location if there is none
+     */
+    public String getPreferredWeatherLocation() {
+        return mLocation;
+    }
+
+    /**
+     * @return true if both a latitude and a longitude are saved
+     */
+    public boolean isLocationLatLonAvailable() {
+        return mLocationLatLonAvailable;
+    }
+
+    /**
+     * @return The latitude of the user's location, or 0 if none is saved
+     */
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    /**
+     * @return The longitude of the user's location, or 0 if none is saved
+     */
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    /**
+     * @return true if the user prefers to see notifications, false otherwise
+     */
+    public boolean areNotificationsEnabled() {
+        return mNotificationsEnabled;
+    }
+}
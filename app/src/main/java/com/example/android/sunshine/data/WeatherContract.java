@@ -56,6 +56,12 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /* Path used for hourly forecasts. See HourlyEntry below. */
+    public static final String PATH_HOURLY = "hourly";
+
+    /* Path used to read (and reset) WeatherProvider's instrumentation. See StatsEntry below. */
+    public static final String PATH_STATS = "stats";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -131,8 +137,164 @@ public class WeatherContract {
          * @return The selection part of the weather query for today onwards
          */
         public static String getSqlSelectForTodayOnwards() {
-            long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
+            long normalizedUtcToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcToday;
+        }
+    }
+
+    /*
+     * Inner class that defines the table contents of the hourly table. Each row is the forecast
+     * for one hour. The daily forecast in the weather table can be derived from these rows:
+     * whenever hours are inserted, WeatherProvider folds them into the weather row of the day
+     * they belong to. See DailyAggregateEntry.
+     *
+     * The hours of a day are read through URIs built with buildHourlyUriForDay and
+     * buildHourlyUriForHours rather than with a selection, so callers don't have to work out
+     * where a local day starts and ends in UTC.
+     */
+    public static final class HourlyEntry {
+
+        /* The base CONTENT_URI used to query the hourly table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_HOURLY)
+                .build();
+
+        /* Used internally as the name of our hourly table. */
+        public static final String TABLE_NAME = "hourly";
+
+        /*
+         * The start of the hour, in UTC milliseconds, always a whole hour (see
+         * SunshineDates.normalizeHour). This is the table's INTEGER PRIMARY KEY, which makes it
+         * the key SQLite stores the rows by: the hours of any day are one contiguous range of the
+         * table, and reading them is a single range seek with no separate index to consult.
+         */
+        public static final String COLUMN_HOUR = "hour";
+
+        /* Weather ID as returned by API, used to identify the icon to be used */
+        public static final String COLUMN_WEATHER_ID = "weather_id";
+
+        /* Temperature in °C for the hour */
+        public static final String COLUMN_TEMP = "temp";
+
+        /* Same units as the matching columns of WeatherEntry */
+        public static final String COLUMN_HUMIDITY = "humidity";
+        public static final String COLUMN_PRESSURE = "pressure";
+        public static final String COLUMN_WIND_SPEED = "wind";
+        public static final String COLUMN_DEGREES = "degrees";
+
+        /**
+         * Builds a URI for every hour of one local day.
+         *
+         * @param normalizedUtcDate The day, normalized the same way as WeatherEntry's dates
+         * @return Uri to query the hours of that day, in order
+         */
+        public static Uri buildHourlyUriForDay(long normalizedUtcDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(Long.toString(normalizedUtcDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI for a range of hours within one local day, for example 6 to 18 for the
+         * daytime hours.
+         *
+         * @param normalizedUtcDate The day, normalized the same way as WeatherEntry's dates
+         * @param fromHour          First hour of the day to return, from 0 to 23
+         * @param toHour            Hour of the day to stop at (exclusive), from 1 to 24
+         * @return Uri to query those hours, in order
+         */
+        public static Uri buildHourlyUriForHours(long normalizedUtcDate, int fromHour,
+                                                 int toHour) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(Long.toString(normalizedUtcDate))
+                    .appendPath(Integer.toString(fromHour))
+                    .appendPath(Integer.toString(toHour))
+                    .build();
         }
     }
-}
\ No newline at end of file
+
+    /*
+     * Inner class that defines the table WeatherProvider keeps the running totals of each day's
+     * hours in (see DailyAggregate in the core module). Having them means inserting more hours
+     * for a day only needs to read that day's totals, not all of its earlier hours. This table
+     * is private to the provider and has no URI.
+     */
+    static final class DailyAggregateEntry {
+
+        static final String TABLE_NAME = "daily_aggregate";
+
+        /* The day, normalized the same way as WeatherEntry's dates */
+        static final String COLUMN_DATE = "date";
+
+        static final String COLUMN_HOURS = "hours";
+        static final String COLUMN_MIN_TEMP = "min";
+        static final String COLUMN_MAX_TEMP = "max";
+        static final String COLUMN_HUMIDITY_SUM = "humidity_sum";
+        static final String COLUMN_PRESSURE_SUM = "pressure_sum";
+        static final String COLUMN_WIND_SPEED_SUM = "wind_sum";
+        static final String COLUMN_WIND_EAST = "wind_east";
+        static final String COLUMN_WIND_NORTH = "wind_north";
+        static final String COLUMN_WEATHER_ID = "weather_id";
+        static final String COLUMN_WEATHER_ID_NOON_DISTANCE = "weather_id_noon_distance";
+    }
+
+    /*
+     * Inner class that defines the columns of the provider statistics. These are not backed by a
+     * table; WeatherProvider builds the rows on demand from the counters it keeps in memory.
+     *
+     * Querying CONTENT_URI returns one row per operation and URI code that has been used since
+     * the provider started. Deleting CONTENT_URI resets every counter.
+     */
+    public static final class StatsEntry {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_STATS)
+                .build();
+
+        /* One of "query", "bulkInsert" or "delete" */
+        public static final String COLUMN_OPERATION = "operation";
+
+        /* The UriMatcher code the operation was performed on, such as CODE_WEATHER */
+        public static final String COLUMN_URI_CODE = "uri_code";
+
+        /* Number of times the operation was performed */
+        public static final String COLUMN_CALLS = "calls";
+
+        /* Rows returned (query), inserted (bulkInsert) or deleted (delete) over all calls */
+        public static final String COLUMN_ROWS = "rows";
+
+        /* Sum and maximum of the time spent in the operation, in microseconds */
+        public static final String COLUMN_TOTAL_MICROS = "total_micros";
+        public static final String COLUMN_MAX_MICROS = "max_micros";
+
+        /* Time spent filling the first cursor window of queries, in microseconds */
+        public static final String COLUMN_WINDOW_FILL_MICROS = "window_fill_micros";
+
+        /* Number of queries that took longer than the slow query threshold */
+        public static final String COLUMN_SLOW_CALLS = "slow_calls";
+
+        /*
+         * Latency histogram flattened into "upperBoundMillis:count" pairs separated by commas.
+         * The last bucket is labelled "inf" and holds everything above the highest bound.
+         */
+        public static final String COLUMN_HISTOGRAM = "histogram";
+
+        /*
+         * Key of the value to pass to ContentResolver#update on CONTENT_URI in order to change
+         * the threshold (in milliseconds) above which queries are logged as slow.
+         */
+        public static final String SLOW_QUERY_THRESHOLD_MILLIS = "slow_query_threshold_ms";
+
+        public static final String[] COLUMNS = {
+                COLUMN_OPERATION,
+                COLUMN_URI_CODE,
+                COLUMN_CALLS,
+                COLUMN_ROWS,
+                COLUMN_TOTAL_MICROS,
+                COLUMN_MAX_MICROS,
+                COLUMN_WINDOW_FILL_MICROS,
+                COLUMN_SLOW_CALLS,
+                COLUMN_HISTOGRAM
+        };
+    }
+}
@@ -19,6 +19,8 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.data.WeatherContract.DailyAggregateEntry;
+import com.example.android.sunshine.data.WeatherContract.HourlyEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
 /**
@@ -43,7 +45,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 4;
 
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -99,6 +101,45 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        /*
+         * The hourly table is keyed by the start of each hour. Declaring that column as the
+         * INTEGER PRIMARY KEY makes it an alias for SQLite's rowid, so rows are stored in time
+         * order and a day's hours can be read with a range seek on the table itself. As with the
+         * weather table, inserting an hour that is already there replaces it.
+         */
+        final String SQL_CREATE_HOURLY_TABLE =
+
+                "CREATE TABLE " + HourlyEntry.TABLE_NAME + " (" +
+
+                HourlyEntry.COLUMN_HOUR        + " INTEGER PRIMARY KEY ON CONFLICT REPLACE, " +
+                HourlyEntry.COLUMN_WEATHER_ID  + " INTEGER NOT NULL, "                       +
+                HourlyEntry.COLUMN_TEMP        + " REAL NOT NULL, "                          +
+                HourlyEntry.COLUMN_HUMIDITY    + " REAL NOT NULL, "                          +
+                HourlyEntry.COLUMN_PRESSURE    + " REAL NOT NULL, "                          +
+                HourlyEntry.COLUMN_WIND_SPEED  + " REAL NOT NULL, "                          +
+                HourlyEntry.COLUMN_DEGREES     + " REAL NOT NULL);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_HOURLY_TABLE);
+
+        /* Running totals of each day's hours, one row per day. See DailyAggregateEntry. */
+        final String SQL_CREATE_DAILY_AGGREGATE_TABLE =
+
+                "CREATE TABLE " + DailyAggregateEntry.TABLE_NAME + " (" +
+
+                DailyAggregateEntry.COLUMN_DATE            + " INTEGER PRIMARY KEY ON CONFLICT REPLACE, " +
+                DailyAggregateEntry.COLUMN_HOURS           + " INTEGER NOT NULL, "   +
+                DailyAggregateEntry.COLUMN_MIN_TEMP        + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_MAX_TEMP        + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_HUMIDITY_SUM    + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_PRESSURE_SUM    + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_WIND_SPEED_SUM  + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_WIND_EAST       + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_WIND_NORTH      + " REAL NOT NULL, "      +
+                DailyAggregateEntry.COLUMN_WEATHER_ID      + " INTEGER NOT NULL, "   +
+                DailyAggregateEntry.COLUMN_WEATHER_ID_NOON_DISTANCE + " INTEGER NOT NULL);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_DAILY_AGGREGATE_TABLE);
     }
 
     /**
@@ -116,6 +157,8 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HourlyEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DailyAggregateEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
\ No newline at end of file
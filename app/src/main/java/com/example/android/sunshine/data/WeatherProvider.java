@@ -17,15 +17,26 @@ package com.example.android.sunshine.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import com.example.android.sunshine.core.Forecast;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
  * bulkInsert data, query data, and delete data.
@@ -45,6 +56,12 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_HOURLY = 300;
+    public static final int CODE_HOURLY_FOR_DAY = 301;
+    public static final int CODE_HOURLY_FOR_HOURS = 302;
+    public static final int CODE_STATS = 200;
+
+    private static final String TAG = WeatherProvider.class.getSimpleName();
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -54,6 +71,28 @@ public class WeatherProvider extends ContentProvider {
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    /*
+     * Used by bulkInsert(Uri, Forecast). The ON CONFLICT REPLACE clause on the date column still
+     * applies, exactly as it does for SQLiteDatabase#insert.
+     */
+    private static final String INSERT_WEATHER_SQL = "INSERT INTO "
+            + WeatherContract.WeatherEntry.TABLE_NAME + " ("
+            + WeatherContract.WeatherEntry.COLUMN_DATE + ", "
+            + WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + ", "
+            + WeatherContract.WeatherEntry.COLUMN_MIN_TEMP + ", "
+            + WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + ", "
+            + WeatherContract.WeatherEntry.COLUMN_HUMIDITY + ", "
+            + WeatherContract.WeatherEntry.COLUMN_PRESSURE + ", "
+            + WeatherContract.WeatherEntry.COLUMN_WIND_SPEED + ", "
+            + WeatherContract.WeatherEntry.COLUMN_DEGREES
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /* Counters and latency histograms for every operation, readable through StatsEntry */
+    private final ProviderStats mStats = new ProviderStats();
+
+    /* Works out which URIs to notify after each write, and holds them back during a batch */
+    private ChangeNotifier mChangeNotifier;
+
     /**
      * Creates the UriMatcher that will match each URI to the CODE_WEATHER and
      * CODE_WEATHER_WITH_DATE constants defined above.
@@ -96,6 +135,18 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /*
+         * The hourly URIs: every hour we have, the hours of one day, and a range of hours within
+         * a day. For example, content://com.example.android.sunshine/hourly/1472169600/6/18 is
+         * 6 AM up to 6 PM, local time, on the day normalized to 1472169600000.
+         */
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY, CODE_HOURLY);
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/#", CODE_HOURLY_FOR_DAY);
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/#/#/#", CODE_HOURLY_FOR_HOURS);
+
+        /* This URI is content://com.example.android.sunshine/stats */
+        matcher.addURI(authority, WeatherContract.PATH_STATS, CODE_STATS);
+
         return matcher;
     }
 
@@ -122,6 +173,7 @@ public class WeatherProvider extends ContentProvider {
          * very lightweight, we are safe to perform that initialization here.
          */
         mOpenHelper = new WeatherDbHelper(getContext());
+        mChangeNotifier = new ChangeNotifier(getContext().getContentResolver());
         return true;
     }
 
@@ -141,12 +193,16 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final int match = sUriMatcher.match(uri);
+        final long startNanos = System.nanoTime();
 
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
-            case CODE_WEATHER:
+            case CODE_WEATHER: {
+                mChangeNotifier.begin();
                 db.beginTransaction();
                 int rowsInserted = 0;
+                boolean committed = false;
                 try {
                     for (ContentValues value : values) {
                         long weatherDate =
@@ -158,24 +214,123 @@ public class WeatherProvider extends ContentProvider {
                         long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
                         if (_id != -1) {
                             rowsInserted++;
+                            mChangeNotifier.weatherChanged(weatherDate);
                         }
                     }
                     db.setTransactionSuccessful();
+                    committed = true;
                 } finally {
                     db.endTransaction();
+                    mStats.recordBulkInsert(match,
+                            System.nanoTime() - startNanos, rowsInserted);
+                    mChangeNotifier.end(committed);
                 }
 
-                if (rowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                return rowsInserted;
+            }
+
+            /*
+             * Hourly rows are handed to HourlyStore, which also folds them into the daily
+             * forecast of the days they belong to. Both the hours and the daily rows of those
+             * days change as a result.
+             */
+            case CODE_HOURLY: {
+                mChangeNotifier.begin();
+                db.beginTransaction();
+                int hoursInserted = 0;
+                boolean committed = false;
+                try {
+                    Set<Long> daysChanged = new HashSet<>();
+                    hoursInserted = HourlyStore.insertHours(db, values,
+                            SunshineDateUtils.getClock().getTimeZone(), daysChanged);
+                    for (long day : daysChanged) {
+                        mChangeNotifier.hoursChanged(day);
+                        mChangeNotifier.weatherChanged(day);
+                    }
+                    db.setTransactionSuccessful();
+                    committed = true;
+                } finally {
+                    db.endTransaction();
+                    mStats.recordBulkInsert(match,
+                            System.nanoTime() - startNanos, hoursInserted);
+                    mChangeNotifier.end(committed);
                 }
 
-                return rowsInserted;
+                return hoursInserted;
+            }
 
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Inserts every day of a parsed {@link Forecast} in one transaction. This does the same job
+     * as {@link #bulkInsert(Uri, ContentValues[])}, but reads the values straight out of the
+     * Forecast's primitive columns and binds them to a single compiled INSERT statement, so no
+     * ContentValues (and none of the boxed Longs and Doubles inside them) are created per day.
+     * <p>
+     * This isn't part of the ContentProvider API, so it can only be reached from inside our own
+     * process, through {@link android.content.ContentProviderClient#getLocalContentProvider()}.
+     * SunshineSyncTask does exactly that and falls back to the regular bulkInsert otherwise.
+     *
+     * @param uri      The content:// URI of the insertion request.
+     * @param forecast The days to insert
+     *
+     * @return The number of days that were inserted.
+     */
+    public int bulkInsert(@NonNull Uri uri, @NonNull Forecast forecast) {
+        final int match = sUriMatcher.match(uri);
+        if (match != CODE_WEATHER) {
+            throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final long startNanos = System.nanoTime();
+
+        mChangeNotifier.begin();
+        db.beginTransaction();
+        int rowsInserted = 0;
+        boolean committed = false;
+        try {
+            SQLiteStatement insert = db.compileStatement(INSERT_WEATHER_SQL);
+            try {
+                for (int i = 0; i < forecast.size(); i++) {
+                    long weatherDate = forecast.getDate(i);
+                    if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
+                        throw new IllegalArgumentException("Date must be normalized to insert");
+                    }
+
+                    /* Bind indexes follow the column order of INSERT_WEATHER_SQL, starting at 1 */
+                    insert.bindLong(1, weatherDate);
+                    insert.bindLong(2, forecast.getWeatherId(i));
+                    insert.bindDouble(3, forecast.getMinTemp(i));
+                    insert.bindDouble(4, forecast.getMaxTemp(i));
+                    insert.bindDouble(5, forecast.getHumidity(i));
+                    insert.bindDouble(6, forecast.getPressure(i));
+                    insert.bindDouble(7, forecast.getWindSpeed(i));
+                    insert.bindDouble(8, forecast.getDegrees(i));
+
+                    long _id = insert.executeInsert();
+                    if (_id != -1) {
+                        rowsInserted++;
+                        mChangeNotifier.weatherChanged(weatherDate);
+                    }
+                }
+            } finally {
+                insert.close();
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            mStats.recordBulkInsert(match, System.nanoTime() - startNanos, rowsInserted);
+            mChangeNotifier.end(committed);
+        }
+
+        return rowsInserted;
+    }
+
     /**
      * Handles query requests from clients. We will use this method in Sunshine to query for all
      * of our weather data as well as to query for the weather on a particular day.
@@ -196,12 +351,14 @@ public class WeatherProvider extends ContentProvider {
                         String[] selectionArgs, String sortOrder) {
 
         Cursor cursor;
+        final int match = sUriMatcher.match(uri);
+        final long startNanos = System.nanoTime();
 
         /*
          * Here's the switch statement that, given a URI, will determine what kind of request is
          * being made and query the database accordingly.
          */
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
             /*
              * When sUriMatcher's match method is called with a URI that looks something like this
@@ -285,10 +442,80 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
 
+            /*
+             * The hours of a day, or part of one. Like CODE_WEATHER_WITH_DATE, the URI decides
+             * which rows are returned, so the caller's selection is not used. Rows come back in
+             * time order unless a sort order is given.
+             */
+            case CODE_HOURLY_FOR_DAY:
+            case CODE_HOURLY_FOR_HOURS: {
+                List<String> segments = uri.getPathSegments();
+                long normalizedUtcDate = Long.parseLong(segments.get(1));
+                int fromHour = 0;
+                int toHour = 24;
+                if (match == CODE_HOURLY_FOR_HOURS) {
+                    fromHour = Integer.parseInt(segments.get(2));
+                    toHour = Integer.parseInt(segments.get(3));
+                }
+
+                String[] selectionArguments = new String[2];
+                String hoursSelection = HourlyStore.selectHours(normalizedUtcDate,
+                        fromHour, toHour, SunshineDateUtils.getClock().getTimeZone(),
+                        selectionArguments);
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        hoursSelection,
+                        selectionArguments,
+                        null,
+                        null,
+                        sortOrder != null
+                                ? sortOrder : WeatherContract.HourlyEntry.COLUMN_HOUR + " ASC");
+
+                break;
+            }
+
+            case CODE_HOURLY: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            /*
+             * The statistics URI is answered from memory and is deliberately not counted itself,
+             * otherwise every scrape would show up in the numbers it is trying to report.
+             */
+            case CODE_STATS:
+                return mStats.snapshot();
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
+        /*
+         * SQLiteDatabase#query doesn't actually run the query; the work happens the first time the
+         * cursor window is filled, which getCount triggers. Doing that here, on the provider's
+         * thread, lets us measure the real cost of the query instead of just compiling it.
+         */
+        final long fillStartNanos = System.nanoTime();
+        int rowCount = cursor.getCount();
+        final long endNanos = System.nanoTime();
+
+        long elapsedNanos = endNanos - startNanos;
+        boolean slow = mStats.recordQuery(match, elapsedNanos, rowCount, endNanos - fillStartNanos);
+        if (slow) {
+            Log.w(TAG, "Slow query (" + elapsedNanos / 1000000 + " ms, " + rowCount + " rows): "
+                    + uri + " selection=" + selection + " sortOrder=" + sortOrder);
+        }
+
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
         return cursor;
     }
@@ -316,7 +543,10 @@ public class WeatherProvider extends ContentProvider {
          */
         if (null == selection) selection = "1";
 
-        switch (sUriMatcher.match(uri)) {
+        final int match = sUriMatcher.match(uri);
+        final long startNanos = System.nanoTime();
+
+        switch (match) {
 
             case CODE_WEATHER:
                 numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
@@ -324,20 +554,123 @@ public class WeatherProvider extends ContentProvider {
                         selection,
                         selectionArgs);
 
+                mStats.recordDelete(match,
+                        System.nanoTime() - startNanos, numRowsDeleted);
+
+                /* Any day could be gone, as the selection is the caller's */
+                if (numRowsDeleted != 0) {
+                    notifyAll(false);
+                }
                 break;
 
+            /*
+             * Deleting hours changes the totals of the days they belonged to, so those are
+             * rebuilt from the hours that are left, in the same transaction.
+             */
+            case CODE_HOURLY: {
+                SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    numRowsDeleted = db.delete(
+                            WeatherContract.HourlyEntry.TABLE_NAME,
+                            selection,
+                            selectionArgs);
+                    if (numRowsDeleted != 0) {
+                        HourlyStore.rebuildAllAggregates(db,
+                                SunshineDateUtils.getClock().getTimeZone());
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                mStats.recordDelete(match,
+                        System.nanoTime() - startNanos, numRowsDeleted);
+
+                /* The daily rows derived from those hours changed too */
+                if (numRowsDeleted != 0) {
+                    notifyAll(true);
+                }
+                break;
+            }
+
+            /* Deleting the statistics resets them. Nobody observes this URI, so just return. */
+            case CODE_STATS:
+                return mStats.reset();
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        /* If we actually deleted any rows, notify that a change has occurred to this URI */
-        if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
-        }
-
         return numRowsDeleted;
     }
 
+    /**
+     * Announces a change to every daily row, and to every hour as well if hours is set. Inside a
+     * batch, this is merged with the rest of the batch's changes.
+     */
+    private void notifyAll(boolean hours) {
+        mChangeNotifier.begin();
+        mChangeNotifier.allWeatherChanged();
+        if (hours) mChangeNotifier.allHoursChanged();
+        mChangeNotifier.end(true);
+    }
+
+    /**
+     * Opens a batch of writes on the calling thread. Until the matching {@link #endBatch()},
+     * writes made on this thread don't notify anybody; the batch's changes are announced
+     * together, once, when it ends. Batches nest, and only the outermost one notifies.
+     * <p>
+     * Unlike {@link #applyBatch(ArrayList)}, this doesn't hold a transaction open, so every write
+     * inside the batch is still committed on its own. SunshineSyncTask relies on that: each
+     * chunk of the forecast is saved as soon as it is parsed, but the forecast list only
+     * requeries once, when the sync is over.
+     * <p>
+     * This isn't part of the ContentProvider API, so it can only be reached from inside our own
+     * process, through {@link android.content.ContentProviderClient#getLocalContentProvider()}.
+     * Always end the batch in a finally block.
+     */
+    public void beginBatch() {
+        mChangeNotifier.begin();
+    }
+
+    /**
+     * Ends the batch opened by the last call to {@link #beginBatch()} on this thread.
+     *
+     * @throws IllegalStateException If no batch is open on this thread
+     */
+    public void endBatch() {
+        mChangeNotifier.end(true);
+    }
+
+    /**
+     * Applies every operation in a single transaction, and announces what they changed once it
+     * has been committed. If any operation fails, the transaction is rolled back and nobody is
+     * notified.
+     *
+     * @param operations The operations to apply
+     * @return The result of each operation
+     * @throws OperationApplicationException If any operation fails
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        mChangeNotifier.begin();
+        db.beginTransaction();
+        boolean committed = false;
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            mChangeNotifier.end(committed);
+        }
+    }
+
     /**
      * In Sunshine, we aren't going to do anything with this method. However, we are required to
      * override it as WeatherProvider extends ContentProvider and getType is an abstract method in
@@ -370,8 +703,28 @@ public class WeatherProvider extends ContentProvider {
                 "We are not implementing insert in Sunshine. Use bulkInsert instead");
     }
 
+    /**
+     * The only thing that can be updated in Sunshine is the provider's own configuration: passing
+     * {@link WeatherContract.StatsEntry#SLOW_QUERY_THRESHOLD_MILLIS} to the statistics URI changes
+     * the threshold above which queries are logged as slow. Weather rows are never updated; they
+     * are replaced wholesale by {@link #bulkInsert(Uri, ContentValues[])}.
+     *
+     * @return 1 if the threshold was changed, 0 if values didn't include one
+     * @throws IllegalArgumentException If the threshold isn't a number of milliseconds
+     */
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        if (sUriMatcher.match(uri) == CODE_STATS) {
+            String key = WeatherContract.StatsEntry.SLOW_QUERY_THRESHOLD_MILLIS;
+            if (values == null || !values.containsKey(key)) return 0;
+
+            Long thresholdMillis = values.getAsLong(key);
+            if (thresholdMillis == null || thresholdMillis < 0) {
+                throw new IllegalArgumentException("Invalid " + key + ": " + values.get(key));
+            }
+            mStats.setSlowQueryThresholdMillis(thresholdMillis);
+            return 1;
+        }
         throw new RuntimeException("We are not implementing update in Sunshine");
     }
 
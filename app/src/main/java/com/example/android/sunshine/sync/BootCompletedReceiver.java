@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Sets the alarm for {@link DayRolloverService} again after the device restarts. AlarmManager
+ * forgets every alarm on a reboot, and without this the forecast wouldn't move on to the next
+ * day until the user opened the app.
+ * <p>
+ * The device may have been off at midnight, so rather than only setting the alarm, the
+ * rollover is run right away. It changes nothing if the day hasn't changed, and it sets the
+ * alarm for the next midnight when it's done.
+ */
+public class BootCompletedReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) return;
+
+        context.startService(new Intent(context, DayRolloverService.class));
+    }
+}
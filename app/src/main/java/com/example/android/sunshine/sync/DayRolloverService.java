@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.widget.ForecastWidgetProvider;
+
+/**
+ * Moves Sunshine on to the next day when local midnight passes, without going to the network.
+ * Everything it needs is already stored: the forecast we have still covers the new day, only
+ * yesterday has to go and "Tomorrow" has to become "Today".
+ * <p>
+ * At each rollover this service:
+ * <ul>
+ *     <li>deletes the days before today with a single DELETE,</li>
+ *     <li>makes sure the forecast list hears about it exactly once, so it requeries and
+ *     relabels its days,</li>
+ *     <li>sends the watch and the home-screen widget today's weather from what is stored,</li>
+ *     <li>and schedules itself for the next midnight.</li>
+ * </ul>
+ * The alarm doesn't wake the device: if it is asleep at midnight, the rollover happens the next
+ * time it wakes up, which is the first time anybody could notice it anyway. Alarms don't
+ * survive a reboot, so {@link BootCompletedReceiver} sets it again after one.
+ */
+public class DayRolloverService extends IntentService {
+
+    private static final String TAG = DayRolloverService.class.getSimpleName();
+
+    public DayRolloverService() {
+        super("DayRolloverService");
+    }
+
+    /**
+     * Sets the alarm for the start of the next local day, replacing any alarm set before. Call
+     * it again whenever the time zone changes, since midnight moves with it.
+     *
+     * @param context Used to reach the AlarmManager
+     */
+    public static void schedule(Context context) {
+        long nextDay = SunshineDateUtils.getClock().getStartOfNextLocalDay();
+
+        Intent intent = new Intent(context, DayRolloverService.class);
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+
+        AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.RTC, nextDay, pendingIntent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        long startNanos = System.nanoTime();
+        long normalizedUtcToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+        ContentResolver contentResolver = getContentResolver();
+
+        /*
+         * WeatherProvider notifies the whole weather table when this deletes anything, which is
+         * the one notification we want. If a sync already removed yesterday, nothing is deleted
+         * and nobody is told, yet the labels of every day still changed, so we tell them.
+         */
+        int deleted = contentResolver.delete(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(normalizedUtcToday)});
+        if (deleted == 0) {
+            contentResolver.notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+
+        boolean hadToday = showToday(normalizedUtcToday);
+
+        schedule(this);
+
+        Log.i(TAG, "Rolled over to " + normalizedUtcToday + ": deleted " + deleted
+                + " days, " + (hadToday ? "sent" : "had nothing to send")
+                + " to the watch and widget, in " + (System.nanoTime() - startNanos) / 1000
+                + " us");
+    }
+
+    /**
+     * Sends today's stored weather to the watch, and renders it for the widget under the new
+     * day's label. If nothing is stored for today, the widget at least loses its "Today" on
+     * what is now yesterday.
+     *
+     * @param normalizedUtcToday Today, as stored in WeatherEntry.COLUMN_DATE
+     * @return false if there was no weather stored for today
+     */
+    private boolean showToday(long normalizedUtcToday) {
+        if (WearRequests.sendStoredWeather(this, normalizedUtcToday, true)) {
+            return true;
+        }
+        ForecastWidgetProvider.refreshWidgets(this);
+        return false;
+    }
+}
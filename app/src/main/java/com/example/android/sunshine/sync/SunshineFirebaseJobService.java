@@ -63,6 +63,10 @@ public class SunshineFirebaseJobService extends JobService {
     /**
      * Called when the scheduling engine has decided to interrupt the execution of a running job,
      * most likely because the runtime constraints associated with the job are no longer satisfied.
+     * <p>
+     * Cancelling the task interrupts the sync, which stops after the chunk of days it is writing.
+     * Because every written chunk is recorded in the sync's resume cursor, the retried job picks
+     * up from there rather than downloading and writing the whole forecast again.
      *
      * @return whether the job should be retried
      * @see Job.Builder#setRetryStrategy(RetryStrategy)
@@ -15,31 +15,87 @@
  */
 package com.example.android.sunshine.sync;
 
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
+import android.net.Uri;
 import android.text.format.DateUtils;
+import android.util.Log;
 
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.ForecastStreamParser;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherProvider;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.WearUtils;
+import com.example.android.sunshine.widget.ForecastWidgetProvider;
 
+import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
 public class SunshineSyncTask {
 
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
+    /*
+     * How many days are parsed and written at a time. Each chunk is committed in its own
+     * transaction, and this, not the length of the forecast, is what bounds the memory a sync
+     * needs.
+     */
+    static final int SYNC_CHUNK_DAYS = 7;
+
+    /*
+     * The chunk every sync parses into. syncWeather is synchronized, so only one sync at a time
+     * ever fills or reads it, and keeping it around means a sync doesn't allocate a fresh row for
+     * every day it parses.
+     */
+    private static final Forecast sChunk = new Forecast(SYNC_CHUNK_DAYS);
+
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * The response is parsed and written a chunk of days at a time, as it streams in. After each
+     * chunk is written, a resume cursor is saved in SunshinePreferences. If the sync is stopped
+     * part way (SunshineFirebaseJobService interrupts this thread from onStopJob) the next sync
+     * of the same forecast skips the days that were already written instead of starting over.
+     * <p>
+     * Every preference the sync changes (the resume cursor, the location and the time of the
+     * notification) goes into one SunshinePreferences.Batch, written with a single apply() when
+     * the sync returns, however it returns. That is always after the last write to
+     * WeatherProvider has been committed, so the resume cursor can never claim days that are not
+     * in the database. If the process dies before then, the next sync just starts over.
+     * <p>
+     * Likewise, every write to WeatherProvider happens inside one WeatherProvider batch. Each
+     * chunk is still committed as soon as it's written, but observers (the forecast list, the
+     * detail screen) hear about the sync once, when it's over, instead of after every chunk and
+     * again after the old days are deleted.
      *
      * @param context Used to access utility methods and the ContentResolver
      */
     synchronized public static void syncWeather(Context context) {
 
+        SunshinePreferences.Batch preferences = SunshinePreferences.beginBatch(context);
+
+        ContentResolver contentResolver = context.getContentResolver();
+        ContentProviderClient client = contentResolver
+                .acquireContentProviderClient(WeatherContract.WeatherEntry.CONTENT_URI);
+        WeatherProvider provider = getLocalWeatherProvider(client);
+        if (provider != null) {
+            provider.beginBatch();
+        }
+
+        /* Whether today's weather went out to the watch, for watch requests waiting on this sync */
+        boolean sentToWatch = false;
+
         try {
             /*
              * The getUrl method will return the URL that we need to get the forecast JSON for the
@@ -48,33 +104,62 @@ public class SunshineSyncTask {
              */
             URL weatherRequestUrl = NetworkUtils.getUrl(context);
 
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+            /* The forecast we are about to request starts today */
+            long normalizedUtcToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+            /* If an earlier sync of this same forecast was interrupted, pick up where it stopped */
+            String request = weatherRequestUrl.toString();
+            int resumeFromDay =
+                    SunshinePreferences.getSyncResumeDays(context, request, normalizedUtcToday);
+            if (resumeFromDay > 0) {
+                Log.i(TAG, "Resuming sync after " + resumeFromDay + " days");
+            }
+
+            ChunkWriter writer = new ChunkWriter(context, provider, preferences, request,
+                    normalizedUtcToday, resumeFromDay);
+
+            int result;
+            HttpURLConnection urlConnection =
+                    (HttpURLConnection) weatherRequestUrl.openConnection();
+            try {
+                Reader response = NetworkUtils.getResponseReader(urlConnection);
+                result = ForecastStreamParser.parse(response, normalizedUtcToday, resumeFromDay,
+                        sChunk, writer);
+            } finally {
+                urlConnection.disconnect();
+            }
+            sentToWatch = writer.hasToday();
 
-            /* Parse the JSON into a list of weather values */
-            OpenWeatherJsonUtils openWeatherJsonUtils = new OpenWeatherJsonUtils();
-            ContentValues[] weatherValues = openWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
+             * If the server sent an error code, there's nothing to insert. If we were asked to
+             * stop, the resume cursor already records how far we got. Either way, we're done.
              */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
+            if (result != ForecastStreamParser.RESULT_COMPLETE) {
+                return;
+            }
 
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
+            preferences.clearSyncResumeCursor();
+            preferences.saveLastSyncTime(System.currentTimeMillis());
+
+            int daysInForecast = writer.getDaysWritten();
 
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
+            /* We have no reason to touch our data if the server didn't send any */
+            if (daysInForecast != 0) {
+                /* Remember where the server resolved our location to, for the map intent */
+                preferences.setLocationDetails(sChunk.getLatitude(), sChunk.getLongitude());
+
+                /*
+                 * Every day in the forecast has just been written, replacing whatever we had for
+                 * that date. Delete old weather data outside of it, because we don't need to keep
+                 * multiple days' data.
+                 */
+                long lastDay = normalizedUtcToday
+                        + SunshineDateUtils.DAY_IN_MILLIS * (daysInForecast - 1);
+                contentResolver.delete(
                         WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " < ? OR "
+                                + WeatherContract.WeatherEntry.COLUMN_DATE + " > ?",
+                        new String[]{Long.toString(normalizedUtcToday), Long.toString(lastDay)});
 
                 /*
                  * Finally, after we insert data into the ContentProvider, determine whether or not
@@ -101,7 +186,31 @@ public class SunshineSyncTask {
                  * haven't shown a notification in the past day.
                  */
                 if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
+                    /*
+                     * Today's weather is usually still in hand from the first chunk, so there's no
+                     * need to read back the row we've just written. A resumed sync never saw
+                     * today's chunk, and asks the ContentProvider instead.
+                     */
+                    if (writer.hasToday()) {
+                        Uri todaysWeatherUri = WeatherContract.WeatherEntry
+                                .buildWeatherUriWithDate(normalizedUtcToday);
+                        NotificationUtils.notifyUserOfNewWeather(context, todaysWeatherUri,
+                                writer.getTodaysWeatherId(), writer.getTodaysHigh(),
+                                writer.getTodaysLow(), preferences);
+                    } else {
+                        NotificationUtils.notifyUserOfNewWeather(context, preferences);
+                    }
+                }
+
+                /*
+                 * The home-screen widget shows today's weather, rendered once here rather than
+                 * on every widget update. A resumed sync never saw today, so the widget keeps
+                 * what the interrupted sync left it until the next full one.
+                 */
+                if (writer.hasToday()) {
+                    ForecastWidgetProvider.updateWidgets(context, normalizedUtcToday,
+                            writer.getTodaysWeatherId(), writer.getTodaysHigh(),
+                            writer.getTodaysLow());
                 }
 
             /* If the code reaches this point, we have successfully performed our sync */
@@ -111,6 +220,132 @@ public class SunshineSyncTask {
         } catch (Exception e) {
             /* Server probably invalid */
             e.printStackTrace();
+        } finally {
+            /* Observers hear about everything the sync wrote, in one notification */
+            if (provider != null) {
+                provider.endBatch();
+            }
+            if (client != null) {
+                client.release();
+            }
+            WearRequests.onSyncFinished(context, sentToWatch);
+
+            int writesAvoided = preferences.apply();
+            Log.d(TAG, "Preference writes avoided by batching: " + writesAvoided
+                    + " (" + SunshinePreferences.getWritesAvoided() + " since start)");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes each chunk of the forecast to WeatherProvider as soon as it has been parsed, then
+     * moves the resume cursor past it. The cursor only lives in the sync's preference batch until
+     * the sync is over.
+     */
+    private static class ChunkWriter implements ForecastStreamParser.ChunkHandler {
+
+        private final Context mContext;
+        private final WeatherProvider mProvider;
+        private final SunshinePreferences.Batch mPreferences;
+        private final String mRequest;
+        private final long mNormalizedUtcToday;
+
+        /* Days written so far, counting the ones an interrupted sync wrote before us */
+        private int mDaysWritten;
+
+        /* Today's weather, kept from the first chunk for the notification */
+        private boolean mHasToday;
+        private int mTodaysWeatherId;
+        private double mTodaysHigh;
+        private double mTodaysLow;
+
+        ChunkWriter(Context context, WeatherProvider provider,
+                    SunshinePreferences.Batch preferences, String request,
+                    long normalizedUtcToday, int resumeFromDay) {
+            mContext = context;
+            mProvider = provider;
+            mPreferences = preferences;
+            mRequest = request;
+            mNormalizedUtcToday = normalizedUtcToday;
+            mDaysWritten = resumeFromDay;
+        }
+
+        int getDaysWritten() {
+            return mDaysWritten;
+        }
+
+        boolean hasToday() {
+            return mHasToday;
+        }
+
+        int getTodaysWeatherId() {
+            return mTodaysWeatherId;
+        }
+
+        double getTodaysHigh() {
+            return mTodaysHigh;
+        }
+
+        double getTodaysLow() {
+            return mTodaysLow;
+        }
+
+        @Override
+        public boolean onChunk(Forecast chunk, int firstDayIndex) {
+            /* Insert our new weather data into Sunshine's ContentProvider */
+            insertForecast(mContext.getContentResolver(), mProvider, chunk);
+
+            mDaysWritten = firstDayIndex + chunk.size();
+            mPreferences.saveSyncResumeCursor(mRequest, mNormalizedUtcToday, mDaysWritten);
+
+            /* The first chunk holds today, so let the watch know about today's weather */
+            if (firstDayIndex == 0) {
+                WearUtils.sendWeatherToWear(mContext, chunk);
+
+                /* The chunk is reused for the next days, so copy today out of it */
+                mHasToday = chunk.size() > 0;
+                if (mHasToday) {
+                    mTodaysWeatherId = chunk.getWeatherId(0);
+                    mTodaysHigh = chunk.getMaxTemp(0);
+                    mTodaysLow = chunk.getMinTemp(0);
+                }
+            }
+
+            /* onStopJob cancels the job's AsyncTask, which interrupts us */
+            return !Thread.currentThread().isInterrupted();
+        }
+    }
+
+    /**
+     * Returns WeatherProvider itself if it runs in our own process, which it always should.
+     *
+     * @param client A client for WeatherProvider's authority, may be null
+     * @return The provider, or null if it can't be reached directly
+     */
+    private static WeatherProvider getLocalWeatherProvider(ContentProviderClient client) {
+        if (client == null) return null;
+        ContentProvider provider = client.getLocalContentProvider();
+        return provider instanceof WeatherProvider ? (WeatherProvider) provider : null;
+    }
+
+    /**
+     * Writes the forecast into WeatherProvider. WeatherProvider always runs in our own process,
+     * so we can normally reach it directly and let it bind the forecast's columns straight into
+     * SQLite. If for some reason we can't, we fall back to the regular ContentValues bulkInsert.
+     *
+     * @param contentResolver Used to reach WeatherProvider if provider is null
+     * @param provider        WeatherProvider, if it could be reached directly
+     * @param forecast        The days to insert
+     */
+    private static void insertForecast(ContentResolver contentResolver, WeatherProvider provider,
+                                       Forecast forecast) {
+        Uri weatherUri = WeatherContract.WeatherEntry.CONTENT_URI;
+
+        if (provider != null) {
+            provider.bulkInsert(weatherUri, forecast);
+            return;
+        }
+
+        contentResolver.bulkInsert(weatherUri,
+                OpenWeatherJsonUtils.getWeatherContentValues(forecast));
+    }
+}
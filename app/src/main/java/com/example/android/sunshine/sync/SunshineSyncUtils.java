@@ -19,9 +19,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
+import com.example.android.sunshine.BuildConfig;
+import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.StartupTimings;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
 import com.firebase.jobdispatcher.FirebaseJobDispatcher;
@@ -34,18 +41,35 @@ import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncUtils {
 
+    private static final String TAG = SunshineSyncUtils.class.getSimpleName();
+
     /*
      * Interval at which to sync with the weather. Use TimeUnit for convenience, rather than
      * writing out a bunch of multiplication ourselves and risk making a silly mistake.
      */
     private static final int SYNC_INTERVAL_HOURS = 3;
-    private static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
-    private static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
+    static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
+    static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
 
     private static boolean sInitialized;
 
     private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
 
+    /*
+     * Everything that makes our periodic job what it is. If any of it changes, the job saved as
+     * scheduled in SunshinePreferences no longer matches and gets scheduled again. That includes
+     * the app's version: Google Play services drops our scheduled jobs when the app is updated,
+     * while the boot time stays the same.
+     */
+    private static final String SYNC_JOB_DESCRIPTION = SUNSHINE_SYNC_TAG
+            + ";version=" + BuildConfig.VERSION_CODE
+            + ";interval=" + SYNC_INTERVAL_SECONDS
+            + ";flex=" + SYNC_FLEXTIME_SECONDS
+            + ";constraints=" + Constraint.ON_ANY_NETWORK;
+
+    /* Boot times worked out a few milliseconds apart during the same boot still match */
+    private static final long BOOT_TIME_SLOP_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
     /**
      * Schedules a repeating sync of Sunshine's weather data using FirebaseJobDispatcher.
      * @param context Context used to create the GooglePlayDriver that powers the
@@ -99,9 +123,57 @@ public class SunshineSyncUtils {
         /* Schedule the Job with the dispatcher */
         dispatcher.schedule(syncSunshineJob);
     }
+
+    /**
+     * Schedules the periodic sync job, unless the very same job has already been scheduled by
+     * this version of the app since the device booted. Talking to Google Play services to
+     * schedule a job is slow, and the job survives our process, so there's no need to do it on
+     * every launch.
+     *
+     * @param context Used to reach SharedPreferences and the job dispatcher
+     */
+    private static void scheduleSyncIfNeeded(@NonNull Context context) {
+        long bootTime = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+        if (SunshinePreferences.isSyncJobScheduled(context, SYNC_JOB_DESCRIPTION, bootTime,
+                BOOT_TIME_SLOP_MILLIS)) {
+            Log.d(TAG, "Sync job already scheduled during this boot");
+            return;
+        }
+
+        scheduleFirebaseJobDispatcherSync(context);
+        SunshinePreferences.saveSyncJobScheduled(context, SYNC_JOB_DESCRIPTION, bootTime);
+    }
+
+    /**
+     * Calls {@link #initialize(Context)} once the given view has drawn its first frame. Nothing
+     * initialize does is needed to show the forecast, so there's no reason for it to compete
+     * with the first frame for the main thread, the disk or the CPU.
+     *
+     * @param view A view of the activity that is starting, usually its main content
+     */
+    public static void initializeAfterFirstFrame(@NonNull final View view) {
+        final Context context = view.getContext().getApplicationContext();
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTimings.mark(StartupTimings.PHASE_FIRST_FRAME);
+                /* Posted work runs after the frame that is about to be drawn */
+                view.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        initialize(context);
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
     /**
      * Creates periodic sync tasks and checks to see if an immediate sync is required. If an
      * immediate sync is required, this method will take care of making sure that sync occurs.
+     * All of the work is done on a background thread.
      *
      * @param context Context that will be passed to other methods and used to access the
      *                ContentResolver
@@ -117,21 +189,24 @@ public class SunshineSyncUtils {
         sInitialized = true;
 
         /*
-         * This method call triggers Sunshine to create its task to synchronize weather data
-         * periodically.
-         */
-        scheduleFirebaseJobDispatcherSync(context);
-
-        /*
-         * We need to check to see if our ContentProvider has data to display in our forecast
-         * list. However, performing a query on the main thread is a bad idea as this may
-         * cause our UI to lag. Therefore, we create a thread in which we will run the query
-         * to check the contents of our ContentProvider.
+         * Scheduling the job means a call into Google Play services, and we need to check to see
+         * if our ContentProvider has data to display in our forecast list. Neither belongs on
+         * the main thread, so we create a thread in which we will do both.
          */
         Thread checkForEmpty = new Thread(new Runnable() {
             @Override
             public void run() {
 
+                /*
+                 * This method call triggers Sunshine to create its task to synchronize weather
+                 * data periodically.
+                 */
+                scheduleSyncIfNeeded(context);
+                StartupTimings.mark(StartupTimings.PHASE_SYNC_SCHEDULED);
+
+                /* Between syncs, the stored forecast moves on to the next day at midnight */
+                DayRolloverService.schedule(context);
+
                 /* URI for every row of weather data in our weather table*/
                 Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
 
@@ -171,7 +246,8 @@ public class SunshineSyncUtils {
                 }
 
                 /* Make sure to close the Cursor to avoid memory leaks! */
-                cursor.close();
+                if (cursor != null) cursor.close();
+                StartupTimings.mark(StartupTimings.PHASE_EMPTY_CHECK);
             }
         });
 
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.WearUtils;
+import com.example.android.sunshine.widget.ForecastWidgetProvider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how to answer watches that ask for weather. Each request used to start a full network
+ * sync. Now:
+ * <p>
+ * If the last complete sync is recent enough, today's weather is read from WeatherProvider and
+ * sent straight back. Only if it's older than the periodic sync's longest interval (so a sync
+ * is overdue anyway) is the request escalated to a network sync, which sends the watch the
+ * fresh weather when it's done.
+ * <p>
+ * Our answer goes to every reachable watch running Sunshine, so requests delivered in the same
+ * batch, from one watch or several, are answered once. While an escalated sync is running, new
+ * requests wait for it rather than starting another: the sync answers them all when it has
+ * today's weather. If it fails, they are answered with whatever forecast we have instead.
+ * Answers from the stored forecast are sent as soon as each request arrives, so a watch that
+ * wasn't reachable for an earlier answer still gets one when it asks.
+ * <p>
+ * Counters for each outcome are kept for as long as the process lives and logged with every
+ * answer.
+ */
+public final class WearRequests {
+
+    private static final String TAG = WearRequests.class.getSimpleName();
+
+    /*
+     * The oldest a stored forecast may be to answer a watch with. The periodic sync runs at
+     * least this often, so anything older means a sync is due anyway.
+     */
+    static final long MAX_ANSWER_AGE_MILLIS = TimeUnit.SECONDS.toMillis(
+            SunshineSyncUtils.SYNC_INTERVAL_SECONDS + SunshineSyncUtils.SYNC_FLEXTIME_SECONDS);
+
+    /*
+     * How long requests wait for an escalated sync. A sync that hasn't finished by then is
+     * assumed lost (the process may have died), and the next request is answered again.
+     */
+    static final long MAX_SYNC_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    /* Columns needed to show today on the watch, and on the widget */
+    private static final String[] TODAY_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+    };
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MAX_TEMP = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+
+    /* When we escalated to the sync that is running, or 0 if none is */
+    private static long sSyncStartedAt;
+    /* Requests waiting for that sync, counting the one that started it */
+    private static int sWaitingForSync;
+
+    private static long sAnsweredFromCache;
+    private static long sEscalated;
+    private static long sCoalesced;
+
+    private WearRequests() {
+    }
+
+    /**
+     * Answers watch requests for weather, see the class description for how.
+     *
+     * @param context  Used to read the stored forecast, or to start a sync
+     * @param requests How many requests arrived together
+     */
+    public static synchronized void answer(Context context, int requests) {
+        if (requests <= 0) return;
+
+        long now = System.currentTimeMillis();
+
+        /* The sync we started will answer these too */
+        long sinceSyncStarted = now - sSyncStartedAt;
+        if (sSyncStartedAt != 0 && sinceSyncStarted >= 0
+                && sinceSyncStarted < MAX_SYNC_WAIT_MILLIS) {
+            sWaitingForSync += requests;
+            sCoalesced += requests;
+            logCounters("waiting for a sync (" + requests + ")");
+            return;
+        }
+        sSyncStartedAt = 0;
+        sCoalesced += requests - 1;
+
+        long age = now - SunshinePreferences.getLastSyncTime(context);
+        if (age >= 0 && age <= MAX_ANSWER_AGE_MILLIS
+                && sendStoredWeather(context, SunshineDateUtils.getNormalizedUtcDateForToday(),
+                false)) {
+            sAnsweredFromCache++;
+            logCounters("answered from a sync " + TimeUnit.MILLISECONDS.toMinutes(age)
+                    + " min old");
+        } else {
+            /* The sync sends the new weather to the watch as soon as it has today's */
+            sSyncStartedAt = now;
+            sWaitingForSync = requests;
+            SunshineSyncUtils.startImmediateSync(context);
+            sEscalated++;
+            logCounters("escalated to a sync");
+        }
+    }
+
+    /**
+     * Called by SunshineSyncTask when a sync is over, however it ended. Requests waiting for an
+     * escalated sync that didn't get to send today's weather are answered with the forecast we
+     * have, however old, since that is better than nothing.
+     *
+     * @param context     Used to read the stored forecast
+     * @param sentToWatch Whether the sync sent the watch today's weather
+     */
+    static synchronized void onSyncFinished(Context context, boolean sentToWatch) {
+        if (sSyncStartedAt == 0) return;
+
+        sSyncStartedAt = 0;
+        if (!sentToWatch && sendStoredWeather(context,
+                SunshineDateUtils.getNormalizedUtcDateForToday(), false)) {
+            logCounters("sync failed, answered " + sWaitingForSync + " from the stored forecast");
+        }
+        sWaitingForSync = 0;
+    }
+
+    /**
+     * Sends today's weather from WeatherProvider to the watch. Also used by DayRolloverService,
+     * which shows the new day on the widget at the same time.
+     *
+     * @param context            Used to query WeatherProvider
+     * @param normalizedUtcToday Today, as stored in WeatherEntry.COLUMN_DATE
+     * @param updateWidgets      Whether to render the same weather for the home-screen widget
+     * @return false if there was no weather stored for today
+     */
+    static boolean sendStoredWeather(Context context, long normalizedUtcToday,
+                                     boolean updateWidgets) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherUriWithDate(normalizedUtcToday),
+                TODAY_PROJECTION,
+                null,
+                null,
+                null);
+        if (cursor == null) return false;
+
+        try {
+            if (!cursor.moveToFirst()) return false;
+            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            double high = cursor.getDouble(INDEX_MAX_TEMP);
+            double low = cursor.getDouble(INDEX_MIN_TEMP);
+            WearUtils.sendWeatherToWear(context, weatherId, high, low);
+            if (updateWidgets) {
+                ForecastWidgetProvider.updateWidgets(context, normalizedUtcToday, weatherId, high,
+                        low);
+            }
+            return true;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void logCounters(String outcome) {
+        Log.i(TAG, "Watch request " + outcome + ". Since start: " + sAnsweredFromCache
+                + " answered from cache, " + sEscalated + " escalated, " + sCoalesced
+                + " coalesced");
+    }
+}
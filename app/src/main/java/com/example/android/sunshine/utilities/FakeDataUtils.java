@@ -3,52 +3,104 @@ package com.example.android.sunshine.utilities;
 import android.content.ContentValues;
 import android.content.Context;
 
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.SunshineDates;
+import com.example.android.sunshine.core.WeatherGenerator;
 import com.example.android.sunshine.data.WeatherContract;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.TimeZone;
 
-import static com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import static com.example.android.sunshine.data.WeatherContract.HourlyEntry;
 
+/**
+ * Fills Sunshine's database with made-up weather, so it can be worked on without a network. The
+ * weather comes from a {@link WeatherGenerator}, so the same seed always gives the same data.
+ */
 public class FakeDataUtils {
 
-    private static int [] weatherIDs = {200,300,500,711,900,962};
+    /* Seed used when the caller doesn't care which weather it gets, as long as it's the same */
+    public static final long DEFAULT_SEED = 20161001L;
 
     /**
-     * Creates a single ContentValues object with random weather data for the provided date
-     * @param date a normalized date
-     * @return ContentValues object filled with random weather data
+     * Creates the daily rows of one location, starting today.
+     *
+     * @param generator Makes up the weather
+     * @param location  Which of the generator's locations to use
+     * @param days      How many days to create
+     * @return One ContentValues per day, ready for WeatherProvider's bulkInsert
      */
-    private static ContentValues createTestWeatherContentValues(long date) {
-        ContentValues testWeatherValues = new ContentValues();
-        testWeatherValues.put(WeatherEntry.COLUMN_DATE, date);
-        testWeatherValues.put(WeatherEntry.COLUMN_DEGREES, Math.random()*2);
-        testWeatherValues.put(WeatherEntry.COLUMN_HUMIDITY, Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_PRESSURE, 870 + Math.random()*100);
-        int maxTemp = (int)(Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
-        testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, maxTemp - (int) (Math.random()*10));
-        testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*10)%5]);
-        return testWeatherValues;
+    public static ContentValues[] createDays(WeatherGenerator generator, int location, int days) {
+        Forecast forecast = new Forecast(days);
+        generator.generateDays(location, SunshineDateUtils.getNormalizedUtcDateForToday(),
+                forecast);
+        return OpenWeatherJsonUtils.getWeatherContentValues(forecast);
     }
 
     /**
-     * Creates random weather data for 7 days starting today
+     * Creates the hourly rows of one location, starting at local midnight today.
+     *
+     * @param generator Makes up the weather
+     * @param location  Which of the generator's locations to use
+     * @param days      How many days of hours to create
+     * @param stepHours 1 for every hour, 3 for every third hour...
+     * @return One ContentValues per hour, ready for WeatherProvider's bulkInsert
+     */
+    public static ContentValues[] createHours(WeatherGenerator generator, int location, int days,
+                                              int stepHours) {
+        TimeZone timeZone = SunshineDateUtils.getClock().getTimeZone();
+        long midnight = SunshineDates.getLocalMidnightFromNormalizedUtcDate(
+                SunshineDateUtils.getNormalizedUtcDateForToday(), timeZone);
+
+        final List<ContentValues> hours = new ArrayList<>(days * 24 / stepHours + 1);
+        generator.generateHours(location, midnight, days * 24, stepHours, timeZone,
+                new WeatherGenerator.HourHandler() {
+                    @Override
+                    public void onHour(long utcHour, int weatherId, double temp, double humidity,
+                                       double pressure, double windSpeed, double degrees) {
+                        ContentValues values = new ContentValues();
+                        values.put(HourlyEntry.COLUMN_HOUR, utcHour);
+                        values.put(HourlyEntry.COLUMN_WEATHER_ID, weatherId);
+                        values.put(HourlyEntry.COLUMN_TEMP, temp);
+                        values.put(HourlyEntry.COLUMN_HUMIDITY, humidity);
+                        values.put(HourlyEntry.COLUMN_PRESSURE, pressure);
+                        values.put(HourlyEntry.COLUMN_WIND_SPEED, windSpeed);
+                        values.put(HourlyEntry.COLUMN_DEGREES, degrees);
+                        hours.add(values);
+                    }
+                });
+        return hours.toArray(new ContentValues[hours.size()]);
+    }
+
+    /**
+     * Inserts made-up weather for one location into Sunshine's database. With stepHours set,
+     * hourly rows are inserted instead of daily ones, and WeatherProvider derives the daily rows
+     * from them.
+     *
+     * @param context   Used to reach the ContentResolver
+     * @param generator Makes up the weather
+     * @param location  Which of the generator's locations to use
+     * @param days      How many days to insert, starting today
+     * @param stepHours 0 for daily rows only, otherwise the distance between hourly rows
+     * @return The number of rows inserted
+     */
+    public static int insertFakeData(Context context, WeatherGenerator generator, int location,
+                                     int days, int stepHours) {
+        if (stepHours > 0) {
+            return context.getContentResolver().bulkInsert(HourlyEntry.CONTENT_URI,
+                    createHours(generator, location, days, stepHours));
+        }
+        return context.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createDays(generator, location, days));
+    }
+
+    /**
+     * Creates made-up weather for 7 days starting today
      * @param context
      */
     public static void insertFakeData(Context context) {
-        //Get today's normalized date
-        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-        List<ContentValues> fakeValues = new ArrayList<ContentValues>();
-        //loop over 7 days starting today onwards
-        for(int i=0; i<7; i++) {
-            fakeValues.add(FakeDataUtils.createTestWeatherContentValues(today + TimeUnit.DAYS.toMillis(i)));
-        }
-        // Bulk Insert our new weather data into Sunshine's Database
-        context.getContentResolver().bulkInsert(
-                WeatherContract.WeatherEntry.CONTENT_URI,
-                fakeValues.toArray(new ContentValues[7]));
+        insertFakeData(context, new WeatherGenerator(DEFAULT_SEED,
+                WeatherGenerator.Climate.TEMPERATE), 0, 7, 0);
     }
 }
@@ -16,13 +16,16 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.Context;
-import android.net.Uri;
 import android.util.Log;
 
+import com.example.android.sunshine.core.ForecastClient;
 import com.example.android.sunshine.data.SunshinePreferences;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -46,42 +49,23 @@ public final class NetworkUtils {
      * application, as different weather JSON will provide edge cases for some of your methods.
      *
      * If you'd prefer to test with the weather data that you will see in the videos on Udacity,
-     * you can do so by setting the FORECAST_BASE_URL to STATIC_WEATHER_URL below.
+     * you can do so by setting the FORECAST_BASE_URL below to ForecastClient.STATIC_WEATHER_URL,
+     * which it is set to now. ForecastClient.DYNAMIC_WEATHER_URL is the first, random one.
+     *
+     * The URLs, like the rest of the request (query parameters, format and units), are defined
+     * by ForecastClient in the core module, which the watch uses to fetch weather on its own.
+     * Building our URLs through it too keeps the phone and the watch asking the same server the
+     * same way.
      */
-    private static final String DYNAMIC_WEATHER_URL =
-            "https://andfun-weather.udacity.com/weather";
-
-    private static final String STATIC_WEATHER_URL =
-            "https://andfun-weather.udacity.com/staticweather";
-
-    private static final String FORECAST_BASE_URL = STATIC_WEATHER_URL;
+    private static final String FORECAST_BASE_URL = ForecastClient.STATIC_WEATHER_URL;
 
     /*
-     * NOTE: These values only effect responses from OpenWeatherMap, NOT from the fake weather
-     * server. They are simply here to allow us to teach you how to build a URL if you were to use
-     * a real API.If you want to connect your app to OpenWeatherMap's API, feel free to! However,
-     * we are not going to show you how to do so in this course.
+     * The number of days we want our API to return. The sync streams the response in chunks of
+     * SunshineSyncTask.SYNC_CHUNK_DAYS, so raising this doesn't raise the memory a sync needs.
      */
+    public static final int FORECAST_DAYS = 14;
 
-    /* The format we want our API to return */
-    private static final String format = "json";
-    /* The units we want our API to return */
-    private static final String units = "metric";
-    /* The number of days we want our API to return */
-    private static final int numDays = 14;
-
-    /* The query parameter allows us to provide a location string to the API */
-    private static final String QUERY_PARAM = "q";
-
-    private static final String LAT_PARAM = "lat";
-    private static final String LON_PARAM = "lon";
-
-    /* The format parameter allows us to designate whether we want JSON or XML from our API */
-    private static final String FORMAT_PARAM = "mode";
-    /* The units parameter allows us to designate whether we want metric units or imperial units */
-    private static final String UNITS_PARAM = "units";
-    /* The days parameter allows us to designate how many days of weather data we want */
-    private static final String DAYS_PARAM = "cnt";
+    private static final ForecastClient sForecastClient = new ForecastClient(FORECAST_BASE_URL);
 
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
@@ -118,16 +102,9 @@ public final class NetworkUtils {
      * @return The Url to use to query the weather server.
      */
     private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
-                .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
-                .appendQueryParameter(FORMAT_PARAM, format)
-                .appendQueryParameter(UNITS_PARAM, units)
-                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                .build();
-
         try {
-            URL weatherQueryUrl = new URL(weatherQueryUri.toString());
+            URL weatherQueryUrl =
+                    sForecastClient.buildCoordinatesUrl(latitude, longitude, FORECAST_DAYS);
             Log.v(TAG, "URL: " + weatherQueryUrl);
             return weatherQueryUrl;
         } catch (MalformedURLException e) {
@@ -144,15 +121,9 @@ public final class NetworkUtils {
      * @return The URL to use to query the weather server.
      */
     private static URL buildUrlWithLocationQuery(String locationQuery) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                .appendQueryParameter(QUERY_PARAM, locationQuery)
-                .appendQueryParameter(FORMAT_PARAM, format)
-                .appendQueryParameter(UNITS_PARAM, units)
-                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                .build();
-
         try {
-            URL weatherQueryUrl = new URL(weatherQueryUri.toString());
+            URL weatherQueryUrl =
+                    sForecastClient.buildLocationQueryUrl(locationQuery, FORECAST_DAYS);
             Log.v(TAG, "URL: " + weatherQueryUrl);
             return weatherQueryUrl;
         } catch (MalformedURLException e) {
@@ -161,6 +132,21 @@ public final class NetworkUtils {
         }
     }
 
+    /**
+     * Opens a reader over the response of an HTTP connection, without reading any of it yet.
+     * Unlike {@link #getResponseFromHttpUrl(URL)}, this never holds the whole response in memory,
+     * so it's what the sync uses to stream long forecasts. The caller must disconnect the
+     * connection once it is done reading.
+     *
+     * @param urlConnection The connection to read from
+     * @return A buffered reader over the response body
+     * @throws IOException Related to network and stream reading
+     */
+    public static Reader getResponseReader(HttpURLConnection urlConnection) throws IOException {
+        InputStream in = urlConnection.getInputStream();
+        return new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    }
+
     /**
      * This method returns the entire result from the HTTP response.
      *
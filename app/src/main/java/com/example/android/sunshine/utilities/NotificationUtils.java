@@ -12,9 +12,11 @@ import android.net.Uri;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LruCache;
 
 import com.example.android.sunshine.DetailActivity;
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.TextTemplate;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 
@@ -46,16 +48,27 @@ public class NotificationUtils {
      */
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
+    /* Decoded large icons, by art resource ID. There are eight pieces of art in all. */
+    private static final LruCache<Integer, Bitmap> sLargeIcons = new LruCache<>(8);
+
+    /* The notification text template, compiled from R.string.format_notification */
+    private static String sNotificationFormat;
+    private static TextTemplate sNotificationTemplate;
+
     /**
-     * Constructs and displays a notification for the newly updated weather for today.
+     * Constructs and displays a notification for the newly updated weather for today, reading
+     * today's weather from the ContentProvider.
      *
-     * @param context Context used to query our ContentProvider and use various Utility methods
+     * @param context     Context used to query our ContentProvider and use various Utility methods
+     * @param preferences The sync's preference batch, which the time of the notification is
+     *                    saved to
      */
-    public static void notifyUserOfNewWeather(Context context) {
+    public static void notifyUserOfNewWeather(Context context,
+                                              SunshinePreferences.Batch preferences) {
 
         /* Build the URI for today's weather in order to show up to date data in notification */
         Uri todaysWeatherUri = WeatherContract.WeatherEntry
-                .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+                .buildWeatherUriWithDate(SunshineDateUtils.getNormalizedUtcDateForToday());
 
         /*
          * The MAIN_FORECAST_PROJECTION array passed in as the second parameter is defined in our WeatherContract
@@ -79,68 +92,102 @@ public class NotificationUtils {
             double high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
             double low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
 
-            Resources resources = context.getResources();
-            int largeArtResourceId = SunshineWeatherUtils
-                    .getLargeArtResourceIdForWeatherCondition(weatherId);
-
-            Bitmap largeIcon = BitmapFactory.decodeResource(
-                    resources,
-                    largeArtResourceId);
-
-            String notificationTitle = context.getString(R.string.app_name);
-
-            String notificationText = getNotificationText(context, weatherId, high, low);
-
-            /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
-            int smallArtResourceId = SunshineWeatherUtils
-                    .getSmallArtResourceIdForWeatherCondition(weatherId);
-
-            /*
-             * NotificationCompat Builder is a very convenient way to build backward-compatible
-             * notifications. In order to use it, we provide a context and specify a color for the
-             * notification, a couple of different icons, the title for the notification, and
-             * finally the text of the notification, which in our case in a summary of today's
-             * forecast.
-             */
-            NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
-                    .setColor(ContextCompat.getColor(context,R.color.colorPrimary))
-                    .setSmallIcon(smallArtResourceId)
-                    .setLargeIcon(largeIcon)
-                    .setContentTitle(notificationTitle)
-                    .setContentText(notificationText)
-                    .setAutoCancel(true);
-
-            /*
-             * This Intent will be triggered when the user clicks the notification. In our case,
-             * we want to open Sunshine to the DetailActivity to display the newly updated weather.
-             */
-            Intent detailIntentForToday = new Intent(context, DetailActivity.class);
-            detailIntentForToday.setData(todaysWeatherUri);
-
-            TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
-            taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
-            PendingIntent resultPendingIntent = taskStackBuilder
-                    .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
-
-            notificationBuilder.setContentIntent(resultPendingIntent);
-
-            NotificationManager notificationManager = (NotificationManager)
-                    context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-            /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
-            notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
-
-            /*
-             * Since we just showed a notification, save the current time. That way, we can check
-             * next time the weather is refreshed if we should show another notification.
-             */
-            SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+            notifyUserOfNewWeather(context, todaysWeatherUri, weatherId, high, low, preferences);
         }
 
         /* Always close your cursor when you're done with it to avoid wasting resources. */
         todayWeatherCursor.close();
     }
 
+    /**
+     * Constructs and displays a notification for today's weather, given the weather itself. The
+     * sync calls this with the forecast it has just parsed, which saves querying the
+     * ContentProvider for the row it has only just inserted.
+     *
+     * @param context          Context used to reach resources and the NotificationManager
+     * @param todaysWeatherUri The URI of today's weather, opened when the notification is tapped
+     * @param weatherId        Today's weather ID, as determined by Open Weather Map
+     * @param high             Today's high temperature in celsius
+     * @param low              Today's low temperature in celsius
+     * @param preferences      The sync's preference batch, which the time of the notification is
+     *                         saved to
+     */
+    public static void notifyUserOfNewWeather(Context context, Uri todaysWeatherUri,
+                                              int weatherId, double high, double low,
+                                              SunshinePreferences.Batch preferences) {
+        int largeArtResourceId = SunshineWeatherUtils
+                .getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        Bitmap largeIcon = getLargeIcon(context.getResources(), largeArtResourceId);
+
+        String notificationTitle = context.getString(R.string.app_name);
+
+        String notificationText = getNotificationText(context, weatherId, high, low);
+
+        /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
+        int smallArtResourceId = SunshineWeatherUtils
+                .getSmallArtResourceIdForWeatherCondition(weatherId);
+
+        /*
+         * NotificationCompat Builder is a very convenient way to build backward-compatible
+         * notifications. In order to use it, we provide a context and specify a color for the
+         * notification, a couple of different icons, the title for the notification, and
+         * finally the text of the notification, which in our case in a summary of today's
+         * forecast.
+         */
+        NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
+                .setColor(ContextCompat.getColor(context,R.color.colorPrimary))
+                .setSmallIcon(smallArtResourceId)
+                .setLargeIcon(largeIcon)
+                .setContentTitle(notificationTitle)
+                .setContentText(notificationText)
+                .setAutoCancel(true);
+
+        /*
+         * This Intent will be triggered when the user clicks the notification. In our case,
+         * we want to open Sunshine to the DetailActivity to display the newly updated weather.
+         */
+        Intent detailIntentForToday = new Intent(context, DetailActivity.class);
+        detailIntentForToday.setData(todaysWeatherUri);
+
+        TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
+        taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
+        PendingIntent resultPendingIntent = taskStackBuilder
+                .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        notificationBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
+        notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
+
+        /*
+         * Since we just showed a notification, save the current time. That way, we can check
+         * next time the weather is refreshed if we should show another notification.
+         */
+        preferences.saveLastNotificationTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the large notification icon for a piece of art, decoding it only the first time.
+     * Every weather condition shares its art with others, so a handful of bitmaps covers every
+     * notification Sunshine will ever show.
+     *
+     * @param resources          Used to decode the art
+     * @param largeArtResourceId The art, see getLargeArtResourceIdForWeatherCondition
+     * @return The decoded art
+     */
+    private static Bitmap getLargeIcon(Resources resources, int largeArtResourceId) {
+        Bitmap largeIcon = sLargeIcons.get(largeArtResourceId);
+        if (largeIcon == null) {
+            largeIcon = BitmapFactory.decodeResource(resources, largeArtResourceId);
+            sLargeIcons.put(largeArtResourceId, largeIcon);
+        }
+        return largeIcon;
+    }
+
     /**
      * Constructs and returns the summary of a particular day's forecast using various utility
      * methods and resources for formatting. This method is only used to create the text for the
@@ -165,10 +212,22 @@ public class NotificationUtils {
         String shortDescription = SunshineWeatherUtils
                 .getStringForWeatherCondition(context, weatherId);
 
+        /*
+         * The template is only compiled again if the resource changes, which happens when the
+         * user switches languages. Filling it in is then a single, exactly sized StringBuilder.
+         */
         String notificationFormat = context.getString(R.string.format_notification);
+        TextTemplate template;
+        synchronized (NotificationUtils.class) {
+            if (!notificationFormat.equals(sNotificationFormat)) {
+                sNotificationTemplate = TextTemplate.compile(notificationFormat);
+                sNotificationFormat = notificationFormat;
+            }
+            template = sNotificationTemplate;
+        }
 
-        /* Using String's format method, we create the forecast summary */
-        String notificationText = String.format(notificationFormat,
+        /* Using our compiled template, we create the forecast summary */
+        String notificationText = template.format(
                 shortDescription,
                 SunshineWeatherUtils.formatTemperature(context, high),
                 SunshineWeatherUtils.formatTemperature(context, low));
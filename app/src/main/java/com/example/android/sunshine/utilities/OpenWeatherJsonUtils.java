@@ -16,233 +16,44 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.ContentValues;
-import android.content.Context;
-import android.support.annotation.NonNull;
-import android.util.Log;
 
-import com.example.android.sunshine.R;
-import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.ForecastStreamParser;
 import com.example.android.sunshine.data.WeatherContract;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.net.HttpURLConnection;
-import java.util.UUID;
 
 /**
- * Utility functions to handle OpenWeatherMap JSON data.
+ * Utility functions to handle OpenWeatherMap JSON data. The parsing itself is done by
+ * {@link ForecastStreamParser} in the core module; this class adapts its result to what the
+ * ContentProvider expects.
  */
 public final class OpenWeatherJsonUtils {
 
-    /* Location information */
-    private static final String OWM_CITY = "city";
-    private static final String OWM_COORD = "coord";
-
-    /* Location coordinate */
-    private static final String OWM_LATITUDE = "lat";
-    private static final String OWM_LONGITUDE = "lon";
-
-    /* Weather information. Each day's forecast info is an element of the "list" array */
-    private static final String OWM_LIST = "list";
-
-    private static final String OWM_PRESSURE = "pressure";
-    private static final String OWM_HUMIDITY = "humidity";
-    private static final String OWM_WINDSPEED = "speed";
-    private static final String OWM_WIND_DIRECTION = "deg";
-
-    /* All temperatures are children of the "temp" object */
-    private static final String OWM_TEMPERATURE = "temp";
-
-    /* Max temperature for the day */
-    private static final String OWM_MAX = "max";
-    private static final String OWM_MIN = "min";
-
-    private static final String OWM_WEATHER = "weather";
-    private static final String OWM_WEATHER_ID = "id";
-
-    private static final String OWM_MESSAGE_CODE = "cod";
-
-    private static final String SUNSHINE_PATH = "/weather";
-    private static final String TAG = OpenWeatherJsonUtils.class.getSimpleName();
-    private static final String HIGH_TEMP = "high";
-    private static final String LOW_TEMP = "low";
-    private static final String WEATHER_ID = "weatherId";
-    private static final String RANDOM_UUID = "uuid";
-    private GoogleApiClient mGoogleApiClient ;
-    private Context mContext;
-
     /**
-     * This method parses JSON from a web response and returns an array of Strings
-     * describing the weather over various days from the forecast.
-     * <p/>
-     * Later on, we'll be parsing the JSON into structured data within the
-     * getFullWeatherDataFromJson function, leveraging the data we have stored in the JSON. For
-     * now, we just convert the JSON into human-readable strings.
+     * Converts a parsed forecast into the ContentValues that WeatherProvider's bulkInsert takes,
+     * one per day. SunshineSyncTask only needs this when it can't hand a chunk of the forecast
+     * to WeatherProvider directly; see WeatherProvider#bulkInsert(Uri, Forecast).
      *
-     * @param forecastJsonStr JSON response from server
+     * @param forecast The forecast to convert
      *
-     * @return Array of Strings describing weather data
-     *
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @return Array of ContentValues, one for each day of the forecast
      */
-    public ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
-            throws JSONException {
-
-        JSONObject forecastJson = new JSONObject(forecastJsonStr);
-        mContext = context;
-
-        mGoogleApiClient = new GoogleApiClient.Builder(mContext).addApi(Wearable.API).build();
-
-        /* Is there an error? */
-        if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    break;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    /* Location invalid */
-                    return null;
-                default:
-                    /* Server probably down */
-                    return null;
-            }
-        }
-
-        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-
-        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
-
-        ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
-
-        /*
-         * OWM returns daily forecasts based upon the local time of the city that is being asked
-         * for, which means that we need to know the GMT offset to translate this data properly.
-         * Since this data is also sent in-order and the first day is always the current day, we're
-         * going to take advantage of that to get a nice normalized UTC date for all of our weather.
-         */
-//        long now = System.currentTimeMillis();
-//        long normalizedUtcStartDay = SunshineDateUtils.normalizeDate(now);
-
-        long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
-
-        for (int i = 0; i < jsonWeatherArray.length(); i++) {
-
-            long dateTimeMillis;
-            double pressure;
-            int humidity;
-            double windSpeed;
-            double windDirection;
-
-            double high;
-            double low;
-
-            int weatherId;
-
-            /* Get the JSON object representing the day */
-            JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
-
-            /*
-             * We ignore all the datetime values embedded in the JSON and assume that
-             * the values are returned in-order by day (which is not guaranteed to be correct).
-             */
-            dateTimeMillis = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
-
-            pressure = dayForecast.getDouble(OWM_PRESSURE);
-            humidity = dayForecast.getInt(OWM_HUMIDITY);
-            windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-            windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-            /*
-             * Description is in a child array called "weather", which is 1 element long.
-             * That element also contains a weather code.
-             */
-            JSONObject weatherObject =
-                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-
-            weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-            /*
-             * Temperatures are sent by Open Weather Map in a child object called "temp".
-             *
-             * Editor's Note: Try not to name variables "temp" when working with temperature.
-             * It confuses everybody. Temp could easily mean any number of things, including
-             * temperature, temporary variable, temporary folder, temporary employee, or many
-             * others, and is just a bad variable name.
-             */
-            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
+    public static ContentValues[] getWeatherContentValues(Forecast forecast) {
+        ContentValues[] weatherContentValues = new ContentValues[forecast.size()];
 
+        for (int i = 0; i < forecast.size(); i++) {
             ContentValues weatherValues = new ContentValues();
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-            //Get today's weather data
-            if(i == 0) {
-                int temperatureFormatResourceId = R.string.format_temperature;
-
-                /* For presentation, assume the user doesn't care about tenths of a degree.
-                 * temperature format from SunshineWeatherUtils.java */
-                String highString = String.format(context.getString(temperatureFormatResourceId), high);
-                String lowString =  String.format(context.getString(temperatureFormatResourceId), low);
-                sendWeatherToWear(highString, lowString, weatherId);
-            }
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, forecast.getDate(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, forecast.getHumidity(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, forecast.getPressure(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, forecast.getWindSpeed(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, forecast.getDegrees(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, forecast.getMaxTemp(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, forecast.getMinTemp(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, forecast.getWeatherId(i));
 
             weatherContentValues[i] = weatherValues;
         }
 
         return weatherContentValues;
     }
-
-    //Method to send data to wear data listener
-    public void sendWeatherToWear(String high, String low, int weatherId){
-
-        if(mGoogleApiClient == null){
-            return;
-        }
-        mGoogleApiClient.connect();
-
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(SUNSHINE_PATH);
-        putDataMapRequest.getDataMap().putString(HIGH_TEMP, high);
-        putDataMapRequest.getDataMap().putString(LOW_TEMP, low);
-        putDataMapRequest.getDataMap().putInt(WEATHER_ID, weatherId);
-        //Random UUID so it can have a change and update
-        putDataMapRequest.getDataMap().putString(RANDOM_UUID, UUID.randomUUID().toString());
-        Log.i(TAG, "Weather - High: " + high + "| Low: " + low + "| weatherID: " + weatherId);
-        putDataMapRequest.setUrgent();
-        PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-        Wearable.DataApi.putDataItem(mGoogleApiClient, request).setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-            @Override
-            public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
-                if (!dataItemResult.getStatus().isSuccess()) {
-                    Log.e(TAG, "Data sent to wear failed");
-                } else {
-                    Log.i(TAG, "Data sent to wear success");
-                }
-            }
-        });
-
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Records how long each phase of a cold start takes, measured from the moment MainActivity is
+ * created. Phases are marked as they finish, from whichever thread finishes them, and the whole
+ * start is logged on one line once both the list has loaded and the deferred sync set up is
+ * done, e.g.
+ * <pre>
+ *     Startup: snapshot=9ms firstFrame=61ms loader=143ms syncScheduled=190ms emptyCheck=204ms
+ * </pre>
+ * Grepping for "Startup:" in logcat after each build makes cold start regressions easy to spot.
+ */
+public final class StartupTimings {
+
+    private static final String TAG = "Startup";
+
+    /* Phases we know about. Not every start goes through all of them. */
+    public static final String PHASE_SNAPSHOT = "snapshot";
+    public static final String PHASE_FIRST_FRAME = "firstFrame";
+    public static final String PHASE_LOADER = "loader";
+    public static final String PHASE_SYNC_SCHEDULED = "syncScheduled";
+    public static final String PHASE_EMPTY_CHECK = "emptyCheck";
+
+    /* The start is logged once both of these have been marked, in whichever order */
+    private static final String[] FINAL_PHASES = {PHASE_LOADER, PHASE_EMPTY_CHECK};
+
+    private static boolean sStarted;
+    private static long sStartUptimeMillis;
+    private static StringBuilder sPhases;
+    private static int sFinalPhasesMarked;
+
+    private StartupTimings() {
+    }
+
+    /**
+     * Starts timing the cold start. Only the first call in a process counts; an activity created
+     * again later (after a rotation, say) is not a cold start.
+     */
+    public static synchronized void begin() {
+        if (sStarted) {
+            return;
+        }
+        sStarted = true;
+        sStartUptimeMillis = SystemClock.uptimeMillis();
+        sPhases = new StringBuilder(128);
+        sFinalPhasesMarked = 0;
+    }
+
+    /**
+     * Records that a phase of the current start has finished. Does nothing if no start is being
+     * timed, so phases that also run outside of a cold start can mark themselves freely.
+     *
+     * @param phase One of the PHASE_ constants in this class
+     */
+    public static synchronized void mark(String phase) {
+        if (sPhases == null) {
+            return;
+        }
+        long elapsedMillis = SystemClock.uptimeMillis() - sStartUptimeMillis;
+        if (sPhases.length() > 0) sPhases.append(' ');
+        sPhases.append(phase).append('=').append(elapsedMillis).append("ms");
+
+        for (String finalPhase : FINAL_PHASES) {
+            if (finalPhase.equals(phase)) sFinalPhasesMarked++;
+        }
+        if (sFinalPhasesMarked == FINAL_PHASES.length) {
+            Log.i(TAG, "Startup: " + sPhases);
+            sPhases = null;
+        }
+    }
+}
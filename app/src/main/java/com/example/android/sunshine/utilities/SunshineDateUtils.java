@@ -15,22 +15,51 @@
  */
 package com.example.android.sunshine.utilities;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.support.annotation.VisibleForTesting;
 import android.text.format.DateUtils;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.DateLabels;
+import com.example.android.sunshine.core.FriendlyDateCache;
+import com.example.android.sunshine.core.SunshineClock;
+import com.example.android.sunshine.core.SunshineDates;
 
 import java.text.SimpleDateFormat;
+import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
- * Class for handling date conversions that are useful for Sunshine.
+ * Class for handling date conversions that are useful for Sunshine. The date math itself lives in
+ * {@link SunshineDates} in the core module; this class supplies the current time, the device's
+ * time zone and the localized strings.
  */
 public final class SunshineDateUtils {
 
     /* Milliseconds in a day */
-    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final long DAY_IN_MILLIS = SunshineDates.DAY_IN_MILLIS;
+
+    /*
+     * The current time and the device's time zone, with the time zone's offset cached until its
+     * next DST transition. TimeZoneChangedReceiver tells us when the user changes time zones.
+     * Tests can swap in a clock of their own with setClock.
+     */
+    private static volatile SunshineClock sClock =
+            new SunshineClock(SunshineClock.SYSTEM_TIME, TimeZone.getDefault());
+
+    /*
+     * Friendly dates are shown for the same two weeks of days over and over: every time a list
+     * row is bound and every time a detail page is opened. Building one formats a date or two,
+     * so we keep the ones we've built. The cache throws them away by itself when the day, the
+     * time zone or the locale changes. It is also cleared as soon as the system tells us about
+     * such a change, or about the clock being set.
+     */
+    private static final FriendlyDateCache sFriendlyDates = new FriendlyDateCache();
+
+    private static volatile BroadcastReceiver sInvalidationReceiver;
 
     /**
      * This method returns the number of milliseconds (UTC time) for today's date at midnight in
@@ -56,57 +85,40 @@ public final class SunshineDateUtils {
      * time zone
      */
     public static long getNormalizedUtcDateForToday() {
+        return sClock.getNormalizedUtcDateForToday();
+    }
 
-        /*
-         * This number represents the number of milliseconds that have elapsed since January
-         * 1st, 1970 at midnight in the GMT time zone.
-         */
-        long utcNowMillis = System.currentTimeMillis();
-
-        /*
-         * This TimeZone represents the device's current time zone. It provides us with a means
-         * of acquiring the offset for local time from a UTC time stamp.
-         */
-        TimeZone currentTimeZone = TimeZone.getDefault();
-
-        /*
-         * The getOffset method returns the number of milliseconds to add to UTC time to get the
-         * elapsed time since the epoch for our current time zone. We pass the current UTC time
-         * into this method so it can determine changes to account for daylight savings time.
-         */
-        long gmtOffsetMillis = currentTimeZone.getOffset(utcNowMillis);
-
-        /*
-         * UTC time is measured in milliseconds from January 1, 1970 at midnight from the GMT
-         * time zone. Depending on your time zone, the time since January 1, 1970 at midnight (GMT)
-         * will be greater or smaller. This variable represents the number of milliseconds since
-         * January 1, 1970 (GMT) time.
-         */
-        long timeSinceEpochLocalTimeMillis = utcNowMillis + gmtOffsetMillis;
-
-        /* This method simply converts milliseconds to days, disregarding any fractional days */
-        long daysSinceEpochLocal = TimeUnit.MILLISECONDS.toDays(timeSinceEpochLocalTimeMillis);
-
-        /*
-         * Finally, we convert back to milliseconds. This time stamp represents today's date at
-         * midnight in GMT time. We will need to account for local time zone offsets when
-         * extracting this information from the database.
-         */
-        long normalizedUtcMidnightMillis = TimeUnit.DAYS.toMillis(daysSinceEpochLocal);
-
-        return normalizedUtcMidnightMillis;
+    /**
+     * Returns the clock all of Sunshine's date math should use for the current time and the
+     * device's time zone. Unlike TimeZone.getDefault(), asking it for the time zone doesn't
+     * create a new copy each time.
+     *
+     * @return The clock
+     */
+    public static SunshineClock getClock() {
+        return sClock;
     }
 
     /**
-     * This method returns the number of days since the epoch (January 01, 1970, 12:00 Midnight UTC)
-     * in UTC time from the current date.
+     * Replaces the clock, so tests can run at a fixed time and in a time zone of their choice.
      *
-     * @param utcDate A date in milliseconds in UTC time.
+     * @param clock The clock to use from now on
+     */
+    @VisibleForTesting
+    public static void setClock(SunshineClock clock) {
+        sClock = clock;
+        sFriendlyDates.invalidate();
+    }
+
+    /**
+     * Called when the user moved to another time zone. Dates we have cached for the old one are
+     * thrown away.
      *
-     * @return The number of days from the epoch to the date argument.
+     * @param timeZone The new time zone
      */
-    private static long elapsedDaysSinceEpoch(long utcDate) {
-        return TimeUnit.MILLISECONDS.toDays(utcDate);
+    static void onTimeZoneChanged(TimeZone timeZone) {
+        sClock.setTimeZone(timeZone);
+        sFriendlyDates.invalidate();
     }
 
     /**
@@ -136,9 +148,7 @@ public final class SunshineDateUtils {
      * @return The UTC date at 12 midnight of the date
      */
     public static long normalizeDate(long date) {
-        long daysSinceEpoch = elapsedDaysSinceEpoch(date);
-        long millisFromEpochToTodayAtMidnightUtc = daysSinceEpoch * DAY_IN_MILLIS;
-        return millisFromEpochToTodayAtMidnightUtc;
+        return SunshineDates.normalizeDate(date);
     }
 
     /**
@@ -151,32 +161,7 @@ public final class SunshineDateUtils {
      * @return true if the date represents the beginning of a day in Unix time, false otherwise
      */
     public static boolean isDateNormalized(long millisSinceEpoch) {
-        boolean isDateNormalized = false;
-        if (millisSinceEpoch % DAY_IN_MILLIS == 0) {
-            isDateNormalized = true;
-        }
-
-        return isDateNormalized;
-    }
-
-    /**
-     * This method will return the local time midnight for the provided normalized UTC date.
-     *
-     * @param normalizedUtcDate UTC time at midnight for a given date. This number comes from the
-     *                          database
-     *
-     * @return The local date corresponding to the given normalized UTC date
-     */
-    private static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate) {
-        /* The timeZone object will provide us the current user's time zone offset */
-        TimeZone timeZone = TimeZone.getDefault();
-        /*
-         * This offset, in milliseconds, when added to a UTC date time, will produce the local
-         * time.
-         */
-        long gmtOffset = timeZone.getOffset(normalizedUtcDate);
-        long localMidnightMillis = normalizedUtcDate - gmtOffset;
-        return localMidnightMillis;
+        return SunshineDates.isDateNormalized(millisSinceEpoch);
     }
 
     /**
@@ -199,111 +184,150 @@ public final class SunshineDateUtils {
      * or "Friday"
      */
     public static String getFriendlyDateString(Context context, long normalizedUtcMidnight, boolean showFullDate) {
-
         /*
-         * NOTE: localDate should be localDateMidnightMillis and should be straight from the
-         * database
-         *
-         * Since we normalized the date when we inserted it into the database, we need to take
-         * that normalized date and produce a date (in UTC time) that represents the local time
-         * zone at midnight.
+         * The decision of which format to use lives in the core module, where it can be tested
+         * and benchmarked on the JVM. All we provide here is the localized text for each piece.
          */
-        long localDate = getLocalMidnightFromNormalizedUtcDate(normalizedUtcMidnight);
+        registerInvalidationReceiver(context);
+        SunshineClock clock = sClock;
+        TimeZone timeZone = clock.getTimeZone();
+        Locale locale = Locale.getDefault();
+        return sFriendlyDates.get(
+                new ResourceDateLabels(context, timeZone, locale),
+                normalizedUtcMidnight,
+                clock.currentTimeMillis(),
+                timeZone,
+                locale,
+                showFullDate);
+    }
 
-        /*
-         * In order to determine which day of the week we are creating a date string for, we need
-         * to compare the number of days that have passed since the epoch (January 1, 1970 at
-         * 00:00 GMT)
-         */
-        long daysFromEpochToProvidedDate = elapsedDaysSinceEpoch(localDate);
+    /**
+     * Builds the friendly dates of the list for every day the app can have a forecast for, so
+     * binding the rows only has to look them up. This takes a moment, so call it on a
+     * background thread before the forecast is shown.
+     *
+     * @param context Context to use for resource localization
+     */
+    public static void precomputeFriendlyDates(Context context) {
+        registerInvalidationReceiver(context);
+        SunshineClock clock = sClock;
+        TimeZone timeZone = clock.getTimeZone();
+        Locale locale = Locale.getDefault();
+        sFriendlyDates.precompute(
+                new ResourceDateLabels(context, timeZone, locale),
+                NetworkUtils.FORECAST_DAYS,
+                clock.currentTimeMillis(),
+                timeZone,
+                locale,
+                false);
+    }
 
-        /*
-         * As a basis for comparison, we use the number of days that have passed from the epoch
-         * until today.
-         */
-        long daysFromEpochToToday = elapsedDaysSinceEpoch(System.currentTimeMillis());
+    /*
+     * Registered once, on the application context, and kept for as long as the process lives,
+     * just like the cache it clears. This runs for every row bound, so once the receiver is
+     * registered it costs one volatile read and never takes the lock.
+     */
+    private static void registerInvalidationReceiver(Context context) {
+        if (sInvalidationReceiver != null) return;
 
-        if (daysFromEpochToProvidedDate == daysFromEpochToToday || showFullDate) {
-            /*
-             * If the date we're building the String for is today's date, the format
-             * is "Today, June 24"
-             */
-            String dayName = getDayName(context, localDate);
-            String readableDate = getReadableDateString(context, localDate);
-            if (daysFromEpochToProvidedDate - daysFromEpochToToday < 2) {
-                /*
-                 * Since there is no localized format that returns "Today" or "Tomorrow" in the API
-                 * levels we have to support, we take the name of the day (from SimpleDateFormat)
-                 * and use it to replace the date from DateUtils. This isn't guaranteed to work,
-                 * but our testing so far has been conclusively positive.
-                 *
-                 * For information on a simpler API to use (on API > 18), please check out the
-                 * documentation on DateFormat#getBestDateTimePattern(Locale, String)
-                 * https://developer.android.com/reference/android/text/format/DateFormat.html#getBestDateTimePattern
-                 */
-                String localizedDayName = new SimpleDateFormat("EEEE").format(localDate);
-                return readableDate.replace(localizedDayName, dayName);
-            } else {
-                return readableDate;
-            }
-        } else if (daysFromEpochToProvidedDate < daysFromEpochToToday + 7) {
-            /* If the input date is less than a week in the future, just return the day name. */
-            return getDayName(context, localDate);
-        } else {
-            int flags = DateUtils.FORMAT_SHOW_DATE
-                    | DateUtils.FORMAT_NO_YEAR
-                    | DateUtils.FORMAT_ABBREV_ALL
-                    | DateUtils.FORMAT_SHOW_WEEKDAY;
+        synchronized (SunshineDateUtils.class) {
+            if (sInvalidationReceiver != null) return;
 
-            return DateUtils.formatDateTime(context, localDate, flags);
+            BroadcastReceiver receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    sFriendlyDates.invalidate();
+                }
+            };
+            /* Time zone changes arrive through TimeZoneChangedReceiver, which clears this too */
+            IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_DATE_CHANGED);
+            context.getApplicationContext().registerReceiver(receiver, filter);
+            sInvalidationReceiver = receiver;
         }
     }
 
     /**
-     * Returns a date string in the format specified, which shows an abbreviated date without a
-     * year.
-     *
-     * @param context      Used by DateUtils to format the date in the current locale
-     * @param timeInMillis Time in milliseconds since the epoch (local time)
-     *
-     * @return The formatted date string
+     * Produces the text of friendly dates from Sunshine's string resources and DateUtils, so
+     * dates are formatted according to the user's locale.
      */
-    private static String getReadableDateString(Context context, long timeInMillis) {
-        int flags = DateUtils.FORMAT_SHOW_DATE
-                | DateUtils.FORMAT_NO_YEAR
-                | DateUtils.FORMAT_SHOW_WEEKDAY;
+    private static class ResourceDateLabels implements DateLabels {
 
-        return DateUtils.formatDateTime(context, timeInMillis, flags);
-    }
+        /*
+         * Formats day names for every ResourceDateLabels, so a miss in the friendly date cache
+         * doesn't build a new SimpleDateFormat. Only used while holding its own lock, since
+         * SimpleDateFormat isn't thread safe, and rebuilt when the locale changes.
+         */
+        private static SimpleDateFormat sDayNameFormat;
+        private static Locale sDayNameLocale;
+
+        private final Context mContext;
+        private final TimeZone mTimeZone;
+        private final Locale mLocale;
+
+        /**
+         * @param context  Used to read string resources
+         * @param timeZone The time zone the dates are shown in, the same the cache was given
+         * @param locale   The locale the dates are shown in, the same the cache was given
+         */
+        ResourceDateLabels(Context context, TimeZone timeZone, Locale locale) {
+            mContext = context;
+            mTimeZone = timeZone;
+            mLocale = locale;
+        }
+
+        @Override
+        public String getToday() {
+            return mContext.getString(R.string.today);
+        }
+
+        @Override
+        public String getTomorrow() {
+            return mContext.getString(R.string.tomorrow);
+        }
 
-    /**
-     * Given a day, returns just the name to use for that day.
-     *   E.g "today", "tomorrow", "Wednesday".
-     *
-     * @param context      Context to use for resource localization
-     * @param dateInMillis The date in milliseconds (UTC time)
-     *
-     * @return the string day of the week
-     */
-    private static String getDayName(Context context, long dateInMillis) {
         /*
-         * If the date is today, return the localized version of "Today" instead of the actual
-         * day name.
+         * Since there is no localized format that returns "Today" or "Tomorrow" in the API
+         * levels we have to support, SunshineDates takes the name of the day (from
+         * SimpleDateFormat) and uses it to replace the date from DateUtils. This isn't
+         * guaranteed to work, but our testing so far has been conclusively positive.
+         *
+         * For information on a simpler API to use (on API > 18), please check out the
+         * documentation on DateFormat#getBestDateTimePattern(Locale, String)
+         * https://developer.android.com/reference/android/text/format/DateFormat.html#getBestDateTimePattern
          */
-        long daysFromEpochToProvidedDate = elapsedDaysSinceEpoch(dateInMillis);
-        long daysFromEpochToToday = elapsedDaysSinceEpoch(System.currentTimeMillis());
+        @Override
+        public String getDayName(long localDate) {
+            synchronized (ResourceDateLabels.class) {
+                if (sDayNameFormat == null || !mLocale.equals(sDayNameLocale)) {
+                    sDayNameFormat = new SimpleDateFormat("EEEE", mLocale);
+                    sDayNameLocale = mLocale;
+                }
+                sDayNameFormat.setTimeZone(mTimeZone);
+                return sDayNameFormat.format(localDate);
+            }
+        }
+
+        /* Shows the day of the week and the date without a year, e.g. "Wednesday, June 26" */
+        @Override
+        public String getReadableDate(long localDate) {
+            int flags = DateUtils.FORMAT_SHOW_DATE
+                    | DateUtils.FORMAT_NO_YEAR
+                    | DateUtils.FORMAT_SHOW_WEEKDAY;
 
-        int daysAfterToday = (int) (daysFromEpochToProvidedDate - daysFromEpochToToday);
+            return DateUtils.formatDateTime(mContext, localDate, flags);
+        }
 
-        switch (daysAfterToday) {
-            case 0:
-                return context.getString(R.string.today);
-            case 1:
-                return context.getString(R.string.tomorrow);
+        /* Shows an abbreviated date without a year, e.g. "Mon, Jul 1" */
+        @Override
+        public String getAbbreviatedDate(long localDate) {
+            int flags = DateUtils.FORMAT_SHOW_DATE
+                    | DateUtils.FORMAT_NO_YEAR
+                    | DateUtils.FORMAT_ABBREV_ALL
+                    | DateUtils.FORMAT_SHOW_WEEKDAY;
 
-            default:
-                SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-                return dayFormat.format(dateInMillis);
+            return DateUtils.formatDateTime(mContext, localDate, flags);
         }
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.WeatherConditions;
 import com.example.android.sunshine.data.SunshinePreferences;
 
 /**
@@ -30,18 +31,6 @@ public final class SunshineWeatherUtils {
 
     private static final String LOG_TAG = SunshineWeatherUtils.class.getSimpleName();
 
-    /**
-     * This method will convert a temperature from Celsius to Fahrenheit.
-     *
-     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
-     *
-     * @return Temperature in degrees Fahrenheit (°F)
-     */
-    private static double celsiusToFahrenheit(double temperatureInCelsius) {
-        double temperatureInFahrenheit = (temperatureInCelsius * 1.8) + 32;
-        return temperatureInFahrenheit;
-    }
-
     /**
      * Temperature data is stored in Celsius by our app. Depending on the user's preference,
      * the app may need to display the temperature in Fahrenheit. This method will perform that
@@ -56,7 +45,7 @@ public final class SunshineWeatherUtils {
      */
     public static String formatTemperature(Context context, double temperature) {
         if (!SunshinePreferences.isMetric(context)) {
-            temperature = celsiusToFahrenheit(temperature);
+            temperature = WeatherConditions.celsiusToFahrenheit(temperature);
         }
 
         int temperatureFormatResourceId = R.string.format_temperature;
@@ -102,31 +91,10 @@ public final class SunshineWeatherUtils {
 
         if (!SunshinePreferences.isMetric(context)) {
             windFormat = R.string.format_wind_mph;
-            windSpeed = .621371192237334f * windSpeed;
+            windSpeed = WeatherConditions.kmhToMph(windSpeed);
         }
 
-        /*
-         * You know what's fun? Writing really long if/else statements with tons of possible
-         * conditions. Seriously, try it!
-         */
-        String direction = "Unknown";
-        if (degrees >= 337.5 || degrees < 22.5) {
-            direction = "N";
-        } else if (degrees >= 22.5 && degrees < 67.5) {
-            direction = "NE";
-        } else if (degrees >= 67.5 && degrees < 112.5) {
-            direction = "E";
-        } else if (degrees >= 112.5 && degrees < 157.5) {
-            direction = "SE";
-        } else if (degrees >= 157.5 && degrees < 202.5) {
-            direction = "S";
-        } else if (degrees >= 202.5 && degrees < 247.5) {
-            direction = "SW";
-        } else if (degrees >= 247.5 && degrees < 292.5) {
-            direction = "W";
-        } else if (degrees >= 292.5 && degrees < 337.5) {
-            direction = "NW";
-        }
+        String direction = WeatherConditions.getWindDirection(degrees);
 
         return String.format(context.getString(windFormat), windSpeed, direction);
     }
@@ -330,34 +298,23 @@ public final class SunshineWeatherUtils {
         /*
          * Based on weather code data for Open Weather Map.
          */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.ic_clear;
+        switch (WeatherConditions.getConditionForWeatherId(weatherId)) {
+            case WeatherConditions.CONDITION_STORM:
+                return R.drawable.ic_storm;
+            case WeatherConditions.CONDITION_LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case WeatherConditions.CONDITION_RAIN:
+                return R.drawable.ic_rain;
+            case WeatherConditions.CONDITION_SNOW:
+                return R.drawable.ic_snow;
+            case WeatherConditions.CONDITION_FOG:
+                return R.drawable.ic_fog;
+            case WeatherConditions.CONDITION_CLEAR:
+                return R.drawable.ic_clear;
+            case WeatherConditions.CONDITION_LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case WeatherConditions.CONDITION_CLOUDS:
+                return R.drawable.ic_cloudy;
         }
 
         Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
@@ -383,37 +340,26 @@ public final class SunshineWeatherUtils {
         /*
          * Based on weather code data for Open Weather Map.
          */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.art_clear;
+        switch (WeatherConditions.getConditionForWeatherId(weatherId)) {
+            case WeatherConditions.CONDITION_STORM:
+                return R.drawable.art_storm;
+            case WeatherConditions.CONDITION_LIGHT_RAIN:
+                return R.drawable.art_light_rain;
+            case WeatherConditions.CONDITION_RAIN:
+                return R.drawable.art_rain;
+            case WeatherConditions.CONDITION_SNOW:
+                return R.drawable.art_snow;
+            case WeatherConditions.CONDITION_FOG:
+                return R.drawable.art_fog;
+            case WeatherConditions.CONDITION_CLEAR:
+                return R.drawable.art_clear;
+            case WeatherConditions.CONDITION_LIGHT_CLOUDS:
+                return R.drawable.art_light_clouds;
+            case WeatherConditions.CONDITION_CLOUDS:
+                return R.drawable.art_clouds;
         }
 
         Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
         return R.drawable.art_storm;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.example.android.sunshine.sync.DayRolloverService;
+
+import java.util.TimeZone;
+
+/**
+ * Tells SunshineDateUtils when the user moves to another time zone, so its clock stops using the
+ * old time zone's offset. It is declared in the manifest rather than registered at runtime
+ * because the clock is used from places that have no Context to register with, such as
+ * WeatherContract. Time zone changes are rare, so starting the process for one costs little.
+ */
+public class TimeZoneChangedReceiver extends BroadcastReceiver {
+
+    /* Holds the ID of the new time zone. Intent.EXTRA_TIMEZONE only has a name from API 30 on. */
+    private static final String EXTRA_TIME_ZONE = "time-zone";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) return;
+
+        /*
+         * The framework resets the default time zone around the same time it sends this, so
+         * prefer the ID it sends us over whatever the default happens to be yet.
+         */
+        String id = intent.getStringExtra(EXTRA_TIME_ZONE);
+        TimeZone timeZone = id != null ? TimeZone.getTimeZone(id) : TimeZone.getDefault();
+        SunshineDateUtils.onTimeZoneChanged(timeZone);
+
+        /* Midnight moved along with the time zone */
+        DayRolloverService.schedule(context);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.DeltaSync;
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.CapabilityApi;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends today's weather to the watch face in the sunshinewear module.
+ * <p>
+ * Only nodes that declare the {@link #SUNSHINE_CAPABILITY} capability (that is, watches with
+ * Sunshine installed) are sent anything. Each of them gets a message on {@link #DELTA_PATH}
+ * holding just the fields that changed since the last version it acknowledged on
+ * {@link #ACK_PATH}; see {@link DeltaSync} for how that is tracked. A watch that asks for
+ * weather may have lost what it had, so it is sent every field again.
+ * <p>
+ * What each watch has acknowledged is only kept in memory. When the phone's process restarts,
+ * every watch is sent every field once, which is what every push used to cost. Each process
+ * also starts a new session, so acknowledgements still on their way from before the restart
+ * are ignored rather than matched against the new versions.
+ * <p>
+ * Talking to Google Play services can block for half a minute. The callers (a sync holding its
+ * lock and an open WeatherProvider batch, or WearRequests holding its own) shouldn't wait for
+ * that, so the weather is only recorded on the caller's thread and sent from
+ * {@link #SENDER}.
+ */
+public final class WearUtils {
+
+    private static final String TAG = WearUtils.class.getSimpleName();
+
+    /* Declared by the watch app in its res/values/wear.xml */
+    private static final String SUNSHINE_CAPABILITY = "sunshine_weather";
+
+    private static final String DELTA_PATH = "/weather-delta";
+    public static final String ACK_PATH = "/weather-ack";
+    private static final String SESSION = "session";
+    private static final String VERSION = "version";
+
+    private static final String HIGH_TEMP = "high";
+    private static final String LOW_TEMP = "low";
+    private static final String WEATHER_ID = "weatherId";
+
+    /*
+     * Where the forecast is for. The watch keeps these so it can fetch the same forecast itself
+     * when the phone isn't around. Coordinates are only sent when the user picked a place on
+     * the map, just as NetworkUtils only uses them then; otherwise they're sent empty, which
+     * tells the watch to forget any it had.
+     */
+    private static final String LOCATION_QUERY = "location";
+    private static final String LATITUDE = "lat";
+    private static final String LONGITUDE = "lon";
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private static final DeltaSync sWearSync = new DeltaSync();
+
+    /*
+     * Sends to the watches one push at a time, in order. A push that waited behind another only
+     * sends what the earlier one didn't, since both publish the latest version.
+     */
+    private static final Executor SENDER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, TAG);
+        }
+    });
+
+    /**
+     * Publishes today's high, low and weather ID to any connected watch.
+     *
+     * @param context  Used to connect to Google Play services and to format temperatures
+     * @param forecast The forecast that was just synced. Its first day is today.
+     */
+    public static void sendWeatherToWear(Context context, Forecast forecast) {
+        sendWeatherToWear(context, forecast.getWeatherId(0), forecast.getMaxTemp(0),
+                forecast.getMinTemp(0));
+    }
+
+    /**
+     * Publishes the given weather for today to every reachable watch running Sunshine. This
+     * returns as soon as the weather is recorded; it is sent to the watches from another thread.
+     *
+     * @param context   Used to connect to Google Play services and to format temperatures
+     * @param weatherId Today's weather ID
+     * @param maxTemp   Today's high, as stored
+     * @param minTemp   Today's low, as stored
+     */
+    public static void sendWeatherToWear(Context context, int weatherId, double maxTemp,
+                                         double minTemp) {
+
+        /* For presentation, assume the user doesn't care about tenths of a degree. */
+        String temperatureFormat = context.getString(R.string.format_temperature);
+        String high = String.format(temperatureFormat, maxTemp);
+        String low = String.format(temperatureFormat, minTemp);
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put(HIGH_TEMP, high);
+        fields.put(LOW_TEMP, low);
+        fields.put(WEATHER_ID, Integer.toString(weatherId));
+        fields.put(LOCATION_QUERY, SunshinePreferences.getPreferredWeatherLocation(context));
+        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
+            double[] coordinates = SunshinePreferences.getLocationCoordinates(context);
+            fields.put(LATITUDE, Double.toString(coordinates[0]));
+            fields.put(LONGITUDE, Double.toString(coordinates[1]));
+        } else {
+            fields.put(LATITUDE, "");
+            fields.put(LONGITUDE, "");
+        }
+        long version = sWearSync.update(fields);
+        Log.i(TAG, "Weather - High: " + high + "| Low: " + low + "| weatherID: " + weatherId
+                + "| version: " + version);
+
+        final Context appContext = context.getApplicationContext();
+        final int fieldCount = fields.size();
+        SENDER.execute(new Runnable() {
+            @Override
+            public void run() {
+                publish(appContext, fieldCount);
+            }
+        });
+    }
+
+    /**
+     * Sends every reachable watch running Sunshine what it hasn't acknowledged yet. Blocks while
+     * it waits for Google Play services, so it only runs on {@link #SENDER}.
+     *
+     * @param context    Used to connect to Google Play services
+     * @param fieldCount How many fields a full push holds, for the log
+     */
+    private static void publish(Context context, int fieldCount) {
+        final GoogleApiClient googleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connection =
+                googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connection.isSuccess()) {
+            Log.e(TAG, "Couldn't connect to Play services: " + connection.getErrorCode());
+            return;
+        }
+
+        try {
+            CapabilityApi.GetCapabilityResult capabilityResult = Wearable.CapabilityApi
+                    .getCapability(googleApiClient, SUNSHINE_CAPABILITY,
+                            CapabilityApi.FILTER_REACHABLE)
+                    .await();
+            if (!capabilityResult.getStatus().isSuccess()) {
+                Log.e(TAG, "Couldn't look up watches running Sunshine");
+                return;
+            }
+
+            List<String> nodeIds = new ArrayList<>();
+            for (Node node : capabilityResult.getCapability().getNodes()) {
+                nodeIds.add(node.getId());
+            }
+
+            int fieldsSent = sWearSync.publish(nodeIds, new DeltaSync.NodeTransport() {
+                @Override
+                public boolean send(String nodeId, Map<String, String> fields, long session,
+                                    long version) {
+                    DataMap message = new DataMap();
+                    for (Map.Entry<String, String> field : fields.entrySet()) {
+                        message.putString(field.getKey(), field.getValue());
+                    }
+                    message.putLong(SESSION, session);
+                    message.putLong(VERSION, version);
+                    MessageApi.SendMessageResult result = Wearable.MessageApi.sendMessage(
+                            googleApiClient, nodeId, DELTA_PATH, message.toByteArray())
+                            .await();
+                    if (!result.getStatus().isSuccess()) {
+                        Log.e(TAG, "Data sent to wear " + nodeId + " failed");
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            Log.i(TAG, "Sent " + fieldsSent + " fields to " + nodeIds.size() + " watches, "
+                    + fieldCount + " fields each without deltas");
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+
+    /**
+     * Records that a watch has applied the weather we sent it.
+     *
+     * @param nodeId  The watch that answered on {@link #ACK_PATH}
+     * @param message The body of its answer
+     */
+    public static void onWeatherAcknowledged(String nodeId, byte[] message) {
+        DataMap ack = DataMap.fromByteArray(message);
+        sWearSync.acknowledge(nodeId, ack.getLong(SESSION), ack.getLong(VERSION));
+    }
+
+    /**
+     * Makes sure the next push sends the watch every field, not just the ones that changed.
+     *
+     * @param nodeId The watch
+     */
+    public static void forgetWatch(String nodeId) {
+        sWearSync.forget(nodeId);
+    }
+}
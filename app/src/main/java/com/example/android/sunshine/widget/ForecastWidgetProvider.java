@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.widget;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.R;
+
+/**
+ * The home-screen widget, showing today's forecast.
+ * <p>
+ * The widget never queries WeatherProvider or decodes anything itself. Each successful sync
+ * renders today's weather into a {@link ForecastWidgetSnapshot} and hands it to
+ * {@link #updateWidgets(Context, long, int, double, double)}, which only sends RemoteViews to
+ * the home screen if the snapshot differs from the one the widgets are already showing. The
+ * widget's own update broadcasts (when a widget is added, or the launcher restarts) just copy
+ * the saved snapshot into RemoteViews. updatePeriodMillis is 0, so there are no periodic
+ * broadcasts at all: the weather can only change when a sync runs.
+ */
+public class ForecastWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        long startNanos = System.nanoTime();
+
+        ForecastWidgetSnapshot snapshot = ForecastWidgetSnapshot.read(context);
+        appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context, snapshot));
+
+        WidgetStats.record(context, true, System.nanoTime() - startNanos, appWidgetIds.length);
+    }
+
+    /**
+     * Renders today's weather for the widget and shows it, unless the widgets already show
+     * exactly that. Called by SunshineSyncTask after every successful sync. The snapshot is
+     * saved even if no widget exists yet, so a widget added later has something to show.
+     *
+     * @param context           Used to reach resources, SharedPreferences and AppWidgetManager
+     * @param normalizedUtcDate Today, as stored in WeatherEntry.COLUMN_DATE
+     * @param weatherId         Today's weather ID, as determined by Open Weather Map
+     * @param high              Today's high in celsius
+     * @param low               Today's low in celsius
+     */
+    public static void updateWidgets(Context context, long normalizedUtcDate, int weatherId,
+                                     double high, double low) {
+        publish(context, ForecastWidgetSnapshot.render(context, normalizedUtcDate, weatherId,
+                high, low));
+    }
+
+    /**
+     * Renders the weather the widgets show again, with the current preferences. Called when
+     * the user switches units, so the widgets don't wait for the next sync to catch up.
+     *
+     * @param context Used to reach resources, SharedPreferences and AppWidgetManager
+     */
+    public static void refreshWidgets(Context context) {
+        ForecastWidgetSnapshot current = ForecastWidgetSnapshot.read(context);
+        if (current != null) {
+            publish(context, current.rerender(context));
+        }
+    }
+
+    private static synchronized void publish(Context context, ForecastWidgetSnapshot snapshot) {
+        long startNanos = System.nanoTime();
+
+        /* Nothing the widget shows has changed, so there's nothing to send */
+        if (snapshot.equals(ForecastWidgetSnapshot.read(context))) {
+            WidgetStats.record(context, false, System.nanoTime() - startNanos, 0);
+            return;
+        }
+        snapshot.save(context);
+
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, ForecastWidgetProvider.class));
+        if (appWidgetIds.length == 0) return;
+
+        appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context, snapshot));
+
+        WidgetStats.record(context, true, System.nanoTime() - startNanos, appWidgetIds.length);
+    }
+
+    /**
+     * Copies a snapshot into the widget's RemoteViews. Everything has been rendered already, so
+     * this only sets text and a resource ID.
+     *
+     * @param context  Used to build the RemoteViews and the click intent
+     * @param snapshot What to show, or null if no sync has completed yet
+     * @return The widget's views
+     */
+    private static RemoteViews buildViews(Context context, ForecastWidgetSnapshot snapshot) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_forecast);
+
+        if (snapshot == null) {
+            views.setTextViewText(R.id.widget_date, context.getString(R.string.widget_empty));
+            views.setViewVisibility(R.id.widget_icon, View.GONE);
+            views.setViewVisibility(R.id.widget_description, View.GONE);
+            views.setViewVisibility(R.id.widget_temperatures, View.GONE);
+        } else {
+            views.setImageViewResource(R.id.widget_icon, snapshot.getIconResourceId());
+            views.setTextViewText(R.id.widget_date, snapshot.dateText);
+            views.setTextViewText(R.id.widget_description, snapshot.description);
+            views.setTextViewText(R.id.widget_high_temperature, snapshot.highText);
+            views.setTextViewText(R.id.widget_low_temperature, snapshot.lowText);
+            views.setViewVisibility(R.id.widget_icon, View.VISIBLE);
+            views.setViewVisibility(R.id.widget_description, View.VISIBLE);
+            views.setViewVisibility(R.id.widget_temperatures, View.VISIBLE);
+        }
+
+        /* Tapping the widget opens the forecast */
+        Intent launchIntent = new Intent(context, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, launchIntent, 0);
+        views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+
+        return views;
+    }
+}
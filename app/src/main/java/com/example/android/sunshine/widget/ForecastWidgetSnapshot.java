@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+/**
+ * Today's forecast, already turned into what the home-screen widget displays: the strings are
+ * formatted, and the icon is looked up from the weather ID. The sync renders it once, when it
+ * has fresh weather, and every widget update afterwards just copies it into RemoteViews without
+ * touching WeatherProvider, resources or bitmaps.
+ * <p>
+ * The snapshot lives in its own small SharedPreferences file, which Android keeps in memory
+ * once it has been read. The raw weather is stored next to the rendered strings so the snapshot
+ * can be rendered again when the user switches units, without waiting for the next sync.
+ */
+final class ForecastWidgetSnapshot {
+
+    static final String PREFERENCES_NAME = "forecast_widget";
+
+    private static final String KEY_DATE = "date";
+    private static final String KEY_WEATHER_ID = "weather_id";
+    private static final String KEY_HIGH = "high";
+    private static final String KEY_LOW = "low";
+    /* Only removed now: resource IDs change between builds, so the icon is no longer saved */
+    private static final String KEY_ICON = "icon";
+    private static final String KEY_DATE_TEXT = "date_text";
+    private static final String KEY_DESCRIPTION = "description";
+    private static final String KEY_HIGH_TEXT = "high_text";
+    private static final String KEY_LOW_TEXT = "low_text";
+
+    /* The weather this was rendered from. Temperatures are in celsius, as stored. */
+    final long date;
+    final int weatherId;
+    final double high;
+    final double low;
+
+    /* What the widget shows, apart from the icon; see getIconResourceId */
+    final String dateText;
+    final String description;
+    final String highText;
+    final String lowText;
+
+    private ForecastWidgetSnapshot(long date, int weatherId, double high, double low,
+                                   String dateText, String description, String highText,
+                                   String lowText) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.high = high;
+        this.low = low;
+        this.dateText = dateText;
+        this.description = description;
+        this.highText = highText;
+        this.lowText = lowText;
+    }
+
+    /**
+     * Renders a day's weather the way the widget displays it. The icon is the same one the
+     * forecast list uses for the condition.
+     *
+     * @param context           Used to reach resources and the user's preferred units
+     * @param normalizedUtcDate The day, as stored in WeatherEntry.COLUMN_DATE
+     * @param weatherId         The day's weather ID, as determined by Open Weather Map
+     * @param high              The day's high in celsius
+     * @param low               The day's low in celsius
+     * @return The rendered snapshot
+     */
+    static ForecastWidgetSnapshot render(Context context, long normalizedUtcDate, int weatherId,
+                                         double high, double low) {
+        return new ForecastWidgetSnapshot(
+                normalizedUtcDate,
+                weatherId,
+                high,
+                low,
+                SunshineDateUtils.getFriendlyDateString(context, normalizedUtcDate, false),
+                SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId),
+                SunshineWeatherUtils.formatTemperature(context, high),
+                SunshineWeatherUtils.formatTemperature(context, low));
+    }
+
+    /**
+     * Renders this snapshot's weather again, for example after the units changed.
+     *
+     * @param context Used to reach resources and the user's preferred units
+     * @return A newly rendered snapshot of the same weather
+     */
+    ForecastWidgetSnapshot rerender(Context context) {
+        return render(context, date, weatherId, high, low);
+    }
+
+    /**
+     * Returns the icon the widget shows, the same one the forecast list uses for the condition.
+     * Resource IDs can change with every build of the app, so only the weather ID is saved and
+     * the icon is looked up from it each time. The lookup is a switch, so this costs nothing.
+     *
+     * @return The icon's drawable resource ID
+     */
+    int getIconResourceId() {
+        return SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId);
+    }
+
+    /**
+     * Reads the snapshot saved by the last sync.
+     *
+     * @param context Used to reach the snapshot's SharedPreferences
+     * @return The snapshot, or null if no sync has saved one yet
+     */
+    static ForecastWidgetSnapshot read(Context context) {
+        SharedPreferences sp = getPreferences(context);
+        if (!sp.contains(KEY_DATE)) return null;
+
+        return new ForecastWidgetSnapshot(
+                sp.getLong(KEY_DATE, 0),
+                sp.getInt(KEY_WEATHER_ID, 0),
+                Double.longBitsToDouble(sp.getLong(KEY_HIGH, 0)),
+                Double.longBitsToDouble(sp.getLong(KEY_LOW, 0)),
+                sp.getString(KEY_DATE_TEXT, ""),
+                sp.getString(KEY_DESCRIPTION, ""),
+                sp.getString(KEY_HIGH_TEXT, ""),
+                sp.getString(KEY_LOW_TEXT, ""));
+    }
+
+    /**
+     * Saves the snapshot for the widget to read.
+     *
+     * @param context Used to reach the snapshot's SharedPreferences
+     */
+    void save(Context context) {
+        getPreferences(context).edit()
+                .putLong(KEY_DATE, date)
+                .putInt(KEY_WEATHER_ID, weatherId)
+                /* SharedPreferences can't hold doubles, but a double's bits fit in a long */
+                .putLong(KEY_HIGH, Double.doubleToRawLongBits(high))
+                .putLong(KEY_LOW, Double.doubleToRawLongBits(low))
+                .remove(KEY_ICON)
+                .putString(KEY_DATE_TEXT, dateText)
+                .putString(KEY_DESCRIPTION, description)
+                .putString(KEY_HIGH_TEXT, highText)
+                .putString(KEY_LOW_TEXT, lowText)
+                .apply();
+    }
+
+    /**
+     * Two snapshots are equal if the widget would look exactly the same showing either one.
+     * The raw temperatures don't count, only what they are rendered to.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ForecastWidgetSnapshot)) return false;
+        ForecastWidgetSnapshot other = (ForecastWidgetSnapshot) o;
+        return getIconResourceId() == other.getIconResourceId()
+                && dateText.equals(other.dateText)
+                && description.equals(other.description)
+                && highText.equals(other.highText)
+                && lowText.equals(other.lowText);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getIconResourceId();
+        result = 31 * result + dateText.hashCode();
+        result = 31 * result + description.hashCode();
+        result = 31 * result + highText.hashCode();
+        result = 31 * result + lowText.hashCode();
+        return result;
+    }
+
+    static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts how often the widget is updated each day and what the updates cost, so we can see
+ * that the widget stays cheap. Counters are kept for the current day only, in memory, and start
+ * over when the day changes. They are written to the widget's SharedPreferences only when an
+ * update is pushed, which already costs far more than a write: skipping an update is meant to
+ * be nearly free, so it doesn't write anything. Skips recorded after the last push are lost if
+ * the process dies. Each update logs a line like
+ * <pre>
+ *     Widget: pushed to 2 widgets in 410 µs. Today: 5 pushed, 3 skipped, 520 µs on average
+ * </pre>
+ * "Skipped" counts syncs that rendered exactly what the widget was already showing, and so sent
+ * nothing to the home screen at all.
+ */
+final class WidgetStats {
+
+    private static final String TAG = WidgetStats.class.getSimpleName();
+
+    private static final String KEY_DAY = "stats_day";
+    private static final String KEY_PUSHED = "stats_pushed";
+    private static final String KEY_SKIPPED = "stats_skipped";
+    private static final String KEY_PUSH_MICROS = "stats_push_micros";
+
+    /* Today's counters, read from SharedPreferences the first time they are needed */
+    private static boolean sLoaded;
+    private static long sDay;
+    private static long sPushed;
+    private static long sSkipped;
+    private static long sPushMicros;
+
+    private WidgetStats() {
+    }
+
+    /**
+     * Records one widget update.
+     *
+     * @param context      Used to reach the widget's SharedPreferences
+     * @param pushed       true if RemoteViews were sent, false if the update was skipped
+     * @param elapsedNanos How long the update took, including deciding to skip it
+     * @param widgetCount  How many widgets were updated
+     */
+    static synchronized void record(Context context, boolean pushed, long elapsedNanos,
+                                    int widgetCount) {
+        SharedPreferences sp = ForecastWidgetSnapshot.getPreferences(context);
+        if (!sLoaded) {
+            sDay = sp.getLong(KEY_DAY, 0);
+            sPushed = sp.getLong(KEY_PUSHED, 0);
+            sSkipped = sp.getLong(KEY_SKIPPED, 0);
+            sPushMicros = sp.getLong(KEY_PUSH_MICROS, 0);
+            sLoaded = true;
+        }
+
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        if (sDay != today) {
+            sDay = today;
+            sPushed = 0;
+            sSkipped = 0;
+            sPushMicros = 0;
+        }
+
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        if (pushed) {
+            sPushed++;
+            sPushMicros += elapsedMicros;
+
+            sp.edit()
+                    .putLong(KEY_DAY, sDay)
+                    .putLong(KEY_PUSHED, sPushed)
+                    .putLong(KEY_SKIPPED, sSkipped)
+                    .putLong(KEY_PUSH_MICROS, sPushMicros)
+                    .apply();
+        } else {
+            sSkipped++;
+        }
+
+        long averageMicros = sPushed == 0 ? 0 : sPushMicros / sPushed;
+        Log.d(TAG, "Widget: " + (pushed ? "pushed to " + widgetCount + " widgets" : "skipped")
+                + " in " + elapsedMicros + " µs. Today: " + sPushed + " pushed, "
+                + sSkipped + " skipped, " + averageMicros + " µs on average");
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import java.util.Random;
+
+/**
+ * Builds forecast JSON in the format returned by OpenWeatherMap (and Sunshine's test server).
+ * The values are random, but seeded, so every benchmark run parses exactly the same document.
+ */
+final class ForecastJson {
+
+    /* Weather IDs covering every condition category, plus one we don't know */
+    static final int[] WEATHER_IDS = {
+            200, 211, 301, 500, 503, 511, 521, 600, 616, 701, 741, 771,
+            800, 801, 803, 804, 901, 952, 960, 999
+    };
+
+    private ForecastJson() {
+    }
+
+    static String build(int days, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(256 + days * 320);
+
+        json.append("{\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.0838,\"lat\":37.3861},")
+                .append("\"country\":\"US\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.0,\"cnt\":").append(days)
+                .append(",\"list\":[");
+
+        for (int i = 0; i < days; i++) {
+            if (i > 0) json.append(',');
+            double max = 10 + random.nextInt(250) / 10.0;
+            double min = max - random.nextInt(100) / 10.0;
+            int weatherId = WEATHER_IDS[random.nextInt(WEATHER_IDS.length)];
+            json.append("{\"dt\":").append(1475280000L + i * 86400L)
+                    .append(",\"temp\":{\"day\":").append(max)
+                    .append(",\"min\":").append(min)
+                    .append(",\"max\":").append(max)
+                    .append(",\"night\":").append(min)
+                    .append(",\"eve\":").append(max)
+                    .append(",\"morn\":").append(min)
+                    .append("},\"pressure\":").append(950 + random.nextInt(1000) / 10.0)
+                    .append(",\"humidity\":").append(random.nextInt(100))
+                    .append(",\"weather\":[{\"id\":").append(weatherId)
+                    .append(",\"main\":\"Clear\",\"description\":\"sky is clear\",")
+                    .append("\"icon\":\"01d\"}],\"speed\":").append(random.nextInt(300) / 10.0)
+                    .append(",\"deg\":").append(random.nextInt(360))
+                    .append(",\"clouds\":0}");
+        }
+
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.DailyAggregate;
+import com.example.android.sunshine.core.SunshineDates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * The arithmetic behind deriving daily rows from two weeks of hourly data (14 days x 24 hours,
+ * one location). The database side of the same work is timed on a device by
+ * TestHourlyProvider#testInsertAndScanTwoWeeksOfHours.
+ * <p>
+ * foldHoursOnInsert is what WeatherProvider does: every hour is folded into its day's running
+ * totals as it is inserted, day by day, restoring the totals saved by the previous insert.
+ * readDerivedDays is then all a reader pays. recomputeDaysOnRead is the alternative we chose
+ * not to build, where every read of the daily forecast aggregates all of the hours again.
+ */
+@State(Scope.Benchmark)
+public class HourlyAggregationBenchmark {
+
+    private static final int DAYS = 14;
+    private static final int HOURS = DAYS * 24;
+
+    private final int[] mWeatherIds = new int[HOURS];
+    private final double[] mTemps = new double[HOURS];
+    private final double[] mHumidities = new double[HOURS];
+    private final double[] mPressures = new double[HOURS];
+    private final double[] mWindSpeeds = new double[HOURS];
+    private final double[] mDegrees = new double[HOURS];
+
+    private final DailyAggregate[] mSaved = new DailyAggregate[DAYS];
+    private final DailyAggregate mScratch = new DailyAggregate();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < HOURS; i++) {
+            mWeatherIds[i] = ForecastJson.WEATHER_IDS[random.nextInt(ForecastJson.WEATHER_IDS.length)];
+            mTemps[i] = random.nextInt(350) / 10.0;
+            mHumidities[i] = random.nextInt(100);
+            mPressures[i] = 950 + random.nextInt(1000) / 10.0;
+            mWindSpeeds[i] = random.nextInt(300) / 10.0;
+            mDegrees[i] = random.nextInt(360);
+        }
+        for (int day = 0; day < DAYS; day++) {
+            mSaved[day] = new DailyAggregate();
+            foldDay(day, mSaved[day]);
+        }
+    }
+
+    private void foldDay(int day, DailyAggregate aggregate) {
+        for (int hour = 0; hour < 24; hour++) {
+            int i = day * 24 + hour;
+            aggregate.add((hour - 12) * SunshineDates.HOUR_IN_MILLIS, mWeatherIds[i], mTemps[i],
+                    mHumidities[i], mPressures[i], mWindSpeeds[i], mDegrees[i]);
+        }
+    }
+
+    private static void readDay(DailyAggregate aggregate, Blackhole blackhole) {
+        blackhole.consume(aggregate.getMinTemp());
+        blackhole.consume(aggregate.getMaxTemp());
+        blackhole.consume(aggregate.getHumidity());
+        blackhole.consume(aggregate.getPressure());
+        blackhole.consume(aggregate.getWindSpeed());
+        blackhole.consume(aggregate.getDegrees());
+        blackhole.consume(aggregate.getWeatherId());
+    }
+
+    @Benchmark
+    public void foldHoursOnInsert(Blackhole blackhole) {
+        for (int day = 0; day < DAYS; day++) {
+            /* Each day arrives as its own insert, which starts from the saved (here, empty) totals */
+            mScratch.restore(0, 0, 0, 0, 0, 0, 0, 0, 0, Long.MAX_VALUE);
+            foldDay(day, mScratch);
+            readDay(mScratch, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void readDerivedDays(Blackhole blackhole) {
+        for (int day = 0; day < DAYS; day++) {
+            readDay(mSaved[day], blackhole);
+        }
+    }
+
+    @Benchmark
+    public void recomputeDaysOnRead(Blackhole blackhole) {
+        for (int day = 0; day < DAYS; day++) {
+            mScratch.reset();
+            foldDay(day, mScratch);
+            readDay(mScratch, blackhole);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.OpenWeatherJsonParser;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of turning a forecast response into a {@link Forecast}. 14 days is what the app requests
+ * today; the larger sizes show how parsing scales for long-range feeds.
+ */
+@State(Scope.Benchmark)
+public class OpenWeatherJsonParserBenchmark {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    @Param({"14", "90", "365"})
+    public int days;
+
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        mJson = ForecastJson.build(days, 42);
+    }
+
+    @Benchmark
+    public Forecast parse() throws JSONException {
+        return OpenWeatherJsonParser.parse(mJson, DATE_NORMALIZED);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost of the settings lookups done while binding forecast list rows. Every row formats a high
+ * and a low temperature, and each of those asks whether the user prefers metric units.
+ * <p>
+ * Android isn't available on the JVM, so the SharedPreferences path is modelled on what the
+ * framework does for PreferenceManager.getDefaultSharedPreferences(context) followed by
+ * getString: build the preferences file name, look the file up in a map under a global lock,
+ * then read the value under the file's own lock. The resource lookups for the key and default
+ * are modelled as array reads, which flatters the old path. The snapshot path is what
+ * SunshinePreferences.isMetric does now: one volatile read of an immutable object.
+ */
+@State(Scope.Benchmark)
+public class RowBindBenchmark {
+
+    private static final int FORECAST_DAYS = 14;
+
+    private static final Object GLOBAL_LOCK = new Object();
+
+    /* Stands in for the string resources holding the key, the default and the metric value */
+    private final String[] mResources = {"units", "metric", "metric"};
+
+    private final Map<String, FakePreferences> mPreferencesByName = new HashMap<>();
+    private String mPackageName;
+
+    private volatile Snapshot mSnapshot;
+
+    private final double[] mHighs = new double[FORECAST_DAYS];
+    private final double[] mLows = new double[FORECAST_DAYS];
+
+    /* The parts of SharedPreferencesImpl that a read goes through */
+    private static final class FakePreferences {
+        private final Object mLock = new Object();
+        private final Map<String, Object> mValues = new HashMap<>();
+
+        String getString(String key, String defaultValue) {
+            synchronized (mLock) {
+                String value = (String) mValues.get(key);
+                return value != null ? value : defaultValue;
+            }
+        }
+    }
+
+    /* The parts of SunshineSettings that a read goes through */
+    private static final class Snapshot {
+        private final boolean mMetric;
+
+        Snapshot(boolean metric) {
+            mMetric = metric;
+        }
+
+        boolean isMetric() {
+            return mMetric;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mPackageName = new String("com.example.android.sunshine");
+        FakePreferences preferences = new FakePreferences();
+        preferences.mValues.put("units", "imperial");
+        preferences.mValues.put("location", "Mountain View, CA 94043");
+        mPreferencesByName.put(mPackageName + "_preferences", preferences);
+
+        mSnapshot = new Snapshot(false);
+
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            mHighs[i] = 20 + i % 7;
+            mLows[i] = 10 + i % 5;
+        }
+    }
+
+    private boolean isMetricFromPreferences() {
+        FakePreferences sp;
+        String name = mPackageName + "_preferences";
+        synchronized (GLOBAL_LOCK) {
+            sp = mPreferencesByName.get(name);
+        }
+        String keyForUnits = mResources[0];
+        String defaultUnits = mResources[1];
+        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
+        String metric = mResources[2];
+        return metric.equals(preferredUnits);
+    }
+
+    private boolean isMetricFromSnapshot() {
+        return mSnapshot.isMetric();
+    }
+
+    /* What SunshineWeatherUtils.formatTemperature does once it knows the units */
+    private static String formatTemperature(boolean metric, double temperature) {
+        if (!metric) {
+            temperature = WeatherConditions.celsiusToFahrenheit(temperature);
+        }
+        return String.format("%1.0f°", temperature);
+    }
+
+    @Benchmark
+    public void unitsForTwoWeeksFromPreferences(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            blackhole.consume(isMetricFromPreferences());
+            blackhole.consume(isMetricFromPreferences());
+        }
+    }
+
+    @Benchmark
+    public void unitsForTwoWeeksFromSnapshot(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            blackhole.consume(isMetricFromSnapshot());
+            blackhole.consume(isMetricFromSnapshot());
+        }
+    }
+
+    @Benchmark
+    public void bindTwoWeeksFromPreferences(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            blackhole.consume(formatTemperature(isMetricFromPreferences(), mHighs[i]));
+            blackhole.consume(formatTemperature(isMetricFromPreferences(), mLows[i]));
+        }
+    }
+
+    @Benchmark
+    public void bindTwoWeeksFromSnapshot(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            blackhole.consume(formatTemperature(isMetricFromSnapshot(), mHighs[i]));
+            blackhole.consume(formatTemperature(isMetricFromSnapshot(), mLows[i]));
+        }
+    }
+}
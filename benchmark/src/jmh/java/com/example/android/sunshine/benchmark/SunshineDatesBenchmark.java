@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.DateLabels;
+import com.example.android.sunshine.core.FriendlyDateCache;
+import com.example.android.sunshine.core.JavaDateLabels;
+import com.example.android.sunshine.core.SunshineClock;
+import com.example.android.sunshine.core.SunshineDates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Cost of the date work done for every list row and detail screen: normalizing "now" (which the
+ * app does with the default time zone on each call) and building the friendly date for each day
+ * of a two week forecast.
+ * <p>
+ * The cached benchmarks are what binding rows costs now that SunshineDateUtils keeps labels in a
+ * FriendlyDateCache: every lookup after the first is a hit until the day, time zone or locale
+ * changes. precomputeTwoWeeks is the one-off cost of filling the cache, paid when the forecast
+ * screen starts loading.
+ * <p>
+ * clockNormalizedUtcDateForToday is what SunshineDateUtils.getNormalizedUtcDateForToday costs
+ * now that it goes through a SunshineClock, which caches the time zone and its offset, against
+ * normalizedUtcDateForToday above.
+ */
+@State(Scope.Benchmark)
+public class SunshineDatesBenchmark {
+
+    private static final int FORECAST_DAYS = 14;
+
+    private long mNow;
+    private long mToday;
+    private TimeZone mTimeZone;
+    private DateLabels mLabels;
+    private FriendlyDateCache mCache;
+    private SunshineClock mClock;
+
+    @Setup
+    public void setUp() {
+        mTimeZone = TimeZone.getTimeZone("America/Los_Angeles");
+        /* October 1st, 2016 at 3:00 PM in Mountain View */
+        mNow = 1475359200000L;
+        mToday = SunshineDates.getNormalizedUtcDateForToday(mNow, mTimeZone);
+        mLabels = new JavaDateLabels("Today", "Tomorrow", Locale.US, mTimeZone);
+        mCache = new FriendlyDateCache();
+        mCache.precompute(mLabels, FORECAST_DAYS, mNow, mTimeZone, Locale.US, false);
+        mClock = new SunshineClock(new SunshineClock.TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return mNow;
+            }
+        }, TimeZone.getDefault());
+    }
+
+    @Benchmark
+    public long normalizedUtcDateForToday() {
+        return SunshineDates.getNormalizedUtcDateForToday(mNow, TimeZone.getDefault());
+    }
+
+    @Benchmark
+    public long clockNormalizedUtcDateForToday() {
+        return mClock.getNormalizedUtcDateForToday();
+    }
+
+    @Benchmark
+    public long normalizeDate() {
+        return SunshineDates.normalizeDate(mNow);
+    }
+
+    @Benchmark
+    public void friendlyDateStringsForTwoWeeks(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            long date = mToday + i * SunshineDates.DAY_IN_MILLIS;
+            blackhole.consume(SunshineDates.getFriendlyDateString(
+                    mLabels, date, mNow, mTimeZone, false));
+        }
+    }
+
+    @Benchmark
+    public void fullFriendlyDateStringsForTwoWeeks(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            long date = mToday + i * SunshineDates.DAY_IN_MILLIS;
+            blackhole.consume(SunshineDates.getFriendlyDateString(
+                    mLabels, date, mNow, mTimeZone, true));
+        }
+    }
+
+    @Benchmark
+    public void cachedFriendlyDateStringsForTwoWeeks(Blackhole blackhole) {
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            long date = mToday + i * SunshineDates.DAY_IN_MILLIS;
+            blackhole.consume(mCache.get(mLabels, date, mNow, mTimeZone, Locale.US, false));
+        }
+    }
+
+    @Benchmark
+    public FriendlyDateCache precomputeTwoWeeks() {
+        FriendlyDateCache cache = new FriendlyDateCache();
+        cache.precompute(mLabels, FORECAST_DAYS, mNow, mTimeZone, Locale.US, false);
+        return cache;
+    }
+}
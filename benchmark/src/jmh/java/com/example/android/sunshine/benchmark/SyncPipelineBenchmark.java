@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.ForecastStreamParser;
+import com.example.android.sunshine.core.OpenWeatherJsonParser;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+
+/**
+ * What one sync allocates between the network response and the database write. Run it with the
+ * GC profiler to see bytes per sync:
+ *
+ *     ./gradlew :benchmark:jmh -Pjmh.include=SyncPipeline -Pjmh.profilers=gc
+ * <p>
+ * rowsAsContentValues is how the sync used to hand days to WeatherProvider: a fresh Forecast and
+ * one ContentValues per day. ContentValues is an Android class, so a HashMap with the same
+ * initial capacity and the same boxed values stands in for it here. columnsReused is the
+ * path that replaced it, where a single Forecast is refilled on every sync and WeatherProvider
+ * reads its primitive columns directly. streamedChunks is what the sync does now: the response is
+ * read through a Reader and handed over a week at a time, so nothing grows with the horizon.
+ */
+@State(Scope.Benchmark)
+public class SyncPipelineBenchmark {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    /* Same as SunshineSyncTask.SYNC_CHUNK_DAYS */
+    private static final int CHUNK_DAYS = 7;
+
+    @Param({"14", "365", "3650"})
+    public int days;
+
+    private String mJson;
+    private Forecast mForecast;
+    private Forecast mChunk;
+
+    /* Stands in for the database write; just keeps the values alive */
+    private final ForecastStreamParser.ChunkHandler mHandler =
+            new ForecastStreamParser.ChunkHandler() {
+                @Override
+                public boolean onChunk(Forecast chunk, int firstDayIndex) {
+                    mLastWeatherId += chunk.getWeatherId(0) + firstDayIndex;
+                    return true;
+                }
+            };
+    private long mLastWeatherId;
+
+    @Setup
+    public void setUp() {
+        mJson = ForecastJson.build(days, 42);
+        mForecast = new Forecast(days);
+        mChunk = new Forecast(CHUNK_DAYS);
+    }
+
+    @Benchmark
+    public Object[] rowsAsContentValues() throws JSONException {
+        Forecast forecast = OpenWeatherJsonParser.parse(mJson, DATE_NORMALIZED);
+
+        /* ContentValues() is backed by new HashMap<String, Object>(8) */
+        Object[] rows = new Object[forecast.size()];
+        for (int i = 0; i < forecast.size(); i++) {
+            HashMap<String, Object> values = new HashMap<>(8);
+            values.put("date", forecast.getDate(i));
+            values.put("humidity", forecast.getHumidity(i));
+            values.put("pressure", forecast.getPressure(i));
+            values.put("wind", forecast.getWindSpeed(i));
+            values.put("degrees", forecast.getDegrees(i));
+            values.put("max", forecast.getMaxTemp(i));
+            values.put("min", forecast.getMinTemp(i));
+            values.put("weather_id", forecast.getWeatherId(i));
+            rows[i] = values;
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public Forecast columnsReused() throws JSONException {
+        OpenWeatherJsonParser.parse(mJson, DATE_NORMALIZED, mForecast);
+        return mForecast;
+    }
+
+    @Benchmark
+    public long streamedChunks() throws IOException, JSONException {
+        ForecastStreamParser.parse(new StringReader(mJson), DATE_NORMALIZED, 0, mChunk, mHandler);
+        return mLastWeatherId;
+    }
+}
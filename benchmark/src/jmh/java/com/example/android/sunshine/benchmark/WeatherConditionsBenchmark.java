@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmark;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Cost of mapping weather IDs to condition categories and wind directions to compass points,
+ * measured over a batch of values so branch prediction can't learn a single input.
+ */
+@State(Scope.Benchmark)
+public class WeatherConditionsBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final int[] mWeatherIds = new int[BATCH_SIZE];
+    private final float[] mDegrees = new float[BATCH_SIZE];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            mWeatherIds[i] = ForecastJson.WEATHER_IDS[random.nextInt(ForecastJson.WEATHER_IDS.length)];
+            mDegrees[i] = random.nextFloat() * 360f;
+        }
+    }
+
+    @Benchmark
+    public void conditionForWeatherId(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(WeatherConditions.getConditionForWeatherId(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void windDirection(Blackhole blackhole) {
+        for (float degrees : mDegrees) {
+            blackhole.consume(WeatherConditions.getWindDirection(degrees));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Summarizes the hourly forecasts of one day into the single row the daily forecast shows: the
+ * lowest and highest temperature, the average humidity, pressure and wind, and one weather ID.
+ * <p>
+ * Hours are folded in one at a time with {@link #add}, so a day's summary can be kept up to date
+ * as hourly rows arrive, without reading back the hours that were added before. Everything
+ * needed to continue an aggregate is exposed through the "state" getters and
+ * {@link #restore}, which is how WeatherProvider saves it between inserts.
+ * <p>
+ * Sums can't be taken back, so an hour that changes after it was added can't be corrected here.
+ * The caller has to {@link #reset()} and add the day's hours again.
+ */
+public final class DailyAggregate {
+
+    /* Number of hours added so far */
+    private int mHours;
+
+    private double mMinTemp;
+    private double mMaxTemp;
+
+    /* Running sums, divided by mHours to get the averages */
+    private double mHumiditySum;
+    private double mPressureSum;
+    private double mWindSpeedSum;
+
+    /*
+     * Wind directions are averaged as vectors, so that 350° and 10° average to north and not
+     * to south. These are the sums of the east and north components of each hour's direction.
+     */
+    private double mWindEast;
+    private double mWindNorth;
+
+    /*
+     * The day's weather ID is the one closest to midday, when people are most likely to be out.
+     * mWeatherIdNoonDistance is how far from noon the hour it came from is, in milliseconds.
+     */
+    private int mWeatherId;
+    private long mWeatherIdNoonDistance = Long.MAX_VALUE;
+
+    /** Empties the aggregate, as if no hour had been added. */
+    public void reset() {
+        mHours = 0;
+        mMinTemp = 0;
+        mMaxTemp = 0;
+        mHumiditySum = 0;
+        mPressureSum = 0;
+        mWindSpeedSum = 0;
+        mWindEast = 0;
+        mWindNorth = 0;
+        mWeatherId = 0;
+        mWeatherIdNoonDistance = Long.MAX_VALUE;
+    }
+
+    /**
+     * Loads state previously read from the state getters, so more hours can be added to it.
+     */
+    public void restore(int hours, double minTemp, double maxTemp, double humiditySum,
+                        double pressureSum, double windSpeedSum, double windEast,
+                        double windNorth, int weatherId, long weatherIdNoonDistance) {
+        mHours = hours;
+        mMinTemp = minTemp;
+        mMaxTemp = maxTemp;
+        mHumiditySum = humiditySum;
+        mPressureSum = pressureSum;
+        mWindSpeedSum = windSpeedSum;
+        mWindEast = windEast;
+        mWindNorth = windNorth;
+        mWeatherId = weatherId;
+        mWeatherIdNoonDistance = weatherIdNoonDistance;
+    }
+
+    /**
+     * Folds one hour into the aggregate.
+     *
+     * @param noonDistance How far the hour is from local noon of the day, in milliseconds
+     * @param weatherId    Weather ID for the hour
+     * @param temp         Temperature in °C
+     * @param humidity     Humidity in percent
+     * @param pressure     Pressure in hPa
+     * @param windSpeed    Wind speed in km/h
+     * @param degrees      Meteorological wind direction
+     */
+    public void add(long noonDistance, int weatherId, double temp, double humidity,
+                    double pressure, double windSpeed, double degrees) {
+        if (mHours == 0 || temp < mMinTemp) mMinTemp = temp;
+        if (mHours == 0 || temp > mMaxTemp) mMaxTemp = temp;
+        mHours++;
+
+        mHumiditySum += humidity;
+        mPressureSum += pressure;
+        mWindSpeedSum += windSpeed;
+
+        double radians = Math.toRadians(degrees);
+        mWindEast += Math.sin(radians);
+        mWindNorth += Math.cos(radians);
+
+        noonDistance = Math.abs(noonDistance);
+        if (noonDistance < mWeatherIdNoonDistance) {
+            mWeatherId = weatherId;
+            mWeatherIdNoonDistance = noonDistance;
+        }
+    }
+
+    /* The day's values, as shown in the daily forecast. Only meaningful if getHours() > 0. */
+
+    public int getHours() {
+        return mHours;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getHumidity() {
+        return mHumiditySum / mHours;
+    }
+
+    public double getPressure() {
+        return mPressureSum / mHours;
+    }
+
+    public double getWindSpeed() {
+        return mWindSpeedSum / mHours;
+    }
+
+    /** @return The average wind direction, from 0 (inclusive) to 360 (exclusive) */
+    public double getDegrees() {
+        double degrees = Math.toDegrees(Math.atan2(mWindEast, mWindNorth));
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    /* The rest of the state, for saving the aggregate and restoring it later */
+
+    public double getHumiditySum() {
+        return mHumiditySum;
+    }
+
+    public double getPressureSum() {
+        return mPressureSum;
+    }
+
+    public double getWindSpeedSum() {
+        return mWindSpeedSum;
+    }
+
+    public double getWindEast() {
+        return mWindEast;
+    }
+
+    public double getWindNorth() {
+        return mWindNorth;
+    }
+
+    public long getWeatherIdNoonDistance() {
+        return mWeatherIdNoonDistance;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Produces the pieces of text that make up a friendly date. {@link SunshineDates} decides which
+ * pieces a date needs; implementations decide how each piece is spelled, so that the app can use
+ * its string resources and the platform's locale-aware formatting while JVM code uses
+ * {@link JavaDateLabels}.
+ * <p>
+ * Every date passed in is a local midnight in milliseconds, as returned by
+ * {@link SunshineDates#getLocalMidnightFromNormalizedUtcDate(long, java.util.TimeZone)}.
+ */
+public interface DateLabels {
+
+    /** @return The word for today, e.g. "Today" */
+    String getToday();
+
+    /** @return The word for tomorrow, e.g. "Tomorrow" */
+    String getTomorrow();
+
+    /** @return The full name of the day of the week, e.g. "Wednesday" */
+    String getDayName(long localDate);
+
+    /** @return The day of the week and the date without the year, e.g. "Wednesday, June 26" */
+    String getReadableDate(long localDate);
+
+    /** @return The abbreviated day of the week and date, e.g. "Wed, Jun 26" */
+    String getAbbreviatedDate(long localDate);
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Keeps several devices up to date with a small set of named string fields, sending each device
+ * only the fields that changed since the last version it acknowledged.
+ * <p>
+ * Every {@link #update(Map)} that changes at least one field bumps a version number, and each
+ * field remembers the version it last changed in. For every device we keep the newest version it
+ * has acknowledged (together, a version vector). A device's delta is every field that changed
+ * after that version, so a device that missed several updates, or whose acknowledgement got
+ * lost, still catches up in one message. A device we have never heard from gets everything.
+ * <p>
+ * Versions only count up for as long as this object lives; the phone starts over at 0 whenever
+ * its process does. So that an acknowledgement of version 3 from before a restart can't be
+ * taken for version 3 after it, every instance picks a random session ID. It goes out with each
+ * delta, devices send it back with their acknowledgement, and acknowledgements from another
+ * session are ignored.
+ * <p>
+ * This is what the phone uses to push today's weather to the watches. Nothing in here knows
+ * about Wear: devices are identified by a string and messages go through a
+ * {@link NodeTransport}, so the whole exchange can be tested on the JVM with fake watches.
+ * <p>
+ * All methods are thread safe. The transport is called without holding the lock, so
+ * acknowledgements can arrive while a publish is still sending.
+ */
+public final class DeltaSync {
+
+    /**
+     * Sends a delta to one device.
+     */
+    public interface NodeTransport {
+
+        /**
+         * @param nodeId  The device to send to
+         * @param fields  The fields that changed since the device's last acknowledged version.
+         *                May be empty, in which case the message only says nothing changed.
+         * @param session The session the version belongs to, see {@link #getSession()}
+         * @param version The version the device will have once it applies the fields. It should
+         *                acknowledge it, along with the session, with
+         *                {@link #acknowledge(String, long, long)}.
+         * @return false if the message couldn't be sent
+         */
+        boolean send(String nodeId, Map<String, String> fields, long session, long version);
+    }
+
+    private final Map<String, String> mValues = new HashMap<>();
+    private final Map<String, Long> mFieldVersions = new HashMap<>();
+    private final Map<String, Long> mAckedVersions = new HashMap<>();
+    private final long mSession;
+    private long mVersion;
+
+    /**
+     * Starts a new session with a random ID.
+     */
+    public DeltaSync() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * @param session The ID of this session. Must differ from that of any earlier session the
+     *                devices may still acknowledge.
+     */
+    public DeltaSync(long session) {
+        mSession = session;
+    }
+
+    /**
+     * Sets the given fields, leaving any others as they are. The version only moves on if one
+     * of them actually changed.
+     *
+     * @param fields The new values. Use an empty string rather than null to clear a field.
+     * @return The current version
+     */
+    public synchronized long update(Map<String, String> fields) {
+        boolean changed = false;
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (field.getValue().equals(mValues.get(field.getKey()))) continue;
+            if (!changed) {
+                mVersion++;
+                changed = true;
+            }
+            mValues.put(field.getKey(), field.getValue());
+            mFieldVersions.put(field.getKey(), mVersion);
+        }
+        return mVersion;
+    }
+
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return The ID sent with every delta, which devices send back with their acknowledgement
+     */
+    public long getSession() {
+        return mSession;
+    }
+
+    /**
+     * Returns the fields the device hasn't acknowledged yet. Empty if it is up to date.
+     *
+     * @param nodeId The device
+     * @return A copy of the fields that changed after the device's acknowledged version
+     */
+    public synchronized Map<String, String> deltaFor(String nodeId) {
+        Long acked = mAckedVersions.get(nodeId);
+        if (acked == null) {
+            return new HashMap<>(mValues);
+        }
+        Map<String, String> delta = new HashMap<>();
+        for (Map.Entry<String, Long> field : mFieldVersions.entrySet()) {
+            if (field.getValue() > acked) {
+                delta.put(field.getKey(), mValues.get(field.getKey()));
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Sends every given device its delta. A device that is already up to date still gets an
+     * empty message, which tells it that what it has is current.
+     *
+     * @param nodeIds   The devices to send to. Devices left out keep their version and catch up
+     *                  the next time they are included.
+     * @param transport Sends each message
+     * @return How many fields were sent in total, across all devices
+     */
+    public int publish(Collection<String> nodeIds, NodeTransport transport) {
+        List<String> targets = new ArrayList<>(nodeIds);
+        List<Map<String, String>> deltas = new ArrayList<>(targets.size());
+        long version;
+        synchronized (this) {
+            version = mVersion;
+            for (String nodeId : targets) {
+                deltas.add(deltaFor(nodeId));
+            }
+        }
+
+        int fieldsSent = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            Map<String, String> delta = Collections.unmodifiableMap(deltas.get(i));
+            if (transport.send(targets.get(i), delta, mSession, version)) {
+                fieldsSent += delta.size();
+            }
+        }
+        return fieldsSent;
+    }
+
+    /**
+     * Records that a device has applied everything up to the given version. Acknowledgements
+     * can arrive out of order, so an older one never undoes a newer one.
+     *
+     * @param nodeId  The device
+     * @param session The session the device's message came from
+     * @param version The version it acknowledged
+     */
+    public synchronized void acknowledge(String nodeId, long session, long version) {
+        /* Versions from another session, that is from before a restart, mean nothing to us */
+        if (session != mSession || version > mVersion) return;
+
+        Long acked = mAckedVersions.get(nodeId);
+        if (acked == null || version > acked) {
+            mAckedVersions.put(nodeId, version);
+        }
+    }
+
+    /**
+     * Forgets what a device has acknowledged, so it gets every field next time. Used when a
+     * device may have lost what we sent it.
+     *
+     * @param nodeId The device
+     */
+    public synchronized void forget(String nodeId) {
+        mAckedVersions.remove(nodeId);
+    }
+}
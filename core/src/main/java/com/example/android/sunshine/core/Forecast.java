@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * A parsed forecast: the coordinates OpenWeatherMap resolved the requested location to, and the
+ * weather for each day, ordered from today onwards.
+ * <p>
+ * The days are stored column by column, one primitive array per field, rather than as one object
+ * (or one ContentValues) per day. Nothing is boxed, and because the capacity is fixed when the
+ * Forecast is created, the same instance can be handed to
+ * {@link OpenWeatherJsonParser#parse(String, long, Forecast)} on every sync without allocating
+ * anything new for the rows.
+ * <p>
+ * A Forecast is not thread safe. Whoever owns it must make sure it isn't refilled while someone
+ * else is still reading it.
+ */
+public final class Forecast {
+
+    /* Where OpenWeatherMap resolved the requested location to */
+    private double mLatitude;
+    private double mLongitude;
+
+    /* Number of days currently stored, never more than the capacity */
+    private int mSize;
+
+    /* Normalized UTC date of each day; see SunshineDates */
+    private final long[] mDates;
+
+    /* Weather ID as returned by the API, used to pick the icon and description */
+    private final int[] mWeatherIds;
+
+    /* Min and max temperatures for the day, in °C */
+    private final double[] mMinTemps;
+    private final double[] mMaxTemps;
+
+    /* Humidity in percent and pressure in hPa */
+    private final double[] mHumidities;
+    private final double[] mPressures;
+
+    /* Wind speed in km/h and meteorological wind direction in degrees */
+    private final double[] mWindSpeeds;
+    private final double[] mDegrees;
+
+    /**
+     * Creates an empty forecast that can hold up to capacity days.
+     *
+     * @param capacity The largest number of days this forecast will ever need to hold
+     */
+    public Forecast(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        mDates = new long[capacity];
+        mWeatherIds = new int[capacity];
+        mMinTemps = new double[capacity];
+        mMaxTemps = new double[capacity];
+        mHumidities = new double[capacity];
+        mPressures = new double[capacity];
+        mWindSpeeds = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    /** @return The largest number of days this forecast can hold */
+    public int capacity() {
+        return mDates.length;
+    }
+
+    /** @return The number of days in this forecast */
+    public int size() {
+        return mSize;
+    }
+
+    /** @return true if there is room for another day */
+    public boolean isFull() {
+        return mSize == mDates.length;
+    }
+
+    /**
+     * Empties the forecast so it can be filled again. The arrays are kept, their contents are
+     * simply overwritten by the next fill.
+     */
+    public void clear() {
+        mSize = 0;
+        mLatitude = 0;
+        mLongitude = 0;
+    }
+
+    public void setLocation(double latitude, double longitude) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+    }
+
+    /**
+     * Appends a day to the end of the forecast.
+     *
+     * @throws IllegalStateException If the forecast is already full
+     */
+    public void addDay(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                       double pressure, double windSpeed, double degrees) {
+        if (isFull()) {
+            throw new IllegalStateException("Forecast is full (capacity " + capacity() + ")");
+        }
+        int i = mSize++;
+        mDates[i] = date;
+        mWeatherIds[i] = weatherId;
+        mMinTemps[i] = minTemp;
+        mMaxTemps[i] = maxTemp;
+        mHumidities[i] = humidity;
+        mPressures[i] = pressure;
+        mWindSpeeds[i] = windSpeed;
+        mDegrees[i] = degrees;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    /*
+     * Per-day getters. index is 0 for today, 1 for tomorrow and so on, and must be less than
+     * size(). Indexes between size() and capacity() return whatever a previous fill left behind.
+     */
+
+    public long getDate(int index) {
+        return mDates[index];
+    }
+
+    public int getWeatherId(int index) {
+        return mWeatherIds[index];
+    }
+
+    public double getMinTemp(int index) {
+        return mMinTemps[index];
+    }
+
+    public double getMaxTemp(int index) {
+        return mMaxTemps[index];
+    }
+
+    public double getHumidity(int index) {
+        return mHumidities[index];
+    }
+
+    public double getPressure(int index) {
+        return mPressures[index];
+    }
+
+    public double getWindSpeed(int index) {
+        return mWindSpeeds[index];
+    }
+
+    public double getDegrees(int index) {
+        return mDegrees[index];
+    }
+}
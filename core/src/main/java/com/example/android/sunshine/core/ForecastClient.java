@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds forecast requests for the weather server, and downloads the first days of a forecast
+ * and parses them with {@link ForecastStreamParser}. The phone's NetworkUtils builds its URLs
+ * here, so the phone and the watch always ask the server the same way; the phone's sync then
+ * streams the whole forecast into its database itself. Fetching is for devices that only need a
+ * few days, such as the watch when it fetches weather on its own.
+ * <p>
+ * The base URL is passed in, so tests can point the client at a server on localhost.
+ */
+public final class ForecastClient {
+
+    /* Returns different, random weather on every request; see NetworkUtils in the app */
+    public static final String DYNAMIC_WEATHER_URL =
+            "https://andfun-weather.udacity.com/weather";
+
+    /* Returns the weather seen in the Udacity videos. Sunshine uses it by default. */
+    public static final String STATIC_WEATHER_URL =
+            "https://andfun-weather.udacity.com/staticweather";
+
+    private static final String QUERY_PARAM = "q";
+    private static final String LAT_PARAM = "lat";
+    private static final String LON_PARAM = "lon";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+
+    /* Watches give up on a request long before a person would, to save the battery */
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+
+    private final String mBaseUrl;
+
+    /**
+     * @param baseUrl The weather server, without any query parameters. Usually
+     *                {@link #STATIC_WEATHER_URL}.
+     */
+    public ForecastClient(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    /**
+     * Builds the URL of the forecast for a location string, such as "Mountain View, CA 94043".
+     *
+     * @param locationQuery The location, as the user typed it
+     * @param days          How many days to ask for
+     * @return The URL to fetch
+     */
+    public URL buildLocationQueryUrl(String locationQuery, int days) throws MalformedURLException {
+        return buildUrl(QUERY_PARAM + '=' + encode(locationQuery), days);
+    }
+
+    /**
+     * Builds the URL of the forecast for a latitude and longitude.
+     *
+     * @param latitude  The latitude of the location
+     * @param longitude The longitude of the location
+     * @param days      How many days to ask for
+     * @return The URL to fetch
+     */
+    public URL buildCoordinatesUrl(double latitude, double longitude, int days)
+            throws MalformedURLException {
+        return buildUrl(LAT_PARAM + '=' + latitude + '&' + LON_PARAM + '=' + longitude, days);
+    }
+
+    private URL buildUrl(String locationParams, int days) throws MalformedURLException {
+        return new URL(mBaseUrl + '?' + locationParams
+                + '&' + FORMAT_PARAM + '=' + FORMAT
+                + '&' + UNITS_PARAM + '=' + UNITS
+                + '&' + DAYS_PARAM + '=' + days);
+    }
+
+    /*
+     * Encodes a query value the way Android's Uri.Builder, which the phone used to build its URLs
+     * with, did: URLEncoder writes a space as "+", Uri.Builder as "%20". A "+" in the value is
+     * already "%2B" by then, so replacing the rest can't change what the server reads.
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            /* Every JVM is required to support UTF-8 */
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Fetches the forecast at url into days. Only as many days as days can hold are parsed; the
+     * rest of the response is never read. The first day is today.
+     *
+     * @param url                The URL to fetch, from one of the build methods
+     * @param normalizedUtcToday Normalized UTC date of today, see SunshineDates
+     * @param days               Emptied, then filled with the forecast, starting with today
+     * @return false if the server answered with an error instead of a forecast
+     * @throws IOException   If the server couldn't be reached or the response was cut short
+     * @throws JSONException If the response isn't a forecast
+     */
+    public boolean fetch(URL url, long normalizedUtcToday, final Forecast days)
+            throws IOException, JSONException {
+        days.clear();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        try {
+            Reader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), "UTF-8"));
+            Forecast chunk = new Forecast(days.capacity());
+            int result = ForecastStreamParser.parse(in, normalizedUtcToday, 0, chunk,
+                    new ForecastStreamParser.ChunkHandler() {
+                        @Override
+                        public boolean onChunk(Forecast chunk, int firstDayIndex) {
+                            copy(chunk, days);
+                            /* The first chunk is as many days as we wanted */
+                            return false;
+                        }
+                    });
+            return result != ForecastStreamParser.RESULT_SERVER_ERROR;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void copy(Forecast from, Forecast to) {
+        to.setLocation(from.getLatitude(), from.getLongitude());
+        for (int i = 0; i < from.size(); i++) {
+            to.addDay(from.getDate(i), from.getWeatherId(i), from.getMinTemp(i),
+                    from.getMaxTemp(i), from.getHumidity(i), from.getPressure(i),
+                    from.getWindSpeed(i), from.getDegrees(i));
+        }
+    }
+}
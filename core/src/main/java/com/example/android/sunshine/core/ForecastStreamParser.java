@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_CITY;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_COORD;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_HUMIDITY;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_LATITUDE;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_LIST;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_LONGITUDE;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_MAX;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_MESSAGE_CODE;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_MIN;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_PRESSURE;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_TEMPERATURE;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_WEATHER;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_WEATHER_ID;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_WINDSPEED;
+import static com.example.android.sunshine.core.OpenWeatherJsonParser.OWM_WIND_DIRECTION;
+
+/**
+ * Parses a forecast response as it streams in, handing the days to a {@link ChunkHandler} a
+ * chunk at a time instead of building the whole forecast first. This is what lets the sync
+ * request long horizons: memory use depends on the chunk size, not on how many days the server
+ * sends, and every chunk the handler commits survives even if the rest of the response never
+ * arrives.
+ * <p>
+ * The format is the same one {@link OpenWeatherJsonParser} reads, and days are dated the same
+ * way: the first entry is today and the rest are numbered from there.
+ */
+public final class ForecastStreamParser {
+
+    /* The whole response was read and every day after skipDays was handed to the handler */
+    public static final int RESULT_COMPLETE = 0;
+    /* The handler asked to stop. The days it already accepted are all there is. */
+    public static final int RESULT_STOPPED = 1;
+    /* The server answered with an error code instead of a forecast */
+    public static final int RESULT_SERVER_ERROR = 2;
+
+    /**
+     * Receives the parsed days, one chunk at a time.
+     */
+    public interface ChunkHandler {
+
+        /**
+         * Called every time the chunk fills up, and once more at the end of the response for
+         * whatever is left over. The chunk is emptied and refilled as soon as this returns, so
+         * anything that should be kept has to be copied or written out before returning.
+         *
+         * @param chunk         The days parsed since the last call
+         * @param firstDayIndex Index of the chunk's first day in the whole forecast, 0 for today
+         * @return true to keep going, false to stop parsing right away
+         * @throws IOException If the chunk couldn't be written out; parsing stops as well
+         */
+        boolean onChunk(Forecast chunk, int firstDayIndex) throws IOException;
+    }
+
+    private final JsonTokenizer mTokenizer;
+    private final long mNormalizedUtcStartDay;
+    private final int mSkipDays;
+    private final Forecast mChunk;
+    private final ChunkHandler mHandler;
+
+    /* Index of the next day in the list, counting the skipped ones */
+    private int mDayIndex;
+
+    private boolean mLocationKnown;
+    private double mLatitude;
+    private double mLongitude;
+
+    private ForecastStreamParser(Reader in, long normalizedUtcStartDay, int skipDays,
+                                 Forecast chunk, ChunkHandler handler) {
+        mTokenizer = new JsonTokenizer(in);
+        mNormalizedUtcStartDay = normalizedUtcStartDay;
+        mSkipDays = skipDays;
+        mChunk = chunk;
+        mHandler = handler;
+    }
+
+    /**
+     * Reads a forecast response from in, passing every day to the handler in chunks the size of
+     * chunk's capacity.
+     * <p>
+     * The first skipDays days are read past without being parsed or handed over. This is how an
+     * interrupted sync resumes: it requests the same forecast again and skips the days it has
+     * already written.
+     * <p>
+     * When this returns RESULT_COMPLETE, chunk is empty and holds the location the server
+     * resolved the request to.
+     *
+     * @param in                    The response. It is not closed.
+     * @param normalizedUtcStartDay Normalized UTC date of today, used for the first entry
+     * @param skipDays              How many days at the start of the list to skip
+     * @param chunk                 Reused for every chunk; its capacity is the chunk size
+     * @param handler               Receives each chunk
+     * @return One of the RESULT_ constants declared in this class
+     * @throws IOException   If the response couldn't be read, or the handler failed
+     * @throws JSONException If the response isn't a forecast
+     */
+    public static int parse(Reader in, long normalizedUtcStartDay, int skipDays, Forecast chunk,
+                            ChunkHandler handler) throws IOException, JSONException {
+        if (chunk.capacity() == 0) {
+            throw new IllegalArgumentException("Chunk must be able to hold at least one day");
+        }
+        chunk.clear();
+        return new ForecastStreamParser(in, normalizedUtcStartDay, skipDays, chunk, handler)
+                .parseForecast();
+    }
+
+    private int parseForecast() throws IOException, JSONException {
+        boolean listRead = false;
+
+        mTokenizer.beginObject();
+        for (boolean first = true; mTokenizer.hasNext('}', first); first = false) {
+            switch (mTokenizer.nextName()) {
+
+                case OWM_MESSAGE_CODE:
+                    /* Is there an error? */
+                    if (mTokenizer.nextInt() != HttpURLConnection.HTTP_OK) {
+                        return RESULT_SERVER_ERROR;
+                    }
+                    break;
+
+                case OWM_CITY:
+                    parseCity();
+                    break;
+
+                case OWM_LIST:
+                    if (!parseList()) {
+                        return RESULT_STOPPED;
+                    }
+                    listRead = true;
+                    break;
+
+                default:
+                    mTokenizer.skipValue();
+            }
+        }
+
+        if (!listRead) {
+            throw mTokenizer.syntaxError("No " + OWM_LIST + " in forecast");
+        }
+        if (!mLocationKnown) {
+            throw mTokenizer.syntaxError("No " + OWM_CITY + " in forecast");
+        }
+
+        /* Whatever is left didn't fill a whole chunk */
+        if (mChunk.size() > 0 && !flush()) {
+            return RESULT_STOPPED;
+        }
+        mChunk.clear();
+        mChunk.setLocation(mLatitude, mLongitude);
+        return RESULT_COMPLETE;
+    }
+
+    private void parseCity() throws IOException, JSONException {
+        mTokenizer.beginObject();
+        for (boolean first = true; mTokenizer.hasNext('}', first); first = false) {
+            if (!OWM_COORD.equals(mTokenizer.nextName())) {
+                mTokenizer.skipValue();
+                continue;
+            }
+            mTokenizer.beginObject();
+            for (boolean firstCoord = true; mTokenizer.hasNext('}', firstCoord);
+                 firstCoord = false) {
+                switch (mTokenizer.nextName()) {
+                    case OWM_LATITUDE:
+                        mLatitude = mTokenizer.nextDouble();
+                        break;
+                    case OWM_LONGITUDE:
+                        mLongitude = mTokenizer.nextDouble();
+                        break;
+                    default:
+                        mTokenizer.skipValue();
+                }
+            }
+            mLocationKnown = true;
+        }
+        mChunk.setLocation(mLatitude, mLongitude);
+    }
+
+    /* Returns false if the handler asked to stop */
+    private boolean parseList() throws IOException, JSONException {
+        mTokenizer.beginArray();
+        for (boolean first = true; mTokenizer.hasNext(']', first); first = false) {
+            if (mDayIndex < mSkipDays) {
+                mTokenizer.skipValue();
+                mDayIndex++;
+                continue;
+            }
+
+            parseDay();
+            mDayIndex++;
+            if (mChunk.isFull() && !flush()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void parseDay() throws IOException, JSONException {
+        int weatherId = 0;
+        double low = 0;
+        double high = 0;
+        double humidity = 0;
+        double pressure = 0;
+        double windSpeed = 0;
+        double windDirection = 0;
+
+        /* Every field is required, just as it is for OpenWeatherJsonParser */
+        int fieldsFound = 0;
+        final int allFields = 7;
+
+        mTokenizer.beginObject();
+        for (boolean first = true; mTokenizer.hasNext('}', first); first = false) {
+            switch (mTokenizer.nextName()) {
+
+                case OWM_PRESSURE:
+                    pressure = mTokenizer.nextDouble();
+                    fieldsFound++;
+                    break;
+
+                case OWM_HUMIDITY:
+                    humidity = mTokenizer.nextInt();
+                    fieldsFound++;
+                    break;
+
+                case OWM_WINDSPEED:
+                    windSpeed = mTokenizer.nextDouble();
+                    fieldsFound++;
+                    break;
+
+                case OWM_WIND_DIRECTION:
+                    windDirection = mTokenizer.nextDouble();
+                    fieldsFound++;
+                    break;
+
+                /* The weather code is in the first element of a child array called "weather" */
+                case OWM_WEATHER:
+                    mTokenizer.beginArray();
+                    for (boolean firstWeather = true; mTokenizer.hasNext(']', firstWeather);
+                         firstWeather = false) {
+                        if (!firstWeather) {
+                            mTokenizer.skipValue();
+                            continue;
+                        }
+                        mTokenizer.beginObject();
+                        for (boolean firstField = true; mTokenizer.hasNext('}', firstField);
+                             firstField = false) {
+                            if (OWM_WEATHER_ID.equals(mTokenizer.nextName())) {
+                                weatherId = mTokenizer.nextInt();
+                                fieldsFound++;
+                            } else {
+                                mTokenizer.skipValue();
+                            }
+                        }
+                    }
+                    break;
+
+                /* Temperatures are sent in a child object called "temp" */
+                case OWM_TEMPERATURE:
+                    mTokenizer.beginObject();
+                    for (boolean firstField = true; mTokenizer.hasNext('}', firstField);
+                         firstField = false) {
+                        switch (mTokenizer.nextName()) {
+                            case OWM_MAX:
+                                high = mTokenizer.nextDouble();
+                                fieldsFound++;
+                                break;
+                            case OWM_MIN:
+                                low = mTokenizer.nextDouble();
+                                fieldsFound++;
+                                break;
+                            default:
+                                mTokenizer.skipValue();
+                        }
+                    }
+                    break;
+
+                default:
+                    mTokenizer.skipValue();
+            }
+        }
+
+        if (fieldsFound != allFields) {
+            throw mTokenizer.syntaxError("Incomplete forecast for day " + mDayIndex);
+        }
+
+        long dateTimeMillis = mNormalizedUtcStartDay + SunshineDates.DAY_IN_MILLIS * mDayIndex;
+        mChunk.addDay(dateTimeMillis, weatherId, low, high, humidity, pressure,
+                windSpeed, windDirection);
+    }
+
+    /* Hands the current chunk to the handler and empties it. Returns false to stop. */
+    private boolean flush() throws IOException {
+        int firstDayIndex = mDayIndex - mChunk.size();
+        boolean keepGoing = mHandler.onChunk(mChunk, firstDayIndex);
+        mChunk.clear();
+        mChunk.setLocation(mLatitude, mLongitude);
+        return keepGoing;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Remembers friendly date strings, so a list row or detail screen that shows a date it has shown
+ * before doesn't build it again. Building one means formatting one or two dates, which is much
+ * slower than a map lookup.
+ * <p>
+ * A friendly date only depends on the date itself, whether the full date was asked for, which
+ * day it is now, the time zone and the locale. Labels are kept per date and per showFullDate;
+ * everything else is checked on each call, and when any of it changed since the labels were
+ * built, they are all thrown away. "Which day it is" means both the local day and the UTC day,
+ * as SunshineDates counts days from "now" in UTC.
+ * <p>
+ * The methods are synchronized, so labels can be precomputed on a background thread while the
+ * main thread reads them.
+ */
+public final class FriendlyDateCache {
+
+    private final Map<Long, String> mLabels = new HashMap<>();
+    private final Map<Long, String> mFullDateLabels = new HashMap<>();
+
+    /* What the labels above were built for. mLocale is null when nothing is cached. */
+    private long mUtcDay;
+    private long mLocalDay;
+    private String mTimeZoneId;
+    private Locale mLocale;
+
+    /**
+     * Returns the same string as
+     * {@link SunshineDates#getFriendlyDateString(DateLabels, long, long, TimeZone, boolean)},
+     * building it only if it isn't cached yet.
+     *
+     * @param labels                Produces the text for each part of the date on a miss
+     * @param normalizedUtcMidnight The normalized UTC date to display
+     * @param utcNowMillis          The current time
+     * @param timeZone              The time zone the user is in
+     * @param locale                The locale labels produces text for
+     * @param showFullDate          Whether to always show the full date
+     * @return A user-friendly representation of the date
+     */
+    public synchronized String get(DateLabels labels, long normalizedUtcMidnight,
+                                   long utcNowMillis, TimeZone timeZone, Locale locale,
+                                   boolean showFullDate) {
+        validate(utcNowMillis, timeZone, locale);
+
+        Map<Long, String> cache = showFullDate ? mFullDateLabels : mLabels;
+        String label = cache.get(normalizedUtcMidnight);
+        if (label == null) {
+            label = SunshineDates.getFriendlyDateString(labels, normalizedUtcMidnight,
+                    utcNowMillis, timeZone, showFullDate);
+            cache.put(normalizedUtcMidnight, label);
+        }
+        return label;
+    }
+
+    /**
+     * Builds the labels for every day of a forecast starting today, so showing them later is
+     * only a lookup.
+     *
+     * @param labels       Produces the text for each part of the date
+     * @param days         How many days, starting with today
+     * @param utcNowMillis The current time
+     * @param timeZone     The time zone the user is in
+     * @param locale       The locale labels produces text for
+     * @param showFullDate Whether the labels will be asked for with the full date
+     */
+    public synchronized void precompute(DateLabels labels, int days, long utcNowMillis,
+                                        TimeZone timeZone, Locale locale, boolean showFullDate) {
+        long today = SunshineDates.getNormalizedUtcDateForToday(utcNowMillis, timeZone);
+        for (int i = 0; i < days; i++) {
+            get(labels, today + i * SunshineDates.DAY_IN_MILLIS, utcNowMillis, timeZone, locale,
+                    showFullDate);
+        }
+    }
+
+    /**
+     * Throws every label away. Call this when the time zone, the locale or the clock was
+     * changed; the checks in {@link #get} would catch those too, but only on the next call.
+     */
+    public synchronized void invalidate() {
+        mLabels.clear();
+        mFullDateLabels.clear();
+        mLocale = null;
+    }
+
+    /* Number of labels cached, for tests */
+    synchronized int size() {
+        return mLabels.size() + mFullDateLabels.size();
+    }
+
+    private void validate(long utcNowMillis, TimeZone timeZone, Locale locale) {
+        long utcDay = SunshineDates.elapsedDaysSinceEpoch(utcNowMillis);
+        long localDay = SunshineDates.getNormalizedUtcDateForToday(utcNowMillis, timeZone);
+        String timeZoneId = timeZone.getID();
+
+        if (locale.equals(mLocale) && utcDay == mUtcDay && localDay == mLocalDay
+                && timeZoneId.equals(mTimeZoneId)) {
+            return;
+        }
+
+        invalidate();
+        mUtcDay = utcDay;
+        mLocalDay = localDay;
+        mTimeZoneId = timeZoneId;
+        mLocale = locale;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A {@link DateLabels} built on {@link SimpleDateFormat}, for use where Android's resources and
+ * DateUtils aren't available. The patterns approximate what DateUtils produces for the en_US
+ * locale. A new SimpleDateFormat is created for each call, just like the app does, so this class
+ * is safe to share between threads.
+ */
+public class JavaDateLabels implements DateLabels {
+
+    private static final String DAY_NAME_PATTERN = "EEEE";
+    private static final String READABLE_DATE_PATTERN = "EEEE, MMMM d";
+    private static final String ABBREVIATED_DATE_PATTERN = "EEE, MMM d";
+
+    private final String mToday;
+    private final String mTomorrow;
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+
+    public JavaDateLabels(String today, String tomorrow, Locale locale, TimeZone timeZone) {
+        mToday = today;
+        mTomorrow = tomorrow;
+        mLocale = locale;
+        mTimeZone = timeZone;
+    }
+
+    @Override
+    public String getToday() {
+        return mToday;
+    }
+
+    @Override
+    public String getTomorrow() {
+        return mTomorrow;
+    }
+
+    @Override
+    public String getDayName(long localDate) {
+        return format(DAY_NAME_PATTERN, localDate);
+    }
+
+    @Override
+    public String getReadableDate(long localDate) {
+        return format(READABLE_DATE_PATTERN, localDate);
+    }
+
+    @Override
+    public String getAbbreviatedDate(long localDate) {
+        return format(ABBREVIATED_DATE_PATTERN, localDate);
+    }
+
+    private String format(String pattern, long localDate) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, mLocale);
+        dateFormat.setTimeZone(mTimeZone);
+        return dateFormat.format(localDate);
+    }
+}
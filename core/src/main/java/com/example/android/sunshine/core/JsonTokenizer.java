@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A very small pull parser for JSON, reading from a {@link Reader} through a fixed size buffer.
+ * Unlike org.json, which needs the whole document in memory and builds a JSONObject for every
+ * object in it, this reads one value at a time and lets the caller skip the ones it doesn't care
+ * about without building anything.
+ * <p>
+ * It only supports what {@link ForecastStreamParser} needs, and it trusts the caller to ask for
+ * values in the order they appear. Objects are read like this:
+ * <pre>
+ *     tokenizer.beginObject();
+ *     for (boolean first = true; tokenizer.hasNext('}', first); first = false) {
+ *         String name = tokenizer.nextName();
+ *         ... read or skip the value ...
+ *     }
+ * </pre>
+ * Arrays work the same way, with beginArray and ']'.
+ */
+final class JsonTokenizer {
+
+    /* Plenty for any single token in a forecast, and small enough to keep memory flat */
+    private static final int BUFFER_SIZE = 1024;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+
+    /* Reused for strings and numbers, so reading a value doesn't grow a new builder each time */
+    private final StringBuilder mScratch = new StringBuilder(32);
+
+    JsonTokenizer(Reader reader) {
+        mReader = reader;
+    }
+
+    void beginObject() throws IOException, JSONException {
+        expect('{');
+    }
+
+    void beginArray() throws IOException, JSONException {
+        expect('[');
+    }
+
+    /**
+     * Checks whether the object or array being read has another element, consuming the comma
+     * in front of it, or the closing bracket if there isn't one.
+     *
+     * @param close ']' for arrays, '}' for objects
+     * @param first true if no element of this object or array has been read yet
+     * @return true if another element follows
+     */
+    boolean hasNext(char close, boolean first) throws IOException, JSONException {
+        int c = peek();
+        if (c == close) {
+            mPosition++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+        }
+        return true;
+    }
+
+    /** Reads the name of an object member, along with the colon that follows it. */
+    String nextName() throws IOException, JSONException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    String nextString() throws IOException, JSONException {
+        expect('"');
+        mScratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return mScratch.toString();
+            } else if (c == '\\') {
+                mScratch.append(readEscape());
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else {
+                mScratch.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Reads a number. Like org.json's getDouble, a string holding a number is accepted too, as
+     * OpenWeatherMap sends some codes as strings and others as numbers.
+     */
+    double nextDouble() throws IOException, JSONException {
+        String number;
+        if (peek() == '"') {
+            number = nextString();
+        } else {
+            readLiteral();
+            number = mScratch.toString();
+        }
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + number);
+        }
+    }
+
+    int nextInt() throws IOException, JSONException {
+        return (int) nextDouble();
+    }
+
+    /** Skips the next value, however deeply nested, without building anything from it. */
+    void skipValue() throws IOException, JSONException {
+        int c = peek();
+        if (c == '{') {
+            beginObject();
+            for (boolean first = true; hasNext('}', first); first = false) {
+                skipString();
+                expect(':');
+                skipValue();
+            }
+        } else if (c == '[') {
+            beginArray();
+            for (boolean first = true; hasNext(']', first); first = false) {
+                skipValue();
+            }
+        } else if (c == '"') {
+            skipString();
+        } else {
+            readLiteral();
+        }
+    }
+
+    /** @return true if nothing but whitespace is left */
+    boolean isAtEnd() throws IOException {
+        return peek() == -1;
+    }
+
+    JSONException syntaxError(String message) {
+        return new JSONException(message);
+    }
+
+    private void skipString() throws IOException, JSONException {
+        expect('"');
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /* Reads a number, true, false or null into mScratch */
+    private void readLiteral() throws IOException, JSONException {
+        peek();
+        mScratch.setLength(0);
+        while (true) {
+            if (mPosition == mLimit && !fill()) {
+                break;
+            }
+            char c = mBuffer[mPosition];
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            mScratch.append(c);
+            mPosition++;
+        }
+        if (mScratch.length() == 0) {
+            throw syntaxError("Expected a value");
+        }
+    }
+
+    private void expect(char expected) throws IOException, JSONException {
+        int c = peek();
+        if (c != expected) {
+            throw syntaxError("Expected '" + expected + "' but was "
+                    + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+        mPosition++;
+    }
+
+    /* Returns the next character that isn't whitespace, without consuming it, or -1 at the end */
+    private int peek() throws IOException {
+        while (true) {
+            if (mPosition == mLimit && !fill()) {
+                return -1;
+            }
+            char c = mBuffer[mPosition];
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+            mPosition++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return -1;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private boolean fill() throws IOException {
+        int read = mReader.read(mBuffer, 0, mBuffer.length);
+        if (read <= 0) {
+            mPosition = mLimit = 0;
+            return false;
+        }
+        mPosition = 0;
+        mLimit = read;
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies of one kind of operation during a load test, and summarizes them as
+ * throughput and percentiles.
+ * <p>
+ * Every sample is kept, as a primitive long, so percentiles are exact rather than read off a
+ * histogram. A load test running for minutes records some hundreds of thousands of samples,
+ * which is a few megabytes at most.
+ * <p>
+ * A recorder is not thread safe. Give each thread its own and {@link #merge} them once the
+ * threads are done; merging is cheap next to recording.
+ */
+public final class LatencyRecorder {
+
+    private long[] mSamples;
+    private int mCount;
+    private long mTotalNanos;
+    private long mRows;
+    private int mFailures;
+
+    public LatencyRecorder() {
+        mSamples = new long[1024];
+    }
+
+    /**
+     * Records one operation.
+     *
+     * @param elapsedNanos How long it took
+     * @param rows         How many rows it read or wrote
+     */
+    public void record(long elapsedNanos, int rows) {
+        if (mCount == mSamples.length) {
+            mSamples = Arrays.copyOf(mSamples, mCount * 2);
+        }
+        mSamples[mCount++] = elapsedNanos;
+        mTotalNanos += elapsedNanos;
+        mRows += rows;
+    }
+
+    /**
+     * Records an operation that failed. Failures are counted, but their latency isn't part of
+     * the percentiles.
+     */
+    public void recordFailure() {
+        mFailures++;
+    }
+
+    /**
+     * Adds everything another recorder collected to this one.
+     *
+     * @param other The recorder to add; it is left unchanged
+     */
+    public void merge(LatencyRecorder other) {
+        if (mCount + other.mCount > mSamples.length) {
+            mSamples = Arrays.copyOf(mSamples, Math.max(mSamples.length * 2,
+                    mCount + other.mCount));
+        }
+        System.arraycopy(other.mSamples, 0, mSamples, mCount, other.mCount);
+        mCount += other.mCount;
+        mTotalNanos += other.mTotalNanos;
+        mRows += other.mRows;
+        mFailures += other.mFailures;
+    }
+
+    /** @return The number of successful operations recorded */
+    public int getCount() {
+        return mCount;
+    }
+
+    /** @return The number of rows read or written by all operations */
+    public long getRows() {
+        return mRows;
+    }
+
+    /** @return The number of failed operations */
+    public int getFailures() {
+        return mFailures;
+    }
+
+    /**
+     * Returns a latency percentile, using the nearest-rank method: the smallest recorded latency
+     * that at least the given percentage of operations did not exceed.
+     *
+     * @param percentile Between 0 (exclusive) and 100 (inclusive), e.g. 50 for the median
+     * @return The latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        return percentileOf(sortedSamples(), percentile);
+    }
+
+    /**
+     * Sums up the recorded operations in one line, for logging.
+     *
+     * @param name         What the operations were, e.g. "reader"
+     * @param elapsedNanos How long the load test ran, to compute the throughput from
+     * @return For example "reader: 1200 ops (3 failed), 40.0 ops/s, 16800 rows,
+     * p50 1.20 ms, p90 2.10 ms, p99 5.30 ms, max 12.40 ms"
+     */
+    public String summarize(String name, long elapsedNanos) {
+        long[] sorted = sortedSamples();
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format(Locale.US,
+                "%s: %d ops (%d failed), %.1f ops/s, %d rows, "
+                        + "p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                name, mCount, mFailures, seconds > 0 ? mCount / seconds : 0.0, mRows,
+                millis(percentileOf(sorted, 50)), millis(percentileOf(sorted, 90)),
+                millis(percentileOf(sorted, 99)), millis(percentileOf(sorted, 100)));
+    }
+
+    private long[] sortedSamples() {
+        long[] sorted = Arrays.copyOf(mSamples, mCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentileOf(long[] sorted, double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Parses the JSON forecast returned by OpenWeatherMap (or the Sunshine test server, which uses
+ * the same format) into a {@link Forecast}.
+ * <p>
+ * This class has no side effects: saving the resolved coordinates, writing the rows and telling
+ * the watch about today's weather is up to the caller.
+ */
+public final class OpenWeatherJsonParser {
+
+    /* Location information */
+    static final String OWM_CITY = "city";
+    static final String OWM_COORD = "coord";
+
+    /* Location coordinate */
+    static final String OWM_LATITUDE = "lat";
+    static final String OWM_LONGITUDE = "lon";
+
+    /* Weather information. Each day's forecast info is an element of the "list" array */
+    static final String OWM_LIST = "list";
+
+    static final String OWM_PRESSURE = "pressure";
+    static final String OWM_HUMIDITY = "humidity";
+    static final String OWM_WINDSPEED = "speed";
+    static final String OWM_WIND_DIRECTION = "deg";
+
+    /* All temperatures are children of the "temp" object */
+    static final String OWM_TEMPERATURE = "temp";
+
+    /* Max temperature for the day */
+    static final String OWM_MAX = "max";
+    static final String OWM_MIN = "min";
+
+    static final String OWM_WEATHER = "weather";
+    static final String OWM_WEATHER_ID = "id";
+
+    static final String OWM_MESSAGE_CODE = "cod";
+
+    private OpenWeatherJsonParser() {
+    }
+
+    /**
+     * Parses the JSON of a forecast into a newly allocated {@link Forecast} that is exactly as
+     * large as the response. Handy for tests and one-off callers; the sync path should reuse a
+     * Forecast through {@link #parse(String, long, Forecast)} instead.
+     *
+     * @param forecastJsonStr       JSON response from the server
+     * @param normalizedUtcStartDay Normalized UTC date of today, used for the first entry
+     * @return The parsed forecast, or null if the server reported an error
+     * @throws JSONException If the JSON data cannot be properly parsed
+     */
+    public static Forecast parse(String forecastJsonStr, long normalizedUtcStartDay)
+            throws JSONException {
+
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        if (isError(forecastJson)) {
+            return null;
+        }
+
+        Forecast forecast = new Forecast(forecastJson.getJSONArray(OWM_LIST).length());
+        fill(forecastJson, normalizedUtcStartDay, forecast);
+        return forecast;
+    }
+
+    /**
+     * Parses the JSON of a forecast into an existing {@link Forecast}, replacing whatever it held
+     * before. The API doesn't tell us which date each entry is for, so, like the app always has,
+     * we assume the first entry is today and number the rest from there.
+     * <p>
+     * If the response has more days than the forecast has room for, the extra days are ignored.
+     *
+     * @param forecastJsonStr       JSON response from the server
+     * @param normalizedUtcStartDay Normalized UTC date of today, used for the first entry
+     * @param into                  The forecast to fill
+     * @return true if the forecast was filled, false if the server reported an error (in which
+     * case into is left empty)
+     * @throws JSONException If the JSON data cannot be properly parsed
+     */
+    public static boolean parse(String forecastJsonStr, long normalizedUtcStartDay,
+                                Forecast into) throws JSONException {
+        into.clear();
+
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        if (isError(forecastJson)) {
+            return false;
+        }
+
+        fill(forecastJson, normalizedUtcStartDay, into);
+        return true;
+    }
+
+    private static boolean isError(JSONObject forecastJson) throws JSONException {
+
+        /* Is there an error? */
+        if (forecastJson.has(OWM_MESSAGE_CODE)) {
+            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+
+            switch (errorCode) {
+                case HttpURLConnection.HTTP_OK:
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    /* Location invalid */
+                    return true;
+                default:
+                    /* Server probably down */
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static void fill(JSONObject forecastJson, long normalizedUtcStartDay,
+                             Forecast into) throws JSONException {
+
+        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+
+        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+
+        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
+        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
+        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+
+        into.setLocation(cityLatitude, cityLongitude);
+
+        int days = Math.min(jsonWeatherArray.length(), into.capacity());
+
+        for (int i = 0; i < days; i++) {
+
+            /* Get the JSON object representing the day */
+            JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
+
+            long dateTimeMillis = normalizedUtcStartDay + SunshineDates.DAY_IN_MILLIS * i;
+
+            double pressure = dayForecast.getDouble(OWM_PRESSURE);
+            int humidity = dayForecast.getInt(OWM_HUMIDITY);
+            double windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
+            double windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
+
+            /*
+             * Description is in a child array called "weather", which is 1 element long.
+             * That element also contains a weather code.
+             */
+            JSONObject weatherObject =
+                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
+
+            int weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+
+            /*
+             * Temperatures are sent by Open Weather Map in a child object called "temp".
+             */
+            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
+            double high = temperatureObject.getDouble(OWM_MAX);
+            double low = temperatureObject.getDouble(OWM_MIN);
+
+            into.addDay(dateTimeMillis, weatherId, low, high, humidity, pressure,
+                    windSpeed, windDirection);
+        }
+    }
+}
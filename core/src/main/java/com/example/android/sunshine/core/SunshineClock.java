@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+
+/**
+ * The current time and the user's time zone, with the time zone's offset cached.
+ * <p>
+ * {@link SunshineDates#getNormalizedUtcDateForToday(long, TimeZone)} asks the time zone for its
+ * offset every time, and on Android the caller first gets the time zone from
+ * TimeZone.getDefault(), which returns a new copy on each call. Offsets only change at DST
+ * transitions, so this class asks once, works out when the offset last changed and when it
+ * next changes, and answers from that until a time outside of those is asked for.
+ * <p>
+ * The transitions are found by walking a day at a time, forwards and backwards, until the
+ * offset differs (real time zones never change twice within a day), then bisecting that day so
+ * the cache starts and ends exactly on them. The walk gives up a year out, so a time zone
+ * without DST is looked at again once a year. Going back in time, for example when the user
+ * sets the clock, is handled the same way. Rebuilding is the only time anything is allocated,
+ * and no method takes a lock.
+ * <p>
+ * Both the time and the time zone are passed in, so tests can run against a fixed clock. When
+ * the user changes time zones, the owner has to call {@link #setTimeZone(TimeZone)}.
+ */
+public class SunshineClock {
+
+    /**
+     * Where the current time comes from.
+     */
+    public interface TimeSource {
+        long currentTimeMillis();
+    }
+
+    /* The system's wall clock */
+    public static final TimeSource SYSTEM_TIME = new TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /* How far either way a transition is looked for, see the class description */
+    private static final int MAX_SEARCH_DAYS = 366;
+
+    private final TimeSource mTimeSource;
+    private volatile TimeZone mTimeZone;
+
+    /*
+     * The cached offset. It is replaced as a whole, so readers never need a lock: they either
+     * see the old window or the new one. A window built for a time zone we've since left is
+     * simply ignored.
+     */
+    private volatile OffsetWindow mWindow;
+
+    /* An offset, the time zone it belongs to, and the times it holds from and until */
+    private static final class OffsetWindow {
+        final TimeZone timeZone;
+        final int offset;
+        final long validFrom;
+        final long validUntil;
+
+        OffsetWindow(TimeZone timeZone, int offset, long validFrom, long validUntil) {
+            this.timeZone = timeZone;
+            this.offset = offset;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+
+    public SunshineClock(TimeSource timeSource, TimeZone timeZone) {
+        mTimeSource = timeSource;
+        mTimeZone = timeZone;
+    }
+
+    public long currentTimeMillis() {
+        return mTimeSource.currentTimeMillis();
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /**
+     * Switches to another time zone, which also drops the cached offset.
+     *
+     * @param timeZone The user's time zone
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Returns the offset from UTC of the time zone at the given time, in milliseconds. Same as
+     * TimeZone#getOffset(long), but cached.
+     *
+     * @param utcMillis A time in milliseconds in UTC
+     * @return The offset to add to utcMillis to get local time
+     */
+    public int getOffset(long utcMillis) {
+        OffsetWindow window = mWindow;
+        if (window == null || window.timeZone != mTimeZone
+                || utcMillis < window.validFrom || utcMillis >= window.validUntil) {
+            window = findOffsetWindow(mTimeZone, utcMillis);
+            mWindow = window;
+        }
+        return window.offset;
+    }
+
+    /**
+     * Same as SunshineDates#getNormalizedUtcDateForToday for the current time and time zone.
+     *
+     * @return The normalized UTC date of the local day it is now
+     */
+    public long getNormalizedUtcDateForToday() {
+        long now = currentTimeMillis();
+        return SunshineDates.normalizeDate(now + getOffset(now));
+    }
+
+    /**
+     * @return The day index of the local day it is now, see SunshineDates#dayIndex
+     */
+    public int getTodayIndex() {
+        return SunshineDates.dayIndex(getNormalizedUtcDateForToday());
+    }
+
+    /**
+     * @return When the local day after today begins, see SunshineDates#getStartOfNextLocalDay
+     */
+    public long getStartOfNextLocalDay() {
+        return SunshineDates.getStartOfNextLocalDay(currentTimeMillis(), mTimeZone);
+    }
+
+    private static OffsetWindow findOffsetWindow(TimeZone timeZone, long utcMillis) {
+        int offset = timeZone.getOffset(utcMillis);
+        long from = findTransition(timeZone, utcMillis, offset, -SunshineDates.DAY_IN_MILLIS);
+        long until = findTransition(timeZone, utcMillis, offset, SunshineDates.DAY_IN_MILLIS);
+        return new OffsetWindow(timeZone, offset, from, until);
+    }
+
+    /**
+     * Walks from utcMillis a day at a time until the offset is no longer the one given, then
+     * bisects the last step.
+     *
+     * @param step A day forwards, or a day backwards
+     * @return Going forwards, the first millisecond with another offset. Going backwards, the
+     * first millisecond with this offset. If no transition is found within MAX_SEARCH_DAYS, the
+     * time where the walk stopped.
+     */
+    private static long findTransition(TimeZone timeZone, long utcMillis, int offset, long step) {
+        /* Always has the offset */
+        long same = utcMillis;
+        /* Has another offset, once found */
+        long other = utcMillis;
+        for (int day = 0; day < MAX_SEARCH_DAYS; day++) {
+            other = same + step;
+            if (timeZone.getOffset(other) != offset) break;
+            same = other;
+        }
+        if (same == other) {
+            return same;
+        }
+
+        while (Math.abs(other - same) > 1) {
+            long middle = same + (other - same) / 2;
+            if (timeZone.getOffset(middle) == offset) {
+                same = middle;
+            } else {
+                other = middle;
+            }
+        }
+        return step > 0 ? other : same;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date math used throughout Sunshine. Everything in here is plain Java: the current time and the
+ * time zone are passed in rather than read from the system, so callers on the JVM (tests and
+ * benchmarks) can pin them down.
+ * <p>
+ * Sunshine stores every weather row under a "normalized" date: the UTC midnight of the local day
+ * the row describes. See WeatherContract.WeatherEntry#COLUMN_DATE in the app for the details.
+ */
+public final class SunshineDates {
+
+    /* Milliseconds in a day */
+    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /* Milliseconds in an hour */
+    public static final long HOUR_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /*
+     * The four ways a friendly date can be displayed. See getFriendlyDateFormat for when each of
+     * them is used.
+     */
+
+    /* Full date with the day name replaced by "Today" or "Tomorrow", e.g. "Today, June 24" */
+    public static final int FORMAT_RELATIVE_FULL_DATE = 0;
+    /* Full date, e.g. "Wednesday, June 26" */
+    public static final int FORMAT_FULL_DATE = 1;
+    /* Just the day name, e.g. "Today", "Tomorrow" or "Friday" */
+    public static final int FORMAT_DAY_NAME = 2;
+    /* Abbreviated date, e.g. "Mon, Jul 1" */
+    public static final int FORMAT_ABBREVIATED_DATE = 3;
+
+    private SunshineDates() {
+    }
+
+    /**
+     * Returns the number of days since the epoch (January 1st, 1970 at midnight UTC) for the
+     * given time. Partial days are discarded.
+     *
+     * @param utcDate A date in milliseconds in UTC time
+     * @return The number of whole days since the epoch
+     */
+    public static long elapsedDaysSinceEpoch(long utcDate) {
+        return TimeUnit.MILLISECONDS.toDays(utcDate);
+    }
+
+    /**
+     * Returns the UTC midnight (in milliseconds) of the local day that contains the given
+     * instant in the given time zone. For example, 9:00 PM on September 23rd in EST returns
+     * September 23rd at midnight UTC, even though it is already the 24th in UTC.
+     *
+     * @param utcNowMillis The instant to normalize, usually the current time
+     * @param timeZone     The time zone whose local day should be used
+     * @return The normalized UTC date for the local day containing utcNowMillis
+     */
+    public static long getNormalizedUtcDateForToday(long utcNowMillis, TimeZone timeZone) {
+        long gmtOffsetMillis = timeZone.getOffset(utcNowMillis);
+        long timeSinceEpochLocalTimeMillis = utcNowMillis + gmtOffsetMillis;
+        long daysSinceEpochLocal = TimeUnit.MILLISECONDS.toDays(timeSinceEpochLocalTimeMillis);
+        return TimeUnit.DAYS.toMillis(daysSinceEpochLocal);
+    }
+
+    /**
+     * Returns the first instant of the local day after the one containing utcNowMillis, which is
+     * usually local midnight tomorrow. Where a daylight saving transition skips midnight, the
+     * day starts at the end of the gap instead, and that is what's returned.
+     *
+     * @param utcNowMillis The current time
+     * @param timeZone     The time zone whose local days should be used
+     * @return The UTC time at which the next local day begins, always after utcNowMillis
+     */
+    public static long getStartOfNextLocalDay(long utcNowMillis, TimeZone timeZone) {
+        long tomorrow = getNormalizedUtcDateForToday(utcNowMillis, timeZone) + DAY_IN_MILLIS;
+
+        /* Local midnight, using the offset in effect around then. Right nearly everywhere. */
+        long midnight = tomorrow - timeZone.getOffset(tomorrow - timeZone.getOffset(tomorrow));
+        if (midnight > utcNowMillis
+                && getNormalizedUtcDateForToday(midnight, timeZone) == tomorrow
+                && getNormalizedUtcDateForToday(midnight - 1, timeZone) < tomorrow) {
+            return midnight;
+        }
+
+        /* Midnight doesn't exist tomorrow; find the first millisecond that is tomorrow */
+        long before = utcNowMillis;
+        long after = utcNowMillis + 2 * DAY_IN_MILLIS;
+        while (after - before > 1) {
+            long middle = before + (after - before) / 2;
+            if (getNormalizedUtcDateForToday(middle, timeZone) >= tomorrow) {
+                after = middle;
+            } else {
+                before = middle;
+            }
+        }
+        return after;
+    }
+
+    /**
+     * Returns the day index of a normalized date: the number of days since the epoch, as an
+     * int. Comparing and stepping through day indexes is plain integer arithmetic, which is all
+     * most callers need.
+     *
+     * @param normalizedUtcDate A normalized UTC date
+     * @return Its day index
+     */
+    public static int dayIndex(long normalizedUtcDate) {
+        return (int) elapsedDaysSinceEpoch(normalizedUtcDate);
+    }
+
+    /**
+     * Turns a day index back into the normalized UTC date it stands for.
+     *
+     * @param dayIndex A day index, as returned by {@link #dayIndex(long)}
+     * @return UTC midnight of that day
+     */
+    public static long normalizedDateForDayIndex(int dayIndex) {
+        return dayIndex * DAY_IN_MILLIS;
+    }
+
+    /**
+     * Normalizes a UTC date by discarding everything past midnight UTC of the same day.
+     *
+     * @param date A date in milliseconds in UTC time
+     * @return UTC midnight of the given date
+     */
+    public static long normalizeDate(long date) {
+        return elapsedDaysSinceEpoch(date) * DAY_IN_MILLIS;
+    }
+
+    /**
+     * Checks whether a date falls exactly on UTC midnight.
+     *
+     * @param millisSinceEpoch Milliseconds since January 1, 1970 at midnight UTC
+     * @return true if the date represents UTC midnight
+     */
+    public static boolean isDateNormalized(long millisSinceEpoch) {
+        return millisSinceEpoch % DAY_IN_MILLIS == 0;
+    }
+
+    /**
+     * Truncates a UTC time to the start of its hour. Hourly forecasts are stored under this
+     * value, so every row of the hourly table starts exactly on the hour.
+     *
+     * @param utcMillis A time in milliseconds in UTC
+     * @return The start of the hour containing utcMillis
+     */
+    public static long normalizeHour(long utcMillis) {
+        return TimeUnit.MILLISECONDS.toHours(utcMillis) * HOUR_IN_MILLIS;
+    }
+
+    /**
+     * Checks whether a time falls exactly on the start of an hour.
+     *
+     * @param utcMillis Milliseconds since January 1, 1970 at midnight UTC
+     * @return true if the time is the start of an hour
+     */
+    public static boolean isHourNormalized(long utcMillis) {
+        return utcMillis % HOUR_IN_MILLIS == 0;
+    }
+
+    /**
+     * Converts a normalized UTC date into the local midnight of the same calendar day in the
+     * given time zone.
+     *
+     * @param normalizedUtcDate UTC midnight of the day
+     * @param timeZone          The time zone to convert to
+     * @return The instant of local midnight on that day, in UTC milliseconds
+     */
+    public static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate,
+                                                             TimeZone timeZone) {
+        long gmtOffset = timeZone.getOffset(normalizedUtcDate);
+        return normalizedUtcDate - gmtOffset;
+    }
+
+    /**
+     * Returns how many days after today the given local date is. 0 means today, 1 tomorrow.
+     *
+     * @param localDate    Local midnight of the day, as returned by
+     *                     {@link #getLocalMidnightFromNormalizedUtcDate(long, TimeZone)}
+     * @param utcNowMillis The current time
+     * @return The number of days between today and localDate
+     */
+    public static int getDaysAfterToday(long localDate, long utcNowMillis) {
+        return (int) (elapsedDaysSinceEpoch(localDate) - elapsedDaysSinceEpoch(utcNowMillis));
+    }
+
+    /**
+     * Decides how a date should be displayed to the user:
+     * <p>
+     * Today (or any day when showFullDate is set) is shown as a full date. Today and tomorrow
+     * get "Today"/"Tomorrow" instead of the day name, other days keep theirs.
+     * <p>
+     * The rest of the coming week is shown by day name alone ("Tomorrow", "Friday").
+     * <p>
+     * Anything further out is shown as an abbreviated date ("Mon, Jul 1").
+     *
+     * @param localDate    Local midnight of the day to display
+     * @param utcNowMillis The current time
+     * @param showFullDate Whether to always show the full date
+     * @return One of the FORMAT_ constants declared in this class
+     */
+    public static int getFriendlyDateFormat(long localDate, long utcNowMillis,
+                                            boolean showFullDate) {
+        long daysFromEpochToProvidedDate = elapsedDaysSinceEpoch(localDate);
+        long daysFromEpochToToday = elapsedDaysSinceEpoch(utcNowMillis);
+
+        if (daysFromEpochToProvidedDate == daysFromEpochToToday || showFullDate) {
+            if (daysFromEpochToProvidedDate - daysFromEpochToToday < 2) {
+                return FORMAT_RELATIVE_FULL_DATE;
+            } else {
+                return FORMAT_FULL_DATE;
+            }
+        } else if (daysFromEpochToProvidedDate < daysFromEpochToToday + 7) {
+            return FORMAT_DAY_NAME;
+        } else {
+            return FORMAT_ABBREVIATED_DATE;
+        }
+    }
+
+    /**
+     * Builds the friendly date string for a normalized date. The decision of which format to use
+     * is made here; producing the actual text is left to the given {@link DateLabels}, which on
+     * Android is backed by string resources and DateUtils.
+     *
+     * @param labels                Produces the text for each part of the date
+     * @param normalizedUtcMidnight The normalized UTC date to display
+     * @param utcNowMillis          The current time
+     * @param timeZone              The time zone the user is in
+     * @param showFullDate          Whether to always show the full date
+     * @return A user-friendly representation of the date
+     */
+    public static String getFriendlyDateString(DateLabels labels, long normalizedUtcMidnight,
+                                               long utcNowMillis, TimeZone timeZone,
+                                               boolean showFullDate) {
+        long localDate = getLocalMidnightFromNormalizedUtcDate(normalizedUtcMidnight, timeZone);
+
+        switch (getFriendlyDateFormat(localDate, utcNowMillis, showFullDate)) {
+
+            case FORMAT_RELATIVE_FULL_DATE: {
+                String readableDate = labels.getReadableDate(localDate);
+                String localizedDayName = labels.getDayName(localDate);
+                String dayName = getDayName(labels, localDate, utcNowMillis);
+                return readableDate.replace(localizedDayName, dayName);
+            }
+
+            case FORMAT_FULL_DATE:
+                return labels.getReadableDate(localDate);
+
+            case FORMAT_DAY_NAME:
+                return getDayName(labels, localDate, utcNowMillis);
+
+            default:
+                return labels.getAbbreviatedDate(localDate);
+        }
+    }
+
+    /**
+     * Returns "Today", "Tomorrow" or the name of the day of the week for the given local date.
+     *
+     * @param labels       Produces the text for each part of the date
+     * @param localDate    Local midnight of the day to display
+     * @param utcNowMillis The current time
+     * @return The relative day name
+     */
+    public static String getDayName(DateLabels labels, long localDate, long utcNowMillis) {
+        switch (getDaysAfterToday(localDate, utcNowMillis)) {
+            case 0:
+                return labels.getToday();
+            case 1:
+                return labels.getTomorrow();
+            default:
+                return labels.getDayName(localDate);
+        }
+    }
+}
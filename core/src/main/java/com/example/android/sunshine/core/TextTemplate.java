@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A format string that only substitutes strings, compiled once and then filled in with a single,
+ * exactly sized StringBuilder. String.format parses its format string and builds a Formatter on
+ * every call; for a template like the notification text, that is most of the work.
+ * <p>
+ * The only conversions understood are those string resources use for text: "%s" (the next
+ * argument), "%1$s" (an argument by position) and "%%". Anything else is rejected when the
+ * template is compiled, so a resource that needs the real thing fails loudly instead of
+ * rendering wrong.
+ */
+public final class TextTemplate {
+
+    /* The text between placeholders; there is always one more of these than of mArguments */
+    private final String[] mLiterals;
+
+    /* For each placeholder, the (zero based) index of the argument it is replaced by */
+    private final int[] mArguments;
+
+    private final int mLiteralLength;
+    private final int mArgumentCount;
+
+    private TextTemplate(String[] literals, int[] arguments) {
+        mLiterals = literals;
+        mArguments = arguments;
+
+        int literalLength = 0;
+        for (String literal : literals) literalLength += literal.length();
+        mLiteralLength = literalLength;
+
+        int argumentCount = 0;
+        for (int argument : arguments) argumentCount = Math.max(argumentCount, argument + 1);
+        mArgumentCount = argumentCount;
+    }
+
+    /**
+     * Compiles a format string.
+     *
+     * @param format A format string using only %s, %n$s and %%
+     * @return The compiled template
+     * @throws IllegalArgumentException If the format uses any other conversion
+     */
+    public static TextTemplate compile(String format) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(format.length());
+        int nextSequential = 0;
+
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= format.length()) {
+                throw new IllegalArgumentException("Format ends with '%': " + format);
+            }
+
+            if (format.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+
+            int argument;
+            int digitsStart = i;
+            while (i < format.length() && Character.isDigit(format.charAt(i))) i++;
+            if (i > digitsStart) {
+                if (i >= format.length() || format.charAt(i) != '$') {
+                    throw new IllegalArgumentException("Unsupported conversion in: " + format);
+                }
+                argument = Integer.parseInt(format.substring(digitsStart, i)) - 1;
+                i++;
+            } else {
+                argument = nextSequential++;
+            }
+
+            if (argument < 0 || i >= format.length() || format.charAt(i) != 's') {
+                throw new IllegalArgumentException("Unsupported conversion in: " + format);
+            }
+            i++;
+
+            literals.add(literal.toString());
+            literal.setLength(0);
+            arguments.add(argument);
+        }
+        literals.add(literal.toString());
+
+        int[] argumentArray = new int[arguments.size()];
+        for (int a = 0; a < argumentArray.length; a++) argumentArray[a] = arguments.get(a);
+        return new TextTemplate(literals.toArray(new String[literals.size()]), argumentArray);
+    }
+
+    /**
+     * Fills the template in.
+     *
+     * @param args The values of the placeholders, in argument order
+     * @return The filled in text
+     * @throws IllegalArgumentException If fewer arguments are given than the template uses
+     */
+    public String format(CharSequence... args) {
+        if (args.length < mArgumentCount) {
+            throw new IllegalArgumentException("Template needs " + mArgumentCount
+                    + " arguments, got " + args.length);
+        }
+
+        int length = mLiteralLength;
+        for (int argument : mArguments) length += args[argument].length();
+
+        StringBuilder text = new StringBuilder(length);
+        for (int p = 0; p < mArguments.length; p++) {
+            text.append(mLiterals[p]).append(args[mArguments[p]]);
+        }
+        text.append(mLiterals[mArguments.length]);
+        return text.toString();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Maps OpenWeatherMap data onto the handful of concepts Sunshine displays: a condition category
+ * (which picks the weather art), a compass direction for the wind and imperial units.
+ * <p>
+ * The condition codes are documented at http://openweathermap.org/weather-conditions
+ */
+public final class WeatherConditions {
+
+    /*
+     * Condition categories. Each one has a small icon and a large piece of art in the app and a
+     * small icon on the watch. CONDITION_UNKNOWN is returned for weather IDs we don't recognize;
+     * callers display it as a storm, since that's the safest thing to warn about.
+     */
+    public static final int CONDITION_UNKNOWN = -1;
+    public static final int CONDITION_STORM = 0;
+    public static final int CONDITION_LIGHT_RAIN = 1;
+    public static final int CONDITION_RAIN = 2;
+    public static final int CONDITION_SNOW = 3;
+    public static final int CONDITION_FOG = 4;
+    public static final int CONDITION_CLEAR = 5;
+    public static final int CONDITION_LIGHT_CLOUDS = 6;
+    public static final int CONDITION_CLOUDS = 7;
+
+    /* Number of known condition categories, handy for sizing lookup tables */
+    public static final int CONDITION_COUNT = 8;
+
+    /* Kilometers per hour to miles per hour */
+    private static final float KMH_TO_MPH = .621371192237334f;
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * Returns the condition category for a weather ID returned by OpenWeatherMap.
+     *
+     * @param weatherId from OpenWeatherMap API response
+     * @return One of the CONDITION_ constants declared in this class
+     */
+    public static int getConditionForWeatherId(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return CONDITION_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return CONDITION_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return CONDITION_RAIN;
+        } else if (weatherId == 511) {
+            return CONDITION_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return CONDITION_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return CONDITION_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return CONDITION_FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return CONDITION_STORM;
+        } else if (weatherId == 800) {
+            return CONDITION_CLEAR;
+        } else if (weatherId == 801) {
+            return CONDITION_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return CONDITION_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return CONDITION_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return CONDITION_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return CONDITION_CLEAR;
+        }
+
+        return CONDITION_UNKNOWN;
+    }
+
+    /**
+     * Converts meteorological degrees (0 is north, 90 is east) into a compass direction.
+     *
+     * @param degrees Direction the wind is coming from, in degrees
+     * @return One of N, NE, E, SE, S, SW, W, NW, or "Unknown" if degrees is not a number
+     */
+    public static String getWindDirection(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+
+    /**
+     * @param temperatureInCelsius Temperature in degrees Celsius (°C)
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * @param speedInKmh Wind speed in kilometers per hour
+     * @return Wind speed in miles per hour
+     */
+    public static float kmhToMph(float speedInKmh) {
+        return KMH_TO_MPH * speedInKmh;
+    }
+}
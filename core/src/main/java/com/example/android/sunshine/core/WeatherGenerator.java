@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Makes up plausible weather, for filling the database without a network: in development, in
+ * tests and in load tests that need far more data than one real forecast.
+ * <p>
+ * Everything is derived from a seed. The weather of a day depends only on the seed, the location
+ * and the date, never on what was generated before, so the same seed always produces the same
+ * days in whatever order (or on whatever thread) they are asked for. Hours are derived from the
+ * day they fall on, so a day's hours always stay between its min and max.
+ * <p>
+ * Each location has its own {@link Climate}. A generator is immutable and thread safe.
+ */
+public final class WeatherGenerator {
+
+    /*
+     * Weather IDs as OpenWeatherMap sends them, from clear to stormy. Which one a day gets
+     * depends on how wet its climate is, see pickWeatherId.
+     */
+    private static final int[] DRY_WEATHER_IDS = {800, 800, 800, 801, 802, 803, 804, 741};
+    private static final int[] WET_WEATHER_IDS = {500, 500, 501, 300, 502, 211, 600, 601};
+
+    /* Local hour of the day the temperature peaks at */
+    private static final int WARMEST_HOUR = 15;
+
+    private final long mSeed;
+    private final Climate[] mClimates;
+
+    /**
+     * The distributions a location's weather is drawn from. Temperatures are in °C, wind speeds
+     * in km/h, humidity in percent and pressure in hPa.
+     */
+    public static final class Climate {
+
+        /* Somewhere in western Europe, more or less */
+        public static final Climate TEMPERATE = new Climate(11, 8, 9, 3, 75, 10, 1013, 8, 14, 0.35);
+
+        /* Average of the daily mean temperature over the year */
+        public final double meanTemp;
+        /* How far the daily mean moves from meanTemp between summer and winter */
+        public final double seasonalSwing;
+        /* Average difference between a day's min and max */
+        public final double dailySwing;
+        /* Standard deviation of the day-to-day noise on the mean temperature */
+        public final double tempNoise;
+
+        public final double humidityMean;
+        public final double humidityNoise;
+        public final double pressureMean;
+        public final double pressureNoise;
+
+        /* Wind speeds follow an exponential distribution with this mean */
+        public final double windMean;
+
+        /* Probability that a day has rain, snow or a storm, between 0 and 1 */
+        public final double wetDays;
+
+        public Climate(double meanTemp, double seasonalSwing, double dailySwing, double tempNoise,
+                       double humidityMean, double humidityNoise, double pressureMean,
+                       double pressureNoise, double windMean, double wetDays) {
+            this.meanTemp = meanTemp;
+            this.seasonalSwing = seasonalSwing;
+            this.dailySwing = dailySwing;
+            this.tempNoise = tempNoise;
+            this.humidityMean = humidityMean;
+            this.humidityNoise = humidityNoise;
+            this.pressureMean = pressureMean;
+            this.pressureNoise = pressureNoise;
+            this.windMean = windMean;
+            this.wetDays = wetDays;
+        }
+
+        /**
+         * Makes up a climate, anywhere from polar to tropical and from desert to rain forest.
+         *
+         * @param random Where the climate's parameters are drawn from
+         * @return A new climate
+         */
+        public static Climate random(Random random) {
+            double meanTemp = -10 + random.nextDouble() * 40;
+            return new Climate(
+                    meanTemp,
+                    2 + random.nextDouble() * 16,
+                    4 + random.nextDouble() * 12,
+                    1 + random.nextDouble() * 4,
+                    30 + random.nextDouble() * 60,
+                    5 + random.nextDouble() * 10,
+                    1005 + random.nextDouble() * 15,
+                    4 + random.nextDouble() * 8,
+                    5 + random.nextDouble() * 25,
+                    0.05 + random.nextDouble() * 0.6);
+        }
+    }
+
+    /**
+     * Receives the hours generated by {@link #generateHours}, one call per hour.
+     */
+    public interface HourHandler {
+        void onHour(long utcHour, int weatherId, double temp, double humidity, double pressure,
+                    double windSpeed, double degrees);
+    }
+
+    /**
+     * Creates a generator with the given climate for each location.
+     *
+     * @param seed     Decides all of the weather; the same seed gives the same weather
+     * @param climates The climate of each location. Location i has climates[i].
+     */
+    public WeatherGenerator(long seed, Climate... climates) {
+        if (climates.length == 0) {
+            throw new IllegalArgumentException("At least one location is needed");
+        }
+        mSeed = seed;
+        mClimates = climates.clone();
+    }
+
+    /**
+     * Creates a generator for a number of locations with random climates, themselves derived
+     * from the seed.
+     *
+     * @param seed      Decides all of the weather, and the climates
+     * @param locations How many locations to make up
+     * @return The generator
+     */
+    public static WeatherGenerator withRandomClimates(long seed, int locations) {
+        if (locations <= 0) {
+            throw new IllegalArgumentException("At least one location is needed: " + locations);
+        }
+        Random random = new Random(seed);
+        Climate[] climates = new Climate[locations];
+        for (int i = 0; i < locations; i++) {
+            climates[i] = Climate.random(random);
+        }
+        return new WeatherGenerator(seed, climates);
+    }
+
+    /** @return The number of locations this generator knows */
+    public int getLocationCount() {
+        return mClimates.length;
+    }
+
+    /**
+     * Fills a forecast with consecutive days of one location, up to its capacity. Whatever the
+     * forecast held before is cleared.
+     *
+     * @param location            Index of the location, less than getLocationCount()
+     * @param firstNormalizedDate The normalized UTC date of the first day
+     * @param days                The forecast to fill
+     */
+    public void generateDays(int location, long firstNormalizedDate, Forecast days) {
+        Climate climate = climateOf(location);
+        int firstDay = SunshineDates.dayIndex(firstNormalizedDate);
+
+        /* Spread the locations out from south to north, so each has its own coordinates */
+        days.clear();
+        days.setLocation(-60 + 120.0 * location / mClimates.length, 0);
+        for (int i = 0; i < days.capacity(); i++) {
+            addDay(climate, location, firstDay + i, days);
+        }
+    }
+
+    /**
+     * Generates hours of one location. Each hour is handed to the handler as it's generated, so
+     * any number of hours can be produced without holding them all.
+     *
+     * @param location  Index of the location, less than getLocationCount()
+     * @param firstHour The first hour, in UTC milliseconds. It is rounded down to the hour.
+     * @param hours     How many hours to generate, counting those skipped by stepHours
+     * @param stepHours Distance between generated hours: 1 for every hour, 3 for every third...
+     * @param timeZone  The location's time zone, which decides the day each hour belongs to
+     * @param handler   Receives the hours
+     */
+    public void generateHours(int location, long firstHour, int hours, int stepHours,
+                              TimeZone timeZone, HourHandler handler) {
+        if (stepHours <= 0) {
+            throw new IllegalArgumentException("stepHours must be positive: " + stepHours);
+        }
+        Climate climate = climateOf(location);
+        Forecast day = new Forecast(1);
+        long start = SunshineDates.normalizeHour(firstHour);
+
+        int cachedDay = Integer.MIN_VALUE;
+        for (int i = 0; i < hours; i += stepHours) {
+            long hour = start + i * SunshineDates.HOUR_IN_MILLIS;
+            long localTime = hour + timeZone.getOffset(hour);
+            int dayIndex = SunshineDates.dayIndex(SunshineDates.normalizeDate(localTime));
+            if (dayIndex != cachedDay) {
+                day.clear();
+                addDay(climate, location, dayIndex, day);
+                cachedDay = dayIndex;
+            }
+
+            /* Coldest at WARMEST_HOUR - 12, warmest at WARMEST_HOUR */
+            double hourOfDay = (localTime - SunshineDates.normalizeDate(localTime))
+                    / (double) SunshineDates.HOUR_IN_MILLIS;
+            double warmth = 0.5 + 0.5 * Math.cos(2 * Math.PI * (hourOfDay - WARMEST_HOUR) / 24);
+            double min = day.getMinTemp(0);
+            double temp = min + (day.getMaxTemp(0) - min) * warmth;
+
+            /* Small hourly wobbles around the day's values, derived from the hour itself */
+            Random random = randomFor(location, hour);
+            handler.onHour(hour,
+                    day.getWeatherId(0),
+                    temp,
+                    clamp(day.getHumidity(0) + random.nextGaussian() * 3, 0, 100),
+                    day.getPressure(0) + random.nextGaussian(),
+                    Math.max(0, day.getWindSpeed(0) * (0.7 + 0.6 * random.nextDouble())),
+                    (day.getDegrees(0) + random.nextGaussian() * 20 + 360) % 360);
+        }
+    }
+
+    private Climate climateOf(int location) {
+        if (location < 0 || location >= mClimates.length) {
+            throw new IllegalArgumentException("No location " + location + ", there are "
+                    + mClimates.length);
+        }
+        return mClimates[location];
+    }
+
+    private void addDay(Climate climate, int location, int dayIndex, Forecast days) {
+        Random random = randomFor(location, dayIndex);
+
+        /* Warmest in mid July, coldest in mid January; fine for a made-up northern hemisphere */
+        double season = Math.cos(2 * Math.PI * (dayIndex - 196) / 365.25);
+        double mean = climate.meanTemp + climate.seasonalSwing * season
+                + random.nextGaussian() * climate.tempNoise;
+        double swing = climate.dailySwing * (0.5 + random.nextDouble());
+
+        boolean wet = random.nextDouble() < climate.wetDays;
+        int weatherId = pickWeatherId(random, wet, mean);
+
+        /* Wet days are more humid, and the pressure is lower */
+        double humidity = climate.humidityMean + random.nextGaussian() * climate.humidityNoise
+                + (wet ? climate.humidityNoise : 0);
+        double pressure = climate.pressureMean + random.nextGaussian() * climate.pressureNoise
+                - (wet ? climate.pressureNoise : 0);
+        double windSpeed = -climate.windMean * Math.log(1 - random.nextDouble());
+
+        days.addDay(SunshineDates.normalizedDateForDayIndex(dayIndex), weatherId,
+                mean - swing / 2, mean + swing / 2, clamp(humidity, 0, 100), pressure,
+                windSpeed, random.nextDouble() * 360);
+    }
+
+    private static int pickWeatherId(Random random, boolean wet, double meanTemp) {
+        if (!wet) return DRY_WEATHER_IDS[random.nextInt(DRY_WEATHER_IDS.length)];
+
+        int weatherId = WET_WEATHER_IDS[random.nextInt(WET_WEATHER_IDS.length)];
+        /* No snow in summer, no rain in a deep frost */
+        if (weatherId >= 600 && meanTemp > 3) return 500;
+        if (weatherId < 600 && meanTemp < -5) return 600;
+        return weatherId;
+    }
+
+    /*
+     * A Random that depends only on the seed, the location and one more value (a day index or
+     * an hour). The inputs are mixed the way SplitMix64 mixes its state, so neighbouring days
+     * get unrelated sequences.
+     */
+    private Random randomFor(int location, long value) {
+        long z = mSeed + 0x9E3779B97F4A7C15L * (location + 1) + 0xBF58476D1CE4E5B9L * value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DailyAggregateTest {
+
+    private static final long HOUR = SunshineDates.HOUR_IN_MILLIS;
+
+    @Test
+    public void aggregatesHours() {
+        DailyAggregate day = new DailyAggregate();
+        day.add(-3 * HOUR, 800, 12.5, 60, 1010, 10, 350);
+        day.add(HOUR, 500, 18, 70, 1014, 20, 10);
+        day.add(5 * HOUR, 200, 15, 80, 1012, 30, 0);
+
+        assertEquals(3, day.getHours());
+        assertEquals(12.5, day.getMinTemp(), 0);
+        assertEquals(18, day.getMaxTemp(), 0);
+        assertEquals(70, day.getHumidity(), 1e-9);
+        assertEquals(1012, day.getPressure(), 1e-9);
+        assertEquals(20, day.getWindSpeed(), 1e-9);
+        /* 350°, 10° and 0° average to north, not to 120° */
+        assertEquals(0, Math.min(day.getDegrees(), 360 - day.getDegrees()), 1e-9);
+        /* The hour closest to noon wins */
+        assertEquals(500, day.getWeatherId());
+    }
+
+    @Test
+    public void restoredAggregateMatchesOneBuiltInOneGo() {
+        DailyAggregate whole = new DailyAggregate();
+        DailyAggregate first = new DailyAggregate();
+        for (int hour = 0; hour < 24; hour++) {
+            long noonDistance = (hour - 12) * HOUR;
+            double temp = 10 + Math.sin(hour / 4.0) * 8;
+            whole.add(noonDistance, 800 + hour, temp, 50 + hour, 1000 + hour, hour, hour * 15);
+            if (hour < 10) {
+                first.add(noonDistance, 800 + hour, temp, 50 + hour, 1000 + hour, hour, hour * 15);
+            }
+        }
+
+        DailyAggregate resumed = new DailyAggregate();
+        resumed.restore(first.getHours(), first.getMinTemp(), first.getMaxTemp(),
+                first.getHumiditySum(), first.getPressureSum(), first.getWindSpeedSum(),
+                first.getWindEast(), first.getWindNorth(), first.getWeatherId(),
+                first.getWeatherIdNoonDistance());
+        for (int hour = 10; hour < 24; hour++) {
+            resumed.add((hour - 12) * HOUR, 800 + hour, 10 + Math.sin(hour / 4.0) * 8,
+                    50 + hour, 1000 + hour, hour, hour * 15);
+        }
+
+        assertEquals(whole.getHours(), resumed.getHours());
+        assertEquals(whole.getMinTemp(), resumed.getMinTemp(), 0);
+        assertEquals(whole.getMaxTemp(), resumed.getMaxTemp(), 0);
+        assertEquals(whole.getHumidity(), resumed.getHumidity(), 1e-9);
+        assertEquals(whole.getPressure(), resumed.getPressure(), 1e-9);
+        assertEquals(whole.getWindSpeed(), resumed.getWindSpeed(), 1e-9);
+        assertEquals(whole.getDegrees(), resumed.getDegrees(), 1e-9);
+        assertEquals(812, resumed.getWeatherId());
+    }
+}
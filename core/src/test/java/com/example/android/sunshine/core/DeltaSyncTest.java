@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaSyncTest {
+
+    /**
+     * A watch at the other end of a {@link FakeNodeTransport}. It applies every message it gets
+     * and acknowledges it, unless it is out of range or its acknowledgements are being lost.
+     */
+    private static class FakeWatch {
+        final Map<String, String> fields = new HashMap<>();
+        boolean inRange = true;
+        boolean losesAcks;
+        final List<Map<String, String>> received = new ArrayList<>();
+    }
+
+    /** Stands in for the Wear MessageApi, delivering to a set of {@link FakeWatch}es */
+    private static class FakeNodeTransport implements DeltaSync.NodeTransport {
+        final DeltaSync sync;
+        final Map<String, FakeWatch> watches = new LinkedHashMap<>();
+
+        FakeNodeTransport(DeltaSync sync) {
+            this.sync = sync;
+        }
+
+        FakeWatch add(String nodeId) {
+            FakeWatch watch = new FakeWatch();
+            watches.put(nodeId, watch);
+            return watch;
+        }
+
+        @Override
+        public boolean send(String nodeId, Map<String, String> fields, long session,
+                            long version) {
+            FakeWatch watch = watches.get(nodeId);
+            if (watch == null || !watch.inRange) return false;
+            watch.received.add(new HashMap<>(fields));
+            watch.fields.putAll(fields);
+            if (!watch.losesAcks) {
+                sync.acknowledge(nodeId, session, version);
+            }
+            return true;
+        }
+    }
+
+    private DeltaSync mSync;
+    private FakeNodeTransport mTransport;
+    private FakeWatch mFirst;
+    private FakeWatch mSecond;
+
+    private static Map<String, String> fields(String... keysAndValues) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            fields.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return fields;
+    }
+
+    private int publishToAll() {
+        return mSync.publish(mTransport.watches.keySet(), mTransport);
+    }
+
+    @Before
+    public void setUp() {
+        mSync = new DeltaSync();
+        mTransport = new FakeNodeTransport(mSync);
+        mFirst = mTransport.add("first");
+        mSecond = mTransport.add("second");
+        mSync.update(fields("high", "20°", "low", "10°", "weatherId", "800"));
+    }
+
+    @Test
+    public void newWatchesGetEverything() {
+        assertEquals(6, publishToAll());
+        assertEquals(fields("high", "20°", "low", "10°", "weatherId", "800"), mFirst.fields);
+        assertEquals(mFirst.fields, mSecond.fields);
+    }
+
+    @Test
+    public void onlyChangedFieldsAreSent() {
+        publishToAll();
+        mSync.update(fields("high", "21°", "low", "10°", "weatherId", "800"));
+
+        assertEquals(2, publishToAll());
+        assertEquals(fields("high", "21°"), mFirst.received.get(1));
+        assertEquals(fields("high", "21°"), mSecond.received.get(1));
+    }
+
+    @Test
+    public void upToDateWatchesGetAnEmptyMessage() {
+        publishToAll();
+        long version = mSync.update(fields("high", "20°"));
+
+        assertEquals(1, version);
+        assertEquals(0, publishToAll());
+        assertEquals(Collections.<String, String>emptyMap(), mFirst.received.get(1));
+    }
+
+    @Test
+    public void onlyTheGivenNodesAreSentTo() {
+        mTransport.add("phone-only-app");
+
+        mSync.publish(Arrays.asList("first", "second"), mTransport);
+
+        assertTrue(mTransport.watches.get("phone-only-app").received.isEmpty());
+        assertEquals(1, mFirst.received.size());
+    }
+
+    @Test
+    public void watchOutOfRangeCatchesUpInOneMessage() {
+        publishToAll();
+        mSecond.inRange = false;
+        mSync.update(fields("high", "21°"));
+        publishToAll();
+        mSync.update(fields("low", "11°"));
+        publishToAll();
+
+        mSecond.inRange = true;
+        publishToAll();
+
+        assertEquals(fields("high", "21°", "low", "11°"),
+                mSecond.received.get(mSecond.received.size() - 1));
+        assertEquals(fields("low", "11°"), mFirst.received.get(2));
+    }
+
+    @Test
+    public void lostAcknowledgementsAreResent() {
+        publishToAll();
+        mFirst.losesAcks = true;
+        mSync.update(fields("weatherId", "500"));
+        publishToAll();
+
+        mFirst.losesAcks = false;
+        publishToAll();
+
+        assertEquals(fields("weatherId", "500"), mFirst.received.get(2));
+        assertEquals(Collections.<String, String>emptyMap(), mSecond.received.get(2));
+    }
+
+    @Test
+    public void staleAcknowledgementsAreIgnored() {
+        publishToAll();
+        mSync.update(fields("high", "21°"));
+        mSync.acknowledge("first", mSync.getSession(), 2);
+        mSync.acknowledge("first", mSync.getSession(), 1);
+
+        assertEquals(Collections.<String, String>emptyMap(), mSync.deltaFor("first"));
+
+        /* Version 3 doesn't exist yet, so the watch can't have it */
+        mSync.acknowledge("second", mSync.getSession(), 3);
+        assertEquals(fields("high", "21°"), mSync.deltaFor("second"));
+    }
+
+    @Test
+    public void acknowledgementsFromAnotherSessionAreIgnored() {
+        long oldSession = mSync.getSession();
+        publishToAll();
+
+        /* The phone restarts, and the versions start over in a new session */
+        mSync = new DeltaSync(oldSession + 1);
+        mSync.update(fields("high", "21°", "low", "10°", "weatherId", "800"));
+        mSync.acknowledge("first", oldSession, 1);
+
+        assertEquals(fields("high", "21°", "low", "10°", "weatherId", "800"),
+                mSync.deltaFor("first"));
+    }
+
+    @Test
+    public void forgottenWatchesGetEverythingAgain() {
+        publishToAll();
+        mSync.forget("first");
+
+        assertEquals(fields("high", "20°", "low", "10°", "weatherId", "800"),
+                mSync.deltaFor("first"));
+    }
+
+    @Test
+    public void watchesConvergeDespiteDropsAndLostAcks() {
+        Random random = new Random(46);
+        FakeWatch third = mTransport.add("third");
+        String[] keys = {"high", "low", "weatherId", "location"};
+        int fieldsSent = 0;
+        int fullSends = 0;
+
+        for (int round = 0; round < 200; round++) {
+            for (String key : keys) {
+                if (random.nextInt(3) == 0) {
+                    mSync.update(fields(key, Integer.toString(random.nextInt(5))));
+                }
+            }
+            for (FakeWatch watch : mTransport.watches.values()) {
+                watch.inRange = random.nextInt(4) != 0;
+                watch.losesAcks = random.nextInt(5) == 0;
+            }
+            fieldsSent += publishToAll();
+            fullSends += 4 * mTransport.watches.size();
+        }
+
+        /* Everyone in range with working acks, twice: once to deliver, once to confirm */
+        for (FakeWatch watch : mTransport.watches.values()) {
+            watch.inRange = true;
+            watch.losesAcks = false;
+        }
+        publishToAll();
+        assertEquals(0, publishToAll());
+
+        Map<String, String> expected = mSync.deltaFor("never-seen");
+        assertEquals(expected, mFirst.fields);
+        assertEquals(expected, mSecond.fields);
+        assertEquals(expected, third.fields);
+        assertTrue("Deltas sent " + fieldsSent + " fields, full pushes " + fullSends,
+                fieldsSent < fullSends);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ForecastClient} against a small HTTP server on localhost that stands in for the
+ * weather server.
+ */
+public class ForecastClientTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    private static final String SERVER_ERROR_JSON = "{\"cod\":\"404\",\"message\":\"not found\"}";
+
+    private HttpServer mServer;
+    private ForecastClient mClient;
+
+    /* What the stand-in answers with, and what it was last asked for */
+    private volatile int mStatus = 200;
+    private volatile String mBody;
+    private volatile String mLastQuery;
+
+    /* Builds a response with the given number of days; day i has weather ID 800 + i */
+    private static String forecastJson(int days) {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"message\":0.01,")
+                .append("\"city\":{\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.0838,\"lat\":37.3861}},")
+                .append("\"cnt\":").append(days).append(",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"dt\":1475280000,\"temp\":{\"day\":20,\"min\":").append(10 + i)
+                    .append(",\"max\":").append(20.5 + i)
+                    .append("},\"pressure\":1012.4,\"humidity\":60,")
+                    .append("\"weather\":[{\"id\":").append(800 + i)
+                    .append(",\"main\":\"Clear\",\"description\":\"clear sky\"}],")
+                    .append("\"speed\":3.2,\"deg\":270}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/staticweather", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mLastQuery = exchange.getRequestURI().getRawQuery();
+                byte[] body = mBody.getBytes("UTF-8");
+                exchange.sendResponseHeaders(mStatus, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+        mClient = new ForecastClient("http://localhost:" + mServer.getAddress().getPort()
+                + "/staticweather");
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetchesTheFirstDays() throws Exception {
+        mBody = forecastJson(14);
+        Forecast days = new Forecast(2);
+
+        assertTrue(mClient.fetch(mClient.buildLocationQueryUrl("94043", 2), DATE_NORMALIZED, days));
+
+        assertEquals(2, days.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(DATE_NORMALIZED + i * SunshineDates.DAY_IN_MILLIS, days.getDate(i));
+            assertEquals(800 + i, days.getWeatherId(i));
+            assertEquals(10 + i, days.getMinTemp(i), 0);
+            assertEquals(20.5 + i, days.getMaxTemp(i), 0);
+        }
+        assertEquals(37.3861, days.getLatitude(), 0);
+        assertEquals(-122.0838, days.getLongitude(), 0);
+    }
+
+    @Test
+    public void keepsAShortForecast() throws Exception {
+        mBody = forecastJson(1);
+        Forecast days = new Forecast(3);
+
+        assertTrue(mClient.fetch(mClient.buildLocationQueryUrl("94043", 3), DATE_NORMALIZED, days));
+
+        assertEquals(1, days.size());
+        assertEquals(800, days.getWeatherId(0));
+    }
+
+    @Test
+    public void buildsTheSameQueryAsThePhone() throws Exception {
+        mBody = forecastJson(1);
+        Forecast days = new Forecast(1);
+
+        mClient.fetch(mClient.buildLocationQueryUrl("Mountain View, CA 94043", 1),
+                DATE_NORMALIZED, days);
+        assertEquals("q=Mountain%20View%2C%20CA%2094043&mode=json&units=metric&cnt=1", mLastQuery);
+
+        mClient.fetch(mClient.buildCoordinatesUrl(37.3861, -122.0838, 1), DATE_NORMALIZED, days);
+        assertEquals("lat=37.3861&lon=-122.0838&mode=json&units=metric&cnt=1", mLastQuery);
+    }
+
+    @Test
+    public void reportsAServerError() throws Exception {
+        mBody = SERVER_ERROR_JSON;
+        Forecast days = new Forecast(1);
+
+        assertFalse(mClient.fetch(mClient.buildLocationQueryUrl("nowhere", 1), DATE_NORMALIZED,
+                days));
+        assertEquals(0, days.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnAnHttpError() throws Exception {
+        mStatus = 503;
+        mBody = "";
+        URL url = mClient.buildLocationQueryUrl("94043", 1);
+
+        mClient.fetch(url, DATE_NORMALIZED, new Forecast(1));
+    }
+}
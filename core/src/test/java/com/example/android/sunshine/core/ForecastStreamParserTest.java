@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForecastStreamParserTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    /* Builds a response with the given number of days; day i has weather ID 800 + i */
+    private static String forecastJson(int days) {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"message\":0.01,")
+                .append("\"city\":{\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.0838,\"lat\":37.3861}},")
+                .append("\"cnt\":").append(days).append(",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"dt\":1475280000,\"temp\":{\"day\":20,\"min\":").append(10 + i)
+                    .append(",\"max\":").append(20.5 + i)
+                    .append("},\"pressure\":1012.4,\"humidity\":60,")
+                    .append("\"weather\":[{\"id\":").append(800 + i)
+                    .append(",\"main\":\"Clear\",\"description\":\"sky \\\"clear\\\" \\u00b0\"}],")
+                    .append("\"speed\":3.2,\"deg\":270,\"clouds\":[1,{\"a\":null},true]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /* Records every chunk it is given, optionally asking to stop after a number of chunks */
+    private static class RecordingHandler implements ForecastStreamParser.ChunkHandler {
+        final List<Integer> firstDays = new ArrayList<>();
+        final List<Integer> weatherIds = new ArrayList<>();
+        final List<Long> dates = new ArrayList<>();
+        final int stopAfterChunks;
+
+        RecordingHandler(int stopAfterChunks) {
+            this.stopAfterChunks = stopAfterChunks;
+        }
+
+        @Override
+        public boolean onChunk(Forecast chunk, int firstDayIndex) {
+            firstDays.add(firstDayIndex);
+            for (int i = 0; i < chunk.size(); i++) {
+                weatherIds.add(chunk.getWeatherId(i));
+                dates.add(chunk.getDate(i));
+            }
+            return firstDays.size() != stopAfterChunks;
+        }
+    }
+
+    @Test
+    public void matchesTheTreeParser() throws Exception {
+        String json = forecastJson(10);
+        Forecast whole = OpenWeatherJsonParser.parse(json, DATE_NORMALIZED);
+
+        Forecast chunk = new Forecast(4);
+        RecordingHandler handler = new RecordingHandler(-1);
+        int result = ForecastStreamParser.parse(new StringReader(json), DATE_NORMALIZED, 0,
+                chunk, handler);
+
+        assertEquals(ForecastStreamParser.RESULT_COMPLETE, result);
+        assertEquals(37.3861, chunk.getLatitude(), 0);
+        assertEquals(-122.0838, chunk.getLongitude(), 0);
+        assertEquals(0, chunk.size());
+
+        assertEquals(3, handler.firstDays.size());
+        assertEquals(0, (int) handler.firstDays.get(0));
+        assertEquals(4, (int) handler.firstDays.get(1));
+        assertEquals(8, (int) handler.firstDays.get(2));
+
+        assertEquals(whole.size(), handler.weatherIds.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertEquals(whole.getWeatherId(i), (int) handler.weatherIds.get(i));
+            assertEquals(whole.getDate(i), (long) handler.dates.get(i));
+        }
+    }
+
+    @Test
+    public void stopsAndResumes() throws Exception {
+        String json = forecastJson(10);
+        Forecast chunk = new Forecast(3);
+
+        RecordingHandler interrupted = new RecordingHandler(2);
+        assertEquals(ForecastStreamParser.RESULT_STOPPED, ForecastStreamParser.parse(
+                new StringReader(json), DATE_NORMALIZED, 0, chunk, interrupted));
+        assertEquals(6, interrupted.weatherIds.size());
+
+        RecordingHandler resumed = new RecordingHandler(-1);
+        assertEquals(ForecastStreamParser.RESULT_COMPLETE, ForecastStreamParser.parse(
+                new StringReader(json), DATE_NORMALIZED, 6, chunk, resumed));
+        assertEquals(6, (int) resumed.firstDays.get(0));
+        assertEquals(4, resumed.weatherIds.size());
+        assertEquals(806, (int) resumed.weatherIds.get(0));
+        assertEquals(DATE_NORMALIZED + 6 * SunshineDates.DAY_IN_MILLIS, (long) resumed.dates.get(0));
+    }
+
+    @Test
+    public void serverError() throws Exception {
+        RecordingHandler handler = new RecordingHandler(-1);
+        assertEquals(ForecastStreamParser.RESULT_SERVER_ERROR, ForecastStreamParser.parse(
+                new StringReader("{\"cod\":\"404\",\"message\":\"city not found\"}"),
+                DATE_NORMALIZED, 0, new Forecast(7), handler));
+        assertEquals(0, handler.firstDays.size());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class FriendlyDateCacheTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    private static final long HOUR = SunshineDates.HOUR_IN_MILLIS;
+    private static final long DAY = SunshineDates.DAY_IN_MILLIS;
+
+    /* Whole, half and quarter hour offsets on both sides of UTC, with and without DST */
+    private static final String[] TIME_ZONES = {
+            "UTC", "America/Los_Angeles", "America/New_York", "Pacific/Honolulu",
+            "Asia/Kolkata", "Asia/Kathmandu", "Pacific/Auckland", "Pacific/Chatham",
+            "Europe/London", "Australia/Lord_Howe",
+    };
+
+    private static final int FORECAST_DAYS = 14;
+
+    @Test
+    public void matchesUncachedStringsAcrossTimeZones() {
+        FriendlyDateCache cache = new FriendlyDateCache();
+
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateLabels labels = new JavaDateLabels("Today", "Tomorrow", Locale.US, timeZone);
+
+            /*
+             * Every 45 minutes for five weeks, one cache for the whole run, so the cache has to
+             * notice every midnight on its own. The range covers the DST changes of both
+             * hemispheres in 2016.
+             */
+            for (long now = DATE_NORMALIZED - 3 * DAY; now < DATE_NORMALIZED + 32 * DAY;
+                 now += 3 * HOUR / 4) {
+                long today = SunshineDates.getNormalizedUtcDateForToday(now, timeZone);
+                for (int i = -1; i < FORECAST_DAYS; i++) {
+                    long date = today + i * DAY;
+                    for (boolean showFullDate : new boolean[]{false, true}) {
+                        assertEquals(id + " at " + now + " for " + date,
+                                SunshineDates.getFriendlyDateString(labels, date, now, timeZone,
+                                        showFullDate),
+                                cache.get(labels, date, now, timeZone, Locale.US,
+                                        showFullDate));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void precomputedLabelsMatch() {
+        TimeZone timeZone = TimeZone.getTimeZone("Asia/Kathmandu");
+        DateLabels labels = new JavaDateLabels("Today", "Tomorrow", Locale.US, timeZone);
+        FriendlyDateCache cache = new FriendlyDateCache();
+        long now = DATE_NORMALIZED + 20 * HOUR;
+
+        cache.precompute(labels, FORECAST_DAYS, now, timeZone, Locale.US, false);
+        assertEquals(FORECAST_DAYS, cache.size());
+
+        long today = SunshineDates.getNormalizedUtcDateForToday(now, timeZone);
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            long date = today + i * DAY;
+            assertEquals(SunshineDates.getFriendlyDateString(labels, date, now, timeZone, false),
+                    cache.get(labels, date, now, timeZone, Locale.US, false));
+        }
+        /* Every lookup was a hit */
+        assertEquals(FORECAST_DAYS, cache.size());
+    }
+
+    @Test
+    public void localeChangeRebuildsLabels() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        FriendlyDateCache cache = new FriendlyDateCache();
+        long now = DATE_NORMALIZED + HOUR;
+        long dayAfterTomorrow = DATE_NORMALIZED + 2 * DAY;
+
+        assertEquals("Monday", cache.get(new JavaDateLabels("Today", "Tomorrow", Locale.US, utc),
+                dayAfterTomorrow, now, utc, Locale.US, false));
+        assertEquals("lundi", cache.get(
+                new JavaDateLabels("Aujourd'hui", "Demain", Locale.FRANCE, utc),
+                dayAfterTomorrow, now, utc, Locale.FRANCE, false));
+    }
+
+    @Test
+    public void timeZoneChangeRebuildsLabels() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        TimeZone auckland = TimeZone.getTimeZone("Pacific/Auckland");
+        FriendlyDateCache cache = new FriendlyDateCache();
+        long now = DATE_NORMALIZED + HOUR;
+
+        cache.get(new JavaDateLabels("Today", "Tomorrow", Locale.US, utc), DATE_NORMALIZED, now,
+                utc, Locale.US, false);
+        cache.get(new JavaDateLabels("Today", "Tomorrow", Locale.US, utc),
+                DATE_NORMALIZED + DAY, now, utc, Locale.US, false);
+        assertEquals(2, cache.size());
+
+        DateLabels labels = new JavaDateLabels("Today", "Tomorrow", Locale.US, auckland);
+        assertEquals(SunshineDates.getFriendlyDateString(labels, DATE_NORMALIZED, now, auckland,
+                false), cache.get(labels, DATE_NORMALIZED, now, auckland, Locale.US, false));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void invalidateDropsEverything() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        DateLabels labels = new JavaDateLabels("Today", "Tomorrow", Locale.US, utc);
+        FriendlyDateCache cache = new FriendlyDateCache();
+
+        cache.precompute(labels, FORECAST_DAYS, DATE_NORMALIZED, utc, Locale.US, true);
+        cache.invalidate();
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void percentilesUseTheNearestRank() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        /* 1 to 100, shuffled a bit */
+        for (int i = 100; i >= 1; i -= 2) recorder.record(i, 1);
+        for (int i = 1; i <= 99; i += 2) recorder.record(i, 1);
+
+        assertEquals(100, recorder.getCount());
+        assertEquals(100, recorder.getRows());
+        assertEquals(50, recorder.getPercentileNanos(50));
+        assertEquals(90, recorder.getPercentileNanos(90));
+        assertEquals(99, recorder.getPercentileNanos(99));
+        assertEquals(100, recorder.getPercentileNanos(100));
+        assertEquals(1, recorder.getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void emptyRecorderHasNoLatency() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        assertEquals(0, recorder.getPercentileNanos(99));
+        assertTrue(recorder.summarize("idle", TimeUnit.SECONDS.toNanos(1))
+                .startsWith("idle: 0 ops (0 failed), 0.0 ops/s"));
+    }
+
+    @Test
+    public void mergeCombinesEverything() {
+        LatencyRecorder first = new LatencyRecorder();
+        LatencyRecorder second = new LatencyRecorder();
+        for (int i = 0; i < 3000; i++) first.record(1000, 2);
+        for (int i = 0; i < 1000; i++) second.record(5000, 1);
+        second.recordFailure();
+
+        first.merge(second);
+        assertEquals(4000, first.getCount());
+        assertEquals(7000, first.getRows());
+        assertEquals(1, first.getFailures());
+        assertEquals(1000, first.getPercentileNanos(75));
+        assertEquals(5000, first.getPercentileNanos(76));
+        assertEquals(1000, second.getCount());
+    }
+
+    @Test
+    public void summaryReportsThroughputAndPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 10; i++) recorder.record(TimeUnit.MILLISECONDS.toNanos(i), 14);
+
+        assertEquals("reader: 10 ops (0 failed), 5.0 ops/s, 140 rows, "
+                        + "p50 5.00 ms, p90 9.00 ms, p99 10.00 ms, max 10.00 ms",
+                recorder.summarize("reader", TimeUnit.SECONDS.toNanos(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileMustBeInRange() {
+        new LatencyRecorder().getPercentileNanos(101);
+    }
+}
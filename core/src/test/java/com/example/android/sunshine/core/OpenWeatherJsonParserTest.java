@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OpenWeatherJsonParserTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    private static final String TWO_DAY_FORECAST = "{"
+            + "\"city\":{\"id\":5375480,\"name\":\"Mountain View\","
+            + "\"coord\":{\"lon\":-122.0838,\"lat\":37.3861},\"country\":\"US\"},"
+            + "\"cod\":\"200\",\"cnt\":2,\"list\":["
+            + "{\"dt\":1475280000,\"temp\":{\"min\":12.5,\"max\":24.75},\"pressure\":1012.4,"
+            + "\"humidity\":60,\"weather\":[{\"id\":800,\"main\":\"Clear\"}],"
+            + "\"speed\":3.2,\"deg\":270},"
+            + "{\"dt\":1475366400,\"temp\":{\"min\":11,\"max\":19},\"pressure\":1009,"
+            + "\"humidity\":82,\"weather\":[{\"id\":501,\"main\":\"Rain\"}],"
+            + "\"speed\":7.5,\"deg\":190}]}";
+
+    @Test
+    public void parsesEveryDay() throws Exception {
+        Forecast forecast = OpenWeatherJsonParser.parse(TWO_DAY_FORECAST, DATE_NORMALIZED);
+
+        assertEquals(37.3861, forecast.getLatitude(), 0);
+        assertEquals(-122.0838, forecast.getLongitude(), 0);
+        assertEquals(2, forecast.size());
+
+        assertEquals(DATE_NORMALIZED, forecast.getDate(0));
+        assertEquals(800, forecast.getWeatherId(0));
+        assertEquals(12.5, forecast.getMinTemp(0), 0);
+        assertEquals(24.75, forecast.getMaxTemp(0), 0);
+        assertEquals(60, forecast.getHumidity(0), 0);
+        assertEquals(1012.4, forecast.getPressure(0), 0);
+        assertEquals(3.2, forecast.getWindSpeed(0), 0);
+        assertEquals(270, forecast.getDegrees(0), 0);
+
+        assertEquals(DATE_NORMALIZED + SunshineDates.DAY_IN_MILLIS, forecast.getDate(1));
+        assertEquals(501, forecast.getWeatherId(1));
+    }
+
+    @Test
+    public void reusedForecastIsRefilledAndCapped() throws Exception {
+        Forecast forecast = new Forecast(1);
+
+        assertTrue(OpenWeatherJsonParser.parse(TWO_DAY_FORECAST, DATE_NORMALIZED, forecast));
+        assertEquals(1, forecast.size());
+        assertEquals(800, forecast.getWeatherId(0));
+
+        assertFalse(OpenWeatherJsonParser.parse(
+                "{\"cod\":\"500\"}", DATE_NORMALIZED, forecast));
+        assertEquals(0, forecast.size());
+
+        assertTrue(OpenWeatherJsonParser.parse(TWO_DAY_FORECAST,
+                DATE_NORMALIZED + SunshineDates.DAY_IN_MILLIS, forecast));
+        assertEquals(1, forecast.size());
+        assertEquals(DATE_NORMALIZED + SunshineDates.DAY_IN_MILLIS, forecast.getDate(0));
+    }
+
+    @Test
+    public void errorCodeReturnsNull() throws Exception {
+        assertNull(OpenWeatherJsonParser.parse(
+                "{\"cod\":\"404\",\"message\":\"city not found\"}", DATE_NORMALIZED));
+    }
+}
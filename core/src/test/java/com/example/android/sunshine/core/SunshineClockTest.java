@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class SunshineClockTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = SunshineDates.HOUR_IN_MILLIS;
+    private static final long DAY = SunshineDates.DAY_IN_MILLIS;
+
+    /* March 13th, 2016 at 2:00 AM PST, when Los Angeles moved to PDT */
+    private static final long LOS_ANGELES_SPRING_FORWARD = 1457863200000L;
+    /* November 6th, 2016 at 2:00 AM PDT, when Los Angeles moved back to PST */
+    private static final long LOS_ANGELES_FALL_BACK = 1478422800000L;
+
+    private static final String[] TIME_ZONES = {
+            "UTC", "America/Los_Angeles", "Asia/Kathmandu", "Pacific/Auckland",
+            "Pacific/Chatham", "Australia/Lord_Howe", "Europe/London",
+    };
+
+    /** A clock whose time only moves when the test says so */
+    private static class FixedTime implements SunshineClock.TimeSource {
+        long now;
+
+        FixedTime(long now) {
+            this.now = now;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void matchesTheTimeZoneAcrossAYear() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            FixedTime time = new FixedTime(DATE_NORMALIZED - 300 * DAY);
+            SunshineClock clock = new SunshineClock(time, timeZone);
+
+            /* Steps that aren't a whole number of hours, so we land on either side of midnight */
+            for (; time.now < DATE_NORMALIZED + 100 * DAY; time.now += 37 * MINUTE) {
+                assertEquals(id + " at " + time.now,
+                        SunshineDates.getNormalizedUtcDateForToday(time.now, timeZone),
+                        clock.getNormalizedUtcDateForToday());
+            }
+        }
+    }
+
+    @Test
+    public void offsetChangesExactlyAtTheTransition() {
+        TimeZone losAngeles = TimeZone.getTimeZone("America/Los_Angeles");
+        SunshineClock clock = new SunshineClock(SunshineClock.SYSTEM_TIME, losAngeles);
+
+        for (long transition : new long[]{LOS_ANGELES_SPRING_FORWARD, LOS_ANGELES_FALL_BACK}) {
+            /* Cache the offset from well before, so the transition is where the window ends */
+            clock.getOffset(transition - 12 * HOUR);
+            assertEquals(losAngeles.getOffset(transition - 1), clock.getOffset(transition - 1));
+            assertEquals(losAngeles.getOffset(transition), clock.getOffset(transition));
+        }
+    }
+
+    @Test
+    public void windowReachesTransitionsMonthsAway() {
+        TimeZone losAngeles = TimeZone.getTimeZone("America/Los_Angeles");
+        SunshineClock clock = new SunshineClock(SunshineClock.SYSTEM_TIME, losAngeles);
+
+        /* Cached a month before the fall back, the window still ends exactly there */
+        clock.getOffset(DATE_NORMALIZED);
+        assertEquals(-7 * HOUR, clock.getOffset(LOS_ANGELES_FALL_BACK - 1));
+        assertEquals(-8 * HOUR, clock.getOffset(LOS_ANGELES_FALL_BACK));
+
+        /* And when cached after it, the window starts exactly there */
+        clock.getOffset(LOS_ANGELES_FALL_BACK + 30 * DAY);
+        assertEquals(-8 * HOUR, clock.getOffset(LOS_ANGELES_FALL_BACK));
+        assertEquals(-7 * HOUR, clock.getOffset(LOS_ANGELES_FALL_BACK - 1));
+        assertEquals(-7 * HOUR, clock.getOffset(LOS_ANGELES_SPRING_FORWARD));
+        assertEquals(-8 * HOUR, clock.getOffset(LOS_ANGELES_SPRING_FORWARD - 1));
+    }
+
+    @Test
+    public void goingBackInTimeRebuildsTheCache() {
+        TimeZone losAngeles = TimeZone.getTimeZone("America/Los_Angeles");
+        SunshineClock clock = new SunshineClock(SunshineClock.SYSTEM_TIME, losAngeles);
+
+        clock.getOffset(LOS_ANGELES_SPRING_FORWARD + HOUR);
+        assertEquals(-8 * HOUR, clock.getOffset(LOS_ANGELES_SPRING_FORWARD - HOUR));
+    }
+
+    @Test
+    public void changingTimeZonesForgetsTheOffset() {
+        FixedTime time = new FixedTime(DATE_NORMALIZED + 20 * HOUR);
+        SunshineClock clock = new SunshineClock(time, TimeZone.getTimeZone("UTC"));
+        assertEquals(DATE_NORMALIZED, clock.getNormalizedUtcDateForToday());
+
+        /* 8:00 PM UTC is already the next morning in Auckland */
+        clock.setTimeZone(TimeZone.getTimeZone("Pacific/Auckland"));
+        assertEquals(DATE_NORMALIZED + DAY, clock.getNormalizedUtcDateForToday());
+    }
+
+    @Test
+    public void dayIndexesRoundTrip() {
+        int index = SunshineDates.dayIndex(DATE_NORMALIZED);
+
+        assertEquals(17075, index);
+        assertEquals(DATE_NORMALIZED, SunshineDates.normalizedDateForDayIndex(index));
+        assertEquals(DATE_NORMALIZED + DAY, SunshineDates.normalizedDateForDayIndex(index + 1));
+
+        FixedTime time = new FixedTime(DATE_NORMALIZED + 5 * HOUR);
+        SunshineClock clock = new SunshineClock(time, TimeZone.getTimeZone("America/Los_Angeles"));
+        /* Still September 30th in Los Angeles */
+        assertEquals(index - 1, clock.getTodayIndex());
+    }
+}
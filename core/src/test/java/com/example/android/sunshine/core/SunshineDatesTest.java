@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SunshineDatesTest {
+
+    /* October 1st, 2016 at midnight, GMT time */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    /* September 23rd, 2016 at 9:00 PM EDT, which is already the 24th in UTC */
+    private static final long EVENING_IN_NEW_YORK = 1474678800000L;
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void normalizedDateForTodayUsesTheLocalDay() {
+        /* The example from WeatherContract: the row belongs to September 23rd, not the 24th */
+        assertEquals(1474588800000L,
+                SunshineDates.getNormalizedUtcDateForToday(EVENING_IN_NEW_YORK, NEW_YORK));
+        assertEquals(1474675200000L,
+                SunshineDates.getNormalizedUtcDateForToday(EVENING_IN_NEW_YORK, UTC));
+    }
+
+    @Test
+    public void nextLocalDayStartsAtLocalMidnight() {
+        /* September 24th at midnight in New York, 4:00 AM UTC */
+        assertEquals(1474689600000L,
+                SunshineDates.getStartOfNextLocalDay(EVENING_IN_NEW_YORK, NEW_YORK));
+        assertEquals(1474675200000L + SunshineDates.DAY_IN_MILLIS,
+                SunshineDates.getStartOfNextLocalDay(EVENING_IN_NEW_YORK, UTC));
+    }
+
+    @Test
+    public void nextLocalDayStartsAfterASkippedMidnight() {
+        /* Sao Paulo went from 23:59:59 straight to 01:00 on November 4th, 2018 */
+        TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+        long noonOnTheThird = 1541246400000L;
+        assertEquals(1541300400000L,
+                SunshineDates.getStartOfNextLocalDay(noonOnTheThird, saoPaulo));
+    }
+
+    @Test
+    public void nextLocalDayIsAlwaysTheDayAfterToday() {
+        String[] ids = {"UTC", "America/New_York", "America/Sao_Paulo", "Europe/London",
+                "Australia/Lord_Howe", "Pacific/Apia", "Asia/Kathmandu"};
+        long hours = 5 * SunshineDates.HOUR_IN_MILLIS + 17 * 60 * 1000;
+        for (String id : ids) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            for (long now = 1293840000000L; now < 1325376000000L; now += hours) {
+                long today = SunshineDates.getNormalizedUtcDateForToday(now, timeZone);
+                long next = SunshineDates.getStartOfNextLocalDay(now, timeZone);
+                assertTrue(id + " at " + now, next > now);
+                assertTrue(id + " at " + now,
+                        SunshineDates.getNormalizedUtcDateForToday(next, timeZone) > today);
+                assertEquals(id + " at " + now, today,
+                        SunshineDates.getNormalizedUtcDateForToday(next - 1, timeZone));
+            }
+        }
+    }
+
+    @Test
+    public void normalizeDateDiscardsTimeOfDay() {
+        assertEquals(DATE_NORMALIZED, SunshineDates.normalizeDate(DATE_NORMALIZED + 1));
+        assertEquals(DATE_NORMALIZED,
+                SunshineDates.normalizeDate(DATE_NORMALIZED + SunshineDates.DAY_IN_MILLIS - 1));
+        assertTrue(SunshineDates.isDateNormalized(DATE_NORMALIZED));
+        assertFalse(SunshineDates.isDateNormalized(DATE_NORMALIZED + 1));
+    }
+
+    @Test
+    public void friendlyDateFormatDependsOnDistanceFromToday() {
+        long now = DATE_NORMALIZED + 1000;
+        long day = SunshineDates.DAY_IN_MILLIS;
+
+        assertEquals(SunshineDates.FORMAT_RELATIVE_FULL_DATE,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED, now, false));
+        assertEquals(SunshineDates.FORMAT_DAY_NAME,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED + day, now, false));
+        assertEquals(SunshineDates.FORMAT_RELATIVE_FULL_DATE,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED + day, now, true));
+        assertEquals(SunshineDates.FORMAT_FULL_DATE,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED + 3 * day, now, true));
+        assertEquals(SunshineDates.FORMAT_DAY_NAME,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED + 6 * day, now, false));
+        assertEquals(SunshineDates.FORMAT_ABBREVIATED_DATE,
+                SunshineDates.getFriendlyDateFormat(DATE_NORMALIZED + 7 * day, now, false));
+    }
+
+    @Test
+    public void friendlyDateStrings() {
+        DateLabels labels = new JavaDateLabels("Today", "Tomorrow", Locale.US, UTC);
+        long now = DATE_NORMALIZED + 1000;
+        long day = SunshineDates.DAY_IN_MILLIS;
+
+        assertEquals("Today, October 1",
+                SunshineDates.getFriendlyDateString(labels, DATE_NORMALIZED, now, UTC, false));
+        assertEquals("Tomorrow", SunshineDates.getFriendlyDateString(
+                labels, DATE_NORMALIZED + day, now, UTC, false));
+        assertEquals("Tomorrow, October 2", SunshineDates.getFriendlyDateString(
+                labels, DATE_NORMALIZED + day, now, UTC, true));
+        assertEquals("Monday", SunshineDates.getFriendlyDateString(
+                labels, DATE_NORMALIZED + 2 * day, now, UTC, false));
+        assertEquals("Sat, Oct 8", SunshineDates.getFriendlyDateString(
+                labels, DATE_NORMALIZED + 7 * day, now, UTC, false));
+    }
+}
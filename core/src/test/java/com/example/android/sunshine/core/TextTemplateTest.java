@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextTemplateTest {
+
+    /* Every template must read exactly as String.format would have it */
+    private static void assertSameAsFormat(String format, String... args) {
+        assertEquals(String.format(format, (Object[]) args),
+                TextTemplate.compile(format).format(args));
+    }
+
+    @Test
+    public void matchesStringFormat() {
+        assertSameAsFormat("Forecast: %1$s - High: %2$s Low: %3$s", "Clear", "21°", "9°");
+        assertSameAsFormat("%2$s before %1$s", "one", "two");
+        assertSameAsFormat("%s and %s", "this", "that");
+        assertSameAsFormat("100%% %s", "sure");
+        assertSameAsFormat("no placeholders");
+        assertSameAsFormat("%1$s%1$s", "twice");
+        assertSameAsFormat("");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherConversions() {
+        TextTemplate.compile("%1.0f°");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingArguments() {
+        TextTemplate.compile("%1$s and %2$s").format("only one");
+    }
+}
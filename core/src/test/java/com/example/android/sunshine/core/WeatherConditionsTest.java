@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeatherConditionsTest {
+
+    @Test
+    public void conditionCategories() {
+        assertEquals(WeatherConditions.CONDITION_STORM, WeatherConditions.getConditionForWeatherId(211));
+        assertEquals(WeatherConditions.CONDITION_LIGHT_RAIN, WeatherConditions.getConditionForWeatherId(301));
+        assertEquals(WeatherConditions.CONDITION_RAIN, WeatherConditions.getConditionForWeatherId(502));
+        assertEquals(WeatherConditions.CONDITION_SNOW, WeatherConditions.getConditionForWeatherId(511));
+        assertEquals(WeatherConditions.CONDITION_RAIN, WeatherConditions.getConditionForWeatherId(521));
+        assertEquals(WeatherConditions.CONDITION_SNOW, WeatherConditions.getConditionForWeatherId(616));
+        /* 761 falls in the fog range first, just as it always has */
+        assertEquals(WeatherConditions.CONDITION_FOG, WeatherConditions.getConditionForWeatherId(761));
+        assertEquals(WeatherConditions.CONDITION_STORM, WeatherConditions.getConditionForWeatherId(781));
+        assertEquals(WeatherConditions.CONDITION_CLEAR, WeatherConditions.getConditionForWeatherId(800));
+        assertEquals(WeatherConditions.CONDITION_LIGHT_CLOUDS, WeatherConditions.getConditionForWeatherId(801));
+        assertEquals(WeatherConditions.CONDITION_CLOUDS, WeatherConditions.getConditionForWeatherId(804));
+        assertEquals(WeatherConditions.CONDITION_STORM, WeatherConditions.getConditionForWeatherId(960));
+        assertEquals(WeatherConditions.CONDITION_CLEAR, WeatherConditions.getConditionForWeatherId(955));
+        assertEquals(WeatherConditions.CONDITION_UNKNOWN, WeatherConditions.getConditionForWeatherId(999));
+    }
+
+    @Test
+    public void windDirections() {
+        assertEquals("N", WeatherConditions.getWindDirection(0f));
+        assertEquals("N", WeatherConditions.getWindDirection(350f));
+        assertEquals("NE", WeatherConditions.getWindDirection(22.5f));
+        assertEquals("SE", WeatherConditions.getWindDirection(135f));
+        assertEquals("SW", WeatherConditions.getWindDirection(202.5f));
+        assertEquals("NW", WeatherConditions.getWindDirection(337.4f));
+        assertEquals("Unknown", WeatherConditions.getWindDirection(Float.NaN));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WeatherGeneratorTest {
+
+    /* Saturday, October 1st, 2016 at midnight, UTC */
+    private static final long DATE_NORMALIZED = 1475280000000L;
+
+    private static final long DAY = SunshineDates.DAY_IN_MILLIS;
+
+    /* Collects generated hours as {utcHour, temp, humidity, windSpeed, degrees} */
+    private static class HourList implements WeatherGenerator.HourHandler {
+        final List<double[]> hours = new ArrayList<>();
+
+        @Override
+        public void onHour(long utcHour, int weatherId, double temp, double humidity,
+                           double pressure, double windSpeed, double degrees) {
+            hours.add(new double[]{utcHour, temp, humidity, windSpeed, degrees});
+        }
+    }
+
+    private static Forecast days(WeatherGenerator generator, int location, long first, int n) {
+        Forecast days = new Forecast(n);
+        generator.generateDays(location, first, days);
+        return days;
+    }
+
+    @Test
+    public void sameSeedGivesTheSameWeather() {
+        Forecast first = days(WeatherGenerator.withRandomClimates(42, 3), 2, DATE_NORMALIZED, 14);
+        Forecast second = days(WeatherGenerator.withRandomClimates(42, 3), 2, DATE_NORMALIZED, 14);
+        for (int i = 0; i < 14; i++) {
+            assertEquals(first.getWeatherId(i), second.getWeatherId(i));
+            assertEquals(first.getMaxTemp(i), second.getMaxTemp(i), 0);
+            assertEquals(first.getPressure(i), second.getPressure(i), 0);
+        }
+
+        Forecast other = days(WeatherGenerator.withRandomClimates(43, 3), 2, DATE_NORMALIZED, 14);
+        assertNotEquals(first.getMaxTemp(0), other.getMaxTemp(0), 0);
+    }
+
+    @Test
+    public void dayDoesNotDependOnWhereTheRangeStarts() {
+        WeatherGenerator generator = WeatherGenerator.withRandomClimates(7, 2);
+        Forecast twoWeeks = days(generator, 1, DATE_NORMALIZED, 14);
+        Forecast lastWeek = days(generator, 1, DATE_NORMALIZED + 7 * DAY, 7);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(twoWeeks.getDate(i + 7), lastWeek.getDate(i));
+            assertEquals(twoWeeks.getMinTemp(i + 7), lastWeek.getMinTemp(i), 0);
+            assertEquals(twoWeeks.getWeatherId(i + 7), lastWeek.getWeatherId(i));
+        }
+    }
+
+    @Test
+    public void daysAreConsecutiveAndWithinRange() {
+        WeatherGenerator generator = WeatherGenerator.withRandomClimates(1, 20);
+        for (int location = 0; location < generator.getLocationCount(); location++) {
+            Forecast year = days(generator, location, DATE_NORMALIZED, 366);
+            assertEquals(366, year.size());
+            for (int i = 0; i < year.size(); i++) {
+                assertEquals(DATE_NORMALIZED + i * DAY, year.getDate(i));
+                assertTrue(year.getMinTemp(i) <= year.getMaxTemp(i));
+                assertTrue(year.getHumidity(i) >= 0 && year.getHumidity(i) <= 100);
+                assertTrue(year.getWindSpeed(i) >= 0);
+                assertTrue(year.getDegrees(i) >= 0 && year.getDegrees(i) < 360);
+                assertNotEquals(WeatherConditions.CONDITION_UNKNOWN,
+                        WeatherConditions.getConditionForWeatherId(year.getWeatherId(i)));
+            }
+        }
+    }
+
+    @Test
+    public void climateDecidesHowWetItIs() {
+        WeatherGenerator.Climate t = WeatherGenerator.Climate.TEMPERATE;
+        WeatherGenerator.Climate desert = new WeatherGenerator.Climate(t.meanTemp,
+                t.seasonalSwing, t.dailySwing, t.tempNoise, 20, 5, t.pressureMean,
+                t.pressureNoise, t.windMean, 0.02);
+        WeatherGenerator.Climate rainForest = new WeatherGenerator.Climate(t.meanTemp,
+                t.seasonalSwing, t.dailySwing, t.tempNoise, 90, 5, t.pressureMean,
+                t.pressureNoise, t.windMean, 0.9);
+        WeatherGenerator generator = new WeatherGenerator(5, desert, rainForest);
+
+        assertTrue(clearDays(days(generator, 0, DATE_NORMALIZED, 365)) > 330);
+        assertTrue(clearDays(days(generator, 1, DATE_NORMALIZED, 365)) < 80);
+    }
+
+    private static int clearDays(Forecast days) {
+        int clear = 0;
+        for (int i = 0; i < days.size(); i++) {
+            if (days.getWeatherId(i) >= 741) clear++;
+        }
+        return clear;
+    }
+
+    @Test
+    public void hoursStayWithinTheirDay() {
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        WeatherGenerator generator = WeatherGenerator.withRandomClimates(11, 1);
+
+        /* Two weeks from local midnight; the clocks go back on November 6th */
+        long midnight = SunshineDates.getLocalMidnightFromNormalizedUtcDate(
+                DATE_NORMALIZED + 30 * DAY, newYork);
+        HourList hours = new HourList();
+        generator.generateHours(0, midnight, 14 * 24, 1, newYork, hours);
+        assertEquals(14 * 24, hours.hours.size());
+
+        Forecast days = days(generator, 0, DATE_NORMALIZED + 30 * DAY, 15);
+        for (double[] hour : hours.hours) {
+            long utcHour = (long) hour[0];
+            assertTrue(SunshineDates.isHourNormalized(utcHour));
+            long day = SunshineDates.getNormalizedUtcDateForToday(utcHour, newYork);
+            int i = (int) ((day - days.getDate(0)) / DAY);
+            assertTrue(hour[1] >= days.getMinTemp(i) - 1e-9);
+            assertTrue(hour[1] <= days.getMaxTemp(i) + 1e-9);
+            assertTrue(hour[2] >= 0 && hour[2] <= 100);
+            assertTrue(hour[3] >= 0);
+            assertTrue(hour[4] >= 0 && hour[4] < 360);
+        }
+    }
+
+    @Test
+    public void hourlyStepSkipsHours() {
+        WeatherGenerator generator = WeatherGenerator.withRandomClimates(3, 2);
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+
+        HourList everyHour = new HourList();
+        generator.generateHours(1, DATE_NORMALIZED + 1234, 48, 1, utc, everyHour);
+        HourList everyThird = new HourList();
+        generator.generateHours(1, DATE_NORMALIZED, 48, 3, utc, everyThird);
+
+        assertEquals(16, everyThird.hours.size());
+        for (int i = 0; i < everyThird.hours.size(); i++) {
+            double[] third = everyThird.hours.get(i);
+            double[] same = everyHour.hours.get(i * 3);
+            assertEquals(same[0], third[0], 0);
+            assertEquals(same[1], third[1], 0);
+            assertEquals(same[2], third[2], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownLocationIsRejected() {
+        days(WeatherGenerator.withRandomClimates(1, 2), 2, DATE_NORMALIZED, 1);
+    }
+}
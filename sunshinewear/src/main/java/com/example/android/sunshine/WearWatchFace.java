@@ -32,34 +32,18 @@ import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 import android.widget.Toast;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
-import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
 import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import gradle.kathleenbenavides.com.sunshinewear.R;
@@ -108,20 +92,14 @@ public class WearWatchFace extends CanvasWatchFaceService {
         }
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
-            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+    private class Engine extends CanvasWatchFaceService.Engine implements
+            WeatherCache.OnWeatherChangedListener {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
         boolean mAmbient;
         Calendar mCalendar;
 
-        //values for weather app
-        private static final String SUNSHINE_PATH = "/weather";
-        private static final String REQUEST_SUNSHINE_PATH = "/get-weather";
-        private static final String HIGH_TEMP = "high";
-        private static final String LOW_TEMP = "low";
-        private static final String WEATHER_ID = "weatherId";
-        private static final String RANDOM_UUID = "uuid";
+        //values for weather app. The weather itself arrives through WeatherListenerService.
         private int weatherId = 0;
         private final String TAG = WearWatchFace.class.getSimpleName();
 
@@ -134,11 +112,6 @@ public class WearWatchFace extends CanvasWatchFaceService {
             }
         };
 
-        GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(WearWatchFace.this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API).build();
-
         //Declare all X Y offsets
         float mXOffsetTime;
         float mYOffsetTime;
@@ -164,6 +137,12 @@ public class WearWatchFace extends CanvasWatchFaceService {
         String highString;
         String lowString;
 
+        //Last weather received from the phone, kept across engines and restarts
+        WeatherCache mWeatherCache;
+
+        //Asks the phone for weather when ours is stale, or fetches it without the phone
+        WeatherTransport mWeatherTransport;
+
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
@@ -208,14 +187,35 @@ public class WearWatchFace extends CanvasWatchFaceService {
             tempLowAmbient = createTextPaint(resources.getColor(R.color.white));
 
             mCalendar = Calendar.getInstance();
+
+            //Draw the last weather we received straight away, rather than waiting for the phone,
+            //and redraw whenever WeatherListenerService saves new weather
+            mWeatherCache = new WeatherCache(WearWatchFace.this);
+            loadWeather();
+            mWeatherCache.setOnWeatherChangedListener(this);
+            mWeatherTransport = new WeatherTransport(WearWatchFace.this, mWeatherCache);
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mWeatherCache.setOnWeatherChangedListener(null);
+            mWeatherTransport.release();
             super.onDestroy();
         }
 
+        @Override
+        public void onWeatherChanged() {
+            loadWeather();
+            invalidate();
+        }
+
+        private void loadWeather() {
+            highString = mWeatherCache.getHigh();
+            lowString = mWeatherCache.getLow();
+            weatherId = mWeatherCache.getWeatherId();
+        }
+
         private Paint createTextPaint(int textColor) {
             Paint paint = new Paint();
             paint.setColor(textColor);
@@ -229,20 +229,20 @@ public class WearWatchFace extends CanvasWatchFaceService {
             super.onVisibilityChanged(visible);
 
             if (visible) {
-                mGoogleApiClient.connect();
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
                 long now = System.currentTimeMillis();
                 mCalendar.setTimeInMillis(now);
-            } else {
-                unregisterReceiver();
 
-                if(mGoogleApiClient != null && mGoogleApiClient.isConnected()){
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
-                    mGoogleApiClient.disconnect();
+                //New weather reaches the cache by itself, so we only need to ask for more if
+                //what we have is too old, which means a push went missing or the phone is away
+                if (mWeatherCache.shouldRequest(now)) {
+                    mWeatherTransport.requestWeather();
                 }
+            } else {
+                unregisterReceiver();
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -440,122 +440,8 @@ public class WearWatchFace extends CanvasWatchFaceService {
             }
         }
 
-        @Override
-        public void onConnected(@Nullable Bundle bundle) {
-            //Add the Data Listener
-            Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
-
-            //request weather info for wear
-            requestWeather();
-
-        }
-
-        @Override
-        public void onConnectionSuspended(int i) {
-
-        }
-
-        @Override
-        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
-
-        }
-
-        @Override
-        public void onDataChanged(DataEventBuffer dataEventBuffer) {
-            for(DataEvent event: dataEventBuffer) {
-
-                if (event.getType() == DataEvent.TYPE_CHANGED) {
-                    DataMap dataMap = DataMapItem.fromDataItem(event.getDataItem()).getDataMap();
-                    String dataPath = event.getDataItem().getUri().getPath();
-
-                    Log.e(TAG, "Data type changed for path: " + dataPath);
-                    //If there is a change from the app update the weather in wear
-                    if(dataPath.equals(SUNSHINE_PATH)) {
-                        Log.e(TAG, "Data from app has changed");
-                        updateWeather(dataMap);
-                    }
-                }
-            }
-
-        }
-
-        private void requestWeather() {
-
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(REQUEST_SUNSHINE_PATH);
-            //Random UUID so it can have a change and update
-            putDataMapRequest.getDataMap().putString(RANDOM_UUID, UUID.randomUUID().toString());
-            PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-            Wearable.DataApi.putDataItem(mGoogleApiClient, request).setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                @Override
-                public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
-                    if (!dataItemResult.getStatus().isSuccess()) {
-                        Log.e(TAG, "Data request failed");
-                    } else {
-                        Log.i(TAG, "Data request success");
-                    }
-                }
-            });
-        }
-
-
-
-        private void updateWeather(DataMap data){
-
-            Log.i(TAG, "Changes were found - update weather");
-
-            //Update the wear items if the data has changed
-            if(data.containsKey(WEATHER_ID)){
-                weatherId = data.getInt(WEATHER_ID);
-            }
-
-            if(data.containsKey(HIGH_TEMP)){
-                highString = data.getString(HIGH_TEMP);
-            }
-
-            if(data.containsKey(LOW_TEMP)){
-                lowString = data.getString(LOW_TEMP);
-            }
-
-        }
-
         public int getSmallArtResourceIdForWeatherCondition(int weatherId) {
-
-        /*
-         * Based on weather code data for Open Weather Map.
-         * Code snippet from app file SunshineWeatherUtils.java
-         */
-            if (weatherId >= 200 && weatherId <= 232) {
-                return R.drawable.ic_storm;
-            } else if (weatherId >= 300 && weatherId <= 321) {
-                return R.drawable.ic_light_rain;
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                return R.drawable.ic_rain;
-            } else if (weatherId == 511) {
-                return R.drawable.ic_snow;
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                return R.drawable.ic_rain;
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                return R.drawable.ic_snow;
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                return R.drawable.ic_fog;
-            } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-                return R.drawable.ic_storm;
-            } else if (weatherId == 800) {
-                return R.drawable.ic_clear;
-            } else if (weatherId == 801) {
-                return R.drawable.ic_light_clouds;
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                return R.drawable.ic_cloudy;
-            } else if (weatherId >= 900 && weatherId <= 906) {
-                return R.drawable.ic_storm;
-            } else if (weatherId >= 958 && weatherId <= 962) {
-                return R.drawable.ic_storm;
-            } else if (weatherId >= 951 && weatherId <= 957) {
-                return R.drawable.ic_clear;
-            }
-
-            return R.drawable.ic_storm;
+            return WeatherIcons.getSmallArtResourceIdForWeatherCondition(weatherId);
         }
 
 
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+import gradle.kathleenbenavides.com.sunshinewear.R;
+
+/**
+ * Keeps the last weather the phone sent us on the watch, so the watch face can draw it as soon
+ * as it is created and doesn't have to ask the phone again every time it becomes visible.
+ * <p>
+ * WeatherListenerService writes to the cache whenever the phone pushes weather, whether or not
+ * the watch face is visible. The watch face reads it, and registers an
+ * {@link OnWeatherChangedListener} to redraw when new weather is saved. Both run in the same
+ * process and share one SharedPreferences instance, so every WeatherCache sees the same data.
+ * <p>
+ * The phone is only asked for weather once what we have is older than the staleness bound,
+ * R.integer.weather_staleness_minutes. The phone pushes new weather after each of its syncs
+ * anyway, so the bound only needs to cover a missed push: it is set just above the longest time
+ * the phone can go between two syncs.
+ * <p>
+ * The cache also remembers the location the phone forecasts for, and when the watch last
+ * fetched weather from the server itself. {@link WeatherTransport} uses both when the phone
+ * can't be reached.
+ * <p>
+ * To see what this saves, every time the watch face becomes visible we count whether it asked
+ * the phone or answered from the cache. Counts are kept for the current day and logged.
+ */
+class WeatherCache {
+
+    private static final String TAG = WeatherCache.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "weather_cache";
+
+    private static final String KEY_HIGH = "high";
+    private static final String KEY_LOW = "low";
+    private static final String KEY_WEATHER_ID = "weather_id";
+    private static final String KEY_RECEIVED_AT = "received_at";
+
+    //Where the phone gets its weather for, so the watch can fetch the same place by itself
+    private static final String KEY_LOCATION_QUERY = "location_query";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+    private static final String KEY_LAST_DIRECT_FETCH = "last_direct_fetch";
+
+    private static final String KEY_STATS_DAY = "stats_day";
+    private static final String KEY_CHECKS = "stats_checks";
+    private static final String KEY_REQUESTS = "stats_requests";
+
+    /**
+     * Called on the main thread whenever new weather has been saved, by any WeatherCache.
+     */
+    interface OnWeatherChangedListener {
+        void onWeatherChanged();
+    }
+
+    private final SharedPreferences mPreferences;
+    private final long mStalenessMillis;
+
+    //SharedPreferences only keeps weak references to its listeners, so we hold on to ours
+    private SharedPreferences.OnSharedPreferenceChangeListener mPreferenceListener;
+
+    WeatherCache(Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mStalenessMillis = TimeUnit.MINUTES.toMillis(
+                context.getResources().getInteger(R.integer.weather_staleness_minutes));
+    }
+
+    //SharedPreferences keeps its contents in memory, so these don't touch the disk
+    String getHigh() {
+        return mPreferences.getString(KEY_HIGH, null);
+    }
+
+    String getLow() {
+        return mPreferences.getString(KEY_LOW, null);
+    }
+
+    int getWeatherId() {
+        return mPreferences.getInt(KEY_WEATHER_ID, 0);
+    }
+
+    /**
+     * Returns the location the phone last told us about, or null if it never did. Coordinates are
+     * returned by {@link #getCoordinates()} instead, when the phone has them.
+     */
+    String getLocationQuery() {
+        return mPreferences.getString(KEY_LOCATION_QUERY, null);
+    }
+
+    /**
+     * Returns the latitude and longitude the phone forecasts for, or null if it uses a location
+     * string instead.
+     */
+    double[] getCoordinates() {
+        if (!mPreferences.contains(KEY_LATITUDE) || !mPreferences.contains(KEY_LONGITUDE)) {
+            return null;
+        }
+        return new double[]{
+                Double.longBitsToDouble(mPreferences.getLong(KEY_LATITUDE, 0)),
+                Double.longBitsToDouble(mPreferences.getLong(KEY_LONGITUDE, 0))};
+    }
+
+    long getLastDirectFetch() {
+        return mPreferences.getLong(KEY_LAST_DIRECT_FETCH, 0);
+    }
+
+    /**
+     * Starts telling the listener about new weather, replacing any previous listener. Pass null
+     * to stop.
+     *
+     * @param listener Called whenever new weather is saved
+     */
+    void setOnWeatherChangedListener(final OnWeatherChangedListener listener) {
+        if (mPreferenceListener != null) {
+            mPreferences.unregisterOnSharedPreferenceChangeListener(mPreferenceListener);
+            mPreferenceListener = null;
+        }
+        if (listener == null) return;
+
+        mPreferenceListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                  String key) {
+                //The arrival time is written with every save, and only then
+                if (KEY_RECEIVED_AT.equals(key)) {
+                    listener.onWeatherChanged();
+                }
+            }
+        };
+        mPreferences.registerOnSharedPreferenceChangeListener(mPreferenceListener);
+    }
+
+    /**
+     * Remembers weather that just arrived, from the phone or fetched by the watch itself.
+     *
+     * @param high      Today's high, formatted for display
+     * @param low       Today's low, formatted for display
+     * @param weatherId Today's weather ID
+     * @param now       When it arrived, from System.currentTimeMillis()
+     */
+    void save(String high, String low, int weatherId, long now) {
+        mPreferences.edit()
+                .putString(KEY_HIGH, high)
+                .putString(KEY_LOW, low)
+                .putInt(KEY_WEATHER_ID, weatherId)
+                .putLong(KEY_RECEIVED_AT, now)
+                .apply();
+    }
+
+    /**
+     * Remembers the location the phone forecasts for. Each value is merged on its own, as the
+     * phone only sends the ones that changed.
+     *
+     * @param locationQuery The location string, or null to keep the one we have
+     * @param latitude      The latitude as the phone sent it, null to keep the one we have, or
+     *                      empty if the phone stopped using coordinates
+     * @param longitude     Same as latitude, for the longitude
+     */
+    void saveLocation(String locationQuery, String latitude, String longitude) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        if (locationQuery != null) {
+            editor.putString(KEY_LOCATION_QUERY, locationQuery);
+        }
+        saveCoordinate(editor, KEY_LATITUDE, latitude);
+        saveCoordinate(editor, KEY_LONGITUDE, longitude);
+        editor.apply();
+    }
+
+    private static void saveCoordinate(SharedPreferences.Editor editor, String key,
+                                       String value) {
+        if (value == null) return;
+        if (value.isEmpty()) {
+            editor.remove(key);
+        } else {
+            //SharedPreferences can't hold doubles, so keep their bits, as the phone does
+            editor.putLong(key, Double.doubleToRawLongBits(Double.parseDouble(value)));
+        }
+    }
+
+    /**
+     * Remembers that the watch just tried to fetch weather from the server itself, whether or
+     * not it worked, so a watch without a connection doesn't keep trying.
+     *
+     * @param now The current time, from System.currentTimeMillis()
+     */
+    void saveDirectFetchAttempt(long now) {
+        mPreferences.edit().putLong(KEY_LAST_DIRECT_FETCH, now).apply();
+    }
+
+    /**
+     * Decides whether the phone should be asked for weather, and counts the decision.
+     *
+     * @param now The current time, from System.currentTimeMillis()
+     * @return true if we have no weather, or it's older than the staleness bound
+     */
+    boolean shouldRequest(long now) {
+        long age = now - mPreferences.getLong(KEY_RECEIVED_AT, 0);
+        /* A negative age means the clock was changed, so don't trust what we have */
+        boolean stale = getHigh() == null || age < 0 || age > mStalenessMillis;
+        countCheck(stale, age, now);
+        return stale;
+    }
+
+    private void countCheck(boolean requested, long age, long now) {
+        long today = TimeUnit.MILLISECONDS.toDays(now);
+        long checks = 0;
+        long requests = 0;
+        if (mPreferences.getLong(KEY_STATS_DAY, -1) == today) {
+            checks = mPreferences.getLong(KEY_CHECKS, 0);
+            requests = mPreferences.getLong(KEY_REQUESTS, 0);
+        }
+        checks++;
+        if (requested) requests++;
+
+        mPreferences.edit()
+                .putLong(KEY_STATS_DAY, today)
+                .putLong(KEY_CHECKS, checks)
+                .putLong(KEY_REQUESTS, requests)
+                .apply();
+
+        /* Before the cache, every time the watch face became visible was a request */
+        Log.i(TAG, "Weather requests today: " + requests + " of " + checks + " wakes ("
+                + (requested ? "requested" : "cached, " + TimeUnit.MILLISECONDS.toMinutes(age)
+                + " min old") + ")");
+    }
+}
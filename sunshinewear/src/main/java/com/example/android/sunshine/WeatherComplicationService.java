@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.graphics.drawable.Icon;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationManager;
+import android.support.wearable.complications.ComplicationProviderService;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.ProviderUpdateRequester;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets any watch face show Sunshine's weather as a complication: today's high (with the low as
+ * its title) as short text, "high / low" as long text, or just the condition icon.
+ * <p>
+ * Complications are drawn from the {@link WeatherCache}, never from the network or the phone.
+ * The system doesn't poll us (UPDATE_PERIOD_SECONDS is 0 in the manifest); instead,
+ * WeatherListenerService calls {@link #requestUpdate(Context)} when new weather arrives. That
+ * only asks the system to refresh our complications if what they show actually changed, and no
+ * more than once every {@link #MIN_UPDATE_INTERVAL_MILLIS}. A change inside that interval is
+ * deferred with a non-waking alarm, which goes off the next time the watch is awake anyway.
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class WeatherComplicationService extends ComplicationProviderService {
+
+    private static final String TAG = WeatherComplicationService.class.getSimpleName();
+
+    /* The shortest time between two refreshes we ask the system for */
+    static final long MIN_UPDATE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String PREFERENCES_NAME = "weather_complications";
+
+    /* What the complications were last refreshed to show, and when (elapsed realtime) */
+    private static final String KEY_LAST_CONTENT = "last_content";
+    private static final String KEY_LAST_REQUEST = "last_request";
+
+    @Override
+    public void onComplicationUpdate(int complicationId, int dataType,
+                                     ComplicationManager complicationManager) {
+        WeatherCache cache = new WeatherCache(this);
+        String high = cache.getHigh();
+        String low = cache.getLow();
+
+        //Nothing has arrived from the phone yet
+        if (high == null || low == null) {
+            complicationManager.updateComplicationData(complicationId,
+                    new ComplicationData.Builder(ComplicationData.TYPE_NO_DATA).build());
+            return;
+        }
+
+        Icon icon = Icon.createWithResource(this,
+                WeatherIcons.getSmallArtResourceIdForWeatherCondition(cache.getWeatherId()));
+
+        ComplicationData data;
+        switch (dataType) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+                data = new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                        .setShortText(ComplicationText.plainText(high))
+                        .setShortTitle(ComplicationText.plainText(low))
+                        .setIcon(icon)
+                        .build();
+                break;
+
+            case ComplicationData.TYPE_LONG_TEXT:
+                data = new ComplicationData.Builder(ComplicationData.TYPE_LONG_TEXT)
+                        .setLongText(ComplicationText.plainText(high + " / " + low))
+                        .setIcon(icon)
+                        .build();
+                break;
+
+            case ComplicationData.TYPE_ICON:
+                data = new ComplicationData.Builder(ComplicationData.TYPE_ICON)
+                        .setIcon(icon)
+                        .build();
+                break;
+
+            default:
+                Log.w(TAG, "Unsupported complication type: " + dataType);
+                complicationManager.noUpdateRequired(complicationId);
+                return;
+        }
+
+        complicationManager.updateComplicationData(complicationId, data);
+    }
+
+    /**
+     * Asks the system to refresh every Sunshine complication, if what they show has changed
+     * since the last refresh. See the class description for how often that can happen.
+     *
+     * @param context Used to reach the cache and the system
+     */
+    static synchronized void requestUpdate(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return;
+
+        WeatherCache cache = new WeatherCache(context);
+        String content = cache.getHigh() + "|" + cache.getLow() + "|"
+                + WeatherIcons.getSmallArtResourceIdForWeatherCondition(cache.getWeatherId());
+
+        SharedPreferences sp = context.getSharedPreferences(PREFERENCES_NAME,
+                Context.MODE_PRIVATE);
+        if (content.equals(sp.getString(KEY_LAST_CONTENT, null))) {
+            Log.d(TAG, "Complications already show this weather");
+            return;
+        }
+
+        //Elapsed realtime starts over at boot, in which case the last request doesn't count
+        long now = SystemClock.elapsedRealtime();
+        long lastRequest = sp.getLong(KEY_LAST_REQUEST, 0);
+        if (lastRequest != 0 && lastRequest <= now
+                && now - lastRequest < MIN_UPDATE_INTERVAL_MILLIS) {
+            deferUpdate(context, lastRequest + MIN_UPDATE_INTERVAL_MILLIS);
+            return;
+        }
+
+        sp.edit()
+                .putString(KEY_LAST_CONTENT, content)
+                .putLong(KEY_LAST_REQUEST, now)
+                .apply();
+
+        new ProviderUpdateRequester(context,
+                new ComponentName(context, WeatherComplicationService.class))
+                .requestUpdateAll();
+    }
+
+    /*
+     * ELAPSED_REALTIME (not _WAKEUP) never wakes the watch up by itself. Deferring again replaces
+     * the pending alarm, so a burst of changes still results in a single refresh.
+     */
+    private static void deferUpdate(Context context, long atElapsedRealtime) {
+        Log.d(TAG, "Complication refresh deferred by "
+                + (atElapsedRealtime - SystemClock.elapsedRealtime()) + " ms");
+
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0,
+                new Intent(context, UpdateReceiver.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, atElapsedRealtime, pendingIntent);
+    }
+
+    /**
+     * Receives the alarm set by {@link #deferUpdate(Context, long)}.
+     */
+    public static class UpdateReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            requestUpdate(context);
+        }
+    }
+}
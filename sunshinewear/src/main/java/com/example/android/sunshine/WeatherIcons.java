@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import gradle.kathleenbenavides.com.sunshinewear.R;
+
+/**
+ * Maps weather IDs to the icons the watch draws them with, shared by the watch face and the
+ * complication provider.
+ */
+final class WeatherIcons {
+
+    private WeatherIcons() {
+    }
+
+    static int getSmallArtResourceIdForWeatherCondition(int weatherId) {
+
+        /*
+         * Based on weather code data for Open Weather Map. The mapping is shared with the
+         * app through WeatherConditions in the core module.
+         */
+        switch (WeatherConditions.getConditionForWeatherId(weatherId)) {
+            case WeatherConditions.CONDITION_LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case WeatherConditions.CONDITION_RAIN:
+                return R.drawable.ic_rain;
+            case WeatherConditions.CONDITION_SNOW:
+                return R.drawable.ic_snow;
+            case WeatherConditions.CONDITION_FOG:
+                return R.drawable.ic_fog;
+            case WeatherConditions.CONDITION_CLEAR:
+                return R.drawable.ic_clear;
+            case WeatherConditions.CONDITION_LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case WeatherConditions.CONDITION_CLOUDS:
+                return R.drawable.ic_cloudy;
+        }
+
+        return R.drawable.ic_storm;
+    }
+}
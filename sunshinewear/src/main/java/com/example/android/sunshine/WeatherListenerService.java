@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine;
+
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.WearableListenerService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the weather the phone pushes after each sync and saves it in the {@link WeatherCache}.
+ * Google Play services starts this service whenever the phone sends us a message, so no update
+ * is missed while the watch face is hidden, and the watch face itself doesn't have to stay
+ * connected to anything: it only watches the cache.
+ * <p>
+ * The phone only sends the fields that changed since the last message we acknowledged, so every
+ * message is acknowledged with its session and version, and anything missing from it is kept as
+ * it was.
+ */
+public class WeatherListenerService extends WearableListenerService {
+
+    //Paths and keys of the messages sent by the phone's WearUtils
+    private static final String DELTA_PATH = "/weather-delta";
+    private static final String ACK_PATH = "/weather-ack";
+    private static final String SESSION = "session";
+    private static final String VERSION = "version";
+    private static final String HIGH_TEMP = "high";
+    private static final String LOW_TEMP = "low";
+    private static final String WEATHER_ID = "weatherId";
+    private static final String LOCATION_QUERY = "location";
+    private static final String LATITUDE = "lat";
+    private static final String LONGITUDE = "lon";
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private final String TAG = WeatherListenerService.class.getSimpleName();
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (!DELTA_PATH.equals(messageEvent.getPath())) return;
+
+        DataMap delta = DataMap.fromByteArray(messageEvent.getData());
+        updateWeather(delta);
+        acknowledge(messageEvent.getSourceNodeId(), delta.getLong(SESSION),
+                delta.getLong(VERSION));
+    }
+
+    private void updateWeather(DataMap delta) {
+        WeatherCache cache = new WeatherCache(this);
+
+        //Keep whatever we had for any value that didn't change
+        String high = delta.getString(HIGH_TEMP, cache.getHigh());
+        String low = delta.getString(LOW_TEMP, cache.getLow());
+        int weatherId = delta.containsKey(WEATHER_ID)
+                ? Integer.parseInt(delta.getString(WEATHER_ID)) : cache.getWeatherId();
+
+        Log.i(TAG, "Weather from app - High: " + high + "| Low: " + low
+                + "| weatherID: " + weatherId + "| fields changed: " + (delta.size() - 2));
+        //Saved even if nothing changed: the message still tells us what we have is current
+        cache.save(high, low, weatherId, System.currentTimeMillis());
+
+        //Remember where the phone forecasts for, in case we have to fetch weather ourselves.
+        //Only the values that changed are in the delta; empty coordinates mean the phone
+        //stopped using them.
+        cache.saveLocation(delta.getString(LOCATION_QUERY), delta.getString(LATITUDE),
+                delta.getString(LONGITUDE));
+
+        //Other watch faces may be showing our weather too
+        WeatherComplicationService.requestUpdate(this);
+    }
+
+    /* Listener callbacks run on a background thread, so we can wait for Play services here */
+    private void acknowledge(String phoneNodeId, long session, long version) {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        if (!googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .isSuccess()) {
+            Log.e(TAG, "Couldn't acknowledge weather version " + version);
+            return;
+        }
+        try {
+            DataMap ack = new DataMap();
+            ack.putLong(SESSION, session);
+            ack.putLong(VERSION, version);
+            MessageApi.SendMessageResult result = Wearable.MessageApi.sendMessage(
+                    googleApiClient, phoneNodeId, ACK_PATH, ack.toByteArray()).await();
+            if (!result.getStatus().isSuccess()) {
+                //The phone will send those fields again next time
+                Log.e(TAG, "Acknowledging weather version " + version + " failed");
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.ForecastClient;
+import com.example.android.sunshine.core.SunshineDates;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import gradle.kathleenbenavides.com.sunshinewear.R;
+
+/**
+ * Gets new weather onto the watch once the {@link WeatherCache} says what we have is stale.
+ * <p>
+ * The phone is always preferred: when it is connected we ask it, and its answer arrives through
+ * WeatherListenerService like any other push. Only when no phone is connected (or Play services
+ * isn't available at all) does the watch fetch the forecast from the weather server itself,
+ * with the same parser the phone uses. Going online costs the watch far more battery than
+ * asking the phone, so direct fetches are limited to one every
+ * R.integer.direct_fetch_interval_minutes, which is longer than the staleness bound.
+ */
+class WeatherTransport implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+
+    private static final String TAG = WeatherTransport.class.getSimpleName();
+
+    //Path the phone's MobileServiceListener answers
+    private static final String REQUEST_SUNSHINE_PATH = "/get-weather";
+    private static final String RANDOM_UUID = "uuid";
+
+    //Only one direct fetch at a time, however many watch faces ask
+    private static final AtomicBoolean sFetching = new AtomicBoolean();
+
+    private final Context mContext;
+    private final WeatherCache mWeatherCache;
+    private final GoogleApiClient mGoogleApiClient;
+    private final long mDirectFetchIntervalMillis;
+
+    //Set while we're connecting to Play services in order to look for the phone
+    private boolean mRequestPending;
+
+    WeatherTransport(Context context, WeatherCache weatherCache) {
+        mContext = context.getApplicationContext();
+        mWeatherCache = weatherCache;
+        mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(Wearable.API).build();
+        mDirectFetchIntervalMillis = TimeUnit.MINUTES.toMillis(
+                context.getResources().getInteger(R.integer.direct_fetch_interval_minutes));
+    }
+
+    /**
+     * Asks the phone for weather, or fetches it directly if no phone is connected. We only stay
+     * connected to Play services for as long as this takes. Must be called on the main thread.
+     */
+    void requestWeather() {
+        if (mGoogleApiClient.isConnected()) {
+            findPhone();
+        } else {
+            mRequestPending = true;
+            if (!mGoogleApiClient.isConnecting()) {
+                mGoogleApiClient.connect();
+            }
+        }
+    }
+
+    /**
+     * Drops the connection to Play services, if any. A direct fetch already running finishes
+     * and saves its result regardless.
+     */
+    void release() {
+        mRequestPending = false;
+        if (mGoogleApiClient.isConnected() || mGoogleApiClient.isConnecting()) {
+            mGoogleApiClient.disconnect();
+        }
+    }
+
+    @Override
+    public void onConnected(@Nullable Bundle bundle) {
+        if (mRequestPending) {
+            mRequestPending = false;
+            findPhone();
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int i) {
+
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        //Without Play services there's no phone to ask
+        if (mRequestPending) {
+            mRequestPending = false;
+            fetchDirectlyIfDue(System.currentTimeMillis());
+        }
+    }
+
+    private void findPhone() {
+        Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).setResultCallback(
+                new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                    @Override
+                    public void onResult(@NonNull NodeApi.GetConnectedNodesResult result) {
+                        if (result.getStatus().isSuccess() && !result.getNodes().isEmpty()) {
+                            sendWeatherRequest();
+                        } else {
+                            mGoogleApiClient.disconnect();
+                            fetchDirectlyIfDue(System.currentTimeMillis());
+                        }
+                    }
+                });
+    }
+
+    private void sendWeatherRequest() {
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(REQUEST_SUNSHINE_PATH);
+        //Random UUID so it can have a change and update
+        putDataMapRequest.getDataMap().putString(RANDOM_UUID, UUID.randomUUID().toString());
+        PutDataRequest request = putDataMapRequest.asPutDataRequest();
+
+        Wearable.DataApi.putDataItem(mGoogleApiClient, request).setResultCallback(
+                new ResultCallback<DataApi.DataItemResult>() {
+                    @Override
+                    public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
+                        if (!dataItemResult.getStatus().isSuccess()) {
+                            Log.e(TAG, "Data request failed");
+                        } else {
+                            Log.i(TAG, "Data request success");
+                        }
+                        //The answer arrives through WeatherListenerService, not this connection
+                        mGoogleApiClient.disconnect();
+                    }
+                });
+    }
+
+    private void fetchDirectlyIfDue(long now) {
+        long sinceLastFetch = now - mWeatherCache.getLastDirectFetch();
+        //A negative time means the clock was changed, so don't wait for it to catch up
+        if (sinceLastFetch >= 0 && sinceLastFetch < mDirectFetchIntervalMillis) {
+            Log.i(TAG, "No phone, and the last direct fetch was "
+                    + TimeUnit.MILLISECONDS.toMinutes(sinceLastFetch) + " min ago");
+            return;
+        }
+        if (!sFetching.compareAndSet(false, true)) return;
+
+        //Counted as soon as we try, so a watch that is offline too doesn't retry at every wake
+        mWeatherCache.saveDirectFetchAttempt(now);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetchDirectly();
+                } finally {
+                    sFetching.set(false);
+                }
+            }
+        }, "DirectWeatherFetch").start();
+    }
+
+    /* Runs on a background thread */
+    private void fetchDirectly() {
+        long now = System.currentTimeMillis();
+        ForecastClient client = new ForecastClient(ForecastClient.STATIC_WEATHER_URL);
+        Forecast today = new Forecast(1);
+        try {
+            URL url;
+            double[] coordinates = mWeatherCache.getCoordinates();
+            if (coordinates != null) {
+                url = client.buildCoordinatesUrl(coordinates[0], coordinates[1], 1);
+            } else {
+                String locationQuery = mWeatherCache.getLocationQuery();
+                if (locationQuery == null) {
+                    //The phone never told us where it is, so use the phone's default
+                    locationQuery = mContext.getString(R.string.default_location);
+                }
+                url = client.buildLocationQueryUrl(locationQuery, 1);
+            }
+
+            long normalizedUtcToday =
+                    SunshineDates.getNormalizedUtcDateForToday(now, TimeZone.getDefault());
+            if (!client.fetch(url, normalizedUtcToday, today) || today.size() == 0) {
+                Log.e(TAG, "Weather server had no forecast for " + url);
+                return;
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Direct weather fetch failed", e);
+            return;
+        }
+
+        //Formatted just like the phone formats what it sends us
+        String temperatureFormat = mContext.getString(R.string.format_temperature);
+        String high = String.format(temperatureFormat, today.getMaxTemp(0));
+        String low = String.format(temperatureFormat, today.getMinTemp(0));
+        Log.i(TAG, "Weather from server - High: " + high + "| Low: " + low
+                + "| weatherID: " + today.getWeatherId(0));
+        mWeatherCache.save(high, low, today.getWeatherId(0), System.currentTimeMillis());
+
+        WeatherComplicationService.requestUpdate(mContext);
+    }
+}